@@ -0,0 +1,172 @@
+package guynir.pypath.headless;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.util.ThrowableRunnable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Minimal stand-ins for Intellij platform components, allowing plugin code to run outside of the IDE (e.g.: in
+ * benchmarks). The stand-in application runs every read/write action immediately, on the calling thread, and reports
+ * itself as running in unit test mode, so plugin code does not defer work to background threads.<p>
+ * Stand-ins are implemented as dynamic proxies: any method not explicitly handled returns a default value
+ * ({@code null}, {@code false} or zero).
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public final class HeadlessPlatform {
+
+    /**
+     * Whether the stand-in application was installed.
+     */
+    private static boolean installed;
+
+    /**
+     * Install the stand-in application, unless already installed.
+     */
+    public static synchronized void install() {
+        if (!installed) {
+            Application application = stub(Application.class, HeadlessPlatform::invokeApplication);
+            ApplicationManager.setApplication(application, Disposer.newDisposable());
+            installed = true;
+        }
+    }
+
+    /**
+     * Create a stand-in project.
+     *
+     * @param name Project name.
+     * @return New project.
+     */
+    public static Project createProject(String name) {
+        return stub(Project.class, (method, args) -> "getName".equals(method.getName()) ? name : null);
+    }
+
+    /**
+     * Create a dynamic proxy implementing an interface. Calls to {@link Object#equals(Object)},
+     * {@link Object#hashCode()} and {@link Object#toString()} are based on the proxy's identity; other calls are
+     * delegated to <i>handler</i>, and a {@code null} result is replaced with the default value of the method's return
+     * type.
+     *
+     * @param type    Interface to implement.
+     * @param handler Handler of method calls.
+     * @param <T>     Type of interface.
+     * @return New proxy.
+     */
+    public static <T> T stub(Class<T> type, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    if (args != null && args.length == 1 && method.getParameterTypes()[0] == Object.class) {
+                        return proxy == args[0];
+                    }
+                    break;
+                case "hashCode":
+                    if (args == null) {
+                        return System.identityHashCode(proxy);
+                    }
+                    break;
+                case "toString":
+                    if (args == null) {
+                        return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                    }
+                    break;
+            }
+
+            Object result = handler.invoke(method, args != null ? args : new Object[0]);
+            return result != null ? result : defaultValue(method.getReturnType());
+        };
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+
+    /**
+     * Handle a call to the stand-in application.
+     *
+     * @param method Invoked method.
+     * @param args   Call arguments.
+     * @return Call result.
+     * @throws Throwable Any error raised by an action.
+     */
+    private static Object invokeApplication(Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "isUnitTestMode":
+            case "isHeadlessEnvironment":
+            case "isDispatchThread":
+            case "isReadAccessAllowed":
+            case "isWriteAccessAllowed":
+                return true;
+            default:
+                // Run actions (e.g.: runReadAction(), runWriteAction(), invokeAndWait()) immediately.
+                return args.length > 0 ? runAction(args[0]) : null;
+        }
+    }
+
+    /**
+     * Run an action.
+     *
+     * @param action Action to run.
+     * @return Result of action, or {@code null} if <i>action</i> is not a recognized action type.
+     * @throws Throwable Any error raised by the action.
+     */
+    private static Object runAction(Object action) throws Throwable {
+        if (action instanceof Runnable) {
+            ((Runnable) action).run();
+        } else if (action instanceof Computable) {
+            return ((Computable<?>) action).compute();
+        } else if (action instanceof ThrowableComputable) {
+            return ((ThrowableComputable<?, ?>) action).compute();
+        } else if (action instanceof ThrowableRunnable) {
+            ((ThrowableRunnable<?>) action).run();
+        }
+        return null;
+    }
+
+    /**
+     * @param type A type.
+     * @return Default value of <i>type</i>.
+     */
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Handler of method calls made on a stand-in.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * @param method Invoked method.
+         * @param args   Call arguments (empty array if none).
+         * @return Call result, or {@code null} for default value.
+         * @throws Throwable Any error.
+         */
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+}
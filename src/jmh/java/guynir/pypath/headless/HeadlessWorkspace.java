@@ -0,0 +1,132 @@
+package guynir.pypath.headless;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.managers.ContentRootIndex;
+import guynir.pypath.managers.RootModelBatch;
+import guynir.pypath.managers.SourceFoldersManager;
+import guynir.pypath.services.ComponentStateServiceImpl;
+import guynir.pypath.services.VfsService;
+
+import java.util.Collection;
+
+/**
+ * A workspace held entirely in memory: a file system, a project consisting of a single module rooted at the workspace
+ * directory, and the plugin's services wired on top of them. Used to exercise plugin code in headless benchmarks.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class HeadlessWorkspace {
+
+    /**
+     * Absolute path of the workspace directory.
+     */
+    public static final String BASE_DIR_PATH = "/workspace";
+
+    /**
+     * In-memory file system.
+     */
+    private final InMemoryFileSystem fileSystem = new InMemoryFileSystem(BASE_DIR_PATH);
+
+    /**
+     * Project stand-in.
+     */
+    private final Project project = HeadlessPlatform.createProject("workspace");
+
+    /**
+     * Single module of the project, rooted at the workspace directory.
+     */
+    private final InMemoryModule module = new InMemoryModule("workspace", fileSystem.getRoot());
+
+    /**
+     * VFS service, backed by the in-memory file system.
+     */
+    private final VfsService vfsService;
+
+    /**
+     * Persistent state of the plugin.
+     */
+    private final ComponentStateServiceImpl stateService = new ComponentStateServiceImpl();
+
+    /**
+     * Class constructor. Installs the {@link HeadlessPlatform} stand-ins, if not installed yet.
+     */
+    public HeadlessWorkspace() {
+        HeadlessPlatform.install();
+        this.vfsService = new VfsService(fileSystem, project) {
+            {
+                setBaseDir(fileSystem.getRoot());
+            }
+        };
+    }
+
+    /**
+     * Create a source folders manager operating on this workspace.
+     *
+     * @return New manager.
+     */
+    public SourceFoldersManager createSourceFoldersManager() {
+        return new SourceFoldersManager(project, stateService, vfsService) {
+
+            @Override
+            protected ContentRootIndex buildContentRootIndex() {
+                ContentRootIndex index = new ContentRootIndex();
+                index.add(module.getModule(), module.getContentRoot());
+                return index;
+            }
+
+            @Override
+            protected Collection<VirtualFile> getModelRoots() {
+                return module.getSourceFolders();
+            }
+
+            @Override
+            protected RootModelBatch createBatch() {
+                return new RootModelBatch(project) {
+                    @Override
+                    protected ModifiableRootModel openModel(Module m) {
+                        return module.createModifiableModel();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return Root directory of the workspace.
+     */
+    public InMemoryVirtualFile getRoot() {
+        return fileSystem.getRoot();
+    }
+
+    /**
+     * @return Project stand-in.
+     */
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * @return Single module of the project.
+     */
+    public InMemoryModule getModule() {
+        return module;
+    }
+
+    /**
+     * @return VFS service, backed by the in-memory file system.
+     */
+    public VfsService getVfsService() {
+        return vfsService;
+    }
+
+    /**
+     * @return Persistent state of the plugin.
+     */
+    public ComponentStateServiceImpl getStateService() {
+        return stateService;
+    }
+}
@@ -0,0 +1,115 @@
+package guynir.pypath.headless;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileListener;
+import com.intellij.openapi.vfs.VirtualFileSystem;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * File system of {@link InMemoryVirtualFile}s. Supports lookup of files only; all modifications are expected to be
+ * made directly via {@link InMemoryVirtualFile}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class InMemoryFileSystem extends VirtualFileSystem {
+
+    /**
+     * Protocol of in-memory files.
+     */
+    public static final String PROTOCOL = "temp";
+
+    /**
+     * Root directory.
+     */
+    private final InMemoryVirtualFile root;
+
+    /**
+     * Class constructor.
+     *
+     * @param rootPath Absolute path of the root directory (e.g.: <i>/workspace</i>).
+     */
+    public InMemoryFileSystem(String rootPath) {
+        this.root = InMemoryVirtualFile.createRoot(this, rootPath);
+    }
+
+    /**
+     * @return Root directory.
+     */
+    public InMemoryVirtualFile getRoot() {
+        return root;
+    }
+
+    @NotNull
+    @Override
+    public String getProtocol() {
+        return PROTOCOL;
+    }
+
+    @Override
+    public VirtualFile findFileByPath(@NotNull String path) {
+        String rootPath = root.getPath();
+        if (path.equals(rootPath)) {
+            return root;
+        }
+        return path.startsWith(rootPath + "/") ? root.findFileByRelativePath(path.substring(rootPath.length() + 1)) : null;
+    }
+
+    @Override
+    public void refresh(boolean asynchronous) {
+    }
+
+    @Override
+    public VirtualFile refreshAndFindFileByPath(@NotNull String path) {
+        return findFileByPath(path);
+    }
+
+    @Override
+    public void addVirtualFileListener(@NotNull VirtualFileListener listener) {
+    }
+
+    @Override
+    public void removeVirtualFileListener(@NotNull VirtualFileListener listener) {
+    }
+
+    @Override
+    protected void deleteFile(Object requestor, @NotNull VirtualFile file) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void moveFile(Object requestor, @NotNull VirtualFile file, @NotNull VirtualFile newParent) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void renameFile(Object requestor, @NotNull VirtualFile file, @NotNull String newName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @NotNull
+    @Override
+    protected VirtualFile createChildFile(Object requestor, @NotNull VirtualFile dir, @NotNull String fileName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @NotNull
+    @Override
+    protected VirtualFile createChildDirectory(Object requestor, @NotNull VirtualFile dir, @NotNull String dirName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @NotNull
+    @Override
+    protected VirtualFile copyFile(Object requestor,
+                                   @NotNull VirtualFile file,
+                                   @NotNull VirtualFile newParent,
+                                   @NotNull String copyName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+}
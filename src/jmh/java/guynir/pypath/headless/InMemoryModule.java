@@ -0,0 +1,186 @@
+package guynir.pypath.headless;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ExcludeFolder;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.openapi.roots.SourceFolder;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.jps.model.java.JavaSourceRootType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A module with a single content root, whose root model is kept in memory. Modifiable models behave as the platform's:
+ * changes are made on a private copy and become visible only once committed. Excluded folders and patterns are not
+ * supported.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class InMemoryModule {
+
+    /**
+     * Module stand-in.
+     */
+    private final Module module;
+
+    /**
+     * Content root of the module.
+     */
+    private final VirtualFile contentRoot;
+
+    /**
+     * Committed source folders, keyed by directory.
+     */
+    private Map<VirtualFile, SourceFolder> sourceFolders = new LinkedHashMap<>();
+
+    /**
+     * Number of commits made.
+     */
+    private int commitCount;
+
+    /**
+     * Class constructor.
+     *
+     * @param name        Module name.
+     * @param contentRoot Content root of the module.
+     */
+    public InMemoryModule(String name, VirtualFile contentRoot) {
+        this.contentRoot = contentRoot;
+        this.module = HeadlessPlatform.stub(Module.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "isDisposed":
+                    return false;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * @return Module stand-in.
+     */
+    public Module getModule() {
+        return module;
+    }
+
+    /**
+     * @return Content root of the module.
+     */
+    public VirtualFile getContentRoot() {
+        return contentRoot;
+    }
+
+    /**
+     * @return Directories of committed source folders.
+     */
+    public Collection<VirtualFile> getSourceFolders() {
+        return Collections.unmodifiableCollection(sourceFolders.keySet());
+    }
+
+    /**
+     * @return Number of commits made.
+     */
+    public int getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * Remove all source folders and reset commit count.
+     */
+    public void reset() {
+        sourceFolders = new LinkedHashMap<>();
+        commitCount = 0;
+    }
+
+    /**
+     * Open a modifiable model.
+     *
+     * @return New modifiable model.
+     */
+    public ModifiableRootModel createModifiableModel() {
+        Map<VirtualFile, SourceFolder> folders = new LinkedHashMap<>(sourceFolders);
+        boolean[] changed = {false};
+
+        ContentEntry[] entries = new ContentEntry[1];
+        entries[0] = HeadlessPlatform.stub(ContentEntry.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getFile":
+                    return contentRoot;
+                case "getSourceFolders":
+                    return folders.values().toArray(new SourceFolder[0]);
+                case "addSourceFolder":
+                    if (args[0] instanceof VirtualFile) {
+                        VirtualFile file = (VirtualFile) args[0];
+                        Object rootType = args[1] instanceof Boolean
+                                ? ((Boolean) args[1] ? JavaSourceRootType.TEST_SOURCE : JavaSourceRootType.SOURCE)
+                                : args[1];
+                        SourceFolder folder = createSourceFolder(file, rootType, entries[0]);
+                        folders.put(file, folder);
+                        changed[0] = true;
+                        return folder;
+                    }
+                    throw new UnsupportedOperationException(method.toString());
+                case "removeSourceFolder":
+                    changed[0] |= folders.remove(((SourceFolder) args[0]).getFile()) != null;
+                    return null;
+                case "getExcludeFolders":
+                    return new ExcludeFolder[0];
+                case "getExcludePatterns":
+                    return Collections.emptyList();
+                default:
+                    return null;
+            }
+        });
+
+        return HeadlessPlatform.stub(ModifiableRootModel.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getContentEntries":
+                    return entries.clone();
+                case "getModule":
+                    return module;
+                case "isChanged":
+                    return changed[0];
+                case "commit":
+                    sourceFolders = folders;
+                    commitCount++;
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Create a source folder stand-in.
+     *
+     * @param file     Directory of the source folder.
+     * @param rootType Root type of the source folder.
+     * @param entry    Content entry owning the source folder.
+     * @return New source folder.
+     */
+    private static SourceFolder createSourceFolder(VirtualFile file, Object rootType, ContentEntry entry) {
+        return HeadlessPlatform.stub(SourceFolder.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getFile":
+                    return file;
+                case "getContentEntry":
+                    return entry;
+                case "getUrl":
+                    return file.getUrl();
+                case "getRootType":
+                    return rootType;
+                case "getPackagePrefix":
+                    return "";
+                default:
+                    return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,234 @@
+package guynir.pypath.headless;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileSystem;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A virtual file kept entirely in memory, standing in for the VFS in headless benchmarks. Only the operations used by
+ * the plugin are supported: navigation (parent, children, lookup by name or relative path) and reading of content.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class InMemoryVirtualFile extends VirtualFile {
+
+    /**
+     * File system this file belongs to.
+     */
+    private final InMemoryFileSystem fileSystem;
+
+    /**
+     * File name.
+     */
+    private final String name;
+
+    /**
+     * Parent directory ({@code null} for the root).
+     */
+    private final InMemoryVirtualFile parent;
+
+    /**
+     * Children, keyed by name ({@code null} for regular files).
+     */
+    private final Map<String, InMemoryVirtualFile> children;
+
+    /**
+     * Absolute path.
+     */
+    private final String path;
+
+    /**
+     * File content.
+     */
+    private byte[] content = new byte[0];
+
+    /**
+     * Modification stamp, incremented upon each change of content.
+     */
+    private long modificationStamp;
+
+    /**
+     * Class constructor.
+     *
+     * @param fileSystem File system this file belongs to.
+     * @param name       File name (absolute path for the root directory).
+     * @param parent     Parent directory.
+     * @param directory  {@code true} for a directory, {@code false} for a regular file.
+     */
+    private InMemoryVirtualFile(InMemoryFileSystem fileSystem,
+                                String name,
+                                InMemoryVirtualFile parent,
+                                boolean directory) {
+        this.fileSystem = fileSystem;
+        this.name = name;
+        this.parent = parent;
+        this.children = directory ? new LinkedHashMap<>() : null;
+        this.path = parent == null ? name : parent.path + "/" + name;
+    }
+
+    /**
+     * Create a root directory.
+     *
+     * @param fileSystem File system the directory belongs to.
+     * @param path       Absolute path of the root directory (e.g.: <i>/workspace</i>).
+     * @return New root directory.
+     */
+    static InMemoryVirtualFile createRoot(InMemoryFileSystem fileSystem, String path) {
+        return new InMemoryVirtualFile(fileSystem, path, null, true);
+    }
+
+    /**
+     * Create a directory, along with any missing parent directories.
+     *
+     * @param relativePath Path relative to this directory.
+     * @return The directory (either newly created or existing).
+     */
+    public InMemoryVirtualFile mkdirs(String relativePath) {
+        InMemoryVirtualFile current = this;
+        for (String segment : relativePath.split("/")) {
+            if (!segment.isEmpty()) {
+                InMemoryVirtualFile directory = current;
+                current = current.children.computeIfAbsent(segment,
+                        n -> new InMemoryVirtualFile(fileSystem, n, directory, true));
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Create a regular file (or replace content of an existing one).
+     *
+     * @param name    File name.
+     * @param content File content.
+     * @return The file.
+     */
+    public InMemoryVirtualFile createFile(String name, byte[] content) {
+        InMemoryVirtualFile file = children.computeIfAbsent(name,
+                n -> new InMemoryVirtualFile(fileSystem, n, this, false));
+        file.setContent(content);
+        return file;
+    }
+
+    /**
+     * Replace file content.
+     *
+     * @param content New content.
+     */
+    public void setContent(byte[] content) {
+        this.content = content;
+        modificationStamp++;
+    }
+
+    /**
+     * Mark the file as modified, without changing its content.
+     */
+    public void touch() {
+        modificationStamp++;
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @NotNull
+    @Override
+    public VirtualFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @NotNull
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @NotNull
+    @Override
+    public String getUrl() {
+        return InMemoryFileSystem.PROTOCOL + "://" + path;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return true;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return children != null;
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public VirtualFile getParent() {
+        return parent;
+    }
+
+    @Override
+    public VirtualFile[] getChildren() {
+        return children != null ? children.values().toArray(new VirtualFile[0]) : EMPTY_ARRAY;
+    }
+
+    @Override
+    public VirtualFile findChild(@NotNull String name) {
+        return children != null ? children.get(name) : null;
+    }
+
+    @NotNull
+    @Override
+    public OutputStream getOutputStream(Object requestor, long newModificationStamp, long newTimeStamp) {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                setContent(toByteArray());
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public byte[] contentsToByteArray() {
+        return content;
+    }
+
+    @Override
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return modificationStamp;
+    }
+
+    @Override
+    public long getLength() {
+        return content.length;
+    }
+
+    @Override
+    public void refresh(boolean asynchronous, boolean recursive, Runnable postRunnable) {
+        if (postRunnable != null) {
+            postRunnable.run();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+}
@@ -0,0 +1,84 @@
+package guynir.pypath.headless;
+
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.state.SourceType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates synthetic listings, resembling a mono-repo of many services grouped by team (e.g.:
+ * <i>services/group12/service1234/src</i>).
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class SyntheticListing {
+
+    /**
+     * Number of services per group.
+     */
+    private static final int GROUP_SIZE = 100;
+
+    /**
+     * @param index Index of a service.
+     * @return Path of the service's source folder, relative to workspace directory.
+     */
+    public static String path(int index) {
+        return "services/group" + (index / GROUP_SIZE) + "/service" + index + "/src";
+    }
+
+    /**
+     * @param size Number of entries.
+     * @return Relative paths of <i>size</i> source folders.
+     */
+    public static List<String> paths(int size) {
+        List<String> paths = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            paths.add(path(i));
+        }
+        return paths;
+    }
+
+    /**
+     * @param size Number of entries.
+     * @return Descriptors of <i>size</i> source folders.
+     */
+    public static List<SourceDescriptor> descriptors(int size) {
+        List<SourceDescriptor> descriptors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            descriptors.add(new SourceDescriptor(SourceType.SOURCE_ROOT, path(i)));
+        }
+        return descriptors;
+    }
+
+    /**
+     * Generate content of a listing file, including a comment line heading each group.
+     *
+     * @param size Number of entries.
+     * @return Listing file content.
+     */
+    public static byte[] content(int size) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i % GROUP_SIZE == 0) {
+                builder.append("\n# Group ").append(i / GROUP_SIZE).append('\n');
+            }
+            builder.append('/').append(path(i)).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create the directories of all source folders of a listing.
+     *
+     * @param root Workspace directory.
+     * @param size Number of entries.
+     */
+    public static void createDirectories(InMemoryVirtualFile root, int size) {
+        for (int i = 0; i < size; i++) {
+            root.mkdirs(path(i));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package guynir.pypath.managers;
+
+import guynir.pypath.headless.HeadlessWorkspace;
+import guynir.pypath.headless.InMemoryVirtualFile;
+import guynir.pypath.headless.SyntheticListing;
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.state.SourceType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link SourceFoldersManager}: loading of the listing file and reconciliation of the project model,
+ * running against an in-memory {@link HeadlessWorkspace}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SourceFoldersManagerBenchmark {
+
+    /**
+     * Number of entries in the listing.
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * Workspace containing the listing file and all listed directories.
+     */
+    private HeadlessWorkspace workspace;
+
+    /**
+     * The listing file.
+     */
+    private InMemoryVirtualFile listingFile;
+
+    /**
+     * Manager used by the loading benchmarks.
+     */
+    private SourceFoldersManager manager;
+
+    /**
+     * Listing synchronized by the reconciliation benchmarks.
+     */
+    private List<SourceDescriptor> expected;
+
+    /**
+     * Listing managed before the incremental reconciliation (1% of entries differ from {@link #expected}).
+     */
+    private List<SourceDescriptor> previous;
+
+    /**
+     * Create workspace, listing file and listed directories.
+     */
+    @Setup(Level.Trial)
+    public void setupWorkspace() {
+        workspace = new HeadlessWorkspace();
+        SyntheticListing.createDirectories(workspace.getRoot(), size + size / 100 + 1);
+        listingFile = workspace.getRoot().createFile("source_dirs", SyntheticListing.content(size));
+
+        expected = SyntheticListing.descriptors(size);
+        previous = new ArrayList<>(expected.subList(size / 100, size));
+        for (int i = 0; i < size / 100; i++) {
+            previous.add(new SourceDescriptor(SourceType.SOURCE_ROOT, SyntheticListing.path(size + i)));
+        }
+
+        manager = workspace.createSourceFoldersManager();
+        manager.loadListings(SourceFoldersManager.SOURCE_DIR_FILE);
+    }
+
+    /**
+     * Load a listing file modified since previous load.
+     *
+     * @return Loaded listing.
+     */
+    @Benchmark
+    public List<SourceDescriptor> loadListings() {
+        listingFile.touch();
+        return manager.loadListings(SourceFoldersManager.SOURCE_DIR_FILE);
+    }
+
+    /**
+     * Load a listing file not modified since previous load.
+     *
+     * @return Loaded listing.
+     */
+    @Benchmark
+    public List<SourceDescriptor> loadListingsUnchanged() {
+        return manager.loadListings(SourceFoldersManager.SOURCE_DIR_FILE);
+    }
+
+    /**
+     * Initial synchronization: all listed folders are marked.
+     *
+     * @param model Empty project model.
+     * @return Number of commits made.
+     */
+    @Benchmark
+    public int initialMarking(EmptyModel model) {
+        model.manager.handleDirectoryMarking(expected, Collections.emptyList());
+        return workspace.getModule().getCommitCount();
+    }
+
+    /**
+     * Incremental synchronization: 1% of the listing is replaced.
+     *
+     * @param model Project model synchronized with the previous listing.
+     * @return Number of commits made.
+     */
+    @Benchmark
+    public int incrementalMarking(SynchronizedModel model) {
+        model.manager.handleDirectoryMarking(expected, previous);
+        return workspace.getModule().getCommitCount();
+    }
+
+    /**
+     * Project open with a project model and listing file unchanged since previous session.
+     *
+     * @param model Project model synchronized with the listing file during previous session.
+     * @return {@code true} if the persisted snapshot matched.
+     */
+    @Benchmark
+    public boolean warmOpen(PreviousSession model) {
+        return model.manager.restoreFromSnapshot();
+    }
+
+    /**
+     * A project model without any source folder, reset before each invocation.
+     */
+    @State(Scope.Thread)
+    public static class EmptyModel {
+
+        /**
+         * Manager under test.
+         */
+        SourceFoldersManager manager;
+
+        /**
+         * Reset project model and plugin state.
+         *
+         * @param benchmark Benchmark state.
+         */
+        @Setup(Level.Invocation)
+        public void reset(SourceFoldersManagerBenchmark benchmark) {
+            benchmark.workspace.getModule().reset();
+            benchmark.workspace.getStateService().setSourceDescriptorListing(Collections.emptyList());
+            manager = benchmark.workspace.createSourceFoldersManager();
+        }
+    }
+
+    /**
+     * A project model synchronized with the previous listing, reset before each invocation.
+     */
+    @State(Scope.Thread)
+    public static class SynchronizedModel extends EmptyModel {
+
+        /**
+         * Reset project model and synchronize it with the previous listing.
+         *
+         * @param benchmark Benchmark state.
+         */
+        @Setup(Level.Invocation)
+        public void synchronize(SourceFoldersManagerBenchmark benchmark) {
+            manager.handleDirectoryMarking(benchmark.previous, Collections.emptyList());
+        }
+    }
+
+    /**
+     * A project model synchronized with the listing file by a previous session, reset before each invocation.
+     */
+    @State(Scope.Thread)
+    public static class PreviousSession extends EmptyModel {
+
+        /**
+         * Synchronize project model with the listing file and start a new session.
+         *
+         * @param benchmark Benchmark state.
+         */
+        @Setup(Level.Invocation)
+        public void reopen(SourceFoldersManagerBenchmark benchmark) {
+            manager.handleDirectoryMarking();
+            manager = benchmark.workspace.createSourceFoldersManager();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import guynir.pypath.headless.HeadlessWorkspace;
+import guynir.pypath.headless.InMemoryVirtualFile;
+import guynir.pypath.headless.SyntheticListing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link VfsChangesListenerManager#handleChanges(List)} over synthetic batches of events, resembling a
+ * dependency installation (mostly changes within <i>node_modules</i>) followed by an update of the listing file.
+ * Refresh requests are counted rather than executed.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VfsChangesListenerManagerBenchmark {
+
+    /**
+     * Number of events in a batch (as well as number of managed folders).
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * Listener under test.
+     */
+    private CountingListener listener;
+
+    /**
+     * Batch of events.
+     */
+    private List<VFileEvent> events;
+
+    /**
+     * Create workspace, managed folders and the batch of events.
+     */
+    @Setup
+    public void setup() {
+        HeadlessWorkspace workspace = new HeadlessWorkspace();
+        InMemoryVirtualFile root = workspace.getRoot();
+        SyntheticListing.createDirectories(root, size);
+        InMemoryVirtualFile listingFile = root.createFile("source_dirs", SyntheticListing.content(size));
+        workspace.getStateService().setSourceDescriptorListing(SyntheticListing.descriptors(size));
+
+        SourceFoldersManager manager = workspace.createSourceFoldersManager();
+        listener = new CountingListener(manager, workspace);
+
+        events = new ArrayList<>(size + 1);
+        for (int i = 0; i < size; i++) {
+            InMemoryVirtualFile pkg = root.mkdirs("node_modules/pkg" + i);
+            VirtualFile file = pkg.createFile("index.js", new byte[0]);
+            switch (i % 10) {
+                case 7:
+                    // A file within a managed folder.
+                    VirtualFile module = root.mkdirs(SyntheticListing.path(i)).createFile("module.py", new byte[0]);
+                    events.add(new VFileContentChangeEvent(null, module, 0, 1, true));
+                    break;
+                case 8:
+                    events.add(new VFilePropertyChangeEvent(null, pkg, VirtualFile.PROP_NAME, "old" + i, pkg.getName(),
+                            true));
+                    break;
+                case 9:
+                    events.add(new VFileDeleteEvent(null, file, true));
+                    break;
+                default:
+                    events.add(new VFileContentChangeEvent(null, file, 0, 1, true));
+            }
+        }
+        events.add(new VFileContentChangeEvent(null, listingFile, 0, 1, true));
+    }
+
+    /**
+     * @return Number of refresh requests made.
+     */
+    @Benchmark
+    public int handleChanges() {
+        listener.refreshRequests = 0;
+        listener.handleChanges(events);
+        return listener.refreshRequests;
+    }
+
+    /**
+     * A listener counting refresh requests instead of executing them.
+     */
+    private static class CountingListener extends VfsChangesListenerManager {
+
+        /**
+         * Number of refresh requests made.
+         */
+        int refreshRequests;
+
+        /**
+         * Class constructor.
+         *
+         * @param manager   Source folders manager.
+         * @param workspace Workspace.
+         */
+        CountingListener(SourceFoldersManager manager, HeadlessWorkspace workspace) {
+            super(manager, workspace.getProject(), workspace.getVfsService());
+        }
+
+        @Override
+        protected void requestRefresh() {
+            refreshRequests++;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package guynir.pypath.services;
+
+import guynir.pypath.headless.HeadlessWorkspace;
+import guynir.pypath.headless.SyntheticListing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of path conversions made by {@link VfsService}, running against an in-memory {@link HeadlessWorkspace}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VfsServiceBenchmark {
+
+    /**
+     * Number of paths.
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * Service under test.
+     */
+    private VfsService vfsService;
+
+    /**
+     * Absolute paths within the workspace.
+     */
+    private String[] absolutePaths;
+
+    /**
+     * Paths relative to workspace directory.
+     */
+    private String[] relativePaths;
+
+    /**
+     * Generate paths.
+     */
+    @Setup
+    public void setup() {
+        vfsService = new HeadlessWorkspace().getVfsService();
+        absolutePaths = new String[size];
+        relativePaths = new String[size];
+        for (int i = 0; i < size; i++) {
+            relativePaths[i] = (i % 2 == 0 ? "/" : "") + SyntheticListing.path(i);
+            absolutePaths[i] = vfsService.getBaseDirPath() + SyntheticListing.path(i);
+        }
+    }
+
+    /**
+     * @param blackhole Consumer of results.
+     */
+    @Benchmark
+    public void localizePath(Blackhole blackhole) {
+        for (String path : absolutePaths) {
+            blackhole.consume(vfsService.localizePath(path));
+        }
+    }
+
+    /**
+     * @param blackhole Consumer of results.
+     */
+    @Benchmark
+    public void toURL(Blackhole blackhole) {
+        for (String path : relativePaths) {
+            blackhole.consume(vfsService.toURL(path));
+        }
+    }
+}
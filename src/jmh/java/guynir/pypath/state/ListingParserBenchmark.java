@@ -0,0 +1,96 @@
+package guynir.pypath.state;
+
+import guynir.pypath.utils.ObjectUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link ListingParser} with the original, line-based loader of the listing file.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/24
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListingParserBenchmark {
+
+    /**
+     * Number of lines in the listing.
+     */
+    @Param({"10000", "100000"})
+    public int lines;
+
+    /**
+     * Raw content of the listing.
+     */
+    private byte[] content;
+
+    /**
+     * Generate a listing mixing entries, comments and empty lines.
+     */
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            switch (i % 10) {
+                case 0:
+                    builder.append("# Services of group ").append(i).append('\n');
+                    break;
+                case 1:
+                    builder.append('\n');
+                    break;
+                case 2:
+                    builder.append("  /services/group").append(i).append("/./src/  \n");
+                    break;
+                case 3:
+                    builder.append("libs/core").append(i).append("/../core").append(i).append("/src\n");
+                    break;
+                default:
+                    builder.append("/services/group").append(i / 10).append("/service").append(i).append("/src\n");
+            }
+        }
+        content = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Entries parsed by {@link ListingParser}.
+     */
+    @Benchmark
+    public List<String> listingParser() {
+        return new ListingParser().parse(content);
+    }
+
+    /**
+     * @return Entries parsed by the original loader.
+     * @throws IOException Never thrown (content is read from memory).
+     */
+    @Benchmark
+    public List<String> legacyLoader() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content)))) {
+            Predicate<String> filterLines = str -> !str.isEmpty() && !str.startsWith("#") && !str.startsWith("//");
+            return reader
+                    .lines()
+                    .map(String::trim)
+                    .filter(filterLines)
+                    .map(ObjectUtils::normalizePath)
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package guynir.pypath.utils;
+
+import guynir.pypath.headless.SyntheticListing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link ObjectUtils#normalizePath(String)} over synthetic listing entries.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ObjectUtilsBenchmark {
+
+    /**
+     * Number of paths.
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * Paths to normalize, as they may appear in a listing file (leading/trailing slashes, "." and ".." segments).
+     */
+    private String[] paths;
+
+    /**
+     * Generate paths.
+     */
+    @Setup
+    public void setup() {
+        paths = new String[size];
+        for (int i = 0; i < size; i++) {
+            String path = SyntheticListing.path(i);
+            switch (i % 4) {
+                case 0:
+                    paths[i] = "/" + path + "/";
+                    break;
+                case 1:
+                    paths[i] = "./" + path;
+                    break;
+                case 2:
+                    paths[i] = "services/../" + path;
+                    break;
+                default:
+                    paths[i] = path;
+            }
+        }
+    }
+
+    /**
+     * @param blackhole Consumer of results.
+     */
+    @Benchmark
+    public void normalizePath(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(ObjectUtils.normalizePath(path));
+        }
+    }
+}
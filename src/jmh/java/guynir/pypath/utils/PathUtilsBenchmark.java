@@ -0,0 +1,140 @@
+package guynir.pypath.utils;
+
+import guynir.pypath.headless.SyntheticListing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link PathUtils}, each next to a baseline of the implementation it replaced (normalization through
+ * {@link java.nio.file.Path#normalize()} and removal of repeated slashes by deleting characters in a loop).
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathUtilsBenchmark {
+
+    /**
+     * Number of paths.
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * Paths to normalize, as they may appear in a listing file (leading/trailing slashes, "." and ".." segments).
+     */
+    private String[] paths;
+
+    /**
+     * Normalized paths (the common case of a listing entry).
+     */
+    private String[] normalizedPaths;
+
+    /**
+     * Generate paths.
+     */
+    @Setup
+    public void setup() {
+        paths = new String[size];
+        normalizedPaths = new String[size];
+        for (int i = 0; i < size; i++) {
+            String path = SyntheticListing.path(i);
+            normalizedPaths[i] = path;
+            switch (i % 4) {
+                case 0:
+                    paths[i] = "/" + path + "/";
+                    break;
+                case 1:
+                    paths[i] = "./" + path;
+                    break;
+                case 2:
+                    paths[i] = "services//../" + path.replace("/", "//");
+                    break;
+                default:
+                    paths[i] = path;
+            }
+        }
+    }
+
+    /**
+     * @param blackhole Consumer of results.
+     */
+    @Benchmark
+    public void normalize(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(PathUtils.normalize(path));
+        }
+    }
+
+    /**
+     * @param blackhole Consumer of results.
+     */
+    @Benchmark
+    public void normalizeNormalized(Blackhole blackhole) {
+        for (String path : normalizedPaths) {
+            blackhole.consume(PathUtils.normalize(path));
+        }
+    }
+
+    /**
+     * @param blackhole Consumer of results.
+     */
+    @Benchmark
+    public void normalizeBaseline(Blackhole blackhole) {
+        for (String path : paths) {
+            String normalized = Paths.get(path.trim()).normalize().toString();
+            if (normalized.isEmpty()) {
+                normalized = "/";
+            } else if (normalized.length() > 1 && normalized.startsWith("/")) {
+                normalized = normalized.substring(1);
+            }
+            blackhole.consume(normalized);
+        }
+    }
+
+    /**
+     * @param blackhole Consumer of results.
+     */
+    @Benchmark
+    public void appendSegments(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(PathUtils.appendSegments(new StringBuilder(path.length() + 1), path).toString());
+        }
+    }
+
+    /**
+     * @param blackhole Consumer of results.
+     */
+    @Benchmark
+    public void appendSegmentsBaseline(Blackhole blackhole) {
+        for (String path : paths) {
+            StringBuilder buf = new StringBuilder(path.trim());
+            int index;
+            while ((index = buf.indexOf("//")) >= 0) {
+                buf.deleteCharAt(index);
+            }
+            if (buf.length() > 0 && buf.charAt(0) == '/') {
+                buf.deleteCharAt(0);
+            }
+            if (buf.length() > 0 && buf.charAt(buf.length() - 1) == '/') {
+                buf.deleteCharAt(buf.length() - 1);
+            }
+            if (buf.length() > 0) {
+                buf.insert(0, '/');
+            }
+            blackhole.consume(buf.toString());
+        }
+    }
+}
@@ -24,7 +24,13 @@ public class PostStartupActivityImpl implements StartupActivity {
         logger.info("Root project: '" + project.getName() + "'.");
         logger.info("Root project root: '" + serviceContainer.vfsService.getBaseDirPath() + "'.");
 
-        serviceContainer.sourceFoldersManager.handleDirectoryMarking();
+        // Nothing to reconcile if neither the listing nor the managed source roots changed since last session.
+        if (serviceContainer.sourceFoldersManager.restoreFromSnapshot()) {
+            logger.info("Source folders are up to date.");
+            serviceContainer.sourceFoldersManager.scheduleListingDiscovery();
+        } else {
+            serviceContainer.sourceFoldersManager.scheduleDirectoryMarking();
+        }
 
         logger.info("PyPath initialization complete.");
     }
@@ -0,0 +1,76 @@
+package guynir.pypath.actions;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import guynir.pypath.container.ServiceContainer;
+import guynir.pypath.metrics.MetricsRegistry;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.datatransfer.StringSelection;
+
+/**
+ * Displays the reconciliation metrics of the current project as a JSON document, with options to copy the document to
+ * the clipboard or to reset all metrics.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ShowMetricsAction extends AnAction implements DumbAware {
+
+    /**
+     * Dialog options.
+     */
+    private static final String[] OPTIONS = {"Copy as JSON", "Reset", "Close"};
+
+    /**
+     * Index of "Copy as JSON" option.
+     */
+    private static final int COPY_OPTION = 0;
+
+    /**
+     * Index of "Reset" option.
+     */
+    private static final int RESET_OPTION = 1;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        MetricsRegistry metrics = findMetrics(event.getProject());
+        if (metrics == null) {
+            return;
+        }
+
+        String json = metrics.toJson();
+        int option = Messages.showDialog(event.getProject(), json, "PyPath Metrics", OPTIONS, COPY_OPTION,
+                Messages.getInformationIcon());
+        if (option == COPY_OPTION) {
+            CopyPasteManager.getInstance().setContents(new StringSelection(json));
+        } else if (option == RESET_OPTION) {
+            metrics.reset();
+        }
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        event.getPresentation().setEnabled(findMetrics(event.getProject()) != null);
+    }
+
+    /**
+     * Lookup the metrics registry of a project.
+     *
+     * @param project Project to lookup registry for (may be {@code null}).
+     * @return Metrics registry of <i>project</i>, or {@code null} if there is no project or the plugin was not
+     * initialized yet.
+     */
+    static MetricsRegistry findMetrics(Project project) {
+        if (project == null) {
+            return null;
+        }
+        ServiceContainer container = ServiceManager.getService(project, ServiceContainer.class);
+        return container != null ? container.metrics : null;
+    }
+}
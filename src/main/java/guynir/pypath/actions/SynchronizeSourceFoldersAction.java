@@ -0,0 +1,49 @@
+package guynir.pypath.actions;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import guynir.pypath.container.ServiceContainer;
+import guynir.pypath.managers.SourceFoldersManager;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Synchronizes the source folders of the current project with the listing, as a cancellable background task showing
+ * its progress (see {@link SourceFoldersManager#runBulkReconciliation()}). Mainly useful after a large listing was
+ * pasted in.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class SynchronizeSourceFoldersAction extends AnAction implements DumbAware {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        SourceFoldersManager manager = findSourceFoldersManager(event.getProject());
+        if (manager != null) {
+            manager.runBulkReconciliation();
+        }
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        event.getPresentation().setEnabled(findSourceFoldersManager(event.getProject()) != null);
+    }
+
+    /**
+     * Lookup the source folders manager of a project.
+     *
+     * @param project Project to lookup manager for (may be {@code null}).
+     * @return Source folders manager of <i>project</i>, or {@code null} if there is no project or the plugin was not
+     * initialized yet.
+     */
+    private static SourceFoldersManager findSourceFoldersManager(Project project) {
+        if (project == null) {
+            return null;
+        }
+        ServiceContainer container = ServiceManager.getService(project, ServiceContainer.class);
+        return container != null ? container.sourceFoldersManager : null;
+    }
+}
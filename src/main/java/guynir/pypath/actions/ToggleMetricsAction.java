@@ -0,0 +1,37 @@
+package guynir.pypath.actions;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.project.DumbAware;
+import guynir.pypath.metrics.MetricsRegistry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Enables or disables recording of reconciliation metrics for the current project. While disabled, instrumented code
+ * paths skip all bookkeeping.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ToggleMetricsAction extends ToggleAction implements DumbAware {
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent event) {
+        MetricsRegistry metrics = ShowMetricsAction.findMetrics(event.getProject());
+        return metrics != null && metrics.isEnabled();
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent event, boolean state) {
+        MetricsRegistry metrics = ShowMetricsAction.findMetrics(event.getProject());
+        if (metrics != null) {
+            metrics.setEnabled(state);
+        }
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        super.update(event);
+        event.getPresentation().setEnabled(ShowMetricsAction.findMetrics(event.getProject()) != null);
+    }
+}
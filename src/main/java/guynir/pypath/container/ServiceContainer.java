@@ -7,6 +7,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileSystem;
 import guynir.pypath.managers.SourceFoldersManager;
 import guynir.pypath.managers.VfsChangesListenerManager;
+import guynir.pypath.metrics.MetricsRegistry;
 import guynir.pypath.services.ComponentStateService;
 import guynir.pypath.services.VfsService;
 
@@ -38,6 +39,11 @@ public class ServiceContainer {
      */
     public VfsService vfsService;
 
+    /**
+     * Reconciliation metrics.
+     */
+    public MetricsRegistry metrics;
+
     /**
      * Class constructor.
      */
@@ -54,16 +60,22 @@ public class ServiceContainer {
         }
         VirtualFileSystem vfs = projectDir.getFileSystem();
 
+        this.metrics = new MetricsRegistry();
+
         this.vfsService = VfsService.create(vfs, project);
+        this.vfsService.setMetrics(metrics);
 
         // State service.
         this.componentStateService = ServiceManager.getService(project, ComponentStateService.class);
 
         // Source folder management service.
         this.sourceFoldersManager = new SourceFoldersManager(project, this.componentStateService, vfsService);
+        this.sourceFoldersManager.setMetrics(metrics);
+        this.sourceFoldersManager.registerHandlers();
 
         // Register VFS change listener.
         this.changesListenerManager = new VfsChangesListenerManager(sourceFoldersManager, project, vfsService);
+        this.changesListenerManager.setMetrics(metrics);
         this.changesListenerManager.registerHandlers();
     }
 }
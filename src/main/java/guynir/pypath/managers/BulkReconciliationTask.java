@@ -0,0 +1,75 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import guynir.pypath.utils.Asserts;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Background task synchronizing source folders with the listing (see
+ * {@link SourceFoldersManager#runBulkReconciliation()}). The plan is computed in the background, in chunks, and is
+ * applied on the UI thread once the task completes successfully; a cancelled (or failed) task applies nothing.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+class BulkReconciliationTask extends Task.Backgroundable {
+
+    /**
+     * Manager to compute and apply the plan with.
+     */
+    private final SourceFoldersManager sourceFoldersManager;
+
+    /**
+     * Time the task started at (see {@link guynir.pypath.metrics.MetricsRegistry#startTimer()}).
+     */
+    private long startTime;
+
+    /**
+     * Listing loaded and plan computed by the task.
+     */
+    private volatile SourceFoldersManager.Reconciliation reconciliation;
+
+    /**
+     * Class logger.
+     */
+    private static final Logger logger = Logger.getInstance(BulkReconciliationTask.class);
+
+    /**
+     * Class constructor.
+     *
+     * @param project              Intellij project component.
+     * @param sourceFoldersManager Manager to compute and apply the plan with.
+     * @throws IllegalArgumentException If <i>sourceFoldersManager</i> is {@code null}.
+     */
+    BulkReconciliationTask(Project project, SourceFoldersManager sourceFoldersManager)
+            throws IllegalArgumentException {
+        super(project, "Synchronizing source folders", true);
+        Asserts.notNull(sourceFoldersManager, "Source folders manager cannot be null.");
+        this.sourceFoldersManager = sourceFoldersManager;
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        startTime = sourceFoldersManager.getMetrics().startTimer();
+        reconciliation = sourceFoldersManager.createPlanInChunks(indicator);
+        indicator.checkCanceled();
+    }
+
+    @Override
+    public void onSuccess() {
+        sourceFoldersManager.completeReconciliation(reconciliation, startTime);
+    }
+
+    @Override
+    public void onCancel() {
+        logger.info("Synchronization of source folders cancelled -- no changes were applied.");
+    }
+
+    @Override
+    public void onFinished() {
+        sourceFoldersManager.finishBulkReconciliation();
+    }
+}
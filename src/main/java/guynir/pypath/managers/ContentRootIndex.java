@@ -0,0 +1,127 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.utils.Asserts;
+import guynir.pypath.utils.PathTrie;
+
+/**
+ * Index of the content roots of all modules of a project, keyed by the content roots' paths. Resolves a directory to
+ * the module and content root it resides in with a single trie lookup, rather than a module lookup followed by a scan
+ * of the module's content entries.<p>
+ * An index reflects the project model at the time it was built, and should be discarded once the project roots change.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ContentRootIndex {
+
+    /**
+     * A content root, along with its owning module.
+     */
+    public static class Root {
+
+        /**
+         * Module owning the content root.
+         */
+        public final Module module;
+
+        /**
+         * Directory of the content root.
+         */
+        public final VirtualFile file;
+
+        /**
+         * Class constructor.
+         *
+         * @param module Module owning the content root.
+         * @param file   Directory of the content root.
+         */
+        Root(Module module, VirtualFile file) {
+            this.module = module;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Content roots, keyed by absolute path.
+     */
+    private final PathTrie<Root> roots = new PathTrie<>();
+
+    /**
+     * Build an index of the content roots of given modules.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param modules Modules to index.
+     * @return New index.
+     * @throws IllegalArgumentException If <i>modules</i> is {@code null}.
+     */
+    public static ContentRootIndex build(Module[] modules) throws IllegalArgumentException {
+        Asserts.notNull(modules, "Modules cannot be null.");
+
+        ContentRootIndex index = new ContentRootIndex();
+        for (Module module : modules) {
+            for (ContentEntry entry : ModuleRootManager.getInstance(module).getContentEntries()) {
+                if (entry.getFile() != null) {
+                    index.add(module, entry.getFile());
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Add a content root to the index. A content root already indexed is replaced.
+     *
+     * @param module      Module owning the content root.
+     * @param contentRoot Directory of the content root.
+     * @throws IllegalArgumentException If either arguments are {@code null}.
+     */
+    public void add(Module module, VirtualFile contentRoot) throws IllegalArgumentException {
+        Asserts.notNull(module, "Module cannot be null.");
+        Asserts.notNull(contentRoot, "Content root cannot be null.");
+
+        roots.put(contentRoot.getPath(), new Root(module, contentRoot));
+    }
+
+    /**
+     * Lookup the content root a directory resides in, i.e.: the nearest content root that is a strict ancestor of the
+     * directory.
+     *
+     * @param file Directory to lookup.
+     * @return Content root containing <i>file</i>, or {@code null} if <i>file</i> does not reside in any content root.
+     */
+    public Root find(VirtualFile file) {
+        VirtualFile parent = file.getParent();
+        return parent != null ? roots.getNearest(parent.getPath(), 0) : null;
+    }
+
+    /**
+     * Lookup the content root of a given module a directory resides in, i.e.: the nearest content root of the module
+     * that is a strict ancestor of the directory.
+     *
+     * @param file   Directory to lookup.
+     * @param module Module to lookup content root of.
+     * @return Content root of <i>module</i> containing <i>file</i>, or {@code null} if there is none.
+     */
+    public Root find(VirtualFile file, Module module) {
+        for (VirtualFile ancestor = file.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            Root root = roots.get(ancestor.getPath());
+            if (root != null && root.module == module) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Number of indexed content roots.
+     */
+    public int size() {
+        return roots.size();
+    }
+}
@@ -0,0 +1,274 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import guynir.pypath.PyPathException;
+import guynir.pypath.services.VfsService;
+import guynir.pypath.utils.Asserts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps track of the directories holding nested listing files, i.e.: listing files residing in a sub-directory of the
+ * workspace rather than in the workspace root.<p>
+ * Directories are {@link #discover() discovered} via the file name index, so the VFS is never walked. Files within
+ * excluded directories (including folders excluded by this plugin) are not indexed, hence never discovered; neither
+ * are files within hidden directories (e.g.: <i>.git</i> or <i>.venv</i>). Afterwards, directories are kept up to
+ * date incrementally as listing files are {@link #add(String) created} or {@link #remove(String) removed}, matching
+ * paths by name only. Changes that may bring a whole subtree of listing files into effect (e.g.: creation of a
+ * directory) merely {@link #invalidate(String) invalidate} the discovery, which is carried out again by the next
+ * refresh.<p>
+ * <b>NOTE:</b> {@link #discover()} must be called from within a read action.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ListingFileRegistry {
+
+    /**
+     * Intellij platform project component.
+     */
+    private final Project project;
+
+    /**
+     * Service for accessing Intellij platform SDK Virtual File System.
+     */
+    private final VfsService vfsService;
+
+    /**
+     * Names of listing files (all formats).
+     */
+    private final Set<String> fileNames;
+
+    /**
+     * Workspace relative paths of directories holding a nested listing file. Sorted, so a directory always precedes
+     * the directories nested within it.
+     */
+    private final NavigableSet<String> directories = new ConcurrentSkipListSet<>();
+
+    /**
+     * Determine if the registered directories reflect the most recent discovery, i.e.: no change that may have
+     * introduced listing files occurred since.
+     */
+    private volatile boolean discovered;
+
+    /**
+     * Class constructor.
+     *
+     * @param project    Intellij platform project component.
+     * @param vfsService Service for accessing Intellij platform SDK Virtual File System.
+     * @param fileNames  Names of listing files (e.g.: plain and YAML forms).
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public ListingFileRegistry(Project project, VfsService vfsService, Collection<String> fileNames)
+            throws IllegalArgumentException {
+        Asserts.notNull(project, "Project cannot be null.");
+        Asserts.notNull(vfsService, "VFS service cannot be null.");
+        Asserts.notNull(fileNames, "File names cannot be null.");
+
+        this.project = project;
+        this.vfsService = vfsService;
+        this.fileNames = Collections.unmodifiableSet(new HashSet<>(fileNames));
+    }
+
+    /**
+     * Search the workspace for nested listing files via the file name index, unless already discovered. The registered
+     * directories are replaced with the outcome of the search. Nothing is done while indices are being updated (dumb
+     * mode), in which case the search is carried out by a later call. A search that is cancelled (see
+     * {@link ProgressManager#checkCanceled()}) leaves the registry untouched, so it may safely be restarted.
+     *
+     * @return {@code true} if the registered directories changed.
+     */
+    public boolean discover() {
+        if (discovered || DumbService.isDumb(project)) {
+            return false;
+        }
+
+        // Project scope leaves out excluded directories, as well as ignored files.
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        Set<String> found = new HashSet<>();
+        for (String fileName : fileNames) {
+            for (VirtualFile file : FilenameIndex.getVirtualFilesByName(project, fileName, scope)) {
+                ProgressManager.checkCanceled();
+                String directory = directoryOf(file.getPath());
+                if (directory != null) {
+                    found.add(directory);
+                }
+            }
+        }
+
+        boolean changed = directories.retainAll(found);
+        changed |= directories.addAll(found);
+        discovered = true;
+        return changed;
+    }
+
+    /**
+     * @return {@code true} if the registered directories reflect the most recent discovery, {@code false} if the
+     * workspace is yet to be searched (again).
+     */
+    public boolean isDiscovered() {
+        return discovered;
+    }
+
+    /**
+     * Register directories known to hold nested listing files (e.g.: ones persisted by a previous session), without
+     * searching the workspace. The registry is still to be {@link #discover() discovered}.
+     *
+     * @param directories Workspace relative paths of directories.
+     * @throws IllegalArgumentException If <i>directories</i> is {@code null}.
+     */
+    public void register(Collection<String> directories) throws IllegalArgumentException {
+        Asserts.notNull(directories, "Directories cannot be null.");
+        this.directories.addAll(directories);
+    }
+
+    /**
+     * Register the directory of a created, moved or renamed file, if the file is a nested listing file. The file is
+     * matched by name and path only, without accessing the VFS.
+     *
+     * @param path Absolute path of a file.
+     * @return {@code true} if a directory was registered.
+     */
+    public boolean add(String path) {
+        if (path == null || !fileNames.contains(path.substring(path.lastIndexOf('/') + 1))) {
+            return false;
+        }
+
+        String directory = directoryOf(path);
+        return directory != null && directories.add(directory);
+    }
+
+    /**
+     * Mark the registry as no longer discovered, following a change that may have introduced nested listing files
+     * not reported individually (e.g.: a directory created, moved or renamed along with its content). No search is
+     * made; the workspace is searched again by the next call to {@link #discover()}.
+     *
+     * @param path Absolute path of a directory.
+     * @return {@code true} if the registry was discovered up until now (i.e.: a refresh is required to discover it
+     * again), {@code false} if <i>path</i> is outside the workspace or hidden, or the registry is already pending
+     * discovery.
+     */
+    public boolean invalidate(String path) {
+        if (path == null || !discovered) {
+            return false;
+        }
+
+        String relativePath;
+        try {
+            relativePath = vfsService.localizePath(path);
+        } catch (PyPathException ex) {
+            return false;
+        }
+        if (relativePath.isEmpty() || isHidden(relativePath)) {
+            return false;
+        }
+
+        discovered = false;
+        return true;
+    }
+
+    /**
+     * Unregister all directories residing in (or equal to) a removed directory. A removed nested listing file leaves
+     * its directory registered, as the directory may hold the listing in another form; directories no longer holding
+     * any listing file are expected to be {@link #unregister(String) unregistered} by the caller.
+     *
+     * @param path Absolute path of a file or directory that was deleted, moved or renamed.
+     * @return {@code true} if any directory was unregistered, or <i>path</i> references a nested listing file.
+     */
+    public boolean remove(String path) {
+        if (path == null) {
+            return false;
+        }
+
+        String relativePath;
+        try {
+            relativePath = vfsService.localizePath(path);
+        } catch (PyPathException ex) {
+            return false;
+        }
+
+        if (relativePath.isEmpty()) {
+            boolean removed = !directories.isEmpty();
+            directories.clear();
+            return removed;
+        }
+
+        int slash = relativePath.lastIndexOf('/');
+        if (slash > 0 && fileNames.contains(relativePath.substring(slash + 1))
+                && directories.contains(relativePath.substring(0, slash))) {
+            return true;
+        }
+
+        // All paths within 'relativePath' sort between 'relativePath/' and 'relativePath0' ('0' follows '/').
+        boolean removed = directories.remove(relativePath);
+        Set<String> nested = directories.subSet(relativePath + "/", relativePath + "0");
+        removed |= !nested.isEmpty();
+        nested.clear();
+        return removed;
+    }
+
+    /**
+     * Unregister a single directory (e.g.: one that no longer holds a listing file).
+     *
+     * @param directory Workspace relative path of a directory.
+     */
+    public void unregister(String directory) {
+        directories.remove(directory);
+    }
+
+    /**
+     * @return Workspace relative paths of directories holding a nested listing file, in an order where a directory
+     * always precedes the directories nested within it.
+     */
+    public List<String> getDirectories() {
+        return new ArrayList<>(directories);
+    }
+
+    /**
+     * @return Live, read-only view of the workspace relative paths of directories holding a nested listing file.
+     */
+    public Set<String> getDirectoriesView() {
+        return Collections.unmodifiableSet(directories);
+    }
+
+    /**
+     * @param path Absolute path of a listing file.
+     * @return Workspace relative path of the directory holding the file, or {@code null} if the file is not a nested
+     * listing file (i.e.: it is outside the workspace, at the workspace root or within a hidden directory).
+     */
+    private String directoryOf(String path) {
+        String relativePath;
+        try {
+            relativePath = vfsService.localizePath(path);
+        } catch (PyPathException ex) {
+            return null;
+        }
+
+        int slash = relativePath.lastIndexOf('/');
+        if (slash <= 0) {
+            return null;
+        }
+        String directory = relativePath.substring(0, slash);
+        return isHidden(directory) ? null : directory;
+    }
+
+    /**
+     * @param path Workspace relative path of a directory.
+     * @return {@code true} if the directory, or any of its ancestors, is hidden.
+     */
+    private static boolean isHidden(String path) {
+        return path.startsWith(".") || path.contains("/.");
+    }
+}
@@ -0,0 +1,245 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.services.FileNotFoundException;
+import guynir.pypath.services.VfsService;
+import guynir.pypath.state.PatternResolver;
+import guynir.pypath.utils.Asserts;
+import guynir.pypath.utils.GlobPattern;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expands glob patterns found in the listing file into the workspace directories they match.<p>
+ * Patterns are compiled once and kept for as long as they appear in the listing. Expansion is performed by a bounded
+ * walk of the VFS, starting at the pattern's base directory, and its result is cached until a directory that may lead
+ * to a match (see {@link GlobPattern#matchesPrefix(String)}) is {@link #invalidate(String) changed}.<p>
+ * <b>NOTE:</b> {@link #expand(String)} must be called from within a read action.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/24
+ */
+public class PatternExpander implements PatternResolver {
+
+    /**
+     * Maximum depth (below the pattern's base directory) a walk may descend to.
+     */
+    public static final int MAX_DEPTH = 32;
+
+    /**
+     * Maximum number of directories a single walk may visit.
+     */
+    public static final int MAX_VISITED_DIRECTORIES = 100_000;
+
+    /**
+     * Service for accessing Intellij platform SDK Virtual File System.
+     */
+    private final VfsService vfsService;
+
+    /**
+     * Compiled patterns, keyed by pattern string.
+     */
+    private final Map<String, GlobPattern> compiledPatterns = new ConcurrentHashMap<>();
+
+    /**
+     * Cached expansions, keyed by pattern string.
+     */
+    private final Map<String, List<String>> expansions = new ConcurrentHashMap<>();
+
+    /**
+     * Number of times cached expansions were invalidated.
+     */
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    /**
+     * Class logger.
+     */
+    private static final Logger logger = Logger.getInstance(PatternExpander.class);
+
+    /**
+     * Class constructor.
+     *
+     * @param vfsService Service for accessing Intellij platform SDK Virtual File System.
+     * @throws IllegalArgumentException If <i>vfsService</i> is {@code null}.
+     */
+    public PatternExpander(VfsService vfsService) throws IllegalArgumentException {
+        Asserts.notNull(vfsService, "VFS service cannot be null.");
+        this.vfsService = vfsService;
+    }
+
+    /**
+     * Expand a pattern to the workspace relative paths of all directories matching it.
+     *
+     * @param pattern Pattern to expand.
+     * @return Matching directories, relative to workspace base directory.
+     */
+    @Override
+    public List<String> expand(String pattern) {
+        Asserts.notNull(pattern, "Pattern cannot be null.");
+
+        List<String> expansion = expansions.get(pattern);
+        if (expansion == null) {
+            expansion = walk(compile(pattern));
+            expansions.put(pattern, expansion);
+        }
+        return expansion;
+    }
+
+    /**
+     * Compile a pattern, reusing a previous compilation if available.
+     *
+     * @param pattern Pattern to compile.
+     * @return Compiled pattern.
+     */
+    @Override
+    public GlobPattern compile(String pattern) {
+        return compiledPatterns.computeIfAbsent(pattern, GlobPattern::compile);
+    }
+
+    /**
+     * Discard compiled patterns and cached expansions of patterns no longer in use.
+     *
+     * @param patterns Patterns currently in use.
+     */
+    public void retain(Collection<String> patterns) {
+        Set<String> inUse = new HashSet<>(patterns);
+        if (compiledPatterns.keySet().equals(inUse)) {
+            return;
+        }
+
+        compiledPatterns.keySet().retainAll(inUse);
+        expansions.keySet().retainAll(inUse);
+        inUse.forEach(this::compile);
+    }
+
+    /**
+     * Invalidate cached expansions affected by a change of a directory (e.g.: directory created, deleted or renamed),
+     * i.e.: expansions of patterns the directory may lead to a match of (see {@link GlobPattern#matchesPrefix(String)}).
+     * For instance, a change of <i>services/auth/docs</i> invalidates <i>services/&#42;</i>, but not
+     * <i>services/&#42;/src</i>. A pattern starting with (or based at) "**" is invalidated by a change of any directory
+     * that is not hidden.
+     *
+     * @param path Workspace relative path of the changed directory.
+     */
+    public void invalidate(String path) {
+        Asserts.notNull(path, "Path cannot be null.");
+
+        for (GlobPattern pattern : compiledPatterns.values()) {
+            if (pattern.matchesPrefix(path) && expansions.remove(pattern.getPattern()) != null) {
+                modificationCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return Number of times cached expansions were invalidated. Expansions of patterns in use are unchanged for as
+     * long as this value is unchanged.
+     */
+    @Override
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * @return Compiled patterns in use.
+     */
+    public List<GlobPattern> getPatterns() {
+        return new ArrayList<>(compiledPatterns.values());
+    }
+
+    /**
+     * Walk the VFS and collect all directories matching a pattern.
+     *
+     * @param pattern Pattern to match.
+     * @return Relative paths of matching directories.
+     */
+    private List<String> walk(GlobPattern pattern) {
+        VirtualFile base;
+        try {
+            base = vfsService.toVFile(pattern.getBase());
+        } catch (FileNotFoundException ex) {
+            return Collections.emptyList();
+        }
+
+        Set<String> matches = new LinkedHashSet<>();
+        int[] budget = {MAX_VISITED_DIRECTORIES};
+        walk(pattern, base, pattern.getBase(), pattern.getBaseLength(), 0, matches, budget);
+        if (budget[0] < 0) {
+            logger.warn("Expansion of pattern '" + pattern + "' stopped after visiting " + MAX_VISITED_DIRECTORIES
+                    + " directories.");
+        }
+        return new ArrayList<>(matches);
+    }
+
+    /**
+     * Recursively match the directories under <i>directory</i> against the segments of a pattern, starting at
+     * segment <i>index</i>.
+     *
+     * @param pattern   Pattern to match.
+     * @param directory Directory to match against the current segment.
+     * @param path      Workspace relative path of <i>directory</i>.
+     * @param index     Index of current pattern segment.
+     * @param depth     Depth of <i>directory</i> below the pattern's base.
+     * @param matches   Collection of matching paths.
+     * @param budget    Single element array holding the number of directories that may still be visited.
+     */
+    private void walk(GlobPattern pattern,
+                      VirtualFile directory,
+                      String path,
+                      int index,
+                      int depth,
+                      Collection<String> matches,
+                      int[] budget) {
+        ProgressManager.checkCanceled();
+
+        if (index == pattern.getSegments().size()) {
+            matches.add(path);
+            return;
+        }
+
+        if (depth > MAX_DEPTH || --budget[0] < 0) {
+            return;
+        }
+
+        if (pattern.isAnyPath(index)) {
+            // '**' matching no segments at all.
+            walk(pattern, directory, path, index + 1, depth, matches, budget);
+        }
+
+        if (!pattern.isWildcard(index)) {
+            VirtualFile child = directory.findChild(pattern.getSegments().get(index));
+            if (child != null && child.isDirectory()) {
+                walk(pattern, child, join(path, child.getName()), index + 1, depth + 1, matches, budget);
+            }
+            return;
+        }
+
+        // '**' remains at the same segment for every level it descends to.
+        int nextIndex = pattern.isAnyPath(index) ? index : index + 1;
+        for (VirtualFile child : directory.getChildren()) {
+            if (child.isDirectory() && pattern.matchesSegment(index, child.getName())) {
+                walk(pattern, child, join(path, child.getName()), nextIndex, depth + 1, matches, budget);
+            }
+        }
+    }
+
+    /**
+     * @param path Workspace relative path of a directory.
+     * @param name Name of a child.
+     * @return Workspace relative path of the child.
+     */
+    private static String join(String path, String name) {
+        return path.isEmpty() ? name : path + "/" + name;
+    }
+}
@@ -0,0 +1,223 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ExcludeFolder;
+import com.intellij.openapi.roots.SourceFolder;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.state.SourceType;
+import guynir.pypath.utils.Asserts;
+import guynir.pypath.utils.TriConsumer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies reconciliation plans (see {@link ReconciliationPlan}) on a {@link RootModelBatch}, marking and un-marking
+ * folders within their content entries and keeping track of the managed folders and the descriptors actually marked.
+ * <p>
+ * <b>NOTE:</b> Must be used from within write actions only.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class PlanApplier {
+
+    /**
+     * Directories currently marked by this plugin.
+     */
+    private final Collection<VirtualFile> managedFolders;
+
+    /**
+     * Descriptors actually marked in the project model during this session.
+     */
+    private final Set<SourceDescriptor> appliedSources;
+
+    /**
+     * Class constructor.
+     *
+     * @param managedFolders Directories currently marked by this plugin, updated as folders are (un-)marked.
+     * @param appliedSources Descriptors actually marked in the project model, updated as plans are applied.
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public PlanApplier(Collection<VirtualFile> managedFolders, Set<SourceDescriptor> appliedSources)
+            throws IllegalArgumentException {
+        Asserts.notNull(managedFolders, "Managed folders cannot be null.");
+        Asserts.notNull(appliedSources, "Applied sources cannot be null.");
+
+        this.managedFolders = managedFolders;
+        this.appliedSources = appliedSources;
+    }
+
+    /**
+     * Apply a plan on a batch of modifiable models. The changes are not visible to the platform until the batch is
+     * {@link RootModelBatch#commit() committed}.
+     *
+     * @param batch Batch to apply changes on.
+     * @param plan  Plan to apply.
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public void apply(RootModelBatch batch, ReconciliationPlan plan) throws IllegalArgumentException {
+        Asserts.notNull(batch, "Batch cannot be null.");
+        Asserts.notNull(plan, "Plan cannot be null.");
+
+        // Add new source folders, and re-type ones listed with another type.
+        processDescriptors(batch, plan.additions, this::markFolder).forEach(appliedSources::add);
+
+        // Remove deprecated folders marked a source roots.
+        processDescriptors(batch, plan.removals, (contentEntry, file, descriptor) -> unmarkFolder(contentEntry, file));
+        plan.removed.forEach(appliedSources::remove);
+
+        // Update exclude patterns of all content entries lacking listed patterns or having stale ones.
+        plan.patternModules.forEach(module -> batch.applyAll(module, (contentEntry, model) ->
+                updateExcludePatterns(contentEntry, plan.excludePatterns, plan.stalePatterns)));
+        plan.expected.stream()
+                .filter(descriptor -> descriptor.type == SourceType.EXCLUDE_PATTERN)
+                .forEach(appliedSources::add);
+    }
+
+    /**
+     * For every given resolved entry, locate it parent content entry and invoke 'processor' to perform a custom
+     * operation. Changes are collected by <i>batch</i> and are applied only when the batch is committed.
+     *
+     * @param batch     Batch of modifiable models to apply changes on.
+     * @param entries   List of resolved entries to iterate.
+     * @param processor A callback to issue for each source, given the content entry, directory and descriptor.
+     * @return List of descriptors the <i>processor</i> was applied on.
+     */
+    private static List<SourceDescriptor> processDescriptors(
+            RootModelBatch batch,
+            Collection<ReconciliationPlan.Entry> entries,
+            TriConsumer<ContentEntry, VirtualFile, SourceDescriptor> processor) {
+        List<SourceDescriptor> processed = new ArrayList<>(entries.size());
+        for (ReconciliationPlan.Entry entry : entries) {
+            if (entry.file.isValid() && batch.apply(entry.module, entry.contentRoot, entry.file,
+                    (contentEntry, model, file) -> processor.accept(contentEntry, file, entry.descriptor))) {
+                processed.add(entry.descriptor);
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * Mark a directory as source folder of a descriptor's type (or as excluded folder) within its content entry,
+     * unless it is already marked so. A directory marked with another type is re-marked, within the same model, so the
+     * type change is committed along with all other changes. The package prefix of source and test roots is set to the
+     * descriptor's one.
+     *
+     * @param contentEntry Content entry the directory resides in.
+     * @param file         Directory to mark.
+     * @param descriptor   Descriptor of the directory.
+     */
+    public void markFolder(ContentEntry contentEntry, VirtualFile file, SourceDescriptor descriptor) {
+        SourceFolder sourceFolder = findSourceFolder(contentEntry, file);
+        ExcludeFolder excludeFolder = findExcludeFolder(contentEntry, file);
+
+        if (descriptor.type == SourceType.EXCLUDED_ROOT) {
+            if (sourceFolder != null) {
+                contentEntry.removeSourceFolder(sourceFolder);
+            }
+            if (excludeFolder == null) {
+                contentEntry.addExcludeFolder(file);
+            }
+        } else {
+            if (excludeFolder != null) {
+                contentEntry.removeExcludeFolder(excludeFolder);
+            }
+            if (sourceFolder != null && !SourceRootTypes.isOfType(sourceFolder, descriptor.type)) {
+                contentEntry.removeSourceFolder(sourceFolder);
+                sourceFolder = null;
+            }
+            if (sourceFolder == null) {
+                sourceFolder = SourceRootTypes.addSourceFolder(contentEntry, file, descriptor.type);
+            }
+            if (descriptor.type == SourceType.SOURCE_ROOT || descriptor.type == SourceType.TEST_SOURCE_ROOT) {
+                String packagePrefix = descriptor.packagePrefix != null ? descriptor.packagePrefix : "";
+                if (!packagePrefix.equals(sourceFolder.getPackagePrefix())) {
+                    sourceFolder.setPackagePrefix(packagePrefix);
+                }
+            }
+        }
+        managedFolders.add(file);
+    }
+
+    /**
+     * Un-mark a directory as source folder (or as excluded folder) within its content entry, if marked.
+     *
+     * @param contentEntry Content entry the directory resides in.
+     * @param file         Directory to un-mark.
+     */
+    public void unmarkFolder(ContentEntry contentEntry, VirtualFile file) {
+        SourceFolder sourceFolder = findSourceFolder(contentEntry, file);
+        if (sourceFolder != null) {
+            contentEntry.removeSourceFolder(sourceFolder);
+        }
+        ExcludeFolder excludeFolder = findExcludeFolder(contentEntry, file);
+        if (excludeFolder != null) {
+            contentEntry.removeExcludeFolder(excludeFolder);
+        }
+        managedFolders.remove(file);
+    }
+
+    /**
+     * Add listed exclude patterns to a content entry and remove stale ones from it. Patterns the content entry already
+     * has are left untouched.
+     *
+     * @param contentEntry    Content entry to update.
+     * @param excludePatterns Listed exclude patterns.
+     * @param stalePatterns   Exclude patterns no longer listed.
+     */
+    private static void updateExcludePatterns(ContentEntry contentEntry,
+                                              Collection<String> excludePatterns,
+                                              Collection<String> stalePatterns) {
+        List<String> patterns = contentEntry.getExcludePatterns();
+        for (String pattern : stalePatterns) {
+            if (patterns.contains(pattern)) {
+                contentEntry.removeExcludePattern(pattern);
+            }
+        }
+        for (String pattern : excludePatterns) {
+            if (!patterns.contains(pattern)) {
+                contentEntry.addExcludePattern(pattern);
+            }
+        }
+    }
+
+    /**
+     * Lookup the source folder registered for a given <i>file</i> within a content entry. Folders are matched by URL,
+     * as the folder of a deleted directory no longer resolves to a file.
+     *
+     * @param entry Content entry to search.
+     * @param file  Directory to look for.
+     * @return Source folder of <i>file</i> or {@code null} if <i>file</i> is not a source folder of <i>entry</i>.
+     */
+    public static SourceFolder findSourceFolder(ContentEntry entry, VirtualFile file) {
+        String url = file.getUrl();
+        for (SourceFolder sourceFolder : entry.getSourceFolders()) {
+            if (url.equals(sourceFolder.getUrl())) {
+                return sourceFolder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lookup the excluded folder registered for a given <i>file</i> within a content entry, matched by URL (see
+     * {@link #findSourceFolder(ContentEntry, VirtualFile)}).
+     *
+     * @param entry Content entry to search.
+     * @param file  Directory to look for.
+     * @return Excluded folder of <i>file</i> or {@code null} if <i>file</i> is not excluded by <i>entry</i>.
+     */
+    private static ExcludeFolder findExcludeFolder(ContentEntry entry, VirtualFile file) {
+        String url = file.getUrl();
+        for (ExcludeFolder excludeFolder : entry.getExcludeFolders()) {
+            if (url.equals(excludeFolder.getUrl())) {
+                return excludeFolder;
+            }
+        }
+        return null;
+    }
+}
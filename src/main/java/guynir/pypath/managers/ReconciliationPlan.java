@@ -0,0 +1,165 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.utils.Asserts;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Outcome of the read phase of a reconciliation: the listing expected to be managed and all changes required to get
+ * there, already resolved to files and modules. A plan is computed under a read action (possibly on a background
+ * thread) and later applied as a whole under a single write action.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/22
+ */
+public class ReconciliationPlan {
+
+    /**
+     * A descriptor resolved to its directory and owning module.
+     */
+    public static class Entry {
+
+        /**
+         * Resolved descriptor.
+         */
+        public final SourceDescriptor descriptor;
+
+        /**
+         * Directory the descriptor references.
+         */
+        public final VirtualFile file;
+
+        /**
+         * Module owning the directory.
+         */
+        public final Module module;
+
+        /**
+         * Content root of {@link #module} the directory resides in, or {@code null} if not resolved.
+         */
+        public final VirtualFile contentRoot;
+
+        /**
+         * Class constructor.
+         *
+         * @param descriptor Resolved descriptor.
+         * @param file       Directory the descriptor references.
+         * @param module     Module owning the directory.
+         * @throws IllegalArgumentException If any argument is {@code null}.
+         */
+        public Entry(SourceDescriptor descriptor, VirtualFile file, Module module) throws IllegalArgumentException {
+            this(descriptor, file, module, null);
+        }
+
+        /**
+         * Class constructor.
+         *
+         * @param descriptor  Resolved descriptor.
+         * @param file        Directory the descriptor references.
+         * @param module      Module owning the directory.
+         * @param contentRoot Content root of <i>module</i> the directory resides in (optional).
+         * @throws IllegalArgumentException If either <i>descriptor</i>, <i>file</i> or <i>module</i> are {@code null}.
+         */
+        public Entry(SourceDescriptor descriptor, VirtualFile file, Module module, VirtualFile contentRoot)
+                throws IllegalArgumentException {
+            Asserts.notNull(descriptor, "Descriptor cannot be null.");
+            Asserts.notNull(file, "File cannot be null.");
+            Asserts.notNull(module, "Module cannot be null.");
+
+            this.descriptor = descriptor;
+            this.file = file;
+            this.module = module;
+            this.contentRoot = contentRoot;
+        }
+    }
+
+    /**
+     * Listing of descriptors expected to be managed once the plan is applied.
+     */
+    public final List<SourceDescriptor> expected;
+
+    /**
+     * Descriptors to mark.
+     */
+    public final List<Entry> additions;
+
+    /**
+     * Descriptors to un-mark.
+     */
+    public final List<Entry> removals;
+
+    /**
+     * All descriptors no longer listed, including ones that could not be resolved.
+     */
+    public final List<SourceDescriptor> removed;
+
+    /**
+     * Exclude patterns expected on every content entry once the plan is applied.
+     */
+    public final Set<String> excludePatterns;
+
+    /**
+     * Exclude patterns no longer listed, to remove from every content entry.
+     */
+    public final Set<String> stalePatterns;
+
+    /**
+     * Modules having a content entry whose exclude patterns are to be updated.
+     */
+    public final List<Module> patternModules;
+
+    /**
+     * Class constructor.
+     *
+     * @param expected  Listing of descriptors expected to be managed once the plan is applied.
+     * @param additions Descriptors to mark.
+     * @param removals  Descriptors to un-mark.
+     * @param removed   All descriptors no longer listed.
+     */
+    public ReconciliationPlan(List<SourceDescriptor> expected,
+                              List<Entry> additions,
+                              List<Entry> removals,
+                              List<SourceDescriptor> removed) {
+        this(expected, additions, removals, removed, Collections.emptySet(), Collections.emptySet(),
+                Collections.emptyList());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param expected        Listing of descriptors expected to be managed once the plan is applied.
+     * @param additions       Descriptors to mark.
+     * @param removals        Descriptors to un-mark.
+     * @param removed         All descriptors no longer listed.
+     * @param excludePatterns Exclude patterns expected on every content entry.
+     * @param stalePatterns   Exclude patterns to remove from every content entry.
+     * @param patternModules  Modules whose exclude patterns are to be updated.
+     */
+    public ReconciliationPlan(List<SourceDescriptor> expected,
+                              List<Entry> additions,
+                              List<Entry> removals,
+                              List<SourceDescriptor> removed,
+                              Set<String> excludePatterns,
+                              Set<String> stalePatterns,
+                              List<Module> patternModules) {
+        this.expected = expected;
+        this.additions = Collections.unmodifiableList(additions);
+        this.removals = Collections.unmodifiableList(removals);
+        this.removed = Collections.unmodifiableList(removed);
+        this.excludePatterns = Collections.unmodifiableSet(excludePatterns);
+        this.stalePatterns = Collections.unmodifiableSet(stalePatterns);
+        this.patternModules = Collections.unmodifiableList(patternModules);
+    }
+
+    /**
+     * @return {@code true} if applying this plan does not require any change to the project model.
+     */
+    public boolean isEmpty() {
+        return additions.isEmpty() && removals.isEmpty() && removed.isEmpty() && patternModules.isEmpty();
+    }
+}
@@ -0,0 +1,361 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.services.FileNotFoundException;
+import guynir.pypath.services.VfsService;
+import guynir.pypath.state.ListingDiff;
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.state.SourceType;
+import guynir.pypath.utils.Asserts;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Computes the plan moving the project model from the managed listing to the expected one (see
+ * {@link ReconciliationPlan}): the descriptors to mark and un-mark are computed first (see {@link PendingChanges}),
+ * then resolved to their directories, owning modules and content roots. The project model is not modified.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ReconciliationPlanner {
+
+    /**
+     * Service for accessing Intellij platform SDK Virtual File System.
+     */
+    private final VfsService vfsService;
+
+    /**
+     * Descriptors actually marked in the project model during this session (modified under write actions only).
+     */
+    private final Set<SourceDescriptor> appliedSources;
+
+    /**
+     * Provides the index of the content roots of all modules.
+     */
+    private final Supplier<ContentRootIndex> contentRootIndex;
+
+    /**
+     * Looks up a module by its name.
+     */
+    private final Function<String, Module> moduleLookup;
+
+    /**
+     * Provides all modules of the project.
+     */
+    private final Supplier<Module[]> modules;
+
+    /**
+     * Class logger.
+     */
+    private static final Logger logger = Logger.getInstance(ReconciliationPlanner.class);
+
+    /**
+     * Class constructor.
+     *
+     * @param vfsService       Service for accessing Intellij platform SDK Virtual File System.
+     * @param appliedSources   Descriptors actually marked in the project model during this session.
+     * @param contentRootIndex Provides the index of the content roots of all modules.
+     * @param moduleLookup     Looks up a module by its name, returning {@code null} if there is none.
+     * @param modules          Provides all modules of the project.
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public ReconciliationPlanner(VfsService vfsService,
+                                 Set<SourceDescriptor> appliedSources,
+                                 Supplier<ContentRootIndex> contentRootIndex,
+                                 Function<String, Module> moduleLookup,
+                                 Supplier<Module[]> modules) throws IllegalArgumentException {
+        Asserts.notNull(vfsService, "VFS service cannot be null.");
+        Asserts.notNull(appliedSources, "Applied sources cannot be null.");
+        Asserts.notNull(contentRootIndex, "Content root index supplier cannot be null.");
+        Asserts.notNull(moduleLookup, "Module lookup cannot be null.");
+        Asserts.notNull(modules, "Modules supplier cannot be null.");
+
+        this.vfsService = vfsService;
+        this.appliedSources = appliedSources;
+        this.contentRootIndex = contentRootIndex;
+        this.moduleLookup = moduleLookup;
+        this.modules = modules;
+    }
+
+    /**
+     * Compute the changes required to move from the <i>actual</i> listing to the <i>expected</i> one. Descriptors are
+     * resolved to their directories and owning modules; the project model itself is not modified.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param expected List of expected source folders.
+     * @param actual   List of currently managed as source folders.
+     * @return Plan to apply.
+     */
+    public ReconciliationPlan createPlan(List<SourceDescriptor> expected, Collection<SourceDescriptor> actual) {
+        return resolveChanges(computeChanges(expected, actual), this::resolve);
+    }
+
+    /**
+     * Resolve pending changes into a plan, in chunks of a given size, each within its own read action, so write
+     * actions are not held back for the whole resolution. Progress is reported against all descriptors to resolve
+     * (both to mark and to un-mark).<p>
+     * <b>NOTE:</b> Must not be called from within a read action.
+     *
+     * @param changes   Changes to resolve.
+     * @param indicator Indicator to report progress to and check for cancellation.
+     * @param chunkSize Number of descriptors resolved within a single read action.
+     * @return Plan to apply.
+     */
+    public ReconciliationPlan createPlan(PendingChanges changes, ProgressIndicator indicator, int chunkSize) {
+        int total = changes.forAddition.size() + changes.forUnmarking.size();
+        AtomicInteger resolved = new AtomicInteger();
+        return resolveChanges(changes, descriptors -> {
+            List<ReconciliationPlan.Entry> entries = new ArrayList<>(descriptors.size());
+            for (int start = 0; start < descriptors.size(); start += chunkSize) {
+                indicator.checkCanceled();
+                int done = resolved.get() + start;
+                indicator.setText("Resolving source folders (" + done + " of " + total + ")");
+                indicator.setFraction((double) done / total);
+
+                List<SourceDescriptor> chunk =
+                        descriptors.subList(start, Math.min(start + chunkSize, descriptors.size()));
+                entries.addAll(ReadAction.compute(() -> resolve(chunk)));
+            }
+            resolved.addAndGet(descriptors.size());
+            return entries;
+        });
+    }
+
+    /**
+     * Compute the descriptors to mark and un-mark in order to move from the <i>actual</i> listing to the
+     * <i>expected</i> one, without resolving them. Listed descriptors not marked during this session are marked as
+     * well.<p>
+     * <b>NOTE:</b> Must be called from within a read action, as the marked descriptors are modified by write actions.
+     *
+     * @param expected List of expected source folders.
+     * @param actual   List of currently managed as source folders.
+     * @return Changes to resolve.
+     */
+    public PendingChanges computeChanges(List<SourceDescriptor> expected, Collection<SourceDescriptor> actual) {
+        ListingDiff diff = ListingDiff.compute(expected, actual);
+
+        // Apply new descriptors, as well as listed descriptors that are not marked yet (e.g.: folder did not exist
+        // during previous synchronization). Exclude patterns are applied separately, on all content entries.
+        List<SourceDescriptor> forAddition = new ArrayList<>();
+        Set<String> excludePatterns = new LinkedHashSet<>();
+        for (SourceDescriptor descriptor : diff.getAdded()) {
+            if (descriptor.type == SourceType.EXCLUDE_PATTERN) {
+                excludePatterns.add(descriptor.getPathname());
+            } else {
+                forAddition.add(descriptor);
+            }
+        }
+        for (SourceDescriptor descriptor : diff.getUnchanged()) {
+            if (descriptor.type == SourceType.EXCLUDE_PATTERN) {
+                excludePatterns.add(descriptor.getPathname());
+            } else if (!appliedSources.contains(descriptor)) {
+                forAddition.add(descriptor);
+            }
+        }
+
+        // Folders no longer listed.
+        List<SourceDescriptor> forRemoval = diff.getRemoved();
+        List<SourceDescriptor> forUnmarking = new ArrayList<>();
+        Set<String> stalePatterns = new LinkedHashSet<>();
+        for (SourceDescriptor descriptor : forRemoval) {
+            if (descriptor.type == SourceType.EXCLUDE_PATTERN) {
+                if (!excludePatterns.contains(descriptor.getPathname())) {
+                    stalePatterns.add(descriptor.getPathname());
+                }
+            } else {
+                forUnmarking.add(descriptor);
+            }
+        }
+
+        return new PendingChanges(expected, forAddition, forUnmarking, forRemoval, excludePatterns, stalePatterns);
+    }
+
+    /**
+     * Resolve pending changes into a plan, using a given resolver (see {@link #resolve(Collection)}).<p>
+     * <b>NOTE:</b> Must be called from within a read action, unless <i>resolver</i> acquires read actions by itself.
+     *
+     * @param changes  Changes to resolve.
+     * @param resolver Resolves descriptors to their directories and owning modules.
+     * @return Plan to apply.
+     */
+    private ReconciliationPlan resolveChanges(PendingChanges changes,
+                                              Function<List<SourceDescriptor>, List<ReconciliationPlan.Entry>> resolver) {
+        // A folder now listed with another type (or package prefix) within the same module is not un-marked -- its
+        // addition changes it in place.
+        List<ReconciliationPlan.Entry> additions = resolver.apply(changes.forAddition);
+        List<ReconciliationPlan.Entry> removals = resolver.apply(changes.forUnmarking);
+        if (!additions.isEmpty() && !removals.isEmpty()) {
+            Map<Module, Set<VirtualFile>> marked = new HashMap<>();
+            additions.forEach(entry -> marked.computeIfAbsent(entry.module, m -> new HashSet<>()).add(entry.file));
+            removals.removeIf(entry -> marked.getOrDefault(entry.module, Collections.emptySet()).contains(entry.file));
+        }
+
+        return new ReconciliationPlan(changes.expected, additions, removals, changes.forRemoval,
+                changes.excludePatterns, changes.stalePatterns,
+                ReadAction.compute(() -> findModulesToUpdate(changes.excludePatterns, changes.stalePatterns)));
+    }
+
+    /**
+     * Lookup the modules having a content entry whose exclude patterns are to be updated, i.e.: it lacks any of the
+     * listed patterns or has any of the stale ones.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param excludePatterns Listed exclude patterns.
+     * @param stalePatterns   Exclude patterns no longer listed.
+     * @return Modules to update.
+     */
+    private List<Module> findModulesToUpdate(Set<String> excludePatterns, Set<String> stalePatterns) {
+        List<Module> modulesToUpdate = new ArrayList<>();
+        if (excludePatterns.isEmpty() && stalePatterns.isEmpty()) {
+            return modulesToUpdate;
+        }
+
+        for (Module module : modules.get()) {
+            ProgressManager.checkCanceled();
+            for (ContentEntry entry : ModuleRootManager.getInstance(module).getContentEntries()) {
+                List<String> patterns = entry.getExcludePatterns();
+                if (!patterns.containsAll(excludePatterns) || stalePatterns.stream().anyMatch(patterns::contains)) {
+                    modulesToUpdate.add(module);
+                    break;
+                }
+            }
+        }
+        return modulesToUpdate;
+    }
+
+    /**
+     * Resolve descriptors to their directories and owning modules. Descriptors referencing non-existing directories
+     * or directories outside any module are skipped.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param descriptors Descriptors to resolve.
+     * @return Resolved entries.
+     */
+    public List<ReconciliationPlan.Entry> resolve(Collection<SourceDescriptor> descriptors) {
+        List<ReconciliationPlan.Entry> entries = new ArrayList<>(descriptors.size());
+        for (SourceDescriptor descriptor : descriptors) {
+            ProgressManager.checkCanceled();
+
+            VirtualFile file;
+            try {
+                file = vfsService.toVFile(descriptor.getPathname());
+            } catch (FileNotFoundException ex) {
+                logger.info("Skipping non existing file: " + descriptor.getPathname());
+                continue;
+            }
+
+            // Find the module and content root to register this file in.
+            ContentRootIndex.Root root = findContentRoot(descriptor, file);
+            if (root == null) {
+                continue;
+            }
+
+            entries.add(new ReconciliationPlan.Entry(descriptor, file, root.module, root.file));
+        }
+        return entries;
+    }
+
+    /**
+     * Lookup the content root to register a descriptor's directory in: the nearest content root of the module named
+     * by the descriptor, if any, or the nearest content root of any module otherwise.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param descriptor Descriptor to lookup content root of.
+     * @param file       Directory of <i>descriptor</i>.
+     * @return Content root to register the directory in, or {@code null} if there is none.
+     */
+    public ContentRootIndex.Root findContentRoot(SourceDescriptor descriptor, VirtualFile file) {
+        ContentRootIndex index = contentRootIndex.get();
+        if (descriptor.module == null) {
+            ContentRootIndex.Root root = index.find(file);
+            if (root == null) {
+                logger.warn("File " + descriptor.getPathname() + " is not associated with any module.");
+            }
+            return root;
+        }
+
+        Module module = moduleLookup.apply(descriptor.module);
+        if (module == null) {
+            logger.warn("Module " + descriptor.module + " of " + descriptor.getPathname() + " does not exist.");
+            return null;
+        }
+
+        ContentRootIndex.Root root = index.find(file, module);
+        if (root == null) {
+            logger.warn("File " + descriptor.getPathname() + " is not within any content root of module "
+                    + descriptor.module + ".");
+        }
+        return root;
+    }
+
+    /**
+     * Changes required to move to the expected listing, computed but not resolved to directories and modules yet.
+     */
+    public static class PendingChanges {
+
+        /**
+         * Listing of descriptors expected to be managed.
+         */
+        final List<SourceDescriptor> expected;
+
+        /**
+         * Descriptors to mark.
+         */
+        final List<SourceDescriptor> forAddition;
+
+        /**
+         * Descriptors to un-mark (exclude patterns left out).
+         */
+        final List<SourceDescriptor> forUnmarking;
+
+        /**
+         * All descriptors no longer listed.
+         */
+        final List<SourceDescriptor> forRemoval;
+
+        /**
+         * Exclude patterns expected on every content entry.
+         */
+        final Set<String> excludePatterns;
+
+        /**
+         * Exclude patterns no longer listed.
+         */
+        final Set<String> stalePatterns;
+
+        /**
+         * Class constructor.
+         *
+         * @param expected        Listing of descriptors expected to be managed.
+         * @param forAddition     Descriptors to mark.
+         * @param forUnmarking    Descriptors to un-mark.
+         * @param forRemoval      All descriptors no longer listed.
+         * @param excludePatterns Exclude patterns expected on every content entry.
+         * @param stalePatterns   Exclude patterns no longer listed.
+         */
+        PendingChanges(List<SourceDescriptor> expected,
+                       List<SourceDescriptor> forAddition,
+                       List<SourceDescriptor> forUnmarking,
+                       List<SourceDescriptor> forRemoval,
+                       Set<String> excludePatterns,
+                       Set<String> stalePatterns) {
+            this.expected = expected;
+            this.forAddition = forAddition;
+            this.forUnmarking = forUnmarking;
+            this.forRemoval = forRemoval;
+            this.excludePatterns = excludePatterns;
+            this.stalePatterns = stalePatterns;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.utils.Asserts;
+import guynir.pypath.utils.TriConsumer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects changes to module root models so they can be committed together. A single modifiable model is opened per
+ * module on first use and reused for every subsequent change within the same module. Committing the batch commits each
+ * changed model exactly once, so a full synchronization costs a single roots-change event per module rather than one
+ * per source folder.<p>
+ * A batch is single-use: once {@link #commit() committed} or {@link #dispose() disposed}, it should be discarded.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/22
+ */
+public class RootModelBatch {
+
+    /**
+     * Intellij platform project component.
+     */
+    private final Project project;
+
+    /**
+     * Modifiable models opened by this batch, keyed by their owning module.
+     */
+    private final Map<Module, ModifiableRootModel> models = new LinkedHashMap<>();
+
+    /**
+     * Class logger.
+     */
+    private static final Logger logger = Logger.getInstance(RootModelBatch.class);
+
+    /**
+     * Class constructor.
+     *
+     * @param project Intellij platform project component.
+     * @throws IllegalArgumentException If <i>project</i> is {@code null}.
+     */
+    public RootModelBatch(Project project) throws IllegalArgumentException {
+        Asserts.notNull(project, "Project cannot be null.");
+        this.project = project;
+    }
+
+    /**
+     * Locate the content entry a given <i>file</i> resides in and invoke <i>processor</i> to apply changes on it. The
+     * changes are not visible to the platform until the batch is {@link #commit() committed}.
+     *
+     * @param file      File to apply changes for.
+     * @param processor Callback accepting the file's content entry, the module's modifiable model and the file itself.
+     * @return {@code true} if a content entry was found and <i>processor</i> was invoked, {@code false} if not.
+     */
+    public boolean apply(VirtualFile file, TriConsumer<ContentEntry, ModifiableRootModel, VirtualFile> processor) {
+        Asserts.notNull(file, "File cannot be null.");
+        Asserts.notNull(processor, "Processor cannot be null.");
+
+        // Find the module this file resides in.
+        Module module = ModuleUtil.findModuleForFile(file, project);
+        if (module == null) {
+            logger.warn("File " + file.getPath() + " is not associated with any module.");
+            return false;
+        }
+
+        return apply(module, file, processor);
+    }
+
+    /**
+     * Locate the content entry of a given <i>module</i> the <i>file</i> resides in and invoke <i>processor</i> to
+     * apply changes on it. The changes are not visible to the platform until the batch is {@link #commit() committed}.
+     *
+     * @param module    Module owning the file.
+     * @param file      File to apply changes for.
+     * @param processor Callback accepting the file's content entry, the module's modifiable model and the file itself.
+     * @return {@code true} if a content entry was found and <i>processor</i> was invoked, {@code false} if not.
+     */
+    public boolean apply(Module module,
+                         VirtualFile file,
+                         TriConsumer<ContentEntry, ModifiableRootModel, VirtualFile> processor) {
+        Asserts.notNull(module, "Module cannot be null.");
+        Asserts.notNull(file, "File cannot be null.");
+        Asserts.notNull(processor, "Processor cannot be null.");
+
+        if (module.isDisposed()) {
+            return false;
+        }
+
+        ModifiableRootModel model = models.computeIfAbsent(module, this::openModel);
+
+        //
+        // Find the first content entry that matches our file location and use it to apply the changes.
+        //
+        for (ContentEntry entry : model.getContentEntries()) {
+            if (entry.getFile() != null && VfsUtil.isAncestor(entry.getFile(), file, true)) {
+                processor.accept(entry, model, file);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Invoke <i>processor</i> to apply changes on the content entry of a given <i>module</i> rooted at
+     * <i>contentRoot</i>, sparing the scan for the content entry containing <i>file</i>. Falls back to
+     * {@link #apply(Module, VirtualFile, TriConsumer)} if the module has no such content entry (e.g.: the content root
+     * was removed since it was looked up). The changes are not visible to the platform until the batch is
+     * {@link #commit() committed}.
+     *
+     * @param module      Module owning the file.
+     * @param contentRoot Directory of the content entry containing <i>file</i>, or {@code null} if unknown.
+     * @param file        File to apply changes for.
+     * @param processor   Callback accepting the file's content entry, the module's modifiable model and the file itself.
+     * @return {@code true} if a content entry was found and <i>processor</i> was invoked, {@code false} if not.
+     */
+    public boolean apply(Module module,
+                         VirtualFile contentRoot,
+                         VirtualFile file,
+                         TriConsumer<ContentEntry, ModifiableRootModel, VirtualFile> processor) {
+        Asserts.notNull(module, "Module cannot be null.");
+        Asserts.notNull(file, "File cannot be null.");
+        Asserts.notNull(processor, "Processor cannot be null.");
+
+        if (contentRoot != null && !module.isDisposed()) {
+            ModifiableRootModel model = models.computeIfAbsent(module, this::openModel);
+            for (ContentEntry entry : model.getContentEntries()) {
+                if (contentRoot.equals(entry.getFile())) {
+                    processor.accept(entry, model, file);
+                    return true;
+                }
+            }
+        }
+
+        return apply(module, file, processor);
+    }
+
+    /**
+     * Invoke <i>processor</i> to apply changes on every content entry of a given <i>module</i>. The changes are not
+     * visible to the platform until the batch is {@link #commit() committed}.
+     *
+     * @param module    Module to apply changes on.
+     * @param processor Callback accepting a content entry and the module's modifiable model.
+     * @return {@code true} if the module has any content entry, {@code false} if not.
+     */
+    public boolean applyAll(Module module, BiConsumer<ContentEntry, ModifiableRootModel> processor) {
+        Asserts.notNull(module, "Module cannot be null.");
+        Asserts.notNull(processor, "Processor cannot be null.");
+
+        if (module.isDisposed()) {
+            return false;
+        }
+
+        ModifiableRootModel model = models.computeIfAbsent(module, this::openModel);
+        ContentEntry[] entries = model.getContentEntries();
+        for (ContentEntry entry : entries) {
+            processor.accept(entry, model);
+        }
+        return entries.length > 0;
+    }
+
+    /**
+     * Open a modifiable model of a module.
+     *
+     * @param module Module to open model of.
+     * @return New modifiable model.
+     */
+    protected ModifiableRootModel openModel(Module module) {
+        return ModuleRootManager.getInstance(module).getModifiableModel();
+    }
+
+    /**
+     * Commit all modified models. Models that were opened but not effectively changed are disposed instead, so they
+     * do not trigger a roots change.<p>
+     * <b>NOTE:</b> Must be called from within a write action.
+     *
+     * @return Number of models committed.
+     */
+    public int commit() {
+        int committed = 0;
+        for (ModifiableRootModel model : models.values()) {
+            if (model.isChanged()) {
+                model.commit();
+                committed++;
+            } else {
+                model.dispose();
+            }
+        }
+        models.clear();
+        return committed;
+    }
+
+    /**
+     * Discard all pending changes.
+     */
+    public void dispose() {
+        models.values().forEach(ModifiableRootModel::dispose);
+        models.clear();
+    }
+
+    /**
+     * @return {@code true} if no model was opened by this batch.
+     */
+    public boolean isEmpty() {
+        return models.isEmpty();
+    }
+}
@@ -1,28 +1,43 @@
 package guynir.pypath.managers;
 
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.NonBlockingReadAction;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.application.WriteAction;
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.*;
-import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import guynir.pypath.PyPathException;
+import guynir.pypath.metrics.Counter;
+import guynir.pypath.metrics.Histogram;
+import guynir.pypath.metrics.MetricsRegistry;
 import guynir.pypath.services.ComponentStateService;
 import guynir.pypath.services.FileNotFoundException;
 import guynir.pypath.services.VfsService;
+import guynir.pypath.state.ListingDiff;
+import guynir.pypath.state.ListingFingerprint;
+import guynir.pypath.state.ListingLoader;
+import guynir.pypath.state.ListingSnapshot;
 import guynir.pypath.state.SourceDescriptor;
 import guynir.pypath.state.SourceType;
 import guynir.pypath.utils.Asserts;
 import guynir.pypath.utils.ObjectUtils;
+import guynir.pypath.utils.PathTrie;
+import guynir.pypath.utils.RelativePath;
 import guynir.pypath.utils.TriConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.concurrency.CancellablePromise;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -51,16 +66,189 @@ public class SourceFoldersManager {
     /**
      * List of managed folders (as source folders).
      */
-    private final Collection<VirtualFile> managedFolders = new LinkedList<>();
+    private final Collection<VirtualFile> managedFolders = new LinkedHashSet<>();
+
+    /**
+     * Descriptors actually marked in the project model during this session. A listed descriptor whose folder did not
+     * exist during the last synchronization is not included, so it is picked up once the folder shows up.<p>
+     * Modified on the UI thread, under write actions; background threads read it only within read actions.
+     */
+    private final Set<SourceDescriptor> appliedSources = new HashSet<>();
+
+    /**
+     * Determine whether {@link #scheduleDirectoryMarking()} resolves listings on a background thread. Disabled in unit
+     * test mode, where tests expect changes to be applied synchronously.
+     */
+    private volatile boolean backgroundMode = !ApplicationManager.getApplication().isUnitTestMode();
+
+    /**
+     * Reconciliation currently computed in background, if any.
+     */
+    private volatile CancellablePromise<Reconciliation> pendingReconciliation;
+
+    /**
+     * Determine whether a bulk reconciliation task (see {@link #runBulkReconciliation()}) is running. Modified on the
+     * UI thread only.
+     */
+    private volatile boolean bulkReconciliationRunning;
+
+    /**
+     * Determine whether a synchronization was requested while a bulk reconciliation task was running, so it is
+     * scheduled once the task finishes. Modified on the UI thread only.
+     */
+    private volatile boolean directoryMarkingDeferred;
+
+    /**
+     * Fingerprint of the managed listing (see {@link ListingFingerprint}).
+     */
+    private volatile long managedFingerprint;
+
+    /**
+     * Loads the listing files, reusing the outcome of the most recent load for as long as they are not modified.
+     */
+    private final ListingLoader listingLoader;
+
+    /**
+     * Number of listing loads started, used to order their outcomes (see {@link #applyListing(LoadedListing)}).
+     */
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * Sequence number of the load whose outcome was most recently applied (see {@link #applyListing(LoadedListing)}).
+     */
+    private volatile long appliedLoad;
+
+    /**
+     * Computes the changes required to synchronize the project model with the listing.
+     */
+    private final ReconciliationPlanner planner;
+
+    /**
+     * Applies computed changes on the project model.
+     */
+    private final PlanApplier applier;
+
+    /**
+     * Directories holding nested listing files.
+     */
+    private final ListingFileRegistry listingFiles;
+
+    /**
+     * Expands glob patterns found in the listing file.
+     */
+    private final PatternExpander patternExpander;
+
+    /**
+     * Registry to report metrics to. Disabled unless replaced via {@link #setMetrics(MetricsRegistry)}. Metrics are
+     * updated through handles resolved once, upon {@link #setMetrics(MetricsRegistry) registration}, so an update
+     * costs no lookup.
+     */
+    private MetricsRegistry metrics = MetricsRegistry.DISABLED;
+
+    /**
+     * Counts listing loads answered from cache.
+     */
+    private Counter listingCacheHits = MetricsRegistry.DISABLED.counter(MetricsRegistry.LISTING_CACHE_HITS);
+
+    /**
+     * Records time spent loading and parsing the listing.
+     */
+    private Histogram listingParseTime = MetricsRegistry.DISABLED.histogram(MetricsRegistry.LISTING_PARSE_TIME);
+
+    /**
+     * Records number of descriptors per loaded listing.
+     */
+    private Histogram listingDescriptors = MetricsRegistry.DISABLED.histogram(MetricsRegistry.LISTING_DESCRIPTORS);
+
+    /**
+     * Counts listing files read and parsed.
+     */
+    private Counter listingFilesParsed = MetricsRegistry.DISABLED.counter(MetricsRegistry.LISTING_FILES_PARSED);
+
+    /**
+     * Counts full synchronizations skipped since the listing was up to date.
+     */
+    private Counter syncSkipped = MetricsRegistry.DISABLED.counter(MetricsRegistry.SYNC_SKIPPED);
+
+    /**
+     * Counts full synchronizations.
+     */
+    private Counter syncFull = MetricsRegistry.DISABLED.counter(MetricsRegistry.SYNC_FULL);
+
+    /**
+     * Records time of full synchronizations.
+     */
+    private Histogram syncFullTime = MetricsRegistry.DISABLED.histogram(MetricsRegistry.SYNC_FULL_TIME);
+
+    /**
+     * Counts synchronizations avoided upon project open.
+     */
+    private Counter syncRestored = MetricsRegistry.DISABLED.counter(MetricsRegistry.SYNC_RESTORED);
+
+    /**
+     * Records time of successful restorations from the persisted snapshot.
+     */
+    private Histogram syncRestoreTime = MetricsRegistry.DISABLED.histogram(MetricsRegistry.SYNC_RESTORE_TIME);
+
+    /**
+     * Counts incremental synchronizations.
+     */
+    private Counter syncIncremental = MetricsRegistry.DISABLED.counter(MetricsRegistry.SYNC_INCREMENTAL);
+
+    /**
+     * Counts module root models committed.
+     */
+    private Counter modelCommits = MetricsRegistry.DISABLED.counter(MetricsRegistry.MODEL_COMMITS);
+
+    /**
+     * Records time the write lock was held while applying changes.
+     */
+    private Histogram writeActionTime = MetricsRegistry.DISABLED.histogram(MetricsRegistry.WRITE_ACTION_TIME);
+
+    /**
+     * Records time of building the content root index.
+     */
+    private Histogram contentRootIndexBuildTime =
+            MetricsRegistry.DISABLED.histogram(MetricsRegistry.CONTENT_ROOT_INDEX_BUILD_TIME);
+
+    /**
+     * Counts builds of the content root index.
+     */
+    private Counter contentRootIndexBuilds =
+            MetricsRegistry.DISABLED.counter(MetricsRegistry.CONTENT_ROOT_INDEX_BUILDS);
+
+    /**
+     * Index of the managed listing, keyed by relative path. Updated incrementally whenever the listing changes.<p>
+     * <b>NOTE:</b> Updated and queried on the UI thread only.
+     */
+    private final PathTrie<SourceDescriptor> managedIndex = new PathTrie<>();
+
+    /**
+     * Filter matching VFS events relevant to the current listing (backed by {@link #managedIndex}).
+     */
+    private final VfsEventFilter eventFilter;
+
+    /**
+     * Index of the content roots of all modules, built on demand and discarded whenever the project roots change (see
+     * {@link #getContentRootIndex()}).
+     */
+    private volatile ContentRootIndex contentRootIndex;
+
     /**
      * Name of file containing listing of source directories, relative to workspace root.
      */
     public static final String SOURCE_DIR_FILE = "/source_dirs";
 
     /**
-     * Class logger.
+     * Name of file containing listing of source directories in YAML form, relative to workspace root. Takes precedence
+     * over {@link #SOURCE_DIR_FILE} when present.
      */
-    private static final Logger logger = Logger.getInstance(SourceFoldersManager.class);
+    public static final String SOURCE_DIR_YAML_FILE = "/source_dirs.yaml";
+
+    /**
+     * Number of descriptors resolved within a single read action by {@link #runBulkReconciliation()}.
+     */
+    public static final int RESOLVE_CHUNK_SIZE = 250;
 
     /**
      * Class constructor.
@@ -77,6 +265,33 @@ public class SourceFoldersManager {
         this.project = project;
         this.vfsService = vfsService;
         this.stateService = stateService;
+        this.patternExpander = new PatternExpander(vfsService);
+        this.listingLoader = new ListingLoader(vfsService, patternExpander,
+                Arrays.asList(SOURCE_DIR_YAML_FILE, SOURCE_DIR_FILE));
+        this.planner = new ReconciliationPlanner(vfsService, appliedSources, this::getContentRootIndex,
+                this::findModuleByName, this::getModules);
+        this.applier = new PlanApplier(managedFolders, appliedSources);
+        stateService.getSourceDescriptorsListing().forEach(this::index);
+        this.managedFingerprint = ListingFingerprint.compute(stateService.getSourceDescriptorsListing());
+        this.eventFilter = new VfsEventFilter(vfsService.getBaseDirPath(),
+                Arrays.asList(vfsService.expandPath(SOURCE_DIR_FILE), vfsService.expandPath(SOURCE_DIR_YAML_FILE)),
+                managedIndex);
+        this.listingFiles = new ListingFileRegistry(project, vfsService,
+                Arrays.asList(SOURCE_DIR_FILE.substring(1), SOURCE_DIR_YAML_FILE.substring(1)));
+        this.eventFilter.setNestedListingDirectories(listingFiles.getDirectoriesView());
+    }
+
+    /**
+     * Register a listener discarding the content root index whenever the project roots change.
+     */
+    public void registerHandlers() {
+        project.getMessageBus().connect().subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                contentRootIndex = null;
+            }
+        });
     }
 
     /**
@@ -87,36 +302,107 @@ public class SourceFoldersManager {
     }
 
     /**
-     * Loads and parse sources file. The loader will skip empty lines (lines that are actually empty or contains
-     * spaces/tabs) and comment lines (lines starting with "#" or "//").<p>
-     * The loader will also adjust the paths by removing leading slash, if exists (e.g.: <i>/src_dir</i> will become
-     * <i>src_dir</i>).
+     * Lookup the listing file in effect: {@link #SOURCE_DIR_YAML_FILE} if it exists, {@link #SOURCE_DIR_FILE}
+     * otherwise.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @return Name of the listing file in effect, relative to workspace root.
+     */
+    public String getListingFile() {
+        try {
+            vfsService.toVFile(ObjectUtils.normalizePath(SOURCE_DIR_YAML_FILE));
+            return SOURCE_DIR_YAML_FILE;
+        } catch (FileNotFoundException ex) {
+            return SOURCE_DIR_FILE;
+        }
+    }
+
+    /**
+     * Loads and parse the listing files (see {@link #loadListing(String)}) and apply the outcome (see
+     * {@link #applyListing(LoadedListing)}).<p>
+     * <b>NOTE:</b> Must be called from within a read action.
      *
      * @param listingFile Listing file to read from.
      * @return List of source descriptors.
      * @throws PyPathException If file could not be opened, read of there was an error parsing the file.
      */
     public List<SourceDescriptor> loadListings(String listingFile) throws PyPathException {
+        LoadedListing loaded = loadListing(listingFile);
+        applyListing(loaded);
+        return loaded.parsed.descriptors;
+    }
+
+    /**
+     * Loads and parse the listing files (see {@link ListingLoader#load(String, Collection)}): the given listing file
+     * and the nested listing files found in sub-directories of the workspace (see {@link ListingFileRegistry}). The
+     * workspace is searched for nested listing files (via the file name index) unless already discovered.<p>
+     * The outcome is not applied, so a load performed in the background and superseded before it completes leaves
+     * the manager untouched.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param listingFile Listing file to read from.
+     * @return Outcome of the load, to apply via {@link #applyListing(LoadedListing)}.
+     * @throws PyPathException If file could not be opened, read of there was an error parsing the file.
+     */
+    private LoadedListing loadListing(String listingFile) throws PyPathException {
         Asserts.notNull(listingFile, "Listing file cannot be null.");
-        VirtualFile source;
+        long sequence = loadCount.incrementAndGet();
+        long startTime = metrics.startTimer();
+        listingFiles.discover();
+        List<String> directories = listingFiles.getDirectories();
+        ListingLoader.ParsedListing previous = listingLoader.getParsedListing();
+        ListingLoader.ParsedListing parsed = listingLoader.load(listingFile, directories);
+
+        // Listing files deleted since they were registered.
+        directories.removeAll(parsed.nestedDirectories);
+
+        if (parsed == previous) {
+            if (parsed != ListingLoader.ParsedListing.EMPTY) {
+                listingCacheHits.increment();
+            }
+        } else if (parsed != ListingLoader.ParsedListing.EMPTY) {
+            listingFilesParsed.add(parsed.filesParsed);
+            listingParseTime.recordSince(startTime);
+            listingDescriptors.record(parsed.descriptors.size());
+        }
+        return new LoadedListing(sequence, parsed, directories);
+    }
+
+    /**
+     * Apply the outcome of a load: record it, so it is reused by subsequent loads for as long as the listing files
+     * are not modified, unregister directories whose listing file was deleted, and watch the listed patterns. The
+     * outcome of a load started before the most recently applied one is discarded.<p>
+     * <b>NOTE:</b> Must be called from the UI thread (or from the thread that performed the load, when not in
+     * background mode).
+     *
+     * @param loaded Outcome of a load.
+     * @return {@code true} if the outcome was applied, {@code false} if it was discarded.
+     */
+    private boolean applyListing(LoadedListing loaded) {
+        if (loaded.sequence < appliedLoad) {
+            return false;
+        }
+        appliedLoad = loaded.sequence;
+
+        loaded.deletedDirectories.forEach(listingFiles::unregister);
+
+        // Release patterns no longer listed and watch the remaining ones.
+        patternExpander.retain(loaded.parsed.patterns);
+        eventFilter.setPatterns(patternExpander.getPatterns());
+        listingLoader.setParsedListing(loaded.parsed);
+        return true;
+    }
+
+    /**
+     * Invalidate cached pattern expansions affected by a change of a given directory.
+     *
+     * @param path Absolute path of a directory that was created, deleted or renamed.
+     */
+    public void invalidatePatternExpansions(String path) {
         try {
-            source = vfsService.toVFile(ObjectUtils.normalizePath(listingFile));
-        } catch (FileNotFoundException ex) {
-            // If file does not exists, return empty list.
-            return Collections.emptyList();
-        }
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(source.getInputStream()))) {
-            Predicate<String> filterLines = str -> !str.isEmpty() && !str.startsWith("#") && !str.startsWith("//");
-            return reader
-                    .lines()                          // Read all lines from file.
-                    .map(String::trim)                // Trim lines (remove leading and trailing spaces).
-                    .filter(filterLines)              // Filter empty and comment lines.
-                    .map(ObjectUtils::normalizePath)  // Normalize paths.
-                    .map(line -> new SourceDescriptor(SourceType.SOURCE_ROOT, line))
-                    .collect(Collectors.toList());    // Collect to a java.util.List.
-        } catch (IOException ex) {
-            throw new PyPathException("Failed to read source dirs file: " + source.getCanonicalPath());
+            patternExpander.invalidate(vfsService.localizePath(path));
+        } catch (PyPathException ex) {
+            // Path is outside the workspace -- nothing to invalidate.
         }
     }
 
@@ -127,8 +413,10 @@ public class SourceFoldersManager {
      */
     public void handleDirectoryMarking() {
         // Load list of folders to mark as "source folders".
-        List<SourceDescriptor> listOfExpectedSources = loadListings(SOURCE_DIR_FILE);
-        handleDirectoryMarking(listOfExpectedSources);
+        LoadedListing loaded = ReadAction.compute(() -> loadListing(getListingFile()));
+        if (applyListing(loaded)) {
+            handleDirectoryMarking(loaded.parsed.descriptors);
+        }
     }
 
     /**
@@ -139,6 +427,14 @@ public class SourceFoldersManager {
      * @param listOfExpectedSources List of directories expected to be marked as "sources".
      */
     public void handleDirectoryMarking(List<SourceDescriptor> listOfExpectedSources) {
+        // Nothing to do if the listing is identical to the managed one.
+        if (isUpToDate(listOfExpectedSources)) {
+            syncSkipped.increment();
+            updateSnapshot();
+            return;
+        }
+        long startTime = metrics.startTimer();
+
         // Get list of previously managed sources.
         List<SourceDescriptor> listOfManagedSources = this.stateService.getSourceDescriptorsListing();
 
@@ -146,44 +442,668 @@ public class SourceFoldersManager {
         handleDirectoryMarking(listOfExpectedSources, listOfManagedSources);
 
         // Persist list of managed sources.
-        this.stateService.setSourceDescriptorListing(listOfExpectedSources);
+        updateManagedListing(listOfExpectedSources);
+        updateSnapshot();
+
+        syncFull.increment();
+        syncFullTime.recordSince(startTime);
+    }
+
+    /**
+     * Schedule marking/un-marking of source folders based on the source directory file. When background mode is
+     * enabled, the listing is loaded and resolved by a non-blocking read action on a pooled thread, which leaves the
+     * manager untouched; the loaded listing is applied on the UI thread, along with the final changes (under a write
+     * action). A request made while a previous one is still pending cancels it. While nested listing files are yet to
+     * be discovered (see {@link ListingFileRegistry}), the read action waits for indices to be ready (smart mode). When
+     * background mode is disabled, this call is equivalent to {@link #handleDirectoryMarking()}.<p>
+     * A request made while a bulk reconciliation task is running (see {@link #runBulkReconciliation()}) is deferred
+     * until the task finishes, so neither overrides the changes applied by the other.
+     */
+    public void scheduleDirectoryMarking() {
+        if (bulkReconciliationRunning) {
+            // The bulk task would override changes applied meanwhile -- synchronize once it finishes.
+            directoryMarkingDeferred = true;
+            return;
+        }
+        if (!backgroundMode) {
+            handleDirectoryMarking();
+            return;
+        }
+
+        // A newer request supersedes the pending one.
+        CancellablePromise<Reconciliation> pending = pendingReconciliation;
+        if (pending != null) {
+            pending.cancel();
+        }
+
+        // The loaded listing is applied along with the plan, on the UI thread.
+        long startTime = metrics.startTimer();
+        NonBlockingReadAction<Reconciliation> action = ReadAction.nonBlocking(() -> {
+            long fingerprint = managedFingerprint;
+            LoadedListing loaded = loadListing(getListingFile());
+            List<SourceDescriptor> expected = loaded.parsed.descriptors;
+            return new Reconciliation(loaded, fingerprint, isUpToDate(expected)
+                    ? null
+                    : planner.createPlan(expected, stateService.getSourceDescriptorsListing()));
+        });
+        if (!listingFiles.isDiscovered()) {
+            action = action.inSmartMode(project);
+        }
+        pendingReconciliation = action
+                .expireWith(project)
+                .finishOnUiThread(ModalityState.NON_MODAL,
+                        reconciliation -> completeReconciliation(reconciliation, startTime))
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * Search the workspace for nested listing files in the background (see {@link ListingFileRegistry#discover()}),
+     * once indices are ready, and synchronize source folders if any was added or removed. Meant to follow a
+     * successful {@link #restoreFromSnapshot() restoration}, which relies on the nested listing files known to the
+     * previous session. When background mode is disabled, the search is performed immediately.
+     */
+    public void scheduleListingDiscovery() {
+        if (!backgroundMode) {
+            if (ReadAction.compute(listingFiles::discover)) {
+                handleDirectoryMarking();
+            }
+            return;
+        }
+
+        ReadAction.nonBlocking(listingFiles::discover)
+                .inSmartMode(project)
+                .expireWith(project)
+                .finishOnUiThread(ModalityState.NON_MODAL, changed -> {
+                    if (changed) {
+                        scheduleDirectoryMarking();
+                    }
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * Synchronize source folders with the listing as a cancellable background task, showing its progress. Suitable for
+     * large listings (e.g.: when a repository is on-boarded): descriptors are resolved in chunks of
+     * {@link #RESOLVE_CHUNK_SIZE}, each within its own read action, so write actions are not held back for the whole
+     * resolution. All changes are committed at once, in a single write action, once resolution completes. Cancelling
+     * the task leaves the project model and the managed listing untouched.<p>
+     * A pending scheduled synchronization (see {@link #scheduleDirectoryMarking()}) is superseded by the task. A
+     * request made while the task is running schedules a synchronization once it finishes.
+     */
+    public void runBulkReconciliation() {
+        if (bulkReconciliationRunning) {
+            // The running task may have loaded the listing already.
+            directoryMarkingDeferred = true;
+            return;
+        }
+
+        CancellablePromise<Reconciliation> pending = pendingReconciliation;
+        if (pending != null) {
+            pending.cancel();
+        }
+
+        bulkReconciliationRunning = true;
+        new BulkReconciliationTask(project, this).queue();
+    }
+
+    /**
+     * Notify that the bulk reconciliation task finished (whether successfully or not), scheduling the synchronization
+     * deferred while it was running, if any.<p>
+     * <b>NOTE:</b> Must be called from the UI thread.
+     */
+    void finishBulkReconciliation() {
+        bulkReconciliationRunning = false;
+        if (directoryMarkingDeferred) {
+            directoryMarkingDeferred = false;
+            scheduleDirectoryMarking();
+        }
+    }
+
+    /**
+     * Compute the plan synchronizing source folders with the listing, resolving descriptors in chunks of
+     * {@link #RESOLVE_CHUNK_SIZE}, each within its own read action. The listing is loaded and compared with the
+     * managed one (including the descriptors marked so far) within a single read action, ahead of resolution.<p>
+     * <b>NOTE:</b> Must not be called from within a read action, as it would hold back write actions for the whole
+     * resolution.
+     *
+     * @param indicator Indicator to report progress to and check for cancellation.
+     * @return Loaded listing and plan to apply.
+     */
+    Reconciliation createPlanInChunks(ProgressIndicator indicator) {
+        indicator.setIndeterminate(true);
+        indicator.setText("Loading source folders listing");
+        AtomicReference<LoadedListing> loaded = new AtomicReference<>();
+        AtomicLong fingerprint = new AtomicLong();
+        ReconciliationPlanner.PendingChanges changes = ReadAction.compute(() -> {
+            fingerprint.set(managedFingerprint);
+            loaded.set(loadListing(getListingFile()));
+            List<SourceDescriptor> expected = loaded.get().parsed.descriptors;
+            return isUpToDate(expected)
+                    ? null
+                    : planner.computeChanges(expected, stateService.getSourceDescriptorsListing());
+        });
+        if (changes == null) {
+            return new Reconciliation(loaded.get(), fingerprint.get(), null);
+        }
+
+        indicator.setIndeterminate(false);
+        return new Reconciliation(loaded.get(), fingerprint.get(),
+                planner.createPlan(changes, indicator, RESOLVE_CHUNK_SIZE));
+    }
+
+    /**
+     * Apply the listing loaded and the plan computed in the background, then persist the managed listing and
+     * snapshot. Nothing is applied if a listing loaded later was applied already. If the managed listing changed
+     * since the plan was computed (e.g.: by another synchronization), the plan no longer holds -- it is dropped and a
+     * new synchronization is scheduled instead.<p>
+     * <b>NOTE:</b> Must be called from the UI thread.
+     *
+     * @param reconciliation Loaded listing and plan to apply.
+     * @param startTime      Time the synchronization started at (see {@link MetricsRegistry#startTimer()}).
+     */
+    void completeReconciliation(Reconciliation reconciliation, long startTime) {
+        if (reconciliation.managedFingerprint != managedFingerprint) {
+            scheduleDirectoryMarking();
+            return;
+        }
+        if (!applyListing(reconciliation.listing)) {
+            return;
+        }
+
+        ReconciliationPlan plan = reconciliation.plan;
+        if (plan == null) {
+            syncSkipped.increment();
+            updateSnapshot();
+            return;
+        }
+        if (!plan.isEmpty()) {
+            WriteAction.run(() -> applyPlan(plan));
+        }
+        updateManagedListing(plan.expected);
+        updateSnapshot();
+
+        syncFull.increment();
+        syncFullTime.recordSince(startTime);
+    }
+
+    /**
+     * @return Registry metrics are reported to.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the registry to report metrics to. Should be called before the manager is put to use (e.g.: before
+     * {@link #registerHandlers()}).
+     *
+     * @param metrics Metrics registry.
+     * @throws IllegalArgumentException If <i>metrics</i> is {@code null}.
+     */
+    public void setMetrics(MetricsRegistry metrics) throws IllegalArgumentException {
+        Asserts.notNull(metrics, "Metrics registry cannot be null.");
+        this.metrics = metrics;
+        this.listingCacheHits = metrics.counter(MetricsRegistry.LISTING_CACHE_HITS);
+        this.listingParseTime = metrics.histogram(MetricsRegistry.LISTING_PARSE_TIME);
+        this.listingDescriptors = metrics.histogram(MetricsRegistry.LISTING_DESCRIPTORS);
+        this.listingFilesParsed = metrics.counter(MetricsRegistry.LISTING_FILES_PARSED);
+        this.syncSkipped = metrics.counter(MetricsRegistry.SYNC_SKIPPED);
+        this.syncFull = metrics.counter(MetricsRegistry.SYNC_FULL);
+        this.syncFullTime = metrics.histogram(MetricsRegistry.SYNC_FULL_TIME);
+        this.syncRestored = metrics.counter(MetricsRegistry.SYNC_RESTORED);
+        this.syncRestoreTime = metrics.histogram(MetricsRegistry.SYNC_RESTORE_TIME);
+        this.syncIncremental = metrics.counter(MetricsRegistry.SYNC_INCREMENTAL);
+        this.modelCommits = metrics.counter(MetricsRegistry.MODEL_COMMITS);
+        this.writeActionTime = metrics.histogram(MetricsRegistry.WRITE_ACTION_TIME);
+        this.contentRootIndexBuildTime = metrics.histogram(MetricsRegistry.CONTENT_ROOT_INDEX_BUILD_TIME);
+        this.contentRootIndexBuilds = metrics.counter(MetricsRegistry.CONTENT_ROOT_INDEX_BUILDS);
+    }
+
+    /**
+     * @return Directories holding nested listing files.
+     */
+    public ListingFileRegistry getListingFileRegistry() {
+        return listingFiles;
+    }
+
+    /**
+     * @return Filter matching VFS events relevant to the current listing.
+     */
+    public VfsEventFilter getEventFilter() {
+        return eventFilter;
+    }
+
+    /**
+     * Persist the listing of managed descriptors and update the index of managed paths with the differences from the
+     * previous listing. Nothing is done if the listing holds the same descriptors as the previous one.
+     *
+     * @param listing Listing of managed descriptors.
+     */
+    protected void updateManagedListing(List<SourceDescriptor> listing) {
+        List<SourceDescriptor> previous = this.stateService.getSourceDescriptorsListing();
+        if (!this.stateService.setSourceDescriptorListing(listing)) {
+            return;
+        }
+
+        ListingDiff diff = ListingDiff.compute(listing, previous);
+        diff.getRemoved().forEach(this::unindex);
+        diff.getAdded().forEach(this::index);
+
+        this.managedFingerprint = ListingFingerprint.compute(listing);
+    }
+
+    /**
+     * Determine if a listing is identical to the managed one and all of its descriptors are already marked, i.e.:
+     * synchronizing it would not change either the project model or the persisted state. Costs a single pass over the
+     * listing and does not access the project model.<p>
+     * <b>NOTE:</b> Must be called from within a read action (or from the UI thread).
+     *
+     * @param listing Listing of descriptors.
+     * @return {@code true} if <i>listing</i> is up to date.
+     */
+    protected boolean isUpToDate(List<SourceDescriptor> listing) {
+        return ListingFingerprint.compute(listing) == managedFingerprint
+                && listing.size() == stateService.getSourceDescriptorsListing().size()
+                && appliedSources.containsAll(listing);
+    }
+
+    /**
+     * Restore the state of the previous session from the persisted snapshot, provided that neither the listing file
+     * nor the managed source roots changed since the snapshot was taken. In that case the project model already
+     * reflects the listing, so the listing is not parsed and no write action is performed.<p>
+     * The listing file is matched by its length and modification time, falling back to a hash of its content when the
+     * modification time differs (e.g.: the file was touched or re-written with the same content). Nested listing files
+     * are looked up in the directories recorded by the snapshot, so the workspace is not searched; a successful
+     * restoration should be followed by {@link #scheduleListingDiscovery()}, which picks up nested listing files added
+     * since. The managed source
+     * roots, excluded folders and exclude patterns are matched by the fingerprint of those present in the project
+     * model.
+     *
+     * @return {@code true} if the snapshot matched, {@code false} if a full synchronization is required.
+     */
+    public boolean restoreFromSnapshot() {
+        ListingSnapshot snapshot = stateService.getListingSnapshot();
+        if (snapshot == null || snapshot.rootsFingerprint != managedFingerprint) {
+            return false;
+        }
+
+        long startTime = metrics.startTimer();
+        Map<VirtualFile, SourceDescriptor> roots = new LinkedHashMap<>();
+        Set<SourceDescriptor> marked = new HashSet<>();
+        boolean matched = ReadAction.compute(() -> {
+            if (!matchesListingFile(snapshot)) {
+                return false;
+            }
+            roots.putAll(findManagedRoots());
+            marked.addAll(roots.values());
+            marked.addAll(findManagedExcludePatterns());
+            return true;
+        });
+        if (!matched) {
+            return false;
+        }
+
+        // Every managed descriptor must still be marked.
+        if (marked.size() != stateService.getSourceDescriptorsListing().size()
+                || ListingFingerprint.compute(marked) != snapshot.rootsFingerprint) {
+            return false;
+        }
+
+        managedFolders.addAll(roots.keySet());
+        appliedSources.addAll(marked);
+        listingFiles.register(snapshot.nestedDirectories);
+
+        syncRestored.increment();
+        syncRestoreTime.recordSince(startTime);
+        return true;
+    }
+
+    /**
+     * Determine if the listing files match a snapshot.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param snapshot Snapshot to match.
+     * @return {@code true} if any listing file exists, all nested listing files recorded by the snapshot exist, and the
+     * content of the listing files is the one the snapshot was taken of.
+     */
+    private boolean matchesListingFile(ListingSnapshot snapshot) {
+        Map<String, VirtualFile> sources = listingLoader.findListingFiles(getListingFile(), snapshot.nestedDirectories);
+        if (sources.isEmpty() || !sources.keySet().containsAll(snapshot.nestedDirectories)) {
+            return false;
+        }
+
+        long timestamp = 0;
+        long length = 0;
+        for (VirtualFile source : sources.values()) {
+            timestamp = Math.max(timestamp, source.getTimeStamp());
+            length += source.getLength();
+        }
+
+        if (length != snapshot.listingLength) {
+            return false;
+        }
+        if (timestamp == snapshot.listingTimestamp) {
+            return true;
+        }
+
+        try {
+            long contentHash = ListingFingerprint.EMPTY;
+            for (Map.Entry<String, VirtualFile> entry : sources.entrySet()) {
+                long fileHash = ListingFingerprint.hashContent(entry.getValue().contentsToByteArray());
+                contentHash = entry.getKey().isEmpty()
+                        ? fileHash
+                        : ListingFingerprint.combineContent(contentHash, entry.getKey(), fileHash);
+            }
+            return contentHash == snapshot.listingHash;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Lookup the source roots of the project model that are managed by this plugin.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @return Managed source roots, mapped to their descriptors.
+     */
+    private Map<VirtualFile, SourceDescriptor> findManagedRoots() {
+        Map<VirtualFile, SourceDescriptor> roots = new LinkedHashMap<>();
+        for (VirtualFile root : getModelRoots()) {
+            try {
+                SourceDescriptor descriptor = managedIndex.get(vfsService.localizePath(root));
+                if (descriptor != null) {
+                    roots.put(root, descriptor);
+                }
+            } catch (PyPathException ex) {
+                // Source root outside the workspace -- not managed by this plugin.
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Lookup the exclude patterns of the project model that are managed by this plugin.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @return Descriptors of managed exclude patterns applied on the project model.
+     */
+    private List<SourceDescriptor> findManagedExcludePatterns() {
+        List<SourceDescriptor> managedPatterns = stateService.getSourceDescriptorsListing().stream()
+                .filter(descriptor -> descriptor.type == SourceType.EXCLUDE_PATTERN)
+                .collect(Collectors.toList());
+        if (!managedPatterns.isEmpty()) {
+            Set<String> modelPatterns = getModelExcludePatterns();
+            managedPatterns.removeIf(descriptor -> !modelPatterns.contains(descriptor.getPathname()));
+        }
+        return managedPatterns;
+    }
+
+    /**
+     * Lookup the source roots and excluded roots of all modules of the project.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @return Source roots and excluded roots of the project model.
+     */
+    protected Collection<VirtualFile> getModelRoots() {
+        List<VirtualFile> roots = new ArrayList<>();
+        for (Module module : getModules()) {
+            ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
+            roots.addAll(Arrays.asList(rootManager.getSourceRoots()));
+            roots.addAll(Arrays.asList(rootManager.getExcludeRoots()));
+        }
+        return roots;
+    }
+
+    /**
+     * Lookup the exclude patterns shared by all content entries of the project.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @return Exclude patterns applied on every content entry of the project model.
+     */
+    protected Set<String> getModelExcludePatterns() {
+        Set<String> patterns = null;
+        for (Module module : getModules()) {
+            for (ContentEntry entry : ModuleRootManager.getInstance(module).getContentEntries()) {
+                if (patterns == null) {
+                    patterns = new HashSet<>(entry.getExcludePatterns());
+                } else {
+                    patterns.retainAll(entry.getExcludePatterns());
+                }
+            }
+        }
+        return patterns != null ? patterns : Collections.emptySet();
+    }
+
+    /**
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @return All modules of the project.
+     */
+    protected Module[] getModules() {
+        return ModuleManager.getInstance(project).getModules();
+    }
+
+    /**
+     * Persist a snapshot of the listing file and project model, if the project model reflects the most recently
+     * parsed listing; otherwise discard the persisted snapshot, so the next session performs a full synchronization.
+     * The state is modified only if the snapshot changed.
+     */
+    private void updateSnapshot() {
+        ListingLoader.ParsedListing parsed = listingLoader.getParsedListing();
+        ListingSnapshot snapshot = null;
+        if (parsed.snapshot != null
+                && parsed.snapshot.rootsFingerprint == managedFingerprint
+                && appliedSources.containsAll(stateService.getSourceDescriptorsListing())) {
+            snapshot = parsed.snapshot;
+        }
+
+        stateService.setListingSnapshot(snapshot);
+    }
+
+    /**
+     * Determine if a given path is managed by this plugin.
+     *
+     * @param path Path relative to workspace base directory.
+     * @return Descriptor of the path, or {@code null} if the path is not managed.
+     */
+    public SourceDescriptor getManagedDescriptor(String path) {
+        return managedIndex.get(path);
+    }
+
+    /**
+     * Lookup all managed descriptors of a given path and its descendants.
+     *
+     * @param path Path relative to workspace base directory.
+     * @return Managed descriptors of <i>path</i> and any of its sub-directories, in no particular order.
+     */
+    public List<SourceDescriptor> getManagedDescriptorsUnder(String path) {
+        return managedIndex.getSubtree(path, 0);
+    }
+
+    /**
+     * Lookup the managed descriptor containing a given path, i.e.: the descriptor of the path itself or of its nearest
+     * managed ancestor.
+     *
+     * @param path Path relative to workspace base directory.
+     * @return Descriptor containing <i>path</i>, or {@code null} if <i>path</i> does not reside in a managed folder.
+     */
+    public SourceDescriptor getContainingDescriptor(String path) {
+        return managedIndex.getNearest(path, 0);
+    }
+
+    /**
+     * Add a descriptor to the index of managed paths.
+     *
+     * @param descriptor Descriptor to add.
+     */
+    private void index(SourceDescriptor descriptor) {
+        // Exclude patterns are names rather than paths, so they are not indexed.
+        if (descriptor.getPath() != null && descriptor.type != SourceType.EXCLUDE_PATTERN) {
+            managedIndex.put(descriptor.getPath(), descriptor);
+        }
+    }
+
+    /**
+     * Remove a descriptor from the index of managed paths, unless the path is indexed by another descriptor.
+     *
+     * @param descriptor Descriptor to remove.
+     */
+    private void unindex(SourceDescriptor descriptor) {
+        if (descriptor.getPath() != null && descriptor.equals(managedIndex.get(descriptor.getPath()))) {
+            managedIndex.remove(descriptor.getPath());
+        }
+    }
+
+    /**
+     * @return {@code true} if {@link #scheduleDirectoryMarking()} performs its work in the background.
+     */
+    public boolean isBackgroundMode() {
+        return backgroundMode;
+    }
+
+    /**
+     * Enable or disable background reconciliation.
+     *
+     * @param backgroundMode {@code true} to resolve listings on a pooled thread, {@code false} to perform all work
+     *                       synchronously.
+     */
+    public void setBackgroundMode(boolean backgroundMode) {
+        this.backgroundMode = backgroundMode;
     }
 
     /**
      * Handles a special case of a folder renaming. If the folder is marked as "source folder" and is managed by
      * this plugin, it should be examined if it should still be managed on not, based on the source dirs configuration.
+     * <p>
+     * The same applies to every managed folder residing within the renamed folder (e.g.: when <i>services</i> is moved
+     * to <i>apps</i>, both <i>services/auth/src</i> and <i>apps/auth/src</i> are examined). All resulting changes are
+     * applied in a single batch.
+     *
+     * @param oldFolder Absolute path of the folder before renaming.
+     * @param newFolder Absolute path of the folder after renaming.
+     * @throws PyPathException If either paths are outside the workspace or the renamed folder could not be found.
      */
-    public void handleFolderRenaming(String oldFolder, String newFolder) {
+    public void handleFolderRenaming(String oldFolder, String newFolder) throws PyPathException {
         Asserts.notNull(oldFolder, "Old folder file cannot be null.");
         Asserts.notNull(newFolder, "New folder file cannot be null.");
 
         // Just to be on the safe side -- we're normalizing the old/new paths.
-        oldFolder = vfsService.localizePath(oldFolder);
-        newFolder = vfsService.localizePath(newFolder);
+        RelativePath oldPath = RelativePath.of(vfsService.localizePath(oldFolder));
+        RelativePath newPath = RelativePath.of(vfsService.localizePath(newFolder));
+
+        // Paths (relative to the renamed folder) of all managed folders under either the old or the new location.
+        Set<RelativePath> relativePaths = new LinkedHashSet<>();
+        collectRelativePaths(oldPath, relativePaths);
+        collectRelativePaths(newPath, relativePaths);
+        if (relativePaths.isEmpty()) {
+            return;
+        }
+
+        VirtualFile newRoot = vfsService.toVFile(newPath.toString());
+        Map<VirtualFile, SourceDescriptor> forAddition = new LinkedHashMap<>();
+        Map<VirtualFile, SourceDescriptor> forRemoval = new LinkedHashMap<>();
+
+        for (RelativePath relativePath : relativePaths) {
+            SourceDescriptor oldDescriptor = managedIndex.get(oldPath.resolve(relativePath));
+            SourceDescriptor newDescriptor = managedIndex.get(newPath.resolve(relativePath));
+            VirtualFile newFile = relativePath.isRoot()
+                    ? newRoot
+                    : newRoot.findFileByRelativePath(relativePath.toString());
+
+            if (oldDescriptor != null && newDescriptor == null) {
+                // Moved out of a managed location.
+                appliedSources.remove(oldDescriptor);
+                if (newFile != null) {
+                    forRemoval.put(newFile, oldDescriptor);
+                }
+            } else if (oldDescriptor == null && newDescriptor != null) {
+                // Moved into a managed location.
+                if (newFile != null) {
+                    forAddition.put(newFile, newDescriptor);
+                    appliedSources.add(newDescriptor);
+                }
+            } else if (oldDescriptor != null && appliedSources.remove(oldDescriptor)) {
+                // Both are listed -- the source folder follows the renamed directory, taking the type (and package
+                // prefix) listed for its new location.
+                appliedSources.add(newDescriptor);
+                if (newFile != null && (oldDescriptor.type != newDescriptor.type
+                        || !Objects.equals(oldDescriptor.packagePrefix, newDescriptor.packagePrefix))) {
+                    forAddition.put(newFile, newDescriptor);
+                }
+            }
+        }
+
+        if (forAddition.isEmpty() && forRemoval.isEmpty()) {
+            return;
+        }
 
-        List<SourceDescriptor> existingFolders = this.stateService.getSourceDescriptorsListing();
-        List<String> names = existingFolders.stream().map(d -> d.pathname).collect(Collectors.toList());
+        syncIncremental.increment();
+        RootModelBatch batch = createBatch();
+        WriteAction.run(() -> {
+            long startTime = metrics.startTimer();
+            try {
+                forAddition.forEach((file, descriptor) -> applyToFolder(batch, file, descriptor,
+                        (contentEntry, model, f) -> applier.markFolder(contentEntry, f, descriptor)));
+                forRemoval.forEach((file, descriptor) -> applyToFolder(batch, file, descriptor,
+                        (contentEntry, model, f) -> applier.unmarkFolder(contentEntry, f)));
+                modelCommits.add(batch.commit());
+            } finally {
+                batch.dispose();
+                writeActionTime.recordSince(startTime);
+            }
+        });
+    }
 
-        // Apply changes on new file, if needed.
-        VirtualFile newFile = vfsService.toVFile(newFolder);
-        String oldFileAbsolutePath = vfsService.expandPath(oldFolder);
-        if (names.contains(oldFolder) && !names.contains(newFolder)) {
-            removeSourceFolder(newFile);
-            managedFolders.remove(newFile);
-        } else if (!names.contains(oldFolder) && names.contains(newFolder)) {
-            addSourceFolder(newFile);
-            managedFolders.add(newFile);
+    /**
+     * Apply changes on the content entry a managed directory is registered in (see
+     * {@link ReconciliationPlanner#findContentRoot(SourceDescriptor, VirtualFile)}).
+     *
+     * @param batch      Batch of modifiable models to apply changes on.
+     * @param file       Managed directory.
+     * @param descriptor Descriptor of <i>file</i>.
+     * @param processor  Callback accepting the content entry, the module's modifiable model and the directory.
+     */
+    private void applyToFolder(RootModelBatch batch,
+                               VirtualFile file,
+                               SourceDescriptor descriptor,
+                               TriConsumer<ContentEntry, ModifiableRootModel, VirtualFile> processor) {
+        ContentRootIndex.Root root = planner.findContentRoot(descriptor, file);
+        if (root != null) {
+            batch.apply(root.module, root.file, file, processor);
         }
     }
 
+    /**
+     * Collect the paths of all managed folders residing in (or equal to) a given folder, relative to that folder.
+     *
+     * @param folder        Workspace relative path of a folder.
+     * @param relativePaths Collection to add paths to. The folder itself is represented by {@link RelativePath#ROOT}.
+     */
+    private void collectRelativePaths(RelativePath folder, Collection<RelativePath> relativePaths) {
+        for (SourceDescriptor descriptor : managedIndex.getSubtree(folder.toString(), 0)) {
+            relativePaths.add(folder.relativize(descriptor.getPath()));
+        }
+    }
+
+    /**
+     * Handles deletion of a folder. If the folder is managed, its source folder marking is removed. Managed folders
+     * residing within the deleted folder are no longer considered marked, so they are marked again once re-created.
+     *
+     * @param folder Deleted folder.
+     */
     public void handleFolderDeletion(VirtualFile folder) {
         Asserts.notNull(folder, "Folder cannot be null.");
 
         String folderName = vfsService.localizePath(folder.getPath());
-        List<SourceDescriptor> existingFolders = this.stateService.getSourceDescriptorsListing();
-        List<String> names = existingFolders.stream().map(d -> d.pathname).collect(Collectors.toList());
-        if (names.contains(folderName)) {
+        SourceDescriptor descriptor = managedIndex.get(folderName);
+        if (descriptor != null) {
+            syncIncremental.increment();
             removeSourceFolder(folder);
+            managedFolders.remove(folder);
+        }
+
+        for (SourceDescriptor deleted : managedIndex.getSubtree(folderName, 0)) {
+            appliedSources.remove(deleted);
         }
     }
 
@@ -201,17 +1121,18 @@ public class SourceFoldersManager {
      * @return Source folder representing the <i>directory</i> if relevant, or {@link Optional#empty()} is none.
      */
     public Optional<SourceFolder> getSourceFolder(VirtualFile directory) {
-        Optional<ContentEntry[]> entries = getModuleContentEntries(directory);
-        return entries.map(e -> {
-            for (ContentEntry entry : e) {
-                for (SourceFolder folder : entry.getSourceFolders()) {
-                    if (directory.equals(folder.getFile())) {
-                        return folder;
-                    }
-                }
+        SourceDescriptor descriptor = findDescriptorOf(directory);
+        ContentRootIndex.Root root = descriptor != null ? planner.findContentRoot(descriptor, directory) : null;
+        if (root == null) {
+            return Optional.empty();
+        }
+
+        for (ContentEntry entry : ModuleRootManager.getInstance(root.module).getContentEntries()) {
+            if (root.file.equals(entry.getFile())) {
+                return Optional.ofNullable(PlanApplier.findSourceFolder(entry, directory));
             }
-            return null;
-        });
+        }
+        return Optional.empty();
     }
 
     /**
@@ -220,39 +1141,81 @@ public class SourceFoldersManager {
      * @param directory Directory to mark.
      */
     public void addSourceFolder(VirtualFile directory) {
-        getModifiableRootModel(directory).ifPresent(model -> Arrays.stream(model.getContentEntries()).forEach(entry -> {
-            if (entry.getFile() != null && VfsUtil.isAncestor(entry.getFile(), directory, true)) {
-                WriteAction.run(() -> {
-                    entry.addSourceFolder(directory, false);
-                    model.commit();
-                });
-            }
-        }));
+        Asserts.notNull(directory, "Directory cannot be null.");
+
+        SourceDescriptor descriptor = findDescriptorOf(directory);
+        if (descriptor == null) {
+            return;
+        }
+
+        RootModelBatch batch = createBatch();
+        try {
+            applyToFolder(batch, directory, descriptor,
+                    (contentEntry, model, file) -> contentEntry.addSourceFolder(file, false));
+            WriteAction.run(() -> modelCommits.add(batch.commit()));
+        } finally {
+            batch.dispose();
+        }
     }
 
     /**
-     * Unregister a source folder from being a source folder.
+     * Unregister a source folder from being a source folder (or an excluded folder from being excluded). See
+     * {@link #removeSourceFolders(Collection)}.
      *
      * @param directory Directory to un-mark.
      */
     public void removeSourceFolder(VirtualFile directory) {
         Asserts.notNull(directory, "Directory cannot be null.");
+        removeSourceFolders(Collections.singletonList(directory));
+    }
 
-        Module module = ModuleUtil.findModuleForFile(directory, project);
-        if (module != null) {
-            ModifiableRootModel model = ModuleRootManager.getInstance(module).getModifiableModel();
-            for (ContentEntry entry : model.getContentEntries()) {
-                for (SourceFolder sourceFolder : entry.getSourceFolders()) {
-                    if (directory.equals(sourceFolder.getFile())) {
-                        WriteAction.run(() -> {
-                            entry.removeSourceFolder(sourceFolder);
-                            model.commit();
-                        });
-                        return;
-                    }
+    /**
+     * Unregister source folders from being source folders (or excluded folders from being excluded), committing all
+     * changes at once. Each directory is resolved to its content root via the content root index (see
+     * {@link ReconciliationPlanner#findContentRoot(SourceDescriptor, VirtualFile)}), using its managed descriptor if
+     * it has one, so excluded directories and directories that were already deleted are un-marked as well.
+     *
+     * @param directories Directories to un-mark.
+     * @throws IllegalArgumentException If <i>directories</i> is {@code null}.
+     */
+    public void removeSourceFolders(Collection<VirtualFile> directories) throws IllegalArgumentException {
+        Asserts.notNull(directories, "Directories cannot be null.");
+
+        RootModelBatch batch = createBatch();
+        try {
+            // Un-marking a folder removes it from the managed folders, which may be the collection iterated.
+            for (VirtualFile directory : new ArrayList<>(directories)) {
+                SourceDescriptor descriptor = findDescriptorOf(directory);
+                if (descriptor != null) {
+                    applyToFolder(batch, directory, descriptor,
+                            (contentEntry, model, file) -> applier.unmarkFolder(contentEntry, file));
                 }
             }
+            if (!batch.isEmpty()) {
+                WriteAction.run(() -> modelCommits.add(batch.commit()));
+            }
+        } finally {
+            batch.dispose();
+        }
+    }
+
+    /**
+     * Lookup the managed descriptor of a directory. A directory that is not managed is described as a source root
+     * with no module, so it is resolved to the content root it resides in.
+     *
+     * @param directory Directory to describe.
+     * @return Descriptor of <i>directory</i>, or {@code null} if it resides outside of the workspace.
+     */
+    private SourceDescriptor findDescriptorOf(VirtualFile directory) {
+        String path;
+        try {
+            path = vfsService.localizePath(directory.getPath());
+        } catch (PyPathException ex) {
+            return null;
         }
+
+        SourceDescriptor descriptor = managedIndex.get(path);
+        return descriptor != null ? descriptor : new SourceDescriptor(SourceType.SOURCE_ROOT, path);
     }
 
     /**
@@ -263,104 +1226,145 @@ public class SourceFoldersManager {
      * @param actual   List of currently managed as source folders.
      */
     protected void handleDirectoryMarking(Collection<SourceDescriptor> expected, Collection<SourceDescriptor> actual) {
-        // Calculate the list of source folder currently marked and expected to be removed.
-        Collection<SourceDescriptor> forRemoval = new LinkedList<>(actual);
-        forRemoval.removeAll(expected);
-
-        // Add new source folders.
-        processDescriptors(expected, (contentEntry, modifiableRootModel, file) -> {
-            contentEntry.addSourceFolder(file, false);
-            managedFolders.add(file);
-        });
-
-        // Remove deprecated folders marked a source roots.
-        processDescriptors(forRemoval, (contentEntry, modifiableRootModel, file) -> {
-            for (SourceFolder sourceFolder : contentEntry.getSourceFolders()) {
-                if (file.equals(sourceFolder.getFile())) {
-                    contentEntry.removeSourceFolder(sourceFolder);
-                    managedFolders.remove(sourceFolder.getFile());
-                }
-            }
-        });
+        ReconciliationPlan plan = ReadAction.compute(() -> planner.createPlan(new ArrayList<>(expected), actual));
+        if (!plan.isEmpty()) {
+            WriteAction.runAndWait(() -> applyPlan(plan));
+        }
     }
 
     /**
-     * For every given {@code SourceDescriptor}, locate it parent content entry and invoke 'processor' to perform
-     * a custom operation.
+     * Apply a plan on the project model. All changes are committed at once -- a single commit per module.<p>
+     * <b>NOTE:</b> Must be called from within a write action.
      *
-     * @param sources   List of source to iterate.
-     * @param processor A callback to issue for each source.
+     * @param plan Plan to apply.
      */
-    protected void processDescriptors(Collection<SourceDescriptor> sources, TriConsumer<ContentEntry, ModifiableRootModel, VirtualFile> processor) {
-        for (SourceDescriptor sourceDescriptor : sources) {
-            handleSingleSource(sourceDescriptor, processor);
+    protected void applyPlan(ReconciliationPlan plan) {
+        long startTime = metrics.startTimer();
+        RootModelBatch batch = createBatch();
+        try {
+            applier.apply(batch, plan);
+            modelCommits.add(batch.commit());
+        } finally {
+            batch.dispose();
+            writeActionTime.recordSince(startTime);
         }
     }
 
     /**
-     * Locate parent content root
+     * Provide the index of the content roots of all modules, building it if the project roots changed since it was
+     * last built. The index is shared by all lookups until the next roots change, so a synchronization resolves its
+     * descriptors without scanning modules and their content entries per descriptor.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
      *
-     * @param descriptor A descriptor to first content root for.
-     * @param processor  Handle that accepts callback with file's content root and mutable model to apply changes.
+     * @return Content root index.
      */
-    protected void handleSingleSource(SourceDescriptor descriptor,
-                                      TriConsumer<ContentEntry, ModifiableRootModel, VirtualFile> processor) {
-        VirtualFile file;
-
-        try {
-            file = vfsService.toVFile(descriptor.pathname);
-        } catch (FileNotFoundException ex) {
-            logger.info("Skipping non existing file: " + descriptor.pathname);
-            return;
+    private ContentRootIndex getContentRootIndex() {
+        ContentRootIndex index = this.contentRootIndex;
+        if (index == null) {
+            long startTime = metrics.startTimer();
+            index = buildContentRootIndex();
+            contentRootIndexBuildTime.recordSince(startTime);
+            contentRootIndexBuilds.increment();
+            this.contentRootIndex = index;
         }
+        return index;
+    }
 
+    /**
+     * Build an index of the content roots of all modules of the project.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @return New content root index.
+     */
+    protected ContentRootIndex buildContentRootIndex() {
+        return ContentRootIndex.build(getModules());
+    }
 
-        WriteAction.runAndWait(() -> {
-            // Find the module this file resides in.
-            Module module = ModuleUtil.findModuleForFile(file, project);
-            if (module == null) {
-                logger.warn("File " + descriptor.pathname + " is not associated with any module.");
-                return;
-            }
-
-            ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
+    /**
+     * Lookup a module by its name.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param name Module name.
+     * @return Module of the given <i>name</i>, or {@code null} if there is none.
+     */
+    protected Module findModuleByName(String name) {
+        return ModuleManager.getInstance(project).findModuleByName(name);
+    }
 
-            ModifiableRootModel model = rootManager.getModifiableModel();
-
-            //
-            // Find the first content entry that matches our file location and use it to register
-            // a source root.
-            //
-            for (ContentEntry entry : model.getContentEntries()) {
-                if (entry.getFile() != null && VfsUtil.isAncestor(entry.getFile(), file, true)) {
-                    processor.accept(entry, model, file);
-                    model.commit();
-                    return;
-                }
-            }
-        });
+    /**
+     * @return New, empty batch of changes to module root models.
+     */
+    protected RootModelBatch createBatch() {
+        return new RootModelBatch(project);
     }
 
     /**
-     * Lookup the {@code ModifiableRootModel} where a given <i>file</i> resides in.
-     *
-     * @param file File to look by.
-     * @return Modifiable root model where the <i>file</i> resides at.
+     * Outcome of loading the listing files, applied once the synchronization it is part of completes (see
+     * {@link #applyListing(LoadedListing)}).
      */
-    private Optional<ModifiableRootModel> getModifiableRootModel(VirtualFile file) {
-        Asserts.notNull(file, "File cannot be null.");
+    private static class LoadedListing {
+
+        /**
+         * Sequence number of the load, ordering it among all loads.
+         */
+        final long sequence;
 
-        Module module = ModuleUtil.findModuleForFile(file, project);
-        return Optional.ofNullable(module != null ? ModuleRootManager.getInstance(module).getModifiableModel() : null);
+        /**
+         * Parsed listing.
+         */
+        final ListingLoader.ParsedListing parsed;
+
+        /**
+         * Registered directories found to no longer hold a listing file.
+         */
+        final List<String> deletedDirectories;
+
+        /**
+         * Class constructor.
+         *
+         * @param sequence           Sequence number of the load.
+         * @param parsed             Parsed listing.
+         * @param deletedDirectories Registered directories found to no longer hold a listing file.
+         */
+        LoadedListing(long sequence, ListingLoader.ParsedListing parsed, List<String> deletedDirectories) {
+            this.sequence = sequence;
+            this.parsed = parsed;
+            this.deletedDirectories = deletedDirectories;
+        }
     }
 
     /**
-     * Locate all {@code ContentEntry}s found in a module the <i>file</i> resides in.
-     *
-     * @param file File to look module by.
-     * @return List of {@code ContentEntry}s within the <i>files</i>'s module.
+     * Outcome of the read phase of a synchronization performed in the background: the loaded listing and the plan
+     * synchronizing the project model with it.
      */
-    private Optional<ContentEntry[]> getModuleContentEntries(VirtualFile file) {
-        return getModifiableRootModel(file).map(ModuleRootModel::getContentEntries);
+    static class Reconciliation {
+
+        /**
+         * Loaded listing.
+         */
+        final LoadedListing listing;
+
+        /**
+         * Fingerprint of the managed listing the plan was computed against.
+         */
+        final long managedFingerprint;
+
+        /**
+         * Plan to apply, or {@code null} if the listing is identical to the managed one.
+         */
+        final ReconciliationPlan plan;
+
+        /**
+         * Class constructor.
+         *
+         * @param listing            Loaded listing.
+         * @param managedFingerprint Fingerprint of the managed listing the plan was computed against.
+         * @param plan               Plan to apply, or {@code null} if the listing is identical to the managed one.
+         */
+        Reconciliation(LoadedListing listing, long managedFingerprint, ReconciliationPlan plan) {
+            this.listing = listing;
+            this.managedFingerprint = managedFingerprint;
+            this.plan = plan;
+        }
     }
 }
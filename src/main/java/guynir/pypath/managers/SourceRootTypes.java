@@ -0,0 +1,92 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.SourceFolder;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.state.SourceType;
+import guynir.pypath.utils.Asserts;
+import org.jetbrains.jps.model.java.JavaResourceRootType;
+import org.jetbrains.jps.model.java.JavaSourceRootType;
+import org.jetbrains.jps.model.module.JpsModuleSourceRootType;
+
+/**
+ * Maps the plugin's {@link SourceType}s onto Intellij platform (JPS) source root types. Exclusions (see
+ * {@link SourceType#isExclusion()}) have no root type.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class SourceRootTypes {
+
+    /**
+     * Lookup the JPS root type of a source type.
+     *
+     * @param type Source type.
+     * @return Matching JPS root type.
+     * @throws IllegalArgumentException If <i>type</i> is {@code null} or an exclusion (see
+     *                                  {@link SourceType#isExclusion()}).
+     */
+    public static JpsModuleSourceRootType<?> toRootType(SourceType type) throws IllegalArgumentException {
+        assertSourceRoot(type);
+
+        switch (type) {
+            case RESOURCE_ROOT:
+                return JavaResourceRootType.RESOURCE;
+            case TEST_SOURCE_ROOT:
+                return JavaSourceRootType.TEST_SOURCE;
+            case TEST_RESOURCE_ROOT:
+                return JavaResourceRootType.TEST_RESOURCE;
+            default:
+                return JavaSourceRootType.SOURCE;
+        }
+    }
+
+    /**
+     * Determine if a source folder is of a given type.
+     *
+     * @param folder Source folder.
+     * @param type   Source type.
+     * @return {@code true} if <i>folder</i>'s root type matches <i>type</i>. Always {@code false} for exclusions.
+     */
+    public static boolean isOfType(SourceFolder folder, SourceType type) {
+        return type != null && !type.isExclusion() && toRootType(type).equals(folder.getRootType());
+    }
+
+    /**
+     * Register a directory as a source folder of a given type.
+     *
+     * @param entry     Content entry the directory resides in.
+     * @param directory Directory to register.
+     * @param type      Source type.
+     * @return Newly registered source folder.
+     * @throws IllegalArgumentException If <i>type</i> is {@code null} or an exclusion.
+     */
+    public static SourceFolder addSourceFolder(ContentEntry entry, VirtualFile directory, SourceType type)
+            throws IllegalArgumentException {
+        assertSourceRoot(type);
+
+        switch (type) {
+            case RESOURCE_ROOT:
+                return entry.addSourceFolder(directory, JavaResourceRootType.RESOURCE);
+            case TEST_SOURCE_ROOT:
+                return entry.addSourceFolder(directory, JavaSourceRootType.TEST_SOURCE);
+            case TEST_RESOURCE_ROOT:
+                return entry.addSourceFolder(directory, JavaResourceRootType.TEST_RESOURCE);
+            default:
+                return entry.addSourceFolder(directory, JavaSourceRootType.SOURCE);
+        }
+    }
+
+    /**
+     * Assert a given type represents a source root.
+     *
+     * @param type Source type.
+     * @throws IllegalArgumentException If <i>type</i> is {@code null} or an exclusion.
+     */
+    private static void assertSourceRoot(SourceType type) throws IllegalArgumentException {
+        Asserts.notNull(type, "Source type cannot be null.");
+        if (type.isExclusion()) {
+            throw new IllegalArgumentException("Not a source root type: " + type.name());
+        }
+    }
+}
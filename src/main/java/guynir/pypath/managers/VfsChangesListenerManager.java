@@ -5,18 +5,37 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.Alarm;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
 import guynir.pypath.PyPathException;
+import guynir.pypath.metrics.Counter;
+import guynir.pypath.metrics.MetricsRegistry;
 import guynir.pypath.services.VfsService;
+import guynir.pypath.utils.Asserts;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Listens to virtual file system changes.
+ * Listens to virtual file system changes.<p>
+ * Events are first matched against the {@link VfsEventFilter} compiled from the current listing, so events unrelated
+ * to managed folders (e.g.: changes within <i>node_modules</i> or build output) are dropped without any VFS access.<p>
+ * Renaming and deletion of folders are handled as they arrive. Events that require a full refresh (listing file
+ * changes, creation of directories) are coalesced: a refresh request is queued and executed once the VFS has been
+ * quiet for the duration of the debounce window, so a burst of events (e.g.: <i>git checkout</i>) results in a single
+ * refresh.
  */
 public class VfsChangesListenerManager {
 
@@ -36,9 +55,46 @@ public class VfsChangesListenerManager {
     private final VfsService vfsService;
 
     /**
-     * Name of listing file.
+     * Listing files recognized so far, matched by identity. A file deleted and re-created is a new virtual file, so it
+     * is not matched until recognized again by path. The set is cleared whenever files are deleted, moved or renamed,
+     * or the set of nested listing files changes.
      */
-    private String sourceDirsFile;
+    private final Set<VirtualFile> knownListingFiles = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * Counts VFS events received.
+     */
+    private Counter eventsReceived = MetricsRegistry.DISABLED.counter(MetricsRegistry.EVENTS_RECEIVED);
+
+    /**
+     * Counts VFS events acted on.
+     */
+    private Counter eventsActed = MetricsRegistry.DISABLED.counter(MetricsRegistry.EVENTS_ACTED);
+
+    /**
+     * Time span (in milliseconds) refresh requests are merged over.
+     */
+    private int debounceWindow = Integer.getInteger(DEBOUNCE_WINDOW_PROPERTY, DEFAULT_DEBOUNCE_WINDOW);
+
+    /**
+     * Queue coalescing refresh requests. Created upon {@link #registerHandlers() registration}.
+     */
+    private MergingUpdateQueue refreshQueue;
+
+    /**
+     * Default time span (in milliseconds) refresh requests are merged over.
+     */
+    public static final int DEFAULT_DEBOUNCE_WINDOW = 300;
+
+    /**
+     * Name of system property that overrides the default debounce window.
+     */
+    public static final String DEBOUNCE_WINDOW_PROPERTY = "pypath.debounce.window";
+
+    /**
+     * Identity of refresh requests -- all requests share the same identity, so pending requests are merged into one.
+     */
+    private static final Object REFRESH_REQUEST = "PyPath.refresh";
 
     /**
      * Class logger.
@@ -58,13 +114,26 @@ public class VfsChangesListenerManager {
         this.vfsService = vfsService;
     }
 
+    /**
+     * Sets the registry to report metrics to.
+     *
+     * @param metrics Metrics registry.
+     * @throws IllegalArgumentException If <i>metrics</i> is {@code null}.
+     */
+    public void setMetrics(MetricsRegistry metrics) throws IllegalArgumentException {
+        Asserts.notNull(metrics, "Metrics registry cannot be null.");
+        this.eventsReceived = metrics.counter(MetricsRegistry.EVENTS_RECEIVED);
+        this.eventsActed = metrics.counter(MetricsRegistry.EVENTS_ACTED);
+    }
+
     /**
      * Register VFS changes listener.
      */
     public void registerHandlers() {
         logger.info("Registering VFS changes listener.");
 
-        sourceDirsFile = sourceFoldersManager.getSourceFoldersFile();
+        refreshQueue = new MergingUpdateQueue("PyPath.refresh", debounceWindow, true, null, project, null,
+                Alarm.ThreadToUse.SWING_THREAD);
 
         BulkFileListener listener = (new BulkFileListener() {
 
@@ -83,48 +152,258 @@ public class VfsChangesListenerManager {
      * @param events List of events.
      */
     protected void handleChanges(@NotNull List<? extends VFileEvent> events) {
+        evictResolvedFiles(events);
+
         boolean performRefresh = false;
+        VfsEventFilter filter = sourceFoldersManager.getEventFilter();
+        int acted = 0;
 
         for (VFileEvent event : events) {
-            if (event instanceof VFileMoveEvent) {
+            boolean refreshRequested = performRefresh;
+            boolean handled = false;
+
+            // Nested listing files are tracked regardless of whether a refresh is already due.
+            if (handleNestedListingFiles(filter, event)) {
+                knownListingFiles.clear();
+                performRefresh = true;
+            }
+
+            if (event instanceof VFileContentChangeEvent) {
+                // Changing the content of a file is relevant only if it's a listing file.
                 if (!performRefresh) {
-                    try {
-                        VFileMoveEvent moveEvent = (VFileMoveEvent) event;
-                        sourceFoldersManager.handleFolderRenaming(moveEvent.getOldPath(), moveEvent.getNewPath());
-                    } catch (PyPathException ex) {
-                        performRefresh = true;
+                    performRefresh = isListingFile(filter, ((VFileContentChangeEvent) event).getFile());
+                }
+            } else if (event instanceof VFileMoveEvent) {
+                if (!performRefresh) {
+                    VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+                    performRefresh = handlePatternScopeChange(filter, moveEvent.getOldPath(), moveEvent.getNewPath());
+                    if (!performRefresh
+                            && (filter.isRelevant(moveEvent.getOldPath()) || filter.isRelevant(moveEvent.getNewPath()))) {
+                        handled = true;
+                        try {
+                            sourceFoldersManager.handleFolderRenaming(moveEvent.getOldPath(), moveEvent.getNewPath());
+                        } catch (PyPathException ex) {
+                            performRefresh = true;
+                        }
                     }
                 }
             } else if (event instanceof VFilePropertyChangeEvent) {
                 if (!performRefresh) {
-                    try {
-                        VFilePropertyChangeEvent changeEvent = (VFilePropertyChangeEvent) event;
-                        sourceFoldersManager.handleFolderRenaming(changeEvent.getOldPath(), changeEvent.getNewPath());
-                    } catch (PyPathException ex) {
-                        performRefresh = true;
+                    VFilePropertyChangeEvent changeEvent = (VFilePropertyChangeEvent) event;
+                    performRefresh = VirtualFile.PROP_NAME.equals(changeEvent.getPropertyName())
+                            && handlePatternScopeChange(filter, changeEvent.getOldPath(), changeEvent.getNewPath());
+                    if (!performRefresh
+                            && (filter.isRelevant(changeEvent.getOldPath()) || filter.isRelevant(changeEvent.getNewPath()))) {
+                        handled = true;
+                        try {
+                            sourceFoldersManager.handleFolderRenaming(changeEvent.getOldPath(), changeEvent.getNewPath());
+                        } catch (PyPathException ex) {
+                            performRefresh = true;
+                        }
                     }
                 }
             } else if (event instanceof VFileDeleteEvent) {
-                sourceFoldersManager.handleFolderDeletion(event.getFile());
-            } else {
-                // If either our 'source_dirs' file was change or a directory was created -- trigger
+                if (filter.isListingFile(event.getPath())) {
+                    // Deleting a listing file may bring another one into effect.
+                    performRefresh = true;
+                } else if (filter.isRelevant(event.getPath())) {
+                    handled = true;
+                    sourceFoldersManager.handleFolderDeletion(event.getFile());
+                    performRefresh |= handlePatternScopeChange(filter, event.getPath());
+                }
+            } else if (!performRefresh) {
+                // If either our 'source_dirs' file was change or a relevant directory was created -- trigger
                 // a refresh.
-                VirtualFile file = event.getFile();
-                if (file != null) {
-                    performRefresh |= file.isDirectory();
-                    if (!performRefresh) {
-                        try {
-                            performRefresh = vfsService.isSame(sourceDirsFile, file);
-                        } catch (PyPathException ex) {
-                            // Ignore exception.
-                        }
+                String path = event.getPath();
+                if (filter.isListingFile(path)) {
+                    performRefresh = true;
+                } else if (filter.isRelevant(path)) {
+                    VirtualFile file = event.getFile();
+                    performRefresh = file != null && file.isDirectory();
+                    if (performRefresh) {
+                        handlePatternScopeChange(filter, path);
                     }
                 }
             }
+
+            // Events handled directly, as well as the event triggering the refresh, are acted on.
+            if (handled || performRefresh && !refreshRequested) {
+                acted++;
+            }
         }
 
+        eventsReceived.add(events.size());
+        eventsActed.add(acted);
+
         if (performRefresh) {
-            sourceFoldersManager.handleDirectoryMarking();
+            requestRefresh();
+        }
+    }
+
+    /**
+     * Determine if a file is a listing file. Files already recognized are matched by identity; other files are matched
+     * by name first, so the path of a file is computed only when it is named as a listing file.
+     *
+     * @param filter Filter matching relevant events.
+     * @param file   File to evaluate.
+     * @return {@code true} if <i>file</i> is a listing file.
+     */
+    private boolean isListingFile(VfsEventFilter filter, VirtualFile file) {
+        if (file == null) {
+            return false;
+        } else if (knownListingFiles.contains(file)) {
+            return true;
+        } else if (!filter.isListingFileName(file.getName()) || !filter.isListingFile(file.getPath())) {
+            return false;
+        }
+
+        knownListingFiles.add(file);
+        return true;
+    }
+
+    /**
+     * Evict the cached resolutions of files deleted, moved or renamed by a batch of events (see
+     * {@link VfsService#invalidate(Collection)}), before any of the events is handled. Listing files recognized so
+     * far are forgotten as well, as their paths may have changed.
+     *
+     * @param events List of events.
+     */
+    private void evictResolvedFiles(List<? extends VFileEvent> events) {
+        List<String> paths = new ArrayList<>();
+        for (VFileEvent event : events) {
+            if (event instanceof VFileDeleteEvent) {
+                paths.add(event.getPath());
+            } else if (event instanceof VFileMoveEvent) {
+                paths.add(((VFileMoveEvent) event).getOldPath());
+            } else if (event instanceof VFilePropertyChangeEvent
+                    && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+                paths.add(((VFilePropertyChangeEvent) event).getOldPath());
+            }
+        }
+
+        if (!paths.isEmpty()) {
+            knownListingFiles.clear();
+            vfsService.invalidate(paths);
+        }
+    }
+
+    /**
+     * Update the registry of nested listing files following a creation, deletion, move or rename of a file. Listing
+     * files are matched by name and path only. A directory created, moved or renamed may hold listing files of its own,
+     * which are not reported individually, so it merely invalidates the registry (see
+     * {@link ListingFileRegistry#invalidate(String)}); the directory is searched by the (debounced) refresh.
+     *
+     * @param filter Filter matching relevant events.
+     * @param event  VFS event.
+     * @return {@code true} if the set of nested listing files changed or has to be discovered again (i.e.: a refresh
+     * is required), {@code false} if not.
+     */
+    private boolean handleNestedListingFiles(VfsEventFilter filter, VFileEvent event) {
+        ListingFileRegistry registry = sourceFoldersManager.getListingFileRegistry();
+        if (event instanceof VFileCreateEvent) {
+            VFileCreateEvent createEvent = (VFileCreateEvent) event;
+            if (createEvent.isDirectory()) {
+                return registry.invalidate(event.getPath());
+            }
+            return filter.isListingFileName(createEvent.getChildName())
+                    && registry.add(event.getPath());
+        } else if (event instanceof VFileDeleteEvent) {
+            return registry.remove(event.getPath());
+        } else if (event instanceof VFileMoveEvent) {
+            VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+            return registry.remove(moveEvent.getOldPath()) | addOrInvalidate(registry, moveEvent.getFile(),
+                    moveEvent.getNewPath());
+        } else if (event instanceof VFilePropertyChangeEvent) {
+            VFilePropertyChangeEvent changeEvent = (VFilePropertyChangeEvent) event;
+            return VirtualFile.PROP_NAME.equals(changeEvent.getPropertyName())
+                    && (registry.remove(changeEvent.getOldPath()) | addOrInvalidate(registry, changeEvent.getFile(),
+                    changeEvent.getNewPath()));
+        }
+        return false;
+    }
+
+    /**
+     * Register a file moved or renamed into a new path, if it is a nested listing file, or invalidate the registry if
+     * it is a directory.
+     *
+     * @param registry Registry of nested listing files.
+     * @param file     File moved or renamed.
+     * @param newPath  Absolute path of the file, following the move or rename.
+     * @return {@code true} if a refresh is required.
+     */
+    private static boolean addOrInvalidate(ListingFileRegistry registry, VirtualFile file, String newPath) {
+        return file != null && file.isDirectory() ? registry.invalidate(newPath) : registry.add(newPath);
+    }
+
+    /**
+     * Invalidate pattern expansions affected by a change of directories.
+     *
+     * @param filter Filter matching relevant events.
+     * @param paths  Absolute paths of changed directories.
+     * @return {@code true} if any of the paths is within the scope of a listed glob pattern (i.e.: a refresh is
+     * required), {@code false} if not.
+     */
+    private boolean handlePatternScopeChange(VfsEventFilter filter, String... paths) {
+        boolean affected = false;
+        for (String path : paths) {
+            if (filter.isWithinPatternScope(path)) {
+                sourceFoldersManager.invalidatePatternExpansions(path);
+                affected = true;
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Request a refresh of the managed folders. The refresh is deferred until the end of the debounce window; multiple
+     * requests made within the window are executed as a single refresh. If handlers are not registered, the refresh
+     * is performed immediately.
+     */
+    protected void requestRefresh() {
+        if (refreshQueue == null) {
+            sourceFoldersManager.scheduleDirectoryMarking();
+            return;
+        }
+
+        refreshQueue.queue(new Update(REFRESH_REQUEST) {
+            @Override
+            public void run() {
+                sourceFoldersManager.scheduleDirectoryMarking();
+            }
+        });
+    }
+
+    /**
+     * Execute pending refresh requests immediately. Mainly useful for tests, which need changes to be applied before
+     * assertions are made.
+     */
+    public void flush() {
+        if (refreshQueue != null) {
+            refreshQueue.flush();
+        }
+    }
+
+    /**
+     * @return Time span (in milliseconds) refresh requests are merged over.
+     */
+    public int getDebounceWindow() {
+        return debounceWindow;
+    }
+
+    /**
+     * Sets the time span refresh requests are merged over.
+     *
+     * @param debounceWindow Time span in milliseconds.
+     * @throws IllegalArgumentException If <i>debounceWindow</i> is negative.
+     */
+    public void setDebounceWindow(int debounceWindow) throws IllegalArgumentException {
+        if (debounceWindow < 0) {
+            throw new IllegalArgumentException("Debounce window cannot be negative.");
+        }
+
+        this.debounceWindow = debounceWindow;
+        if (refreshQueue != null) {
+            refreshQueue.setMergingTimeSpan(debounceWindow);
         }
     }
 }
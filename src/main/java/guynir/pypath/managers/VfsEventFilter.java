@@ -0,0 +1,241 @@
+package guynir.pypath.managers;
+
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.utils.Asserts;
+import guynir.pypath.utils.GlobPattern;
+import guynir.pypath.utils.PathTrie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A matcher compiled from the current listing, used to discard irrelevant VFS events before any work is done. An
+ * event is relevant if it concerns the listing file, a managed folder or one of the managed folders' ancestors (e.g.:
+ * creating, renaming or deleting <i>services</i> is relevant when <i>services/auth/src</i> is managed, while any change
+ * within <i>node_modules</i> or within <i>services/auth/src</i> itself is not). A change of a directory that may lead
+ * to a match of a listed glob pattern is relevant as well, since it may affect the pattern's expansion.<p>
+ * Matching works on absolute paths, costs a time linear in the length of the path and does not access the VFS. A
+ * filter reflects the trie of managed paths it was created with, including any later change made to that trie.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/23
+ */
+public class VfsEventFilter {
+
+    /**
+     * Absolute path of workspace base directory, always ending with a slash.
+     */
+    private final String baseDirPath;
+
+    /**
+     * Absolute paths of the listing files (all formats).
+     */
+    private final Set<String> listingFilePaths;
+
+    /**
+     * Names of the listing files (all formats).
+     */
+    private final Set<String> listingFileNames = new HashSet<>();
+
+    /**
+     * Directories holding a nested listing file, relative to workspace base directory.
+     */
+    private volatile Set<String> nestedListingDirectories = Collections.emptySet();
+
+    /**
+     * Managed paths, relative to workspace base directory.
+     */
+    private final PathTrie<?> managedPaths;
+
+    /**
+     * Base directories of listed glob patterns, relative to workspace base directory. Rejects most paths outside the
+     * scope of all patterns without matching them against each pattern.
+     */
+    private volatile PathTrie<Boolean> patternBases = new PathTrie<>();
+
+    /**
+     * Listed glob patterns.
+     */
+    private volatile List<GlobPattern> patterns = Collections.emptyList();
+
+    /**
+     * Class constructor.
+     *
+     * @param baseDirPath     Absolute path of workspace base directory.
+     * @param listingFilePath Absolute path of the listing file.
+     * @param managedPaths    Managed paths, relative to workspace base directory.
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public VfsEventFilter(String baseDirPath,
+                          String listingFilePath,
+                          PathTrie<?> managedPaths) throws IllegalArgumentException {
+        this(baseDirPath, Collections.singleton(listingFilePath), managedPaths);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param baseDirPath      Absolute path of workspace base directory.
+     * @param listingFilePaths Absolute paths of the listing files (e.g.: plain and YAML forms).
+     * @param managedPaths     Managed paths, relative to workspace base directory.
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public VfsEventFilter(String baseDirPath,
+                          Collection<String> listingFilePaths,
+                          PathTrie<?> managedPaths) throws IllegalArgumentException {
+        Asserts.notNull(baseDirPath, "Base directory path cannot be null.");
+        Asserts.notNull(listingFilePaths, "Listing file paths cannot be null.");
+        Asserts.notNull(managedPaths, "Managed paths cannot be null.");
+        listingFilePaths.forEach(path -> Asserts.notNull(path, "Listing file path cannot be null."));
+
+        this.baseDirPath = baseDirPath.endsWith("/") ? baseDirPath : baseDirPath + "/";
+        this.listingFilePaths = new HashSet<>(listingFilePaths);
+        listingFilePaths.forEach(path -> listingFileNames.add(path.substring(path.lastIndexOf('/') + 1)));
+        this.managedPaths = managedPaths;
+    }
+
+    /**
+     * Compile a filter.
+     *
+     * @param baseDirPath     Absolute path of workspace base directory.
+     * @param listingFilePath Absolute path of the listing file.
+     * @param descriptors     Managed descriptors.
+     * @return New filter.
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public static VfsEventFilter compile(String baseDirPath,
+                                         String listingFilePath,
+                                         Collection<SourceDescriptor> descriptors) throws IllegalArgumentException {
+        Asserts.notNull(descriptors, "Descriptors cannot be null.");
+
+        PathTrie<SourceDescriptor> managedPaths = new PathTrie<>();
+        for (SourceDescriptor descriptor : descriptors) {
+            if (descriptor.getPath() != null) {
+                managedPaths.put(descriptor.getPath(), descriptor);
+            }
+        }
+        return new VfsEventFilter(baseDirPath, listingFilePath, managedPaths);
+    }
+
+    /**
+     * Determine if a change of a given file is relevant.
+     *
+     * @param path Absolute path of a changed file.
+     * @return {@code true} if the file is the listing file, a managed folder or an ancestor of a managed folder.
+     */
+    public boolean isRelevant(String path) {
+        if (path == null) {
+            return false;
+        }
+
+        if (isListingFile(path)) {
+            return true;
+        }
+
+        if (path.startsWith(baseDirPath)) {
+            return managedPaths.containsPrefix(path, baseDirPath.length()) || isWithinPatternScope(path);
+        }
+
+        // The base directory itself, or one of its ancestors, is an ancestor of every managed folder.
+        return !(managedPaths.isEmpty() && patternBases.isEmpty()) && baseDirPath.startsWith(path)
+                && (path.length() == baseDirPath.length() - 1 || path.endsWith("/")
+                || baseDirPath.charAt(path.length()) == '/');
+    }
+
+    /**
+     * Determine if a path may affect the expansion of a listed glob pattern, i.e.: it may lead to a match of the
+     * pattern (see {@link GlobPattern#matchesPrefix(String)}). That is the case for ancestors of a pattern's base
+     * directory, and for paths within the base directory that match the pattern's leading segments (e.g.:
+     * <i>services/auth</i> for <i>services/&#42;/src</i>, but not <i>services/auth/docs</i>).
+     *
+     * @param path Absolute path of a file.
+     * @return {@code true} if <i>path</i> is within the scope of a pattern.
+     */
+    public boolean isWithinPatternScope(String path) {
+        if (path == null || !path.startsWith(baseDirPath)) {
+            return false;
+        }
+
+        PathTrie<Boolean> bases = this.patternBases;
+        int offset = baseDirPath.length();
+        if (bases.containsPrefix(path, offset)) {
+            return true;
+        } else if (bases.getNearest(path, offset) == null) {
+            return false;
+        }
+
+        String relativePath = path.substring(offset);
+        for (GlobPattern pattern : this.patterns) {
+            if (pattern.matchesPrefix(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the listed glob patterns.
+     *
+     * @param patterns Compiled patterns.
+     * @throws IllegalArgumentException If <i>patterns</i> is {@code null}.
+     */
+    public void setPatterns(Collection<GlobPattern> patterns) throws IllegalArgumentException {
+        Asserts.notNull(patterns, "Patterns cannot be null.");
+
+        PathTrie<Boolean> bases = new PathTrie<>();
+        patterns.forEach(pattern -> bases.put(pattern.getBase(), Boolean.TRUE));
+        this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+        this.patternBases = bases;
+    }
+
+    /**
+     * Sets the directories holding a nested listing file. A filter reflects later changes made to the given set.
+     *
+     * @param directories Directories, relative to workspace base directory.
+     * @throws IllegalArgumentException If <i>directories</i> is {@code null}.
+     */
+    public void setNestedListingDirectories(Set<String> directories) throws IllegalArgumentException {
+        Asserts.notNull(directories, "Directories cannot be null.");
+        this.nestedListingDirectories = directories;
+    }
+
+    /**
+     * @param path Absolute path of a file.
+     * @return {@code true} if <i>path</i> references a listing file, either at the workspace root or in one of the
+     * {@link #setNestedListingDirectories(Set) nested listing directories}.
+     */
+    public boolean isListingFile(String path) {
+        if (path == null) {
+            return false;
+        }
+        if (listingFilePaths.contains(path)) {
+            return true;
+        }
+
+        int slash = path.lastIndexOf('/');
+        return slash > baseDirPath.length()
+                && path.startsWith(baseDirPath)
+                && listingFileNames.contains(path.substring(slash + 1))
+                && nestedListingDirectories.contains(path.substring(baseDirPath.length(), slash));
+    }
+
+    /**
+     * @param name Name of a file.
+     * @return {@code true} if <i>name</i> is the name of a listing file (in any format), regardless of its location.
+     */
+    public boolean isListingFileName(String name) {
+        return listingFileNames.contains(name);
+    }
+
+    /**
+     * @param path Absolute path of a folder.
+     * @return {@code true} if <i>path</i> references a managed folder.
+     */
+    public boolean isManaged(String path) {
+        return path != null && path.startsWith(baseDirPath) && managedPaths.get(path, baseDirPath.length()) != null;
+    }
+}
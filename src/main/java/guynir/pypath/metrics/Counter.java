@@ -0,0 +1,65 @@
+package guynir.pypath.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing counter. Updates are ignored while the owning registry is disabled.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class Counter {
+
+    /**
+     * Registry owning this counter.
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * Current count.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Class constructor.
+     *
+     * @param registry Registry owning this counter.
+     */
+    Counter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Increment counter by one.
+     */
+    public void increment() {
+        if (registry.isEnabled()) {
+            count.increment();
+        }
+    }
+
+    /**
+     * Increment counter by a given amount.
+     *
+     * @param amount Amount to add.
+     */
+    public void add(long amount) {
+        if (registry.isEnabled()) {
+            count.add(amount);
+        }
+    }
+
+    /**
+     * @return Current count.
+     */
+    public long get() {
+        return count.sum();
+    }
+
+    /**
+     * Reset count to zero.
+     */
+    void reset() {
+        count.reset();
+    }
+}
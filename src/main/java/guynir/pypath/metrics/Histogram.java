@@ -0,0 +1,153 @@
+package guynir.pypath.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values (e.g.: latencies or sizes), kept in power-of-two buckets: bucket <i>i</i> holds
+ * values in the range [2<sup>i-1</sup>, 2<sup>i</sup>), while bucket 0 holds zeros. Recording a value costs a few
+ * atomic increments and does not allocate; percentiles are estimated by the upper bound of their bucket. Updates are
+ * ignored while the owning registry is disabled.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class Histogram {
+
+    /**
+     * Number of buckets (one per bit of a {@code long}, plus one for zero).
+     */
+    private static final int BUCKETS = 65;
+
+    /**
+     * Registry owning this histogram.
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * Number of values recorded per bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Number of values recorded.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Sum of values recorded.
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Maximal value recorded.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Class constructor.
+     *
+     * @param registry Registry owning this histogram.
+     */
+    Histogram(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Record a value. Negative values are recorded as zero.
+     *
+     * @param value Value to record.
+     */
+    public void record(long value) {
+        if (!registry.isEnabled()) {
+            return;
+        }
+
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Record the time elapsed since a timer was started, in microseconds.
+     *
+     * @param startTime Value returned by {@link MetricsRegistry#startTimer()}.
+     */
+    public void recordSince(long startTime) {
+        if (startTime != 0 && registry.isEnabled()) {
+            record((System.nanoTime() - startTime) / 1000);
+        }
+    }
+
+    /**
+     * @return Number of values recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return Sum of values recorded.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return Maximal value recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return Mean of values recorded, or zero if none.
+     */
+    public double getMean() {
+        long n = getCount();
+        return n > 0 ? (double) getSum() / n : 0;
+    }
+
+    /**
+     * Estimate a percentile.
+     *
+     * @param percentile Percentile, between 0 and 100.
+     * @return Upper bound of the bucket holding the percentile (never more than the maximal value), or zero if no
+     * value was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                long upperBound = i == 0 ? 0 : (i == 64 ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upperBound, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Discard all recorded values.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
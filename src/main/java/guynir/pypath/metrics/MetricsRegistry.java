@@ -0,0 +1,292 @@
+package guynir.pypath.metrics;
+
+import guynir.pypath.utils.Asserts;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the plugin's metrics: counters and histograms, identified by name (see {@link #counter(String)} and
+ * {@link #histogram(String)} for the names in use).<p>
+ * A registry may be disabled, in which case all updates are ignored and {@link #startTimer()} does not read the clock.
+ * Counters and histograms are meant to be looked up once and kept (e.g.: in fields of the instrumented class), so an
+ * update of a disabled registry costs a single volatile read. Registries are disabled by default, unless the system
+ * property {@value #ENABLED_PROPERTY} is set to {@code true}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class MetricsRegistry {
+
+    /**
+     * Name of system property enabling metrics upon startup.
+     */
+    public static final String ENABLED_PROPERTY = "pypath.metrics";
+
+    /**
+     * Time (microseconds) spent loading and parsing the listing file.
+     */
+    public static final String LISTING_PARSE_TIME = "listing.parse.time.us";
+
+    /**
+     * Number of descriptors per loaded listing.
+     */
+    public static final String LISTING_DESCRIPTORS = "listing.descriptors";
+
+    /**
+     * Number of listing loads answered from cache (listing file not modified).
+     */
+    public static final String LISTING_CACHE_HITS = "listing.cache.hits";
+
+    /**
+     * Number of listing files read and parsed (as opposed to reused from cache).
+     */
+    public static final String LISTING_FILES_PARSED = "listing.files.parsed";
+
+    /**
+     * Number of path to virtual file lookups.
+     */
+    public static final String VFS_LOOKUPS = "vfs.lookups";
+
+    /**
+     * Number of path to virtual file lookups served by the resolution cache.
+     */
+    public static final String VFS_CACHE_HITS = "vfs.cache.hits";
+
+    /**
+     * Number of path to virtual file lookups that walked the VFS.
+     */
+    public static final String VFS_CACHE_MISSES = "vfs.cache.misses";
+
+    /**
+     * Number of module root models committed.
+     */
+    public static final String MODEL_COMMITS = "model.commits";
+
+    /**
+     * Time (microseconds) the write lock was held while applying changes to the project model.
+     */
+    public static final String WRITE_ACTION_TIME = "write.action.time.us";
+
+    /**
+     * Number of VFS events received.
+     */
+    public static final String EVENTS_RECEIVED = "events.received";
+
+    /**
+     * Number of VFS events acted on (i.e.: not discarded as irrelevant).
+     */
+    public static final String EVENTS_ACTED = "events.acted";
+
+    /**
+     * Number of full synchronizations (the entire listing is reconciled with the project model).
+     */
+    public static final String SYNC_FULL = "sync.full";
+
+    /**
+     * Number of full synchronizations skipped since the listing was up to date.
+     */
+    public static final String SYNC_SKIPPED = "sync.skipped";
+
+    /**
+     * Number of synchronizations avoided upon project open, since the persisted snapshot matched.
+     */
+    public static final String SYNC_RESTORED = "sync.restored";
+
+    /**
+     * Number of incremental synchronizations (a single renamed or deleted folder is handled).
+     */
+    public static final String SYNC_INCREMENTAL = "sync.incremental";
+
+    /**
+     * Time (microseconds) of full synchronizations.
+     */
+    public static final String SYNC_FULL_TIME = "sync.full.time.us";
+
+    /**
+     * Time (microseconds) of successful restorations from the persisted snapshot.
+     */
+    public static final String SYNC_RESTORE_TIME = "sync.restore.time.us";
+
+    /**
+     * Number of times the content root index was built.
+     */
+    public static final String CONTENT_ROOT_INDEX_BUILDS = "content.root.index.builds";
+
+    /**
+     * Time (microseconds) of building the content root index.
+     */
+    public static final String CONTENT_ROOT_INDEX_BUILD_TIME = "content.root.index.build.time.us";
+
+    /**
+     * Shared registry that never records updates, reported to by components until they are given a registry (see
+     * {@code setMetrics} of the instrumented classes). Cannot be enabled.
+     */
+    public static final MetricsRegistry DISABLED = new MetricsRegistry(false) {
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            if (enabled) {
+                throw new UnsupportedOperationException("The shared disabled registry cannot be enabled.");
+            }
+        }
+    };
+
+    /**
+     * Determine whether updates are recorded.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * Counters, keyed by name.
+     */
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Histograms, keyed by name.
+     */
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Class constructor. Registry is enabled if system property {@value #ENABLED_PROPERTY} is {@code true}.
+     */
+    public MetricsRegistry() {
+        this(Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param enabled Determine whether updates are recorded.
+     */
+    public MetricsRegistry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Lookup a counter, creating it if necessary.
+     *
+     * @param name Counter name.
+     * @return The counter.
+     */
+    public Counter counter(String name) {
+        Asserts.notNull(name, "Counter name cannot be null.");
+        return counters.computeIfAbsent(name, n -> new Counter(this));
+    }
+
+    /**
+     * Lookup a histogram, creating it if necessary.
+     *
+     * @param name Histogram name.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name) {
+        Asserts.notNull(name, "Histogram name cannot be null.");
+        return histograms.computeIfAbsent(name, n -> new Histogram(this));
+    }
+
+    /**
+     * Start a timer, to be completed by {@link Histogram#recordSince(long)}.
+     *
+     * @return Current time (nanoseconds), or zero if registry is disabled.
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return {@code true} if updates are recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable recording of updates. Values recorded so far are kept.
+     *
+     * @param enabled {@code true} to record updates, {@code false} to ignore them.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Discard all recorded values.
+     */
+    public void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(Histogram::reset);
+    }
+
+    /**
+     * Dump all metrics as a JSON document, e.g.:
+     * <pre>
+     * {
+     *   "enabled": true,
+     *   "counters": { "model.commits": 3, ... },
+     *   "histograms": {
+     *     "listing.parse.time.us": { "count": 3, "sum": 5120, "mean": 1706.67, "max": 2900, "p50": 2047, ... },
+     *     ...
+     *   }
+     * }
+     * </pre>
+     * Metrics are sorted by name.
+     *
+     * @return JSON representation of all metrics.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"enabled\": ").append(enabled).append(",\n  \"counters\": {");
+
+        String separator = "\n";
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            json.append(separator).append("    ");
+            appendString(json, entry.getKey());
+            json.append(": ").append(entry.getValue().get());
+            separator = ",\n";
+        }
+        json.append(counters.isEmpty() ? "}" : "\n  }").append(",\n  \"histograms\": {");
+
+        separator = "\n";
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            json.append(separator).append("    ");
+            appendString(json, entry.getKey());
+            json.append(": { \"count\": ").append(histogram.getCount())
+                    .append(", \"sum\": ").append(histogram.getSum())
+                    .append(", \"mean\": ").append(String.format(Locale.ROOT, "%.2f", histogram.getMean()))
+                    .append(", \"max\": ").append(histogram.getMax())
+                    .append(", \"p50\": ").append(histogram.getPercentile(50))
+                    .append(", \"p90\": ").append(histogram.getPercentile(90))
+                    .append(", \"p99\": ").append(histogram.getPercentile(99))
+                    .append(" }");
+            separator = ",\n";
+        }
+        json.append(histograms.isEmpty() ? "}" : "\n  }").append("\n}");
+
+        return json.toString();
+    }
+
+    /**
+     * Append a string literal to a JSON document.
+     *
+     * @param json JSON document.
+     * @param str  String to append.
+     */
+    private static void appendString(StringBuilder json, String str) {
+        json.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -1,5 +1,6 @@
 package guynir.pypath.services;
 
+import guynir.pypath.state.ListingSnapshot;
 import guynir.pypath.state.SourceDescriptor;
 
 import java.util.List;
@@ -18,10 +19,30 @@ public interface ComponentStateService {
     List<SourceDescriptor> getSourceDescriptorsListing();
 
     /**
-     * Sets (updates) source listing.
+     * Sets (updates) source listing. A listing holding the same descriptors as the current one (in any order) is
+     * ignored, leaving the state unmodified.
      *
      * @param listing List to update. A {@code null} value is equivalent to empty string.
+     * @return {@code true} if the state was modified, {@code false} if <i>listing</i> holds the current descriptors.
      */
-    void setSourceDescriptorListing(List<SourceDescriptor> listing);
+    boolean setSourceDescriptorListing(List<SourceDescriptor> listing);
+
+    /**
+     * @return Snapshot taken once the project model last reflected the listing file, or {@code null} if none.
+     */
+    ListingSnapshot getListingSnapshot();
+
+    /**
+     * Sets (updates) the listing snapshot.
+     *
+     * @param snapshot Snapshot to persist, or {@code null} to discard the current one.
+     */
+    void setListingSnapshot(ListingSnapshot snapshot);
+
+    /**
+     * @return Number of modifications made to the state so far. Changes whenever the state is modified, so callers
+     * may compare it with a previous value to determine if the state changed since.
+     */
+    long getModificationCount();
 
 }
@@ -1,31 +1,62 @@
 package guynir.pypath.services;
 
-import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.PersistentStateComponentWithModificationTracker;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.xmlb.annotations.XCollection;
+import guynir.pypath.PyPathException;
+import guynir.pypath.state.CompactListingCodec;
+import guynir.pypath.state.ListingFingerprint;
+import guynir.pypath.state.ListingGroup;
+import guynir.pypath.state.ListingSnapshot;
 import guynir.pypath.state.SourceDescriptor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 /**
- * Service to persist plugin state via Intellij platform component state persistence service.
+ * Service to persist plugin state via Intellij platform component state persistence service.<p>
+ * The listing of managed descriptors is persisted in a compact form (see {@link CompactListingCodec}), decoded lazily
+ * upon first access and re-encoded only after it changes. State persisted by earlier versions (one XML element per
+ * descriptor) is read as well, and is migrated to the compact form upon the next save. The compact form may be
+ * disabled by setting system property {@value #COMPACT_PROPERTY} to {@code false}.<p>
+ * Updates that do not change the state (e.g.: setting a listing holding the current descriptors) are ignored. The
+ * platform is informed of actual modifications via {@link #getStateModificationCount()}, so an unmodified state is not
+ * serialized again.
  *
  * @author Guy Raz Nir
  * @since 2020/02/08
  */
 @State(name = "PyPathPlugin", storages = @Storage("pypath.xml"))
-public class ComponentStateServiceImpl implements ComponentStateService, PersistentStateComponent<ComponentStateServiceImpl.State> {
+public class ComponentStateServiceImpl implements ComponentStateService,
+        PersistentStateComponentWithModificationTracker<ComponentStateServiceImpl.State> {
 
     public static class State {
 
         /**
-         * List of all managed source folders.
+         * List of all managed source folders, one element per descriptor. Used by earlier versions of the plugin, and
+         * when the compact form is disabled.
          */
         public List<SourceDescriptor> descriptors = new LinkedList<>();
 
+        /**
+         * List of all managed source folders in compact form: sorted, prefix-compressed paths grouped by source type
+         * and attributes (see {@link CompactListingCodec}), one XML element per path.
+         */
+        @XCollection(propertyElementName = "listing", style = XCollection.Style.v2)
+        public List<ListingGroup> listing = new ArrayList<>();
+
+        /**
+         * Snapshot of the listing file and project model, if any.
+         */
+        public ListingSnapshot snapshot;
+
         /**
          * Default constructor.
          */
@@ -33,37 +64,187 @@ public class ComponentStateServiceImpl implements ComponentStateService, Persist
         }
     }
 
+    /**
+     * Name of system property controlling whether the listing is persisted in compact form.
+     */
+    public static final String COMPACT_PROPERTY = "pypath.state.compact";
+
     /**
      * Maintain the state of the plugin.
      */
     private State state = new State();
 
+    /**
+     * Decoded listing of managed descriptors, or {@code null} if not decoded yet.
+     */
+    private List<SourceDescriptor> descriptors;
+
+    /**
+     * Determine whether {@link #descriptors} changed since it was last encoded into {@link #state}.
+     */
+    private boolean dirty;
+
+    /**
+     * Number of modifications made to the state.
+     */
+    private long modificationCount;
+
+    /**
+     * Determine whether the listing is persisted in compact form.
+     */
+    private final boolean compact;
+
+    /**
+     * Class logger.
+     */
+    private static final Logger logger = Logger.getInstance(ComponentStateServiceImpl.class);
+
+    /**
+     * Class constructor. Compact form is enabled unless system property {@value #COMPACT_PROPERTY} is {@code false}.
+     */
+    public ComponentStateServiceImpl() {
+        this(!"false".equalsIgnoreCase(System.getProperty(COMPACT_PROPERTY)));
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param compact {@code true} to persist listing in compact form, {@code false} to persist one XML element per
+     *                descriptor.
+     */
+    public ComponentStateServiceImpl(boolean compact) {
+        this.compact = compact;
+    }
+
     /**
      * @return The state of the plugin.
      */
     @Nullable
     @Override
-    public State getState() {
+    public synchronized State getState() {
+        if (dirty) {
+            if (compact) {
+                state.listing = CompactListingCodec.encode(descriptors);
+                state.descriptors = new LinkedList<>();
+            } else {
+                state.descriptors = new LinkedList<>(descriptors);
+                state.listing = new ArrayList<>();
+            }
+            dirty = false;
+        }
         return state;
     }
 
     /**
-     * Loads a new state into this service.
+     * Loads a new state into this service. The listing is decoded upon first access.
      *
      * @param state State to load (must not be {@code null}).
      */
     @Override
-    public void loadState(@NotNull State state) {
+    public synchronized void loadState(@NotNull State state) {
+        if (state.descriptors == null) {
+            state.descriptors = new LinkedList<>();
+        }
+        if (state.listing == null) {
+            state.listing = new ArrayList<>();
+        }
+
         this.state = state;
+        this.descriptors = null;
+        this.dirty = false;
+    }
+
+    @Override
+    public synchronized List<SourceDescriptor> getSourceDescriptorsListing() {
+        if (descriptors == null) {
+            descriptors = decode(state);
+
+            // Migrate listing persisted in another form.
+            dirty = compact ? !state.descriptors.isEmpty() : !state.listing.isEmpty();
+            if (dirty) {
+                modificationCount++;
+            }
+        }
+        return descriptors;
+    }
+
+    @Override
+    public synchronized boolean setSourceDescriptorListing(List<SourceDescriptor> listing) {
+        if (listing == null) {
+            listing = new ArrayList<>();
+        }
+        if (isSameDescriptors(getSourceDescriptorsListing(), listing)) {
+            return false;
+        }
+
+        this.descriptors = listing;
+        this.dirty = true;
+        this.modificationCount++;
+        return true;
     }
 
     @Override
-    public List<SourceDescriptor> getSourceDescriptorsListing() {
-        return this.state.descriptors;
+    public synchronized ListingSnapshot getListingSnapshot() {
+        return this.state.snapshot;
     }
 
     @Override
-    public void setSourceDescriptorListing(List<SourceDescriptor> listing) {
-        this.state.descriptors = listing != null ? listing : new LinkedList<>();
+    public synchronized void setListingSnapshot(ListingSnapshot snapshot) {
+        if (!Objects.equals(this.state.snapshot, snapshot)) {
+            this.state.snapshot = snapshot;
+            this.modificationCount++;
+        }
+    }
+
+    @Override
+    public synchronized long getModificationCount() {
+        return modificationCount;
+    }
+
+    @Override
+    public long getStateModificationCount() {
+        return getModificationCount();
+    }
+
+    /**
+     * Determine if two listings hold the same descriptors, regardless of order. Listings are expected to be free of
+     * duplicates.
+     *
+     * @param current Current listing.
+     * @param listing Listing to compare to.
+     * @return {@code true} if both listings hold the same descriptors.
+     */
+    private static boolean isSameDescriptors(List<SourceDescriptor> current, List<SourceDescriptor> listing) {
+        if (current == listing) {
+            return true;
+        }
+
+        // Fingerprints reject most differences in a single pass, without allocating.
+        return current.size() == listing.size()
+                && ListingFingerprint.compute(current) == ListingFingerprint.compute(listing)
+                && new HashSet<>(current).containsAll(listing);
+    }
+
+    /**
+     * Decode the listing of a persisted state. Listing persisted by earlier versions takes precedence, since it is
+     * cleared once migrated.
+     *
+     * @param state Persisted state.
+     * @return Listing of managed descriptors.
+     */
+    private static List<SourceDescriptor> decode(State state) {
+        if (!state.descriptors.isEmpty()) {
+            return new ArrayList<>(state.descriptors);
+        }
+
+        if (!state.listing.isEmpty()) {
+            try {
+                return CompactListingCodec.decode(state.listing);
+            } catch (PyPathException ex) {
+                // Treat as if nothing is managed -- the next synchronization marks all listed folders again.
+                logger.warn("Discarding malformed listing state: " + ex.getMessage());
+            }
+        }
+        return new ArrayList<>();
     }
 }
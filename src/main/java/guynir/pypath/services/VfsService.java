@@ -6,7 +6,15 @@ import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileSystem;
 import guynir.pypath.PyPathException;
+import guynir.pypath.metrics.Counter;
+import guynir.pypath.metrics.MetricsRegistry;
 import guynir.pypath.utils.Asserts;
+import guynir.pypath.utils.PathTrie;
+import guynir.pypath.utils.PathUtils;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This service mediates between Intellij platform SDK virtual file system (VFS) and this plugin implementation. The
@@ -23,6 +31,11 @@ public class VfsService {
      */
     public static final String LISTING_FILE_NAME = "source_dirs";
 
+    /**
+     * Maximum number of resolved files kept by the resolution cache (see {@link #toVFile(String)}).
+     */
+    public static final int RESOLUTION_CACHE_CAPACITY = 8192;
+
     /**
      * Intellij virtual file system.
      */
@@ -46,6 +59,33 @@ public class VfsService {
      */
     private String baseDirPath;
 
+    /**
+     * Counts path to virtual file lookups.
+     */
+    private Counter lookups = MetricsRegistry.DISABLED.counter(MetricsRegistry.VFS_LOOKUPS);
+
+    /**
+     * Counts lookups served by the resolution cache.
+     */
+    private Counter cacheHits = MetricsRegistry.DISABLED.counter(MetricsRegistry.VFS_CACHE_HITS);
+
+    /**
+     * Counts lookups not served by the resolution cache.
+     */
+    private Counter cacheMisses = MetricsRegistry.DISABLED.counter(MetricsRegistry.VFS_CACHE_MISSES);
+
+    /**
+     * Resolved files, keyed by workspace relative path, in least recently used order. Entries are evicted when their
+     * files (or any of their ancestors) are deleted, moved or renamed (see {@link #invalidate(Collection)}).<p>
+     * <b>NOTE:</b> Guarded by itself.
+     */
+    private final Map<String, VirtualFile> resolved = new LinkedHashMap<String, VirtualFile>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VirtualFile> eldest) {
+            return size() > RESOLUTION_CACHE_CAPACITY;
+        }
+    };
+
     /**
      * Class logger.
      */
@@ -57,7 +97,7 @@ public class VfsService {
      * @param vfs     Virtual file system.
      * @param project Project component.
      */
-    private VfsService(VirtualFileSystem vfs, Project project) {
+    protected VfsService(VirtualFileSystem vfs, Project project) {
         this.vfs = vfs;
         this.project = project;
     }
@@ -86,9 +126,24 @@ public class VfsService {
         return baseDirPath;
     }
 
+    /**
+     * Sets the registry to report metrics to.
+     *
+     * @param metrics Metrics registry.
+     * @throws IllegalArgumentException If <i>metrics</i> is {@code null}.
+     */
+    public void setMetrics(MetricsRegistry metrics) throws IllegalArgumentException {
+        Asserts.notNull(metrics, "Metrics registry cannot be null.");
+        this.lookups = metrics.counter(MetricsRegistry.VFS_LOOKUPS);
+        this.cacheHits = metrics.counter(MetricsRegistry.VFS_CACHE_HITS);
+        this.cacheMisses = metrics.counter(MetricsRegistry.VFS_CACHE_MISSES);
+    }
+
     /**
      * Convert a path of a file to Intellij platform {@code VirtualFile}. The file must exist. The path is considered
-     * relative to workspace base directory.
+     * relative to workspace base directory.<p>
+     * Resolved files are cached (up to {@link #RESOLUTION_CACHE_CAPACITY} paths), so repeated lookups of the same path
+     * do not walk the VFS again. Files that are no longer valid are resolved again.
      *
      * @param path Relative path to file.
      * @return {@code VirtualFile} representing the file.
@@ -96,13 +151,123 @@ public class VfsService {
      */
     public VirtualFile toVFile(String path) throws FileNotFoundException {
         Asserts.notNull(path, "Path cannot be null.");
-        VirtualFile vf = baseDir.findFileByRelativePath(path);
+        lookups.increment();
+
+        String key = toCacheKey(path);
+        VirtualFile vf;
+        synchronized (resolved) {
+            vf = resolved.get(key);
+        }
+        if (vf != null && vf.isValid() && (key.isEmpty() || isNameOf(key, vf.getName()))) {
+            cacheHits.increment();
+            return vf;
+        }
+
+        cacheMisses.increment();
+        vf = baseDir.findFileByRelativePath(path);
         if (vf == null) {
             throw new FileNotFoundException("File not found in workspace: " + path);
         }
+        if (isCacheable(key)) {
+            synchronized (resolved) {
+                resolved.put(key, vf);
+            }
+        }
         return vf;
     }
 
+    /**
+     * Evict cached resolutions of files that were deleted, moved or renamed, along with all files residing within
+     * them.
+     *
+     * @param paths Absolute paths of deleted, moved or renamed files (prior to the change).
+     * @throws IllegalArgumentException If <i>paths</i> is {@code null}.
+     */
+    public void invalidate(Collection<String> paths) throws IllegalArgumentException {
+        Asserts.notNull(paths, "Paths cannot be null.");
+
+        PathTrie<Boolean> evicted = new PathTrie<>();
+        for (String path : paths) {
+            if (path != null && (path.startsWith(baseDirPath) || baseDirPath.startsWith(path))) {
+                if (path.length() <= baseDirPath.length()) {
+                    // Base directory itself (or one of its ancestors) changed.
+                    clearResolutionCache();
+                    return;
+                }
+                evicted.put(toCacheKey(path.substring(baseDirPath.length())), Boolean.TRUE);
+            }
+        }
+
+        if (!evicted.isEmpty()) {
+            synchronized (resolved) {
+                resolved.keySet().removeIf(key -> evicted.getNearest(key, 0) != null);
+            }
+        }
+    }
+
+    /**
+     * Evict all cached resolutions.
+     */
+    public void clearResolutionCache() {
+        synchronized (resolved) {
+            resolved.clear();
+        }
+    }
+
+    /**
+     * @param key  Key within the resolution cache.
+     * @param name Name of a file.
+     * @return {@code true} if <i>name</i> is the last segment of <i>key</i> (i.e.: the cached file was not renamed).
+     */
+    private static boolean isNameOf(String key, String name) {
+        int start = key.length() - name.length();
+        return key.endsWith(name) && (start == 0 || key.charAt(start - 1) == '/');
+    }
+
+    /**
+     * Determine if a path may be cached, i.e.: it has no empty, "." or ".." segments, so it is evicted along with
+     * the files it passes through. Names merely containing dots (e.g.: <i>lib.</i> or <i>..data</i>) are cacheable.
+     *
+     * @param key Key within the resolution cache.
+     * @return {@code true} if <i>key</i> may be cached.
+     */
+    static boolean isCacheable(String key) {
+        int length = key.length();
+        int start = 0;
+        while (start < length) {
+            int end = key.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            int segmentLength = end - start;
+            if (segmentLength == 0) {
+                return false;
+            } else if (key.charAt(start) == '.'
+                    && (segmentLength == 1 || (segmentLength == 2 && key.charAt(start + 1) == '.'))) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+    /**
+     * @param path Relative path to file.
+     * @return Key of <i>path</i> within the resolution cache, i.e.: the path without leading and trailing slashes.
+     */
+    private static String toCacheKey(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return start == 0 && end == path.length() ? path : path.substring(start, end);
+    }
+
     /**
      * Determine if the given two virtual files reference the same file.
      *
@@ -163,9 +328,9 @@ public class VfsService {
             return path.substring(baseDirPath.length());
         }
 
-        // If path is exactly our base dir (e.g.: when base dir is '/home/user/workspace/' and the path is
-        // either '/home/user/workspace/' or '/home/user/workspace' -- it's a match.
-        if (path.equals(baseDirPath) || path.equals(baseDirPath.substring(0, baseDirPath.length() - 1))) {
+        // If path is exactly our base dir without the trailing slash (e.g.: when base dir is '/home/user/workspace/'
+        // and the path is '/home/user/workspace') -- it's a match. A path with the trailing slash was matched above.
+        if (path.length() == baseDirPath.length() - 1 && baseDirPath.startsWith(path)) {
             return "";
         }
 
@@ -198,60 +363,52 @@ public class VfsService {
     public String expandPath(String localPath) throws IllegalArgumentException {
         Asserts.notNull(localPath, "Local path cannot be null.");
 
-        if (localPath.startsWith("/")) {
-            localPath = localPath.substring(1);
-        }
-
-        if (localPath.endsWith("/")) {
-            localPath = localPath.substring(0, localPath.length() - 1);
-        }
-        return baseDirPath + localPath;
+        int start = localPath.startsWith("/") ? 1 : 0;
+        int end = localPath.length() > start && localPath.endsWith("/") ? localPath.length() - 1 : localPath.length();
+        return new StringBuilder(baseDirPath.length() + end - start)
+                .append(baseDirPath)
+                .append(localPath, start, end)
+                .toString();
     }
 
+    /**
+     * Convert a workspace relative path to a VFS URL (e.g.: <i>/dir1//dir2/</i> -> <i>file:///workspace/dir1/dir2</i>).
+     * Leading, trailing and repeated slashes are ignored.
+     *
+     * @param relativePath Path relative to workspace base directory.
+     * @return URL of <i>relativePath</i>.
+     * @throws IllegalArgumentException If <i>relativePath</i> is {@code null}.
+     */
     public String toURL(String relativePath) throws IllegalArgumentException {
         Asserts.notNull(relativePath, "Relative path cannot be null.");
 
-        //
-        // Normalize path.
-        //
-        StringBuilder path = new StringBuilder(relativePath.trim());
-
-        // Remove double-slashes (e.g.: '//' -> '/').
-        int index;
-        while ((index = path.indexOf("//")) >= 0) {
-            path.deleteCharAt(index);
-        }
-
-        // Remove leading slash, if any.
-        if (path.length() > 0 && path.charAt(0) == '/') {
-            path.deleteCharAt(0);
-        }
-
-        // Remove trailing slash, if any.
-        if (path.length() > 0 && path.charAt(path.length() - 1) == '/') {
-            path.deleteCharAt(path.length() - 1);
-        }
-
-        if (path.length() > 0) {
-            path.insert(0, '/');
-        }
-
+        // Base URL (without trailing slash) followed by the path's segments (without leading, trailing or repeated
+        // slashes), built in a single pass.
         String url = baseDir.getUrl();
-        if (url.endsWith("/")) {
-            url = url.substring(0, url.length() - 1);
-        }
-
-        return url + path.toString();
+        int urlLength = url.endsWith("/") ? url.length() - 1 : url.length();
+        StringBuilder buf = new StringBuilder(urlLength + relativePath.length() + 1).append(url, 0, urlLength);
+        return PathUtils.appendSegments(buf, relativePath).toString();
     }
 
     /**
      * Initialize the service by determining the workspace base directory.
      */
     protected void init() {
-        baseDir = ProjectUtil.guessProjectDir(project);
+        setBaseDir(ProjectUtil.guessProjectDir(project));
+    }
+
+    /**
+     * Sets the workspace base directory.
+     *
+     * @param baseDir Workspace base directory.
+     * @throws IllegalStateException If <i>baseDir</i> is {@code null}.
+     */
+    protected void setBaseDir(VirtualFile baseDir) throws IllegalStateException {
         if (baseDir == null) {
             throw new IllegalStateException("Could not detecet project root directory.");
         }
+        this.baseDir = baseDir;
+        clearResolutionCache();
         baseDirPath = baseDir.getPath();
         if (!baseDirPath.endsWith("/")) {
             baseDirPath = baseDirPath + "/";
@@ -0,0 +1,183 @@
+package guynir.pypath.state;
+
+import guynir.pypath.PyPathException;
+import guynir.pypath.utils.Asserts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Encodes listings of source descriptors into a compact form suitable for persistence. Descriptors are grouped by
+ * {@link SourceType} (see {@link ListingGroup}); the paths of each group are sorted and prefix-compressed, one path per
+ * element. Each element holds the length of the prefix shared with the previous path, followed by a space and the
+ * rest of the path, e.g.:
+ * <pre>
+ * 0 services/auth/src
+ * 14 test
+ * 9 billing/src
+ * </pre>
+ * stands for <i>services/auth/src</i>, <i>services/auth/test</i> and <i>services/billing/src</i>.<p>
+ * Descriptors carrying a module or a package prefix are grouped separately, under a key of the form
+ * <i>TYPE|module|packagePrefix</i> (e.g.: <i>SOURCE_ROOT|billing|com.acme.billing</i>), where missing attributes are
+ * left empty.<p>
+ * Since groups and paths are sorted, the encoded form of a listing does not depend on the order of its descriptors,
+ * and adding or removing a descriptor changes a single element (along with the prefix of the element following it).
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class CompactListingCodec {
+
+    /**
+     * Separator of group key components.
+     */
+    private static final char KEY_SEPARATOR = '|';
+
+    /**
+     * Encode a listing. Descriptors missing either type or pathname are skipped.
+     *
+     * @param descriptors Listing to encode.
+     * @return Encoded groups, sorted by key (source type name, followed by attributes if any).
+     * @throws IllegalArgumentException If <i>descriptors</i> is {@code null}.
+     */
+    public static List<ListingGroup> encode(Collection<SourceDescriptor> descriptors) throws IllegalArgumentException {
+        Asserts.notNull(descriptors, "Descriptors cannot be null.");
+
+        Map<String, List<String>> groups = new TreeMap<>();
+        for (SourceDescriptor descriptor : descriptors) {
+            if (descriptor.type != null && descriptor.getPathname() != null) {
+                groups.computeIfAbsent(groupKey(descriptor), t -> new ArrayList<>()).add(descriptor.getPathname());
+            }
+        }
+
+        List<ListingGroup> encoded = new ArrayList<>(groups.size());
+        groups.forEach((key, paths) -> encoded.add(new ListingGroup(key, encodePaths(paths))));
+        return encoded;
+    }
+
+    /**
+     * Decode a listing.
+     *
+     * @param encoded Encoded groups (as produced by {@link #encode(Collection)}).
+     * @return Decoded listing, grouped by source type and attributes, and sorted by path.
+     * @throws IllegalArgumentException If <i>encoded</i> is {@code null}.
+     * @throws PyPathException          If <i>encoded</i> is malformed.
+     */
+    public static List<SourceDescriptor> decode(List<ListingGroup> encoded)
+            throws IllegalArgumentException, PyPathException {
+        Asserts.notNull(encoded, "Encoded listing cannot be null.");
+
+        List<SourceDescriptor> descriptors = new ArrayList<>();
+        for (ListingGroup group : encoded) {
+            if (group.key == null) {
+                throw new PyPathException("Listing group is missing a key.");
+            }
+            String[] key = group.key.split(Pattern.quote(String.valueOf(KEY_SEPARATOR)), -1);
+            if (key.length != 1 && key.length != 3) {
+                throw new PyPathException("Malformed listing group: " + group.key);
+            }
+
+            SourceType type;
+            try {
+                type = SourceType.valueOf(key[0]);
+            } catch (IllegalArgumentException ex) {
+                throw new PyPathException("Unknown source type: " + key[0]);
+            }
+            String module = key.length == 3 && !key[1].isEmpty() ? key[1] : null;
+            String packagePrefix = key.length == 3 && !key[2].isEmpty() ? key[2] : null;
+
+            for (String path : decodePaths(group.paths)) {
+                descriptors.add(new SourceDescriptor(type, path, module, packagePrefix));
+            }
+        }
+        return descriptors;
+    }
+
+    /**
+     * @param descriptor Descriptor to encode.
+     * @return Key of the group <i>descriptor</i> is encoded in.
+     */
+    private static String groupKey(SourceDescriptor descriptor) {
+        if (descriptor.module == null && descriptor.packagePrefix == null) {
+            return descriptor.type.name();
+        }
+        return descriptor.type.name()
+                + KEY_SEPARATOR + (descriptor.module != null ? descriptor.module : "")
+                + KEY_SEPARATOR + (descriptor.packagePrefix != null ? descriptor.packagePrefix : "");
+    }
+
+    /**
+     * Sort and prefix-compress a list of paths.
+     *
+     * @param paths Paths to encode. Sorted in place.
+     * @return Encoded paths.
+     */
+    private static List<String> encodePaths(List<String> paths) {
+        Collections.sort(paths);
+
+        List<String> encoded = new ArrayList<>(paths.size());
+        String previous = null;
+        for (String path : paths) {
+            if (path.equals(previous)) {
+                continue;
+            } else if (previous == null) {
+                previous = "";
+            }
+
+            int shared = 0;
+            int limit = Math.min(previous.length(), path.length());
+            while (shared < limit && previous.charAt(shared) == path.charAt(shared)) {
+                shared++;
+            }
+
+            encoded.add(shared + " " + path.substring(shared));
+            previous = path;
+        }
+        return encoded;
+    }
+
+    /**
+     * Decode prefix-compressed paths. An entry consisting of a shared prefix length only (e.g.: the root path, encoded
+     * as "0 ", whose trailing space was trimmed) stands for an empty suffix.
+     *
+     * @param encoded Encoded paths (may be {@code null}).
+     * @return Decoded paths.
+     * @throws PyPathException If <i>encoded</i> is malformed.
+     */
+    private static List<String> decodePaths(List<String> encoded) throws PyPathException {
+        List<String> paths = new ArrayList<>();
+        if (encoded == null) {
+            return paths;
+        }
+
+        String previous = "";
+        for (String entry : encoded) {
+            if (entry == null) {
+                throw new PyPathException("Malformed listing entry: " + entry);
+            }
+            int separator = entry.indexOf(' ');
+
+            int shared;
+            try {
+                shared = Integer.parseInt(separator < 0 ? entry : entry.substring(0, separator));
+            } catch (NumberFormatException ex) {
+                throw new PyPathException("Malformed listing entry: " + entry);
+            }
+            if (shared < 0 || shared > previous.length()) {
+                throw new PyPathException("Malformed listing entry: " + entry);
+            }
+
+            String path = separator < 0
+                    ? previous.substring(0, shared)
+                    : previous.substring(0, shared) + entry.substring(separator + 1);
+            paths.add(path);
+            previous = path;
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,122 @@
+package guynir.pypath.state;
+
+import guynir.pypath.utils.Asserts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Describe the difference between two source descriptor listings: descriptors that were added, removed or left
+ * unchanged. The computation is based on hash sets, so it costs a linear time in the size of both listings.
+ * Duplicate descriptors are reported once; the order of descriptors within each group follows the order of the
+ * listing they were taken from.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/22
+ */
+public class ListingDiff {
+
+    /**
+     * Descriptors found in the expected listing only.
+     */
+    private final List<SourceDescriptor> added;
+
+    /**
+     * Descriptors found in the actual listing only.
+     */
+    private final List<SourceDescriptor> removed;
+
+    /**
+     * Descriptors found in both listings.
+     */
+    private final List<SourceDescriptor> unchanged;
+
+    /**
+     * Class constructor.
+     *
+     * @param added     Descriptors found in the expected listing only.
+     * @param removed   Descriptors found in the actual listing only.
+     * @param unchanged Descriptors found in both listings.
+     */
+    private ListingDiff(List<SourceDescriptor> added, List<SourceDescriptor> removed, List<SourceDescriptor> unchanged) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.unchanged = Collections.unmodifiableList(unchanged);
+    }
+
+    /**
+     * Compute the difference between an <i>expected</i> listing and an <i>actual</i> listing.
+     *
+     * @param expected Listing of descriptors expected to be managed.
+     * @param actual   Listing of descriptors currently managed.
+     * @return Difference between the two listings.
+     * @throws IllegalArgumentException If either arguments are {@code null}.
+     */
+    public static ListingDiff compute(Collection<SourceDescriptor> expected,
+                                      Collection<SourceDescriptor> actual) throws IllegalArgumentException {
+        Asserts.notNull(expected, "Expected listing cannot be null.");
+        Asserts.notNull(actual, "Actual listing cannot be null.");
+
+        Set<SourceDescriptor> expectedSet = new LinkedHashSet<>(expected);
+        Set<SourceDescriptor> actualSet = actual instanceof Set ? (Set<SourceDescriptor>) actual : new HashSet<>(actual);
+
+        List<SourceDescriptor> added = new ArrayList<>();
+        List<SourceDescriptor> unchanged = new ArrayList<>();
+        for (SourceDescriptor descriptor : expectedSet) {
+            if (actualSet.contains(descriptor)) {
+                unchanged.add(descriptor);
+            } else {
+                added.add(descriptor);
+            }
+        }
+
+        List<SourceDescriptor> removed = new ArrayList<>();
+        Set<SourceDescriptor> visited = new HashSet<>();
+        for (SourceDescriptor descriptor : actual) {
+            if (!expectedSet.contains(descriptor) && visited.add(descriptor)) {
+                removed.add(descriptor);
+            }
+        }
+
+        return new ListingDiff(added, removed, unchanged);
+    }
+
+    /**
+     * @return Descriptors found in the expected listing only.
+     */
+    public List<SourceDescriptor> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return Descriptors found in the actual listing only.
+     */
+    public List<SourceDescriptor> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return Descriptors found in both listings.
+     */
+    public List<SourceDescriptor> getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * @return {@code true} if both listings contain the same descriptors.
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s { added: %d, removed: %d, unchanged: %d }",
+                ListingDiff.class.getSimpleName(), added.size(), removed.size(), unchanged.size());
+    }
+}
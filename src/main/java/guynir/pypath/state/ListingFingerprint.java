@@ -0,0 +1,129 @@
+package guynir.pypath.state;
+
+import guynir.pypath.utils.Asserts;
+
+import java.util.Collection;
+
+/**
+ * Computes a 64-bit fingerprint of a listing of source descriptors. The fingerprint does not depend on the order of
+ * the descriptors, so two listings referencing the same descriptors (e.g.: before and after reordering lines, adding
+ * comments or whitespace to the listing file) have equal fingerprints.<p>
+ * Listings are expected to be free of duplicates, as produced by the listing loader.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/24
+ */
+public class ListingFingerprint {
+
+    /**
+     * FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Fingerprint of an empty listing.
+     */
+    public static final long EMPTY = 0L;
+
+    /**
+     * Compute fingerprint of a listing.
+     *
+     * @param descriptors Listing of descriptors.
+     * @return Listing fingerprint.
+     * @throws IllegalArgumentException If <i>descriptors</i> is {@code null}.
+     */
+    public static long compute(Collection<SourceDescriptor> descriptors) throws IllegalArgumentException {
+        Asserts.notNull(descriptors, "Descriptors cannot be null.");
+
+        // Sum of well-mixed element hashes is independent of order.
+        long fingerprint = EMPTY;
+        for (SourceDescriptor descriptor : descriptors) {
+            fingerprint += mix(hash(descriptor));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Compute a hash of raw listing file content. Unlike {@link #compute(Collection)}, any change to the content (e.g.:
+     * reordering lines or editing comments) changes the hash.
+     *
+     * @param content Listing file content.
+     * @return Content hash.
+     * @throws IllegalArgumentException If <i>content</i> is {@code null}.
+     */
+    public static long hashContent(byte[] content) throws IllegalArgumentException {
+        Asserts.notNull(content, "Content cannot be null.");
+
+        long h = FNV_OFFSET_BASIS;
+        for (byte b : content) {
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return mix(h ^ content.length);
+    }
+
+    /**
+     * Combine the content hash of a listing file into the hash of several listing files (see
+     * {@link #hashContent(byte[])}). Unlike {@link #compute(Collection)}, the outcome depends on the order in which
+     * files are combined.
+     *
+     * @param hash        Hash of the files combined so far.
+     * @param path        Path of the file to combine.
+     * @param contentHash Content hash of the file to combine.
+     * @return Combined hash.
+     */
+    public static long combineContent(long hash, String path, long contentHash) {
+        return mix(hash(hash * FNV_PRIME, path) ^ contentHash);
+    }
+
+    /**
+     * Compute FNV-1a hash of a single descriptor.
+     *
+     * @param descriptor Descriptor to hash.
+     * @return Descriptor hash.
+     */
+    private static long hash(SourceDescriptor descriptor) {
+        long h = FNV_OFFSET_BASIS;
+        h = (h ^ (descriptor.type != null ? descriptor.type.ordinal() + 1 : 0)) * FNV_PRIME;
+        h = hash(h, descriptor.getPathname());
+
+        // Attributes are rarely set -- leave the hash of descriptors without attributes as is.
+        if (descriptor.module != null || descriptor.packagePrefix != null) {
+            h = hash((h ^ '\n') * FNV_PRIME, descriptor.module);
+            h = hash((h ^ '\n') * FNV_PRIME, descriptor.packagePrefix);
+        }
+        return h;
+    }
+
+    /**
+     * Continue FNV-1a hash with the characters of a string.
+     *
+     * @param h   Hash computed so far.
+     * @param str String to hash (may be {@code null}).
+     * @return Updated hash.
+     */
+    private static long hash(long h, String str) {
+        if (str != null) {
+            for (int i = 0; i < str.length(); i++) {
+                h = (h ^ str.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Spread the bits of a hash (finalizer of SplitMix64), so sums of similar hashes do not collide.
+     *
+     * @param h Hash to mix.
+     * @return Mixed hash.
+     */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,77 @@
+package guynir.pypath.state;
+
+import com.intellij.util.xmlb.annotations.Attribute;
+import com.intellij.util.xmlb.annotations.Tag;
+import com.intellij.util.xmlb.annotations.XCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A group of managed descriptors sharing the same type and attributes, in compact form (see
+ * {@link CompactListingCodec}). Persisted as part of the plugin state, one element per path, e.g.:
+ * <pre>
+ * &lt;group key="SOURCE_ROOT"&gt;
+ *   &lt;path&gt;0 services/auth/src&lt;/path&gt;
+ *   &lt;path&gt;14 test&lt;/path&gt;
+ * &lt;/group&gt;
+ * </pre>
+ * so adding or removing a path changes a single line of the persisted file, hence the public fields and default
+ * constructor.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+@Tag("group")
+public class ListingGroup {
+
+    /**
+     * Key of the group: source type name, followed by attributes if any (e.g.:
+     * <i>SOURCE_ROOT|billing|com.acme.billing</i>).
+     */
+    @Attribute("key")
+    public String key;
+
+    /**
+     * Sorted, prefix-compressed paths of the group.
+     */
+    @XCollection(elementName = "path", valueAttributeName = "")
+    public List<String> paths = new ArrayList<>();
+
+    /**
+     * Class constructor.
+     */
+    public ListingGroup() {
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param key   Key of the group.
+     * @param paths Sorted, prefix-compressed paths of the group.
+     */
+    public ListingGroup(String key, List<String> paths) {
+        this.key = key;
+        this.paths = paths;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ListingGroup that = (ListingGroup) o;
+        return Objects.equals(key, that.key) &&
+                Objects.equals(paths, that.paths);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, paths);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s { key: %s, paths: %s }", ListingGroup.class.getSimpleName(), key, paths);
+    }
+}
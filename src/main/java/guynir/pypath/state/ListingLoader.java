@@ -0,0 +1,454 @@
+package guynir.pypath.state;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
+import guynir.pypath.PyPathException;
+import guynir.pypath.services.FileNotFoundException;
+import guynir.pypath.services.VfsService;
+import guynir.pypath.utils.Asserts;
+import guynir.pypath.utils.GlobPattern;
+import guynir.pypath.utils.ObjectUtils;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the listing of source descriptors from the listing files of the workspace: the listing file at the workspace
+ * root, followed by the nested listing files of sub-directories.<p>
+ * Loading does not modify the loader: the outcome (see {@link ParsedListing}) is reused by subsequent loads only once
+ * it is {@link #setParsedListing(ParsedListing) recorded}, so a load that is superseded (e.g.: cancelled by a newer
+ * one) leaves no trace.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ListingLoader {
+
+    /**
+     * Service for accessing Intellij platform SDK Virtual File System.
+     */
+    private final VfsService vfsService;
+
+    /**
+     * Expands glob patterns found in the listing files.
+     */
+    private final PatternResolver patternResolver;
+
+    /**
+     * Names of nested listing files, with a leading slash, in order of precedence.
+     */
+    private final List<String> fileNames;
+
+    /**
+     * Most recently recorded outcome, reused for as long as the listing files are not modified.
+     */
+    private volatile ParsedListing parsedListing = ParsedListing.EMPTY;
+
+    /**
+     * Class logger.
+     */
+    private static final Logger logger = Logger.getInstance(ListingLoader.class);
+
+    /**
+     * Class constructor.
+     *
+     * @param vfsService      Service for accessing Intellij platform SDK Virtual File System.
+     * @param patternResolver Expands glob patterns found in the listing files.
+     * @param fileNames       Names of nested listing files, with a leading slash, in order of precedence.
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public ListingLoader(VfsService vfsService, PatternResolver patternResolver, List<String> fileNames)
+            throws IllegalArgumentException {
+        Asserts.notNull(vfsService, "VFS service cannot be null.");
+        Asserts.notNull(patternResolver, "Pattern resolver cannot be null.");
+        Asserts.notNull(fileNames, "File names cannot be null.");
+
+        this.vfsService = vfsService;
+        this.patternResolver = patternResolver;
+        this.fileNames = new ArrayList<>(fileNames);
+    }
+
+    /**
+     * Loads and parse the listing files. The parser will skip empty lines (lines that are actually empty or contains
+     * spaces/tabs) and comment lines (lines starting with "#" or "//").<p>
+     * Paths are adjusted by removing leading slash, if exists (e.g.: <i>/src_dir</i> will become <i>src_dir</i>).<p>
+     * Lines may contain glob patterns (e.g.: <i>services/&#42;/src</i> or <i>libs/&#42;&#42;/src</i>), which are
+     * expanded to all matching directories. A line starting with "!" excludes the path (or all paths matching the
+     * pattern) from the listing, regardless of its position in the file. Exclude patterns (see
+     * {@link SourceType#EXCLUDE_PATTERN}) are name patterns applied as-is, so they are never expanded.<p>
+     * A file whose name ends with <i>.yaml</i> or <i>.yml</i> is parsed as YAML (see {@link YamlListingParser}).<p>
+     * Nested listing files have paths relative to their own directory, and they are merged after the listing file and
+     * after the listing files of their ancestor directories, so a nested file may exclude or re-type paths listed by
+     * its ancestors within its own directory.<p>
+     * The recorded outcome is returned as-is if the modification stamps of the listing files are unchanged and no
+     * directory affecting a listed pattern changed, so repeated loads of unmodified files do not read them again.
+     * Otherwise, only the modified files are read and parsed again.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param listingFile Listing file at the workspace root.
+     * @param directories Workspace relative paths of directories holding nested listing files, parents first.
+     * @return Outcome of the load.
+     * @throws PyPathException If a file could not be read or there was an error parsing it.
+     */
+    public ParsedListing load(String listingFile, Collection<String> directories) throws PyPathException {
+        Asserts.notNull(listingFile, "Listing file cannot be null.");
+        Asserts.notNull(directories, "Directories cannot be null.");
+
+        Map<String, VirtualFile> sources = findListingFiles(listingFile, directories);
+        if (sources.isEmpty()) {
+            // If no file exists, the listing is empty.
+            return ParsedListing.EMPTY;
+        }
+
+        // Reuse previous outcome, if nothing changed since.
+        Map<String, Long> stamps = new LinkedHashMap<>();
+        sources.values().forEach(source -> stamps.put(source.getPath(), source.getModificationStamp()));
+        long patternsModificationCount = patternResolver.getModificationCount();
+        ParsedListing previous = this.parsedListing;
+        if (previous.isUpToDate(stamps, patternsModificationCount)) {
+            return previous;
+        }
+
+        // Parse modified files only, and merge all files into a single listing.
+        Map<String, ParsedFile> files = new HashMap<>();
+        List<ListingModel> models = new ArrayList<>(sources.size());
+        int filesParsed = 0;
+        long contentHash = ListingFingerprint.EMPTY;
+        long timestamp = 0;
+        long length = 0;
+        for (Map.Entry<String, VirtualFile> entry : sources.entrySet()) {
+            String directory = entry.getKey();
+            VirtualFile source = entry.getValue();
+            long stamp = stamps.get(source.getPath());
+            ParsedFile file = previous.files.get(source.getPath());
+            if (file == null || file.stamp != stamp) {
+                file = parseListingFile(source, stamp, directory);
+                filesParsed++;
+            }
+
+            files.put(source.getPath(), file);
+            models.add(file.model);
+            contentHash = directory.isEmpty()
+                    ? file.contentHash
+                    : ListingFingerprint.combineContent(contentHash, directory, file.contentHash);
+            timestamp = Math.max(timestamp, source.getTimeStamp());
+            length += source.getLength();
+        }
+
+        ListingModel listing = ListingModel.merge(models);
+        Set<String> patterns = new HashSet<>();
+        List<SourceDescriptor> descriptors = Collections.unmodifiableList(expandListing(listing, patterns));
+
+        // A listing depending on directory contents (via patterns) cannot be vouched for by a snapshot.
+        List<String> nestedDirectories = sources.keySet().stream()
+                .filter(directory -> !directory.isEmpty())
+                .collect(Collectors.toList());
+        ListingSnapshot snapshot = listing.getEntries().stream().anyMatch(ListingLoader::isExpandable)
+                ? null
+                : new ListingSnapshot(contentHash, timestamp, length, ListingFingerprint.compute(descriptors),
+                nestedDirectories);
+
+        return new ParsedListing(stamps, patternsModificationCount, files, descriptors, snapshot, patterns,
+                nestedDirectories, filesParsed);
+    }
+
+    /**
+     * @return Most recently recorded outcome ({@link ParsedListing#EMPTY} if none).
+     */
+    public ParsedListing getParsedListing() {
+        return parsedListing;
+    }
+
+    /**
+     * Record the outcome of a load, to be reused by subsequent loads for as long as the listing files are not
+     * modified.
+     *
+     * @param parsedListing Outcome of a load.
+     * @throws IllegalArgumentException If <i>parsedListing</i> is {@code null}.
+     */
+    public void setParsedListing(ParsedListing parsedListing) throws IllegalArgumentException {
+        Asserts.notNull(parsedListing, "Parsed listing cannot be null.");
+        this.parsedListing = parsedListing;
+    }
+
+    /**
+     * Lookup all listing files in effect: the listing file at the workspace root, followed by the nested listing files
+     * of given directories. In a directory holding more than one listing file, the first of the file names (in order
+     * of precedence) takes effect. Only the given directories are looked up; the workspace is not searched.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param listingFile Listing file at the workspace root.
+     * @param directories Workspace relative paths of directories holding nested listing files, parents first.
+     * @return Existing listing files, keyed by workspace relative path of their directory (empty string for the
+     * workspace root).
+     */
+    public Map<String, VirtualFile> findListingFiles(String listingFile, Collection<String> directories) {
+        Map<String, VirtualFile> sources = new LinkedHashMap<>();
+        try {
+            sources.put("", vfsService.toVFile(ObjectUtils.normalizePath(listingFile)));
+        } catch (FileNotFoundException ex) {
+            // No listing file at the workspace root.
+        }
+
+        for (String directory : directories) {
+            for (String fileName : fileNames) {
+                VirtualFile source = findFile(directory + fileName);
+                if (source != null) {
+                    sources.put(directory, source);
+                    break;
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * @param path Workspace relative path of a file.
+     * @return The file, or {@code null} if it does not exist.
+     */
+    private VirtualFile findFile(String path) {
+        try {
+            VirtualFile file = vfsService.toVFile(path);
+            return file.isDirectory() ? null : file;
+        } catch (FileNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Read and parse a listing file. The listing of a nested listing file is relocated to its directory (see
+     * {@link ListingModel#rebase(String, Collection)}); entries escaping the directory are dropped with a warning.
+     *
+     * @param source    Listing file.
+     * @param stamp     Modification stamp of the listing file.
+     * @param directory Workspace relative path of the directory holding the listing file (empty string for the
+     *                  workspace root).
+     * @return Parsed listing file.
+     * @throws PyPathException If the file could not be read or parsed.
+     */
+    private static ParsedFile parseListingFile(VirtualFile source, long stamp, String directory)
+            throws PyPathException {
+        String name = directory.isEmpty() ? source.getName() : directory + "/" + source.getName();
+
+        byte[] content;
+        try {
+            content = source.contentsToByteArray();
+        } catch (IOException ex) {
+            throw new PyPathException("Failed to read source dirs file: " + source.getCanonicalPath());
+        }
+
+        ListingModel model;
+        try {
+            model = name.endsWith(".yaml") || name.endsWith(".yml")
+                    ? new YamlListingParser().parse(content)
+                    : new ListingModel(new ListingParser().parse(content));
+        } catch (PyPathException ex) {
+            throw new PyPathException(name + ": " + ex.getMessage(), ex);
+        }
+
+        if (!directory.isEmpty()) {
+            List<String> rejected = new ArrayList<>();
+            model = model.rebase(directory, rejected);
+            if (!rejected.isEmpty()) {
+                logger.warn(name + ": ignoring entries outside of " + directory + ": " + rejected);
+            }
+        }
+
+        return new ParsedFile(stamp, model, ListingFingerprint.hashContent(content));
+    }
+
+    /**
+     * Resolve listing entries to the descriptors they reference: patterns are expanded and negated entries (starting
+     * with "!") are removed from the result. A path listed more than once takes the type (and attributes) of its last
+     * entry. Paths expanded from a pattern take the attributes of the pattern's entry. Exclude patterns are kept as
+     * listed, following all paths.
+     *
+     * @param listing  Parsed listing.
+     * @param patterns Collection to add the glob patterns the listing depends on to.
+     * @return Descriptors of workspace relative paths and exclude patterns, in order of appearance and without
+     * duplicates.
+     */
+    protected List<SourceDescriptor> expandListing(ListingModel listing, Collection<String> patterns) {
+        Map<String, SourceDescriptor> paths = new LinkedHashMap<>();
+        Set<String> excludePatterns = new LinkedHashSet<>();
+        List<String> negated = new ArrayList<>();
+
+        for (String entry : listing.getEntries()) {
+            if (entry.startsWith("!")) {
+                negated.add(entry.substring(1));
+                continue;
+            }
+
+            SourceType type = ListingParser.typeOf(entry);
+            String path = ListingParser.pathOf(entry);
+            String module = listing.getModule(entry);
+            String packagePrefix = listing.getPackagePrefix(entry);
+            if (type == SourceType.EXCLUDE_PATTERN) {
+                excludePatterns.add(path);
+            } else if (GlobPattern.isPattern(path)) {
+                patterns.add(path);
+                patternResolver.expand(path).forEach(expanded ->
+                        paths.put(expanded, new SourceDescriptor(type, expanded, module, packagePrefix)));
+            } else {
+                paths.put(path, new SourceDescriptor(type, path, module, packagePrefix));
+            }
+        }
+
+        for (String entry : negated) {
+            if (GlobPattern.isPattern(entry)) {
+                GlobPattern pattern = patternResolver.compile(entry);
+                patterns.add(entry);
+                paths.keySet().removeIf(pattern::matches);
+            } else {
+                paths.remove(entry);
+                excludePatterns.remove(entry);
+            }
+        }
+
+        List<SourceDescriptor> descriptors = new ArrayList<>(paths.values());
+        excludePatterns.forEach(pattern -> descriptors.add(new SourceDescriptor(SourceType.EXCLUDE_PATTERN, pattern)));
+        return descriptors;
+    }
+
+    /**
+     * Determine if a listing entry is expanded against directory contents, i.e.: it holds a glob pattern and is not an
+     * exclude pattern.
+     *
+     * @param entry Normalized listing entry (see {@link ListingParser}).
+     * @return {@code true} if <i>entry</i> is expanded.
+     */
+    private static boolean isExpandable(String entry) {
+        if (entry.startsWith("!")) {
+            return GlobPattern.isPattern(entry.substring(1));
+        }
+        return ListingParser.typeOf(entry) != SourceType.EXCLUDE_PATTERN
+                && GlobPattern.isPattern(ListingParser.pathOf(entry));
+    }
+
+    /**
+     * Descriptors parsed from the listing files, along with the state of the files they were parsed from.
+     */
+    public static class ParsedListing {
+
+        /**
+         * Outcome of loading a workspace holding no listing file.
+         */
+        public static final ParsedListing EMPTY = new ParsedListing(Collections.emptyMap(), 0, Collections.emptyMap(),
+                Collections.emptyList(), null, Collections.emptySet(), Collections.emptyList(), 0);
+
+        /**
+         * Modification stamps of the listing files, keyed by absolute path.
+         */
+        private final Map<String, Long> stamps;
+
+        /**
+         * Modification count of pattern expansions (see {@link PatternResolver#getModificationCount()}).
+         */
+        private final long patternsModificationCount;
+
+        /**
+         * Parsed listing files, keyed by absolute path.
+         */
+        private final Map<String, ParsedFile> files;
+
+        /**
+         * Parsed descriptors.
+         */
+        public final List<SourceDescriptor> descriptors;
+
+        /**
+         * Snapshot to persist once the project model reflects the descriptors, or {@code null} if the listing cannot
+         * be vouched for by a snapshot.
+         */
+        public final ListingSnapshot snapshot;
+
+        /**
+         * Glob patterns the descriptors depend on.
+         */
+        public final Set<String> patterns;
+
+        /**
+         * Workspace relative paths of directories holding the nested listing files loaded.
+         */
+        public final List<String> nestedDirectories;
+
+        /**
+         * Number of listing files read and parsed by the load.
+         */
+        public final int filesParsed;
+
+        /**
+         * Class constructor.
+         *
+         * @param stamps                    Modification stamps of the listing files, keyed by absolute path.
+         * @param patternsModificationCount Modification count of pattern expansions.
+         * @param files                     Parsed listing files, keyed by absolute path.
+         * @param descriptors               Parsed descriptors.
+         * @param snapshot                  Snapshot to persist once the project model reflects the descriptors.
+         * @param patterns                  Glob patterns the descriptors depend on.
+         * @param nestedDirectories         Directories holding the nested listing files loaded.
+         * @param filesParsed               Number of listing files read and parsed by the load.
+         */
+        private ParsedListing(Map<String, Long> stamps,
+                              long patternsModificationCount,
+                              Map<String, ParsedFile> files,
+                              List<SourceDescriptor> descriptors,
+                              ListingSnapshot snapshot,
+                              Set<String> patterns,
+                              List<String> nestedDirectories,
+                              int filesParsed) {
+            this.stamps = stamps;
+            this.patternsModificationCount = patternsModificationCount;
+            this.files = files;
+            this.descriptors = descriptors;
+            this.snapshot = snapshot;
+            this.patterns = Collections.unmodifiableSet(patterns);
+            this.nestedDirectories = Collections.unmodifiableList(nestedDirectories);
+            this.filesParsed = filesParsed;
+        }
+
+        /**
+         * @param stamps                    Current modification stamps of the listing files, keyed by absolute path.
+         * @param patternsModificationCount Current modification count of pattern expansions.
+         * @return {@code true} if the descriptors still reflect the listing files.
+         */
+        private boolean isUpToDate(Map<String, Long> stamps, long patternsModificationCount) {
+            return this.stamps.equals(stamps) && this.patternsModificationCount == patternsModificationCount;
+        }
+    }
+
+    /**
+     * Content of a listing file, parsed but not expanded yet.
+     */
+    private static class ParsedFile {
+
+        /**
+         * Modification stamp of the listing file.
+         */
+        final long stamp;
+
+        /**
+         * Parsed listing, relative to the workspace root.
+         */
+        final ListingModel model;
+
+        /**
+         * Hash of the listing file's content (see {@link ListingFingerprint#hashContent(byte[])}).
+         */
+        final long contentHash;
+
+        /**
+         * Class constructor.
+         *
+         * @param stamp       Modification stamp of the listing file.
+         * @param model       Parsed listing, relative to the workspace root.
+         * @param contentHash Hash of the listing file's content.
+         */
+        ParsedFile(long stamp, ListingModel model, long contentHash) {
+            this.stamp = stamp;
+            this.model = model;
+            this.contentHash = contentHash;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package guynir.pypath.state;
+
+import guynir.pypath.utils.Asserts;
+import guynir.pypath.utils.PathUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of parsing a listing file: its entries, in the textual form produced by {@link ListingParser}, along with
+ * optional attributes of entries (module and package prefix). Attributes are keyed by entry, so an entry listed more
+ * than once takes the attributes of its last occurrence.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ListingModel {
+
+    /**
+     * Normalized entries, in order of appearance.
+     */
+    private final List<String> entries;
+
+    /**
+     * Names of modules to register entries in, keyed by entry.
+     */
+    private final Map<String, String> modules;
+
+    /**
+     * Package prefixes of entries, keyed by entry.
+     */
+    private final Map<String, String> packagePrefixes;
+
+    /**
+     * Class constructor.
+     *
+     * @param entries Normalized entries, in order of appearance.
+     * @throws IllegalArgumentException If <i>entries</i> is {@code null}.
+     */
+    public ListingModel(List<String> entries) throws IllegalArgumentException {
+        this(entries, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param entries         Normalized entries, in order of appearance.
+     * @param modules         Names of modules to register entries in, keyed by entry.
+     * @param packagePrefixes Package prefixes of entries, keyed by entry.
+     * @throws IllegalArgumentException If any argument is {@code null}.
+     */
+    public ListingModel(List<String> entries,
+                        Map<String, String> modules,
+                        Map<String, String> packagePrefixes) throws IllegalArgumentException {
+        Asserts.notNull(entries, "Entries cannot be null.");
+        Asserts.notNull(modules, "Modules cannot be null.");
+        Asserts.notNull(packagePrefixes, "Package prefixes cannot be null.");
+
+        this.entries = Collections.unmodifiableList(entries);
+        this.modules = Collections.unmodifiableMap(modules);
+        this.packagePrefixes = Collections.unmodifiableMap(packagePrefixes);
+    }
+
+    /**
+     * Merge several listings into a single one, as if their entries were listed in a single file, one listing after
+     * the other. An entry listed by more than one listing takes the attributes of its last occurrence.
+     *
+     * @param listings Listings to merge, in order.
+     * @return Merged listing.
+     * @throws IllegalArgumentException If <i>listings</i> is {@code null}.
+     */
+    public static ListingModel merge(List<ListingModel> listings) throws IllegalArgumentException {
+        Asserts.notNull(listings, "Listings cannot be null.");
+        if (listings.size() == 1) {
+            return listings.get(0);
+        }
+
+        List<String> entries = new ArrayList<>();
+        Map<String, String> modules = new HashMap<>();
+        Map<String, String> packagePrefixes = new HashMap<>();
+        for (ListingModel listing : listings) {
+            entries.addAll(listing.entries);
+            for (String entry : listing.entries) {
+                putOrRemove(modules, entry, listing.getModule(entry));
+                putOrRemove(packagePrefixes, entry, listing.getPackagePrefix(entry));
+            }
+        }
+        return new ListingModel(entries, modules, packagePrefixes);
+    }
+
+    /**
+     * Relocate this listing to a sub-directory of the workspace (see {@link #rebase(String, Collection)}), dropping
+     * entries that reference paths outside of the directory.
+     *
+     * @param directory Workspace relative path of a directory.
+     * @return New listing, whose entries are relative to the workspace root.
+     * @throws IllegalArgumentException If <i>directory</i> is {@code null}.
+     */
+    public ListingModel rebase(String directory) throws IllegalArgumentException {
+        return rebase(directory, new ArrayList<>());
+    }
+
+    /**
+     * Relocate this listing to a sub-directory of the workspace, i.e.: resolve the paths of all entries relative to
+     * <i>directory</i> rather than the workspace root. Exclude patterns (see {@link SourceType#EXCLUDE_PATTERN}) are
+     * name patterns rather than paths, so they are kept as-is.<p>
+     * A listing may only reference paths within its own directory: entries escaping it via ".." segments (e.g.:
+     * <i>../shared</i> or <i>!../legacy</i>) are dropped, so a nested listing can neither add nor remove (or re-type)
+     * entries owned by another listing.
+     *
+     * @param directory Workspace relative path of a directory.
+     * @param rejected  Collection to add entries dropped for escaping <i>directory</i> to.
+     * @return New listing, whose entries are relative to the workspace root.
+     * @throws IllegalArgumentException If either arguments are {@code null}.
+     */
+    public ListingModel rebase(String directory, Collection<String> rejected) throws IllegalArgumentException {
+        Asserts.notNull(directory, "Directory cannot be null.");
+        Asserts.notNull(rejected, "Rejected entries collection cannot be null.");
+
+        ListingParser parser = new ListingParser();
+        List<String> rebasedEntries = new ArrayList<>(entries.size());
+        Map<String, String> rebasedModules = new HashMap<>();
+        Map<String, String> rebasedPackagePrefixes = new HashMap<>();
+        for (String entry : entries) {
+            String rebased;
+            if (entry.startsWith("!")) {
+                String path = rebase(directory, entry.substring(1));
+                rebased = path != null ? parser.toEntry(SourceType.SOURCE_ROOT, true, path) : null;
+            } else {
+                SourceType type = ListingParser.typeOf(entry);
+                if (type == SourceType.EXCLUDE_PATTERN) {
+                    rebased = entry;
+                } else {
+                    String path = rebase(directory, ListingParser.pathOf(entry));
+                    rebased = path != null ? parser.toEntry(type, false, path) : null;
+                }
+            }
+
+            if (rebased == null) {
+                rejected.add(entry);
+                continue;
+            }
+
+            rebasedEntries.add(rebased);
+            putOrRemove(rebasedModules, rebased, modules.get(entry));
+            putOrRemove(rebasedPackagePrefixes, rebased, packagePrefixes.get(entry));
+        }
+        return new ListingModel(rebasedEntries, rebasedModules, rebasedPackagePrefixes);
+    }
+
+    /**
+     * @param directory Workspace relative path of a directory.
+     * @param path      Path relative to <i>directory</i> (root directory represented by "/").
+     * @return Path relative to workspace root, or {@code null} if <i>path</i> does not reside within <i>directory</i>.
+     */
+    private static String rebase(String directory, String path) {
+        // Normalize before resolving, so ".." segments cannot climb out of the directory.
+        String normalized = PathUtils.normalize(path);
+        if (normalized.equals("/")) {
+            return directory;
+        } else if (normalized.equals("..") || normalized.startsWith("../")) {
+            return null;
+        }
+
+        String rebased = directory + "/" + normalized;
+        return PathUtils.isWithin(rebased, directory) ? rebased : null;
+    }
+
+    /**
+     * Associate a value with a key, or remove the key's association if the value is {@code null}.
+     *
+     * @param map   Map to update.
+     * @param key   Key.
+     * @param value Value, or {@code null}.
+     */
+    private static void putOrRemove(Map<String, String> map, String key, String value) {
+        if (value != null) {
+            map.put(key, value);
+        } else {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * @return Normalized entries, in order of appearance.
+     */
+    public List<String> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param entry An entry of this listing.
+     * @return Name of module to register <i>entry</i> in, or {@code null} if not specified.
+     */
+    public String getModule(String entry) {
+        return modules.get(entry);
+    }
+
+    /**
+     * @param entry An entry of this listing.
+     * @return Package prefix of <i>entry</i>, or {@code null} if not specified.
+     */
+    public String getPackagePrefix(String entry) {
+        return packagePrefixes.get(entry);
+    }
+}
@@ -0,0 +1,421 @@
+package guynir.pypath.state;
+
+import guynir.pypath.PyPathException;
+import guynir.pypath.utils.Asserts;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single-pass parser of the listing file, working directly on the file's raw content. The following rules are
+ * applied:
+ * <ul>
+ *     <li>Content is decoded as UTF-8. A UTF-8 byte order mark is skipped; content starting with a UTF-16 byte order
+ *     mark is decoded as UTF-16.</li>
+ *     <li>Lines are terminated by either "\n", "\r\n" or "\r".</li>
+ *     <li>Empty lines, lines consisting of whitespaces only and comment lines (starting with "#" or "//") are
+ *     skipped.</li>
+ *     <li>A line of the form <i>[keyword]</i> starts a section: entries that follow are of the {@link SourceType}
+ *     identified by the keyword (see {@link SourceType#fromKeyword(String)}), e.g.: <i>[tests]</i>. Entries preceding
+ *     any section are source roots.</li>
+ *     <li>An entry may override the type of its section with a keyword prefix, e.g.: <i>resource:app/static</i>.</li>
+ *     <li>Excluded folders and exclude patterns are types as well, e.g.: <i>[excluded]</i> or
+ *     <i>exclude-pattern:__pycache__</i>.</li>
+ *     <li>Each entry's path is normalized, with the same outcome as
+ *     {@link guynir.pypath.utils.ObjectUtils#normalizePath(String)} (e.g.: <i>/dir1/./dir2/../dir3/</i> becomes
+ *     <i>dir1/dir3</i>).</li>
+ * </ul>
+ * Entries are returned in textual form: <i>[!][keyword:]path</i>. A leading "!" marks an exclusion, which applies to
+ * all types and therefore carries no keyword. Source roots carry no keyword, unless their path could be mistaken for
+ * a typed one (see {@link #typeOf(String)} and {@link #pathOf(String)}).<p>
+ * Skipped lines do not allocate. Normalization is performed in place, over a buffer reused for all lines, so each
+ * entry costs a single string allocation.<p>
+ * This class is not thread-safe.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/24
+ */
+public class ListingParser {
+
+    /**
+     * Representation of the root directory.
+     */
+    private static final String ROOT = "/";
+
+    /**
+     * Buffer holding the normalized entry currently built.
+     */
+    private byte[] buffer = new byte[256];
+
+    /**
+     * Start offsets (within {@link #buffer}) of the segments of the entry currently built.
+     */
+    private int[] segments = new int[32];
+
+    /**
+     * Type of entries in the current section.
+     */
+    private SourceType section;
+
+    /**
+     * Number of the line currently parsed (1-based).
+     */
+    private int lineNumber;
+
+    /**
+     * Parse listing file content.
+     *
+     * @param content Raw content of the listing file.
+     * @return Normalized entries, in order of appearance.
+     * @throws IllegalArgumentException If <i>content</i> is {@code null}.
+     * @throws PyPathException          If the content contains an unknown section.
+     */
+    public List<String> parse(byte[] content) throws IllegalArgumentException, PyPathException {
+        Asserts.notNull(content, "Content cannot be null.");
+        section = SourceType.SOURCE_ROOT;
+        lineNumber = 0;
+
+        int start = 0;
+        if (hasBom(content, 0xEF, 0xBB, 0xBF)) {
+            start = 3;
+        } else if (hasBom(content, 0xFE, 0xFF) || hasBom(content, 0xFF, 0xFE)) {
+            // Rare case -- re-encode as UTF-8 and parse as usual.
+            content = new String(content, StandardCharsets.UTF_16).getBytes(StandardCharsets.UTF_8);
+        }
+
+        List<String> entries = new ArrayList<>();
+        int length = content.length;
+        int lineStart = start;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && content[lineEnd] != '\n' && content[lineEnd] != '\r') {
+                lineEnd++;
+            }
+
+            lineNumber++;
+            String entry = parseLine(content, lineStart, lineEnd);
+            if (entry != null) {
+                entries.add(entry);
+            }
+
+            // A "\r\n" sequence terminates a single line.
+            lineStart = lineEnd + 1;
+            if (lineStart < length && content[lineEnd] == '\r' && content[lineStart] == '\n') {
+                lineStart++;
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Parse a single line.
+     *
+     * @param content Raw content.
+     * @param start   Index of first byte of the line (inclusive).
+     * @param end     Index of last byte of the line (exclusive).
+     * @return Normalized entry, or {@code null} if the line should be skipped.
+     */
+    private String parseLine(byte[] content, int start, int end) {
+        // Trim leading and trailing whitespaces.
+        while (start < end && isWhitespace(content[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(content[end - 1])) {
+            end--;
+        }
+
+        // Skip empty and comment lines.
+        if (start == end || content[start] == '#'
+                || (content[start] == '/' && end - start > 1 && content[start + 1] == '/')) {
+            return null;
+        }
+
+        // Section header.
+        if (content[start] == '[' && content[end - 1] == ']' && end - start > 1) {
+            String keyword = new String(content, start + 1, end - start - 2, StandardCharsets.UTF_8).trim();
+            section = SourceType.fromKeyword(keyword);
+            if (section == null) {
+                throw new PyPathException("Unknown section [" + keyword + "] at line " + lineNumber + ".");
+            }
+            return null;
+        }
+
+        boolean excluded = content[start] == '!';
+        if (excluded) {
+            start = skipWhitespaces(content, start + 1, end);
+        }
+
+        // Keyword prefix, if any, overrides the section's type.
+        SourceType type = section;
+        int colon = indexOfKeywordSeparator(content, start, end);
+        if (colon >= 0) {
+            SourceType prefixType = SourceType.fromKeyword(new String(content, start, colon - start,
+                    StandardCharsets.UTF_8));
+            if (prefixType != null) {
+                type = prefixType;
+                start = skipWhitespaces(content, colon + 1, end);
+            }
+        }
+
+        return toEntry(content, start, end, type, excluded);
+    }
+
+    /**
+     * Format an entry in the textual form returned by {@link #parse(byte[])}. Useful for listings read from other
+     * formats, so they are processed the same way.
+     *
+     * @param type     Type of the entry.
+     * @param excluded {@code true} if the entry is an exclusion.
+     * @param path     Path of the entry, normalized by this call.
+     * @return Normalized entry.
+     * @throws IllegalArgumentException If either <i>type</i> or <i>path</i> are {@code null}.
+     */
+    public String toEntry(SourceType type, boolean excluded, String path) throws IllegalArgumentException {
+        Asserts.notNull(type, "Type cannot be null.");
+        Asserts.notNull(path, "Path cannot be null.");
+
+        byte[] content = path.trim().getBytes(StandardCharsets.UTF_8);
+        return toEntry(content, 0, content.length, type, excluded);
+    }
+
+    /**
+     * Format an entry.
+     *
+     * @param content  Raw content.
+     * @param start    Index of first byte of the path (inclusive).
+     * @param end      Index of last byte of the path (exclusive).
+     * @param type     Type of the entry.
+     * @param excluded {@code true} if the entry is an exclusion.
+     * @return Normalized entry.
+     */
+    private String toEntry(byte[] content, int start, int end, SourceType type, boolean excluded) {
+        int length = 0;
+        if (excluded) {
+            ensureCapacity(1);
+            buffer[length++] = '!';
+        } else if (type != SourceType.SOURCE_ROOT) {
+            length = appendKeyword(type, length);
+        }
+
+        int prefixLength = length;
+        length = normalize(content, start, end, length);
+        if (length == prefixLength) {
+            return new String(buffer, 0, prefixLength, StandardCharsets.UTF_8) + ROOT;
+        }
+
+        String entry = new String(buffer, 0, length, StandardCharsets.UTF_8);
+
+        // A source root whose path looks like a typed entry is written with an explicit keyword.
+        if (!excluded && type == SourceType.SOURCE_ROOT && typeOf(entry) != SourceType.SOURCE_ROOT) {
+            return SourceType.SOURCE_ROOT.getKeyword() + ":" + entry;
+        }
+        return entry;
+    }
+
+    /**
+     * Lookup the type of a parsed entry.
+     *
+     * @param entry Entry returned by {@link #parse(byte[])} (excluding the "!" marker of exclusions, if any).
+     * @return Type of the entry.
+     */
+    public static SourceType typeOf(String entry) {
+        int colon = indexOfKeywordSeparator(entry);
+        SourceType type = colon >= 0 ? SourceType.fromKeyword(entry.substring(0, colon)) : null;
+        return type != null ? type : SourceType.SOURCE_ROOT;
+    }
+
+    /**
+     * Lookup the path of a parsed entry.
+     *
+     * @param entry Entry returned by {@link #parse(byte[])} (excluding the "!" marker of exclusions, if any).
+     * @return Path of the entry, without type keyword.
+     */
+    public static String pathOf(String entry) {
+        int colon = indexOfKeywordSeparator(entry);
+        return colon >= 0 && SourceType.fromKeyword(entry.substring(0, colon)) != null
+                ? entry.substring(colon + 1)
+                : entry;
+    }
+
+    /**
+     * @param entry An entry.
+     * @return Index of the colon terminating the entry's first segment, or -1 if there is none.
+     */
+    private static int indexOfKeywordSeparator(String entry) {
+        for (int i = 0; i < entry.length(); i++) {
+            char c = entry.charAt(i);
+            if (c == ':') {
+                return i;
+            } else if (c == '/') {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param content Raw content.
+     * @param start   Index of first byte to examine (inclusive).
+     * @param end     Index of last byte to examine (exclusive).
+     * @return Index of the colon terminating the first segment, or -1 if there is none.
+     */
+    private static int indexOfKeywordSeparator(byte[] content, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (content[i] == ':') {
+                return i;
+            } else if (content[i] == '/') {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append the keyword of a type, followed by a colon, to {@link #buffer}.
+     *
+     * @param type   Type to append.
+     * @param offset Offset within {@link #buffer} to write to.
+     * @return Offset within {@link #buffer} following the keyword.
+     */
+    private int appendKeyword(SourceType type, int offset) {
+        String keyword = type.getKeyword();
+        ensureCapacity(offset + keyword.length() + 1);
+        for (int i = 0; i < keyword.length(); i++) {
+            buffer[offset++] = (byte) keyword.charAt(i);
+        }
+        buffer[offset++] = ':';
+        return offset;
+    }
+
+    /**
+     * @param content Raw content.
+     * @param start   Index of first byte to examine (inclusive).
+     * @param end     Index of last byte to examine (exclusive).
+     * @return Index of first non-whitespace byte, or <i>end</i> if there is none.
+     */
+    private static int skipWhitespaces(byte[] content, int start, int end) {
+        while (start < end && isWhitespace(content[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Normalize a path into {@link #buffer}: empty and "." segments are dropped, ".." segments remove the preceding
+     * segment and leading/trailing slashes are removed. As with {@link java.nio.file.Path#normalize()}, ".." segments
+     * leading a relative path are preserved while ones leading an absolute path are dropped.
+     *
+     * @param content Raw content.
+     * @param start   Index of first byte of the path (inclusive).
+     * @param end     Index of last byte of the path (exclusive).
+     * @param offset  Offset within {@link #buffer} to write to.
+     * @return Offset within {@link #buffer} following the normalized path.
+     */
+    private int normalize(byte[] content, int start, int end, int offset) {
+        ensureCapacity(offset + end - start);
+
+        boolean absolute = start < end && content[start] == '/';
+        int base = offset;
+        int depth = 0;
+        int index = start;
+        while (index < end) {
+            int segmentEnd = index;
+            while (segmentEnd < end && content[segmentEnd] != '/') {
+                segmentEnd++;
+            }
+
+            int segmentLength = segmentEnd - index;
+            if (segmentLength == 0 || (segmentLength == 1 && content[index] == '.')) {
+                // Empty or current directory segment -- skip.
+            } else if (segmentLength == 2 && content[index] == '.' && content[index + 1] == '.') {
+                if (depth > 0 && !isParentSegment(segments[depth - 1], offset)) {
+                    // Remove preceding segment, including its separator.
+                    depth--;
+                    offset = segments[depth] > base ? segments[depth] - 1 : base;
+                } else if (!absolute) {
+                    offset = appendSegment(content, index, segmentEnd, base, offset, depth++);
+                }
+            } else {
+                offset = appendSegment(content, index, segmentEnd, base, offset, depth++);
+            }
+
+            index = segmentEnd + 1;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Append a segment to {@link #buffer}.
+     *
+     * @param content Raw content.
+     * @param start   Index of first byte of the segment (inclusive).
+     * @param end     Index of last byte of the segment (exclusive).
+     * @param base    Offset within {@link #buffer} the normalized path starts at.
+     * @param offset  Offset within {@link #buffer} to write to.
+     * @param depth   Index of the segment.
+     * @return Offset within {@link #buffer} following the segment.
+     */
+    private int appendSegment(byte[] content, int start, int end, int base, int offset, int depth) {
+        if (offset > base) {
+            buffer[offset++] = '/';
+        }
+        if (depth == segments.length) {
+            int[] grown = new int[segments.length * 2];
+            System.arraycopy(segments, 0, grown, 0, segments.length);
+            segments = grown;
+        }
+        segments[depth] = offset;
+        System.arraycopy(content, start, buffer, offset, end - start);
+        return offset + end - start;
+    }
+
+    /**
+     * @param start Offset of a segment within {@link #buffer}.
+     * @param end   Offset following the segment.
+     * @return {@code true} if the segment is "..".
+     */
+    private boolean isParentSegment(int start, int end) {
+        return end - start == 2 && buffer[start] == '.' && buffer[start + 1] == '.';
+    }
+
+    /**
+     * Make sure {@link #buffer} can hold a given number of bytes.
+     *
+     * @param capacity Required capacity.
+     */
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            byte[] grown = new byte[Math.max(capacity, buffer.length * 2)];
+            System.arraycopy(buffer, 0, grown, 0, buffer.length);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * @param content Raw content.
+     * @param bom     Bytes of a byte order mark.
+     * @return {@code true} if <i>content</i> starts with <i>bom</i>.
+     */
+    private static boolean hasBom(byte[] content, int... bom) {
+        if (content.length < bom.length) {
+            return false;
+        }
+        for (int i = 0; i < bom.length; i++) {
+            if ((content[i] & 0xFF) != bom[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param b Byte.
+     * @return {@code true} if <i>b</i> is a whitespace or control character (as in {@link String#trim()}).
+     */
+    private static boolean isWhitespace(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+}
@@ -0,0 +1,104 @@
+package guynir.pypath.state;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Snapshot of the listing file and of the project model, taken once the project model reflects the listing. When the
+ * project is re-opened and both the listing file and the managed source roots still match the snapshot, there is
+ * nothing to reconcile.<p>
+ * Persisted as part of the plugin state, hence the public fields and default constructor.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ListingSnapshot {
+
+    /**
+     * Hash of the listing file content (see {@link ListingFingerprint#hashContent(byte[])}).
+     */
+    public long listingHash;
+
+    /**
+     * Modification time of the listing file.
+     */
+    public long listingTimestamp;
+
+    /**
+     * Length (in bytes) of the listing file.
+     */
+    public long listingLength;
+
+    /**
+     * Fingerprint of the managed source roots present in the project model (see {@link ListingFingerprint}).
+     */
+    public long rootsFingerprint;
+
+    /**
+     * Workspace relative paths of the directories holding the nested listing files the snapshot was taken of, so the
+     * snapshot can be matched without searching the workspace for nested listing files.
+     */
+    public List<String> nestedDirectories = new ArrayList<>();
+
+    /**
+     * Class constructor.
+     */
+    public ListingSnapshot() {
+    }
+
+    /**
+     * Class constructor, for a snapshot taken of a listing file with no nested listing files.
+     *
+     * @param listingHash      Hash of the listing file content.
+     * @param listingTimestamp Modification time of the listing file.
+     * @param listingLength    Length of the listing file.
+     * @param rootsFingerprint Fingerprint of the managed source roots present in the project model.
+     */
+    public ListingSnapshot(long listingHash, long listingTimestamp, long listingLength, long rootsFingerprint) {
+        this(listingHash, listingTimestamp, listingLength, rootsFingerprint, Collections.emptyList());
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param listingHash       Hash of the listing file content.
+     * @param listingTimestamp  Modification time of the listing file.
+     * @param listingLength     Length of the listing file.
+     * @param rootsFingerprint  Fingerprint of the managed source roots present in the project model.
+     * @param nestedDirectories Workspace relative paths of the directories holding nested listing files.
+     */
+    public ListingSnapshot(long listingHash, long listingTimestamp, long listingLength, long rootsFingerprint,
+                           List<String> nestedDirectories) {
+        this.listingHash = listingHash;
+        this.listingTimestamp = listingTimestamp;
+        this.listingLength = listingLength;
+        this.rootsFingerprint = rootsFingerprint;
+        this.nestedDirectories = new ArrayList<>(nestedDirectories);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ListingSnapshot that = (ListingSnapshot) o;
+        return listingHash == that.listingHash &&
+                listingTimestamp == that.listingTimestamp &&
+                listingLength == that.listingLength &&
+                rootsFingerprint == that.rootsFingerprint &&
+                Objects.equals(nestedDirectories, that.nestedDirectories);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(listingHash, listingTimestamp, listingLength, rootsFingerprint, nestedDirectories);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s { listingHash: %x, listingTimestamp: %d, listingLength: %d, rootsFingerprint: %x, "
+                        + "nestedDirectories: %s }", ListingSnapshot.class.getSimpleName(), listingHash,
+                listingTimestamp, listingLength, rootsFingerprint, nestedDirectories);
+    }
+}
@@ -0,0 +1,38 @@
+package guynir.pypath.state;
+
+import guynir.pypath.utils.GlobPattern;
+
+import java.util.List;
+
+/**
+ * Resolves glob patterns found in listing files into the workspace directories they match (see
+ * {@link ListingLoader}).
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public interface PatternResolver {
+
+    /**
+     * Expand a pattern to the workspace relative paths of all directories matching it.<p>
+     * <b>NOTE:</b> Must be called from within a read action.
+     *
+     * @param pattern Pattern to expand.
+     * @return Matching directories, relative to workspace base directory.
+     */
+    List<String> expand(String pattern);
+
+    /**
+     * Compile a pattern.
+     *
+     * @param pattern Pattern to compile.
+     * @return Compiled pattern.
+     */
+    GlobPattern compile(String pattern);
+
+    /**
+     * @return Modification count of pattern expansions. Expansions are unchanged for as long as this value is
+     * unchanged.
+     */
+    long getModificationCount();
+}
@@ -1,5 +1,7 @@
 package guynir.pypath.state;
 
+import guynir.pypath.utils.RelativePath;
+
 import java.util.Objects;
 
 /**
@@ -13,9 +15,19 @@ public class SourceDescriptor {
     public SourceType type;
 
     /**
-     * Relative path.
+     * Relative path, or {@code null} if not set yet (e.g.: while being deserialized).
+     */
+    private RelativePath path;
+
+    /**
+     * Name of module to register the folder in, or {@code null} for the module the folder resides in.
+     */
+    public String module;
+
+    /**
+     * Package prefix of the source folder, or {@code null} if none.
      */
-    public String pathname;
+    public String packagePrefix;
 
     /**
      * Class constructor.
@@ -32,8 +44,47 @@ public class SourceDescriptor {
      * @throws IllegalArgumentException If either arguments are {@code null}.
      */
     public SourceDescriptor(SourceType type, String pathname) throws IllegalArgumentException {
+        this(type, pathname, null, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param type          Type of source.
+     * @param pathname      Pathname to the source.
+     * @param module        Name of module to register the folder in, or {@code null} for the module the folder
+     *                      resides in.
+     * @param packagePrefix Package prefix of the source folder, or {@code null} if none.
+     */
+    public SourceDescriptor(SourceType type, String pathname, String module, String packagePrefix) {
         this.type = type;
-        this.pathname = pathname;
+        setPathname(pathname);
+        this.module = module;
+        this.packagePrefix = packagePrefix;
+    }
+
+    /**
+     * @return Relative path, or {@code null} if not set.
+     */
+    public RelativePath getPath() {
+        return path;
+    }
+
+    /**
+     * @return Relative path as a slash separated string, without leading or trailing slashes (empty string for the
+     * workspace root), or {@code null} if not set.
+     */
+    public String getPathname() {
+        return path != null ? path.toString() : null;
+    }
+
+    /**
+     * Sets the relative path. Serves as the persisted property of the descriptor.
+     *
+     * @param pathname Slash separated relative path, or {@code null}.
+     */
+    public void setPathname(String pathname) {
+        this.path = pathname != null ? RelativePath.of(pathname) : null;
     }
 
     @Override
@@ -42,19 +93,23 @@ public class SourceDescriptor {
         if (o == null || getClass() != o.getClass()) return false;
         SourceDescriptor that = (SourceDescriptor) o;
         return type == that.type &&
-                Objects.equals(pathname, that.pathname);
+                Objects.equals(path, that.path) &&
+                Objects.equals(module, that.module) &&
+                Objects.equals(packagePrefix, that.packagePrefix);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, pathname);
+        return Objects.hash(type, path, module, packagePrefix);
     }
 
     @Override
     public String toString() {
-        return String.format("%s { type: %s, pathname: %s }",
+        return String.format("%s { type: %s, pathname: %s, module: %s, packagePrefix: %s }",
                 SourceDescriptor.class.getSimpleName(),
                 type != null ? type.name() : "null",
-                pathname != null ? pathname : "null");
+                path != null ? path : "null",
+                module != null ? module : "null",
+                packagePrefix != null ? packagePrefix : "null");
     }
 }
@@ -1,7 +1,7 @@
 package guynir.pypath.state;
 
 /**
- * Enumeration of source types.
+ * Enumeration of source types, i.e.: the kinds of folders (and folder name patterns) managed by the plugin.
  *
  * @author Guy Raz Nir
  * @since 2020/02/08
@@ -11,20 +11,74 @@ public enum SourceType {
     /**
      * Represents a standard source root directory.
      */
-    SOURCE_ROOT,
+    SOURCE_ROOT("source"),
 
     /**
      * Represents resource root directory.
      */
-    RESOURCE_ROOT,
+    RESOURCE_ROOT("resource"),
 
     /**
      * Represents source root directory for tests.
      */
-    TEST_SOURCE_ROOT,
+    TEST_SOURCE_ROOT("test"),
 
     /**
      * Represents resource root directory for tests.
      */
-    TEST_RESOURCE_ROOT
+    TEST_RESOURCE_ROOT("test-resource"),
+
+    /**
+     * Represents a directory excluded from the project (not indexed).
+     */
+    EXCLUDED_ROOT("excluded"),
+
+    /**
+     * Represents a pattern of file and directory names excluded from all content roots (e.g.: <i>__pycache__</i> or
+     * <i>*.pyc</i>). The descriptor's pathname holds the pattern rather than a path.
+     */
+    EXCLUDE_PATTERN("exclude-pattern");
+
+    /**
+     * Keyword identifying the type in the listing file (e.g.: <i>test:tests/fixtures</i> or <i>[test]</i>).
+     */
+    private final String keyword;
+
+    /**
+     * Class constructor.
+     *
+     * @param keyword Keyword identifying the type in the listing file.
+     */
+    SourceType(String keyword) {
+        this.keyword = keyword;
+    }
+
+    /**
+     * @return Keyword identifying the type in the listing file.
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * @return {@code true} if this type excludes content from the project, {@code false} if it marks a source root.
+     */
+    public boolean isExclusion() {
+        return this == EXCLUDED_ROOT || this == EXCLUDE_PATTERN;
+    }
+
+    /**
+     * Lookup a type by its keyword. The plural form of a keyword (e.g.: <i>tests</i>) is accepted as well.
+     *
+     * @param keyword Keyword to lookup (case insensitive).
+     * @return Matching type, or {@code null} if <i>keyword</i> is not recognized.
+     */
+    public static SourceType fromKeyword(String keyword) {
+        for (SourceType type : values()) {
+            if (type.keyword.equalsIgnoreCase(keyword) || (type.keyword + "s").equalsIgnoreCase(keyword)) {
+                return type;
+            }
+        }
+        return null;
+    }
 }
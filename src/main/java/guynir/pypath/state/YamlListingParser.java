@@ -0,0 +1,722 @@
+package guynir.pypath.state;
+
+import guynir.pypath.PyPathException;
+import guynir.pypath.utils.Asserts;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A parser of the YAML form of the listing file (<i>source_dirs.yaml</i>). Only the subset of YAML required by the
+ * listing is supported, which keeps the parser small, single-pass and free of third-party dependencies:
+ * <pre>
+ * sources:
+ *   - src
+ *   - path: billing/src
+ *     module: billing
+ *     package: com.acme.billing
+ *   - "!legacy/src"
+ * tests: [tests, "libs/&#42;/tests"]
+ * excluded:
+ *   - .venv
+ * exclude-patterns:
+ *   - __pycache__
+ * </pre>
+ * The document is a mapping whose keys are type keywords (see {@link SourceType#fromKeyword(String)}). Each value is
+ * either a single entry, a block sequence or a flow sequence of entries. An entry is either a path or a mapping (block
+ * or flow) with the keys <i>path</i> (mandatory), <i>module</i> and <i>package</i>. Paths follow the rules of the
+ * plain listing file, so they may hold glob patterns or start with "!" (in which case they must be quoted, as in YAML).
+ * <p>
+ * Plain, single-quoted and double-quoted scalars are supported, as well as comments and document markers. Anything
+ * else (e.g.: anchors, tags, block scalars or nested collections) is rejected. Errors are reported along with their line
+ * and column.<p>
+ * This class is not thread-safe.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class YamlListingParser {
+
+    /**
+     * Key of an entry's path.
+     */
+    public static final String PATH_KEY = "path";
+
+    /**
+     * Key of an entry's module.
+     */
+    public static final String MODULE_KEY = "module";
+
+    /**
+     * Key of an entry's package prefix.
+     */
+    public static final String PACKAGE_KEY = "package";
+
+    /**
+     * Types of entries a package prefix applies to.
+     */
+    private static final Set<SourceType> PACKAGE_TYPES = EnumSet.of(SourceType.SOURCE_ROOT,
+            SourceType.TEST_SOURCE_ROOT);
+
+    /**
+     * Formats entries the same way the plain listing file does.
+     */
+    private final ListingParser entryFormatter = new ListingParser();
+
+    /**
+     * Normalized entries parsed so far.
+     */
+    private List<String> entries;
+
+    /**
+     * Modules of entries parsed so far, keyed by entry.
+     */
+    private Map<String, String> modules;
+
+    /**
+     * Package prefixes of entries parsed so far, keyed by entry.
+     */
+    private Map<String, String> packagePrefixes;
+
+    /**
+     * Type of the current section, or {@code null} before the first section.
+     */
+    private SourceType section;
+
+    /**
+     * Sections seen so far.
+     */
+    private Set<SourceType> sections;
+
+    /**
+     * Determine whether the value of the current section was given inline (on the section's line).
+     */
+    private boolean inlineSection;
+
+    /**
+     * Block mapping entry currently parsed, or {@code null} if none.
+     */
+    private Item item;
+
+    /**
+     * Number of the line currently parsed (1-based).
+     */
+    private int lineNumber;
+
+    /**
+     * Parse listing file content.
+     *
+     * @param content Raw content of the listing file (UTF-8).
+     * @return Parsed listing.
+     * @throws IllegalArgumentException If <i>content</i> is {@code null}.
+     * @throws PyPathException          If the content is malformed or does not follow the listing's schema.
+     */
+    public ListingModel parse(byte[] content) throws IllegalArgumentException, PyPathException {
+        Asserts.notNull(content, "Content cannot be null.");
+
+        entries = new ArrayList<>();
+        modules = new HashMap<>();
+        packagePrefixes = new HashMap<>();
+        section = null;
+        sections = EnumSet.noneOf(SourceType.class);
+        inlineSection = false;
+        item = null;
+        lineNumber = 0;
+
+        int start = content.length >= 3
+                && (content[0] & 0xFF) == 0xEF && (content[1] & 0xFF) == 0xBB && (content[2] & 0xFF) == 0xBF ? 3 : 0;
+        String text = new String(content, start, content.length - start, StandardCharsets.UTF_8);
+
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = lineStart;
+            while (lineEnd < text.length() && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            lineNumber++;
+            if (!parseLine(text.substring(lineStart, lineEnd))) {
+                break;
+            }
+
+            // A "\r\n" sequence terminates a single line.
+            lineStart = lineEnd + 1;
+            if (lineStart < text.length() && text.charAt(lineEnd) == '\r' && text.charAt(lineStart) == '\n') {
+                lineStart++;
+            }
+        }
+        completeItem();
+
+        return new ListingModel(entries, modules, packagePrefixes);
+    }
+
+    /**
+     * Parse a single line.
+     *
+     * @param line Line to parse, without its terminator.
+     * @return {@code true} to continue parsing, {@code false} if the end of the document was reached.
+     */
+    private boolean parseLine(String line) {
+        int end = stripComment(line);
+        while (end > 0 && isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+
+        int indent = 0;
+        while (indent < end && line.charAt(indent) == ' ') {
+            indent++;
+        }
+        if (indent == end) {
+            return true;
+        }
+        if (line.charAt(indent) == '\t') {
+            throw error("Tabs cannot be used for indentation", indent);
+        }
+
+        // Document markers.
+        if (indent == 0 && (line.startsWith("---") || line.startsWith("..."))
+                && (end == 3 || isWhitespace(line.charAt(3)))) {
+            if (line.charAt(0) == '.') {
+                return false;
+            }
+            if (section != null || end > 3) {
+                throw error("Only a single document is supported", 0);
+            }
+            return true;
+        }
+
+        if (line.charAt(indent) == '-' && (indent + 1 == end || isWhitespace(line.charAt(indent + 1)))) {
+            parseSequenceItem(line, indent, end);
+        } else if (indent == 0) {
+            parseSection(line, end);
+        } else if (item != null) {
+            parseItemContinuation(line, indent, end);
+        } else {
+            throw error("Unexpected indentation", indent);
+        }
+        return true;
+    }
+
+    /**
+     * Parse a section line (<i>keyword: [value]</i>).
+     *
+     * @param line Line to parse.
+     * @param end  Index of the end of the line's content (exclusive).
+     */
+    private void parseSection(String line, int end) {
+        completeItem();
+
+        int colon = indexOfMappingSeparator(line, 0, end);
+        if (colon < 0) {
+            throw error("Expected a section (e.g.: 'sources:')", 0);
+        }
+
+        String keyword = line.substring(0, colon).trim();
+        section = SourceType.fromKeyword(keyword);
+        if (section == null) {
+            throw error("Unknown section '" + keyword + "'", 0);
+        }
+        if (!sections.add(section)) {
+            throw error("Duplicate section '" + keyword + "'", 0);
+        }
+
+        int valueStart = skipWhitespaces(line, colon + 1, end);
+        inlineSection = valueStart < end;
+        if (!inlineSection) {
+            // Block sequence follows.
+            return;
+        }
+
+        if (line.charAt(valueStart) == '[') {
+            parseFlowSequence(line, valueStart, end);
+        } else {
+            addEntry(scalar(line, valueStart, end), null, null, valueStart);
+        }
+    }
+
+    /**
+     * Parse a block sequence item (<i>- value</i>).
+     *
+     * @param line   Line to parse.
+     * @param indent Index of the item's dash.
+     * @param end    Index of the end of the line's content (exclusive).
+     */
+    private void parseSequenceItem(String line, int indent, int end) {
+        completeItem();
+        if (section == null) {
+            throw error("Entry outside of any section", indent);
+        }
+        if (inlineSection) {
+            throw error("Section already has a value", indent);
+        }
+
+        int valueStart = skipWhitespaces(line, indent + 1, end);
+        if (valueStart == end) {
+            // Block mapping follows on the next lines.
+            item = new Item(lineNumber, indent, indent);
+            return;
+        }
+
+        char first = line.charAt(valueStart);
+        if (first == '{') {
+            Item flowItem = new Item(lineNumber, indent, valueStart);
+            parseFlowMapping(line, valueStart, end, flowItem);
+            complete(flowItem);
+        } else if (first == '[' || first == '-' && valueStart + 1 < end && isWhitespace(line.charAt(valueStart + 1))) {
+            throw error("Nested sequences are not supported", valueStart);
+        } else if (first != '"' && first != '\'' && indexOfMappingSeparator(line, valueStart, end) >= 0) {
+            item = new Item(lineNumber, indent, valueStart);
+            item.mappingIndent = valueStart;
+            parseMappingEntry(line, valueStart, end, item);
+        } else {
+            addEntry(scalar(line, valueStart, end), null, null, valueStart);
+        }
+    }
+
+    /**
+     * Parse a line continuing a block mapping entry (<i>key: value</i>).
+     *
+     * @param line   Line to parse.
+     * @param indent Indentation of the line.
+     * @param end    Index of the end of the line's content (exclusive).
+     */
+    private void parseItemContinuation(String line, int indent, int end) {
+        if (indent <= item.indent) {
+            throw error("Unexpected indentation", indent);
+        }
+        if (item.mappingIndent < 0) {
+            item.mappingIndent = indent;
+        } else if (item.mappingIndent != indent) {
+            throw error("Bad indentation of mapping entry (expected column " + (item.mappingIndent + 1) + ")",
+                    indent);
+        }
+        parseMappingEntry(line, indent, end, item);
+    }
+
+    /**
+     * Parse a single mapping entry (<i>key: value</i>) of a block mapping.
+     *
+     * @param line   Line to parse.
+     * @param start  Index of the entry's key.
+     * @param end    Index of the end of the line's content (exclusive).
+     * @param target Item to set the value of.
+     */
+    private void parseMappingEntry(String line, int start, int end, Item target) {
+        int colon = indexOfMappingSeparator(line, start, end);
+        if (colon < 0) {
+            throw error("Expected 'key: value'", start);
+        }
+
+        int valueStart = skipWhitespaces(line, colon + 1, end);
+        if (valueStart == end) {
+            throw error("Missing value of '" + line.substring(start, colon).trim() + "'", colon);
+        }
+        target.set(line.substring(start, colon).trim(), scalar(line, valueStart, end), start);
+    }
+
+    /**
+     * Parse a flow sequence (<i>[value, value]</i>) of entries.
+     *
+     * @param line  Line to parse.
+     * @param start Index of the opening bracket.
+     * @param end   Index of the end of the line's content (exclusive).
+     */
+    private void parseFlowSequence(String line, int start, int end) {
+        if (line.charAt(end - 1) != ']') {
+            throw error("Unterminated flow sequence", start);
+        }
+
+        for (int[] range : splitFlow(line, start + 1, end - 1)) {
+            char first = line.charAt(range[0]);
+            if (first == '{') {
+                Item flowItem = new Item(lineNumber, start, range[0]);
+                parseFlowMapping(line, range[0], range[1], flowItem);
+                complete(flowItem);
+            } else if (first == '[') {
+                throw error("Nested sequences are not supported", range[0]);
+            } else {
+                addEntry(scalar(line, range[0], range[1]), null, null, range[0]);
+            }
+        }
+    }
+
+    /**
+     * Parse a flow mapping (<i>{key: value, key: value}</i>).
+     *
+     * @param line   Line to parse.
+     * @param start  Index of the opening brace.
+     * @param end    Index of the end of the mapping (exclusive).
+     * @param target Item to set values of.
+     */
+    private void parseFlowMapping(String line, int start, int end, Item target) {
+        if (line.charAt(end - 1) != '}') {
+            throw error("Unterminated flow mapping", start);
+        }
+
+        for (int[] range : splitFlow(line, start + 1, end - 1)) {
+            parseMappingEntry(line, range[0], range[1], target);
+        }
+    }
+
+    /**
+     * Split the content of a flow collection by commas, respecting quotes and nesting.
+     *
+     * @param line  Line holding the collection.
+     * @param start Index following the opening bracket or brace.
+     * @param end   Index of the closing bracket or brace.
+     * @return Ranges (start inclusive, end exclusive) of trimmed, non-empty elements.
+     */
+    private List<int[]> splitFlow(String line, int start, int end) {
+        List<int[]> ranges = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int elementStart = start;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? line.charAt(i) : ',';
+            if (quote != 0) {
+                if (c == '\\' && quote == '"' || c == '\'' && quote == c && i + 1 < end && line.charAt(i + 1) == c) {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if ((c == '"' || c == '\'') && isTokenStart(line, elementStart, i)) {
+                quote = c;
+            } else if (c == '[' || c == '{') {
+                depth++;
+            } else if (c == ']' || c == '}') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                int s = skipWhitespaces(line, elementStart, i);
+                int e = i;
+                while (e > s && isWhitespace(line.charAt(e - 1))) {
+                    e--;
+                }
+                if (s < e) {
+                    ranges.add(new int[]{s, e});
+                } else if (i < end) {
+                    throw error("Empty element in flow collection", i);
+                }
+                elementStart = i + 1;
+            }
+        }
+        if (quote != 0) {
+            throw error("Unterminated quoted scalar", start);
+        }
+        return ranges;
+    }
+
+    /**
+     * Parse a scalar.
+     *
+     * @param line  Line holding the scalar.
+     * @param start Index of first character of the scalar.
+     * @param end   Index of the end of the scalar (exclusive), trailing whitespaces excluded.
+     * @return Value of the scalar.
+     */
+    private String scalar(String line, int start, int end) {
+        char first = line.charAt(start);
+        if (first == '"' || first == '\'') {
+            StringBuilder value = new StringBuilder();
+            int i = start + 1;
+            while (true) {
+                if (i >= end) {
+                    throw error("Unterminated quoted scalar", start);
+                }
+                char c = line.charAt(i);
+                if (c == first) {
+                    if (first == '\'' && i + 1 < end && line.charAt(i + 1) == '\'') {
+                        value.append('\'');
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                if (c == '\\' && first == '"') {
+                    if (i + 1 >= end) {
+                        throw error("Unterminated quoted scalar", start);
+                    }
+                    char escaped = line.charAt(i + 1);
+                    if (escaped != '"' && escaped != '\\' && escaped != '/') {
+                        throw error("Unsupported escape sequence '\\" + escaped + "'", i);
+                    }
+                    value.append(escaped);
+                    i += 2;
+                    continue;
+                }
+                value.append(c);
+                i++;
+            }
+            if (i + 1 != end) {
+                throw error("Unexpected content after quoted scalar", i + 1);
+            }
+            return value.toString();
+        }
+
+        switch (first) {
+            case '!':
+            case '*':
+            case '&':
+                throw error("Values starting with '" + first + "' must be quoted", start);
+            case '|':
+            case '>':
+                throw error("Block scalars are not supported", start);
+            case '@':
+            case '`':
+            case '%':
+                throw error("Reserved character '" + first + "'", start);
+            default:
+                return line.substring(start, end);
+        }
+    }
+
+    /**
+     * Add an entry to the listing.
+     *
+     * @param path          Path of the entry, as listed.
+     * @param module        Module of the entry, or {@code null} if none.
+     * @param packagePrefix Package prefix of the entry, or {@code null} if none.
+     * @param column        Index of the entry within its line, for error reporting.
+     */
+    private void addEntry(String path, String module, String packagePrefix, int column) {
+        String trimmed = path.trim();
+        boolean excluded = trimmed.startsWith("!");
+        if (excluded) {
+            trimmed = trimmed.substring(1);
+            if (module != null || packagePrefix != null) {
+                throw error("Exclusions cannot specify '" + MODULE_KEY + "' or '" + PACKAGE_KEY + "'", column);
+            }
+        }
+        if (trimmed.trim().isEmpty()) {
+            throw error("Empty path", column);
+        }
+        if (packagePrefix != null && !PACKAGE_TYPES.contains(section)) {
+            throw error("'" + PACKAGE_KEY + "' applies to sources and tests only", column);
+        }
+        if (module != null && section == SourceType.EXCLUDE_PATTERN) {
+            throw error("'" + MODULE_KEY + "' does not apply to exclude patterns", column);
+        }
+
+        String entry = entryFormatter.toEntry(section, excluded, trimmed);
+        entries.add(entry);
+        put(modules, entry, module);
+        put(packagePrefixes, entry, packagePrefix);
+    }
+
+    /**
+     * Add the block mapping entry currently parsed, if any, to the listing.
+     */
+    private void completeItem() {
+        if (item != null) {
+            Item completed = item;
+            item = null;
+            complete(completed);
+        }
+    }
+
+    /**
+     * Add a mapping entry to the listing.
+     *
+     * @param completed Entry to add.
+     */
+    private void complete(Item completed) {
+        String path = completed.values.get(PATH_KEY);
+        if (path == null) {
+            throw new PyPathException("Missing '" + PATH_KEY + "' of entry at line " + completed.line + ", column "
+                    + (completed.column + 1) + ".");
+        }
+
+        int line = lineNumber;
+        lineNumber = completed.line;
+        try {
+            addEntry(path, completed.values.get(MODULE_KEY), completed.values.get(PACKAGE_KEY), completed.column);
+        } finally {
+            lineNumber = line;
+        }
+    }
+
+    /**
+     * Update or remove a value keyed by entry.
+     *
+     * @param map   Map to update.
+     * @param entry Entry.
+     * @param value Value, or {@code null} to remove.
+     */
+    private static void put(Map<String, String> map, String entry, String value) {
+        if (value != null) {
+            map.put(entry, value);
+        } else {
+            map.remove(entry);
+        }
+    }
+
+    /**
+     * Lookup the start of a comment within a line, i.e.: a "#" that is either first or follows a whitespace, and is
+     * not quoted.
+     *
+     * @param line Line to examine.
+     * @return Index of the comment, or the length of the line if there is none.
+     */
+    private static int stripComment(String line) {
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == '\\' && quote == '"' || c == '\'' && quote == c && i + 1 < line.length()
+                        && line.charAt(i + 1) == c) {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '#' && (i == 0 || isWhitespace(line.charAt(i - 1)))) {
+                return i;
+            } else if ((c == '"' || c == '\'') && (i == 0 || " \t[{,:-".indexOf(line.charAt(i - 1)) >= 0)) {
+                quote = c;
+            }
+        }
+        return line.length();
+    }
+
+    /**
+     * Lookup the separator of a mapping key and its value, i.e.: a colon followed by a whitespace or ending the
+     * content. Quoted keys are not supported.
+     *
+     * @param line  Line to examine.
+     * @param start Index to start at.
+     * @param end   Index of the end of the content (exclusive).
+     * @return Index of the separator, or -1 if there is none.
+     */
+    private static int indexOfMappingSeparator(String line, int start, int end) {
+        if (start < end && (line.charAt(start) == '"' || line.charAt(start) == '\'')) {
+            return -1;
+        }
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == ':' && (i + 1 == end || isWhitespace(line.charAt(i + 1)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param line  Line to examine.
+     * @param start Index of the first character of the current element.
+     * @param index Index of a character.
+     * @return {@code true} if <i>index</i> starts a scalar, i.e.: it is preceded (within the element) by whitespaces
+     * only, or by a mapping key.
+     */
+    private static boolean isTokenStart(String line, int start, int index) {
+        int previous = skipBackWhitespaces(line, index);
+        return previous <= start || line.charAt(previous - 1) == ':';
+    }
+
+    /**
+     * @param line  Line to examine.
+     * @param index Index to start at (exclusive).
+     * @return Index following the last non-whitespace character preceding <i>index</i>.
+     */
+    private static int skipBackWhitespaces(String line, int index) {
+        while (index > 0 && isWhitespace(line.charAt(index - 1))) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * @param line  Line to examine.
+     * @param start Index to start at (inclusive).
+     * @param end   Index to stop at (exclusive).
+     * @return Index of first non-whitespace character, or <i>end</i> if there is none.
+     */
+    private static int skipWhitespaces(String line, int start, int end) {
+        while (start < end && isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * @param c Character.
+     * @return {@code true} if <i>c</i> is a space or a tab.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    /**
+     * Create an error of the current line.
+     *
+     * @param message Error message.
+     * @param column  Index (0-based) of the error within the line.
+     * @return New exception.
+     */
+    private PyPathException error(String message, int column) {
+        return new PyPathException(message + " at line " + lineNumber + ", column " + (column + 1) + ".");
+    }
+
+    /**
+     * An entry in mapping form, collected over one or more lines.
+     */
+    private class Item {
+
+        /**
+         * Line the entry starts at.
+         */
+        final int line;
+
+        /**
+         * Indentation of the entry's dash.
+         */
+        final int indent;
+
+        /**
+         * Index of the entry within its first line.
+         */
+        final int column;
+
+        /**
+         * Indentation of the mapping's keys, or -1 if not known yet.
+         */
+        int mappingIndent = -1;
+
+        /**
+         * Values collected so far, keyed by mapping key.
+         */
+        final Map<String, String> values = new LinkedHashMap<>();
+
+        /**
+         * Class constructor.
+         *
+         * @param line   Line the entry starts at.
+         * @param indent Indentation of the entry's dash.
+         * @param column Index of the entry within its first line.
+         */
+        Item(int line, int indent, int column) {
+            this.line = line;
+            this.indent = indent;
+            this.column = column;
+        }
+
+        /**
+         * Set a value.
+         *
+         * @param key    Mapping key.
+         * @param value  Value.
+         * @param column Index of the key within the current line, for error reporting.
+         */
+        void set(String key, String value, int column) {
+            if (!PATH_KEY.equals(key) && !MODULE_KEY.equals(key) && !PACKAGE_KEY.equals(key)) {
+                throw error("Unknown key '" + key + "' (expected '" + PATH_KEY + "', '" + MODULE_KEY + "' or '"
+                        + PACKAGE_KEY + "')", column);
+            }
+            if (values.putIfAbsent(key, value) != null) {
+                throw error("Duplicate key '" + key + "'", column);
+            }
+        }
+    }
+}
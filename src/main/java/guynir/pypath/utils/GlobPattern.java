@@ -0,0 +1,309 @@
+package guynir.pypath.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled glob pattern of a workspace relative path. The following wildcards are supported:
+ * <ul>
+ *     <li><b>*</b> - matches any sequence of characters within a single path segment.</li>
+ *     <li><b>?</b> - matches any single character within a path segment.</li>
+ *     <li><b>**</b> - as a whole segment, matches zero or more path segments.</li>
+ * </ul>
+ * As with shells, wildcards do not match names starting with a dot (e.g.: <i>.venv</i>), unless the pattern segment
+ * explicitly starts with a dot.<p>
+ * A pattern is split into segments once, upon compilation. The leading segments that contain no wildcards form the
+ * pattern's {@link #getBase() base}, the directory any match must reside in.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/24
+ */
+public class GlobPattern {
+
+    /**
+     * Segment matching any number of path segments.
+     */
+    public static final String ANY_PATH = "**";
+
+    /**
+     * Original pattern.
+     */
+    private final String pattern;
+
+    /**
+     * Pattern segments.
+     */
+    private final List<String> segments;
+
+    /**
+     * For each segment, whether it contains wildcards.
+     */
+    private final boolean[] wildcards;
+
+    /**
+     * Number of leading segments without wildcards.
+     */
+    private final int baseLength;
+
+    /**
+     * Class constructor.
+     *
+     * @param pattern  Original pattern.
+     * @param segments Pattern segments.
+     */
+    private GlobPattern(String pattern, List<String> segments) {
+        this.pattern = pattern;
+        this.segments = Collections.unmodifiableList(segments);
+        this.wildcards = new boolean[segments.size()];
+
+        int base = -1;
+        for (int i = 0; i < segments.size(); i++) {
+            wildcards[i] = isPattern(segments.get(i));
+            if (wildcards[i] && base < 0) {
+                base = i;
+            }
+        }
+        this.baseLength = base < 0 ? segments.size() : base;
+    }
+
+    /**
+     * Determine if a given string contains glob wildcards.
+     *
+     * @param str String to examine.
+     * @return {@code true} if <i>str</i> contains either '*' or '?'.
+     */
+    public static boolean isPattern(String str) {
+        return str.indexOf('*') >= 0 || str.indexOf('?') >= 0;
+    }
+
+    /**
+     * Compile a pattern. Empty and "." segments are dropped, so leading, trailing and repeated slashes are ignored.
+     *
+     * @param pattern Pattern to compile.
+     * @return Compiled pattern.
+     * @throws IllegalArgumentException If <i>pattern</i> is {@code null}.
+     */
+    public static GlobPattern compile(String pattern) throws IllegalArgumentException {
+        Asserts.notNull(pattern, "Pattern cannot be null.");
+
+        List<String> segments = new ArrayList<>();
+        for (String segment : pattern.trim().split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+
+            // Consecutive '**' segments are equivalent to a single one.
+            if (segment.equals(ANY_PATH) && !segments.isEmpty() && segments.get(segments.size() - 1).equals(ANY_PATH)) {
+                continue;
+            }
+            segments.add(segment);
+        }
+
+        return new GlobPattern(pattern, segments);
+    }
+
+    /**
+     * @return Original pattern string.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return Pattern segments.
+     */
+    public List<String> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return Workspace relative path of the deepest directory containing all matches (empty string for workspace
+     * root).
+     */
+    public String getBase() {
+        return String.join("/", segments.subList(0, baseLength));
+    }
+
+    /**
+     * @return Number of leading segments without wildcards.
+     */
+    public int getBaseLength() {
+        return baseLength;
+    }
+
+    /**
+     * @param index Segment index.
+     * @return {@code true} if the segment at <i>index</i> contains wildcards.
+     */
+    public boolean isWildcard(int index) {
+        return wildcards[index];
+    }
+
+    /**
+     * @param index Segment index.
+     * @return {@code true} if the segment at <i>index</i> is {@link #ANY_PATH}.
+     */
+    public boolean isAnyPath(int index) {
+        return ANY_PATH.equals(segments.get(index));
+    }
+
+    /**
+     * Determine if a file name matches a given segment of this pattern.
+     *
+     * @param index Segment index.
+     * @param name  File name.
+     * @return {@code true} if <i>name</i> matches the segment.
+     */
+    public boolean matchesSegment(int index, String name) {
+        String segment = segments.get(index);
+        if (!wildcards[index]) {
+            return segment.equals(name);
+        }
+
+        // Wildcards do not match hidden files, unless explicitly requested.
+        if (name.startsWith(".") && !segment.startsWith(".")) {
+            return false;
+        }
+        return ANY_PATH.equals(segment) || matchWildcards(segment, name);
+    }
+
+    /**
+     * Determine if a workspace relative path matches this pattern.
+     *
+     * @param path Relative path (segments separated by slashes).
+     * @return {@code true} if <i>path</i> matches.
+     */
+    public boolean matches(String path) {
+        Asserts.notNull(path, "Path cannot be null.");
+
+        List<String> names = new ArrayList<>(Arrays.asList(path.split("/")));
+        names.removeIf(String::isEmpty);
+        return matches(0, names, 0);
+    }
+
+    /**
+     * Determine if a workspace relative path may lead to a match, i.e.: it matches a leading portion of this pattern,
+     * so it either matches the pattern or is an ancestor of paths that may (e.g.: <i>services</i> and
+     * <i>services/auth</i> lead to matches of <i>services/&#42;/src</i>, while <i>services/auth/docs</i> and
+     * <i>tools</i> do not). A change to a directory that does not lead to a match cannot affect the pattern's matches.
+     *
+     * @param path Relative path (segments separated by slashes).
+     * @return {@code true} if <i>path</i> leads to a match.
+     */
+    public boolean matchesPrefix(String path) {
+        Asserts.notNull(path, "Path cannot be null.");
+
+        List<String> names = new ArrayList<>(Arrays.asList(path.split("/")));
+        names.removeIf(String::isEmpty);
+        return matchesPrefix(0, names, 0);
+    }
+
+    /**
+     * Recursive matching of path segments against a leading portion of the pattern.
+     *
+     * @param index     Index of current pattern segment.
+     * @param names     Path segments.
+     * @param nameIndex Index of current path segment.
+     * @return {@code true} if the remaining path matches a leading portion of the remaining pattern.
+     */
+    private boolean matchesPrefix(int index, List<String> names, int nameIndex) {
+        if (nameIndex == names.size()) {
+            return true;
+        } else if (index == segments.size()) {
+            return false;
+        }
+
+        if (isAnyPath(index)) {
+            // Either consume the segment and remain at '**', or let '**' match no further segments.
+            return (matchesSegment(index, names.get(nameIndex)) && matchesPrefix(index, names, nameIndex + 1))
+                    || matchesPrefix(index + 1, names, nameIndex);
+        }
+
+        return matchesSegment(index, names.get(nameIndex)) && matchesPrefix(index + 1, names, nameIndex + 1);
+    }
+
+    /**
+     * Recursive matching of path segments.
+     *
+     * @param index     Index of current pattern segment.
+     * @param names     Path segments.
+     * @param nameIndex Index of current path segment.
+     * @return {@code true} if the remaining path matches the remaining pattern.
+     */
+    private boolean matches(int index, List<String> names, int nameIndex) {
+        if (index == segments.size()) {
+            return nameIndex == names.size();
+        }
+
+        if (isAnyPath(index)) {
+            // Match zero or more segments.
+            for (int i = nameIndex; i <= names.size(); i++) {
+                if (matches(index + 1, names, i)) {
+                    return true;
+                }
+                if (i < names.size() && !matchesSegment(index, names.get(i))) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        return nameIndex < names.size()
+                && matchesSegment(index, names.get(nameIndex))
+                && matches(index + 1, names, nameIndex + 1);
+    }
+
+    /**
+     * Match a name against a single segment containing '*' and '?' wildcards. Linear in most cases; backtracks only
+     * to the last '*' seen.
+     *
+     * @param segment Pattern segment.
+     * @param name    Name to match.
+     * @return {@code true} if <i>name</i> matches <i>segment</i>.
+     */
+    private static boolean matchWildcards(String segment, String name) {
+        int p = 0;
+        int n = 0;
+        int star = -1;
+        int mark = 0;
+
+        while (n < name.length()) {
+            if (p < segment.length() && (segment.charAt(p) == '?' || segment.charAt(p) == name.charAt(n))) {
+                p++;
+                n++;
+            } else if (p < segment.length() && segment.charAt(p) == '*') {
+                star = p++;
+                mark = n;
+            } else if (star >= 0) {
+                p = star + 1;
+                n = ++mark;
+            } else {
+                return false;
+            }
+        }
+
+        while (p < segment.length() && segment.charAt(p) == '*') {
+            p++;
+        }
+        return p == segment.length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return segments.equals(((GlobPattern) o).segments);
+    }
+
+    @Override
+    public int hashCode() {
+        return segments.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -2,8 +2,6 @@ package guynir.pypath.utils;
 
 import com.intellij.openapi.vfs.StandardFileSystems;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -41,33 +39,20 @@ public class ObjectUtils {
     }
 
     /**
-     * Normalize path (e.g.: /dir1/dir2/../dir3 -> /dir1/dir3). The following rules are applied:
+     * Normalize path (e.g.: /dir1/dir2/../dir3 -> dir1/dir3). The following rules are applied:
      * <ul>
      *     <li>Leading and trailing spaces are removed.</li>
      *     <li>Leading and trailing slashes are removed.</li>
-     *     <li>Path is normalized (as described in {@link Path#normalize()}.</li>
+     *     <li>Path is normalized (as described in {@link java.nio.file.Path#normalize()}.</li>
      *     <li>A root directory (e.g. "/" or empty string) is always represented as "/".</li>
      * </ul>
      * NOTE: If the provided <i>path</i> is {@code null}, the result is also {@code null}.
      *
      * @param path Path to normalize.
      * @return Normalized path or {@code null} if <i>path</i> is {@code null}.
+     * @see PathUtils#normalize(String)
      */
     public static String normalizePath(String path) {
-        if (path != null) {
-            Path p;
-            path = Paths.get(path.trim()).normalize().toString();
-            if (path.isEmpty()) {
-                path = "/";
-            } else if (path.length() > 1) {
-                int startIndex = path.startsWith("/") ? 1 : 0;
-                int endIndex = path.endsWith("/") ? path.length() - 1 : path.length();
-                if (endIndex - startIndex != path.length()) {
-                    path = path.substring(startIndex, endIndex);
-                }
-            }
-
-        }
-        return path;
+        return PathUtils.normalize(path);
     }
 }
@@ -0,0 +1,517 @@
+package guynir.pypath.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A trie of relative paths, keyed by path segments (e.g.: <i>services/auth/src</i> is stored as the chain of nodes
+ * <i>services</i> -> <i>auth</i> -> <i>src</i>), where each path may be associated with a value.<p>
+ * Lookups accept a path along with an offset to start from, so absolute paths can be matched against workspace
+ * relative entries without creating substrings. Children are located by hashing the segment's characters in place,
+ * hence a lookup costs a time linear in the length of the path and does not allocate.<p>
+ * Empty segments are ignored, so leading, trailing and repeated slashes do not affect the result. The root path
+ * (either empty string or "/") is represented by the root node.<p>
+ * This class is not thread-safe.
+ *
+ * @param <V> Type of values associated with paths.
+ * @author Guy Raz Nir
+ * @since 2020/02/23
+ */
+public class PathTrie<V> {
+
+    /**
+     * Root node, representing the workspace root.
+     */
+    private final Node<V> root = new Node<>(null);
+
+    /**
+     * Number of paths associated with a value.
+     */
+    private int size;
+
+    /**
+     * Associate a value with a path. Previous value associated with the same path is replaced.
+     *
+     * @param path  Relative path.
+     * @param value Value to associate (must not be {@code null}).
+     * @return Previous value associated with <i>path</i>, or {@code null} if none.
+     * @throws IllegalArgumentException If either arguments are {@code null}.
+     */
+    public V put(String path, V value) throws IllegalArgumentException {
+        Asserts.notNull(path, "Path cannot be null.");
+        Asserts.notNull(value, "Value cannot be null.");
+
+        Node<V> node = root;
+        int length = path.length();
+        int index = 0;
+        while (index < length) {
+            int end = segmentEnd(path, index);
+            if (end > index) {
+                Node<V> child = node.find(path, index, end);
+                if (child == null) {
+                    child = node.add(path.substring(index, end));
+                }
+                node = child;
+            }
+            index = end + 1;
+        }
+
+        V previous = node.value;
+        node.value = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    /**
+     * Associate a value with a path, given as a {@link RelativePath}. Nodes created for the path are named by the
+     * path's interned segments, so the trie shares them rather than holding copies.
+     *
+     * @param path  Relative path.
+     * @param value Value to associate (must not be {@code null}).
+     * @return Previous value associated with <i>path</i>, or {@code null} if none.
+     * @throws IllegalArgumentException If either arguments are {@code null}.
+     */
+    public V put(RelativePath path, V value) throws IllegalArgumentException {
+        Asserts.notNull(path, "Path cannot be null.");
+        Asserts.notNull(value, "Value cannot be null.");
+
+        Node<V> node = root;
+        for (int i = 0; i < path.getSegmentCount(); i++) {
+            String segment = path.getSegment(i);
+            Node<V> child = node.find(segment);
+            if (child == null) {
+                child = node.add(segment);
+            }
+            node = child;
+        }
+
+        V previous = node.value;
+        node.value = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    /**
+     * Remove the value associated with a path. Nodes left without values or children are pruned.
+     *
+     * @param path Relative path.
+     * @return Value previously associated with <i>path</i>, or {@code null} if none.
+     * @throws IllegalArgumentException If <i>path</i> is {@code null}.
+     */
+    public V remove(String path) throws IllegalArgumentException {
+        Asserts.notNull(path, "Path cannot be null.");
+
+        // Walk down the trie, recording the visited nodes.
+        List<Node<V>> visited = new ArrayList<>();
+        Node<V> node = root;
+        int length = path.length();
+        int index = 0;
+        while (index < length && node != null) {
+            int end = segmentEnd(path, index);
+            if (end > index) {
+                visited.add(node);
+                node = node.find(path, index, end);
+            }
+            index = end + 1;
+        }
+
+        if (node == null || node.value == null) {
+            return null;
+        }
+
+        V previous = node.value;
+        node.value = null;
+        size--;
+
+        // Prune empty nodes, bottom-up.
+        for (int i = visited.size() - 1; i >= 0 && node.value == null && node.count == 0; i--) {
+            Node<V> parent = visited.get(i);
+            parent.remove(node);
+            node = parent;
+        }
+
+        return previous;
+    }
+
+    /**
+     * Remove the value associated with a path, given as a {@link RelativePath} (see {@link #remove(String)}).
+     *
+     * @param path Relative path.
+     * @return Value previously associated with <i>path</i>, or {@code null} if none.
+     * @throws IllegalArgumentException If <i>path</i> is {@code null}.
+     */
+    public V remove(RelativePath path) throws IllegalArgumentException {
+        Asserts.notNull(path, "Path cannot be null.");
+        return remove(path.toString());
+    }
+
+    /**
+     * Lookup the value associated with a path.
+     *
+     * @param path Relative path.
+     * @return Value associated with <i>path</i> or {@code null} if none.
+     */
+    public V get(String path) {
+        return get(path, 0);
+    }
+
+    /**
+     * Lookup the value associated with a path, given as a {@link RelativePath}. Segments are matched by reference
+     * first, as nodes created by {@link #put(RelativePath, Object)} share the path's interned segments.
+     *
+     * @param path Relative path.
+     * @return Value associated with <i>path</i> or {@code null} if none.
+     * @throws IllegalArgumentException If <i>path</i> is {@code null}.
+     */
+    public V get(RelativePath path) throws IllegalArgumentException {
+        Asserts.notNull(path, "Path cannot be null.");
+
+        Node<V> node = root;
+        for (int i = 0; i < path.getSegmentCount() && node != null; i++) {
+            node = node.find(path.getSegment(i));
+        }
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Lookup the value associated with a path, starting at a given offset within the string.
+     *
+     * @param path   String containing the path.
+     * @param offset Index of the first character of the relative path within <i>path</i>.
+     * @return Value associated with the path or {@code null} if none.
+     */
+    public V get(String path, int offset) {
+        Node<V> node = findNode(path, offset);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Determine whether a path is either associated with a value or is an ancestor of a path associated with a value.
+     *
+     * @param path   String containing the path.
+     * @param offset Index of the first character of the relative path within <i>path</i>.
+     * @return {@code true} if the path is a node of this trie, {@code false} if not.
+     */
+    public boolean containsPrefix(String path, int offset) {
+        return findNode(path, offset) != null;
+    }
+
+    /**
+     * Collect all values associated with a path or with any of its descendants (e.g.: for <i>services</i>, the values of
+     * <i>services</i>, <i>services/auth/src</i>, <i>services/billing/src</i> and so on).
+     *
+     * @param path   String containing the path.
+     * @param offset Index of the first character of the relative path within <i>path</i>.
+     * @return Values found in the subtree of the path, in no particular order.
+     */
+    public List<V> getSubtree(String path, int offset) {
+        List<V> values = new ArrayList<>();
+        Node<V> node = findNode(path, offset);
+        if (node == null) {
+            return values;
+        }
+
+        Deque<Node<V>> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Node<V> current = pending.pop();
+            if (current.value != null) {
+                values.add(current.value);
+            }
+            if (current.children != null) {
+                for (Node<V> child : current.children) {
+                    if (child != null) {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Lookup the value of the nearest path containing a given path, i.e.: the value associated with the path itself
+     * or with its deepest ancestor (e.g.: for <i>services/auth/src/main</i>, the value of <i>services/auth/src</i>).
+     *
+     * @param path   String containing the path.
+     * @param offset Index of the first character of the relative path within <i>path</i>.
+     * @return Value of the nearest containing path, or {@code null} if none.
+     */
+    public V getNearest(String path, int offset) {
+        Asserts.notNull(path, "Path cannot be null.");
+
+        Node<V> node = root;
+        V nearest = root.value;
+        int length = path.length();
+        int index = offset;
+        while (index < length) {
+            int end = segmentEnd(path, index);
+            if (end > index) {
+                node = node.find(path, index, end);
+                if (node == null) {
+                    break;
+                }
+                if (node.value != null) {
+                    nearest = node.value;
+                }
+            }
+            index = end + 1;
+        }
+        return nearest;
+    }
+
+    /**
+     * @return Number of paths associated with a value.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if no path is associated with a value.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        root.clear();
+        size = 0;
+    }
+
+    /**
+     * Walk the trie along the segments of a path.
+     *
+     * @param path   String containing the path.
+     * @param offset Index of the first character of the relative path within <i>path</i>.
+     * @return Node representing the path or {@code null} if no such node exists.
+     */
+    private Node<V> findNode(String path, int offset) {
+        Asserts.notNull(path, "Path cannot be null.");
+
+        Node<V> node = root;
+        int length = path.length();
+        int index = offset;
+        while (index < length && node != null) {
+            int end = segmentEnd(path, index);
+            if (end > index) {
+                node = node.find(path, index, end);
+            }
+            index = end + 1;
+        }
+        return node;
+    }
+
+    /**
+     * @param path  Path string.
+     * @param start Start index of a segment.
+     * @return Index of the slash terminating the segment, or the length of <i>path</i> if this is the last segment.
+     */
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return end >= 0 ? end : path.length();
+    }
+
+    /**
+     * Compute hash code of a region of a string, identical to {@link String#hashCode()} of the equivalent substring.
+     *
+     * @param str   String.
+     * @param start Start index (inclusive).
+     * @param end   End index (exclusive).
+     * @return Hash code.
+     */
+    static int hash(String str, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + str.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Trie node. Children are kept in an open-addressing hash table keyed by segment name.
+     *
+     * @param <V> Type of value.
+     */
+    private static class Node<V> {
+
+        /**
+         * Name of the segment this node represents ({@code null} for the root node).
+         */
+        final String name;
+
+        /**
+         * Value associated with the path this node represents, or {@code null} if none.
+         */
+        V value;
+
+        /**
+         * Segment names of children (hash table slots).
+         */
+        String[] keys;
+
+        /**
+         * Children nodes (hash table slots, parallel to {@link #keys}).
+         */
+        Node<V>[] children;
+
+        /**
+         * Number of children.
+         */
+        int count;
+
+        /**
+         * Class constructor.
+         *
+         * @param name Segment name.
+         */
+        Node(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Lookup a child by a segment name, given as a region of a string.
+         *
+         * @param path  String containing the segment.
+         * @param start Start index of segment (inclusive).
+         * @param end   End index of segment (exclusive).
+         * @return Child node or {@code null} if none.
+         */
+        Node<V> find(String path, int start, int end) {
+            if (keys == null) {
+                return null;
+            }
+
+            int length = end - start;
+            int mask = keys.length - 1;
+            for (int slot = mix(hash(path, start, end)) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key.length() == length && key.regionMatches(0, path, start, length)) {
+                    return children[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Lookup a child by a segment name.
+         *
+         * @param segment Segment name.
+         * @return Child node or {@code null} if none.
+         */
+        Node<V> find(String segment) {
+            if (keys == null) {
+                return null;
+            }
+
+            int mask = keys.length - 1;
+            for (int slot = mix(segment.hashCode()) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key == segment || key.equals(segment)) {
+                    return children[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Add a new child.
+         *
+         * @param segment Segment name of the child.
+         * @return Newly created child.
+         */
+        Node<V> add(String segment) {
+            if (keys == null || (count + 1) * 4 > keys.length * 3) {
+                resize(keys == null ? 4 : keys.length * 2);
+            }
+
+            Node<V> child = new Node<>(segment);
+            insert(child);
+            count++;
+            return child;
+        }
+
+        /**
+         * Remove a child.
+         *
+         * @param child Child to remove.
+         */
+        void remove(Node<V> child) {
+            Node<V>[] old = children;
+            keys = null;
+            children = null;
+            count--;
+            if (count > 0) {
+                resize(old.length);
+                for (Node<V> node : old) {
+                    if (node != null && node != child) {
+                        insert(node);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Remove all children and value.
+         */
+        void clear() {
+            keys = null;
+            children = null;
+            count = 0;
+            value = null;
+        }
+
+        /**
+         * Insert a node to its slot in the hash table (table must have a free slot).
+         *
+         * @param child Node to insert.
+         */
+        private void insert(Node<V> child) {
+            int mask = keys.length - 1;
+            int slot = mix(child.name.hashCode()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = child.name;
+            children[slot] = child;
+        }
+
+        /**
+         * Grow hash table.
+         *
+         * @param capacity New capacity (a power of 2).
+         */
+        @SuppressWarnings("unchecked")
+        private void resize(int capacity) {
+            Node<V>[] old = children;
+            keys = new String[capacity];
+            children = (Node<V>[]) new Node[capacity];
+            if (old != null) {
+                for (Node<V> child : old) {
+                    if (child != null) {
+                        insert(child);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Spread hash bits, so similar names do not cluster.
+         *
+         * @param h Hash code.
+         * @return Mixed hash code.
+         */
+        private static int mix(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+}
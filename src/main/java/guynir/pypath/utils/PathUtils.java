@@ -0,0 +1,195 @@
+package guynir.pypath.utils;
+
+/**
+ * Utilities for handling slash separated paths, as used by Intellij's virtual file system (regardless of the
+ * underlying operating system).<p>
+ * All utilities work on the characters of the given strings in place: prefix checks never allocate, and normalization
+ * allocates at most the resulting string (none at all if the given path is already normalized).
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class PathUtils {
+
+    /**
+     * Normalize path (e.g.: /dir1/dir2/../dir3 -> dir1/dir3) in a single pass. The following rules are applied:
+     * <ul>
+     *     <li>Leading and trailing spaces are removed.</li>
+     *     <li>Leading, trailing and repeated slashes are removed.</li>
+     *     <li>"." segments are removed, and each ".." segment removes the segment preceding it. A ".." segment
+     *     leading an absolute path is removed, while one leading a relative path is kept (e.g.: ../dir1).</li>
+     *     <li>A root directory (e.g. "/" or empty string) is always represented as "/".</li>
+     * </ul>
+     * NOTE: If the provided <i>path</i> is {@code null}, the result is also {@code null}.
+     *
+     * @param path Path to normalize.
+     * @return Normalized path or {@code null} if <i>path</i> is {@code null}.
+     */
+    public static String normalize(String path) {
+        if (path == null || isNormalized(path)) {
+            return path;
+        }
+
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        boolean absolute = start < end && path.charAt(start) == '/';
+        char[] result = new char[end - start];
+        int length = 0;
+
+        // Length of the leading "../.." sequence of a relative path, which cannot be reduced any further.
+        int fixed = 0;
+
+        int index = start;
+        while (index < end) {
+            int segmentEnd = index;
+            while (segmentEnd < end && path.charAt(segmentEnd) != '/') {
+                segmentEnd++;
+            }
+
+            int segmentLength = segmentEnd - index;
+            if (segmentLength == 0 || (segmentLength == 1 && path.charAt(index) == '.')) {
+                // Empty or current directory segment -- skip.
+            } else if (segmentLength == 2 && path.charAt(index) == '.' && path.charAt(index + 1) == '.') {
+                if (length > fixed) {
+                    // Remove preceding segment (along with the slash preceding it).
+                    int i = length - 1;
+                    while (i > fixed && result[i] != '/') {
+                        i--;
+                    }
+                    length = i;
+                } else if (!absolute) {
+                    if (length > 0) {
+                        result[length++] = '/';
+                    }
+                    result[length++] = '.';
+                    result[length++] = '.';
+                    fixed = length;
+                }
+            } else {
+                if (length > 0) {
+                    result[length++] = '/';
+                }
+                path.getChars(index, segmentEnd, result, length);
+                length += segmentLength;
+            }
+
+            index = segmentEnd + 1;
+        }
+
+        return length > 0 ? new String(result, 0, length) : "/";
+    }
+
+    /**
+     * Append the non-empty segments of a path to a buffer, each preceded by a slash (e.g.: <i>/dir1//dir2/</i> is
+     * appended as <i>/dir1/dir2</i>). Leading and trailing spaces of <i>path</i> are ignored. Nothing is appended if
+     * <i>path</i> has no segments (e.g.: "/" or empty string).
+     *
+     * @param buf  Buffer to append to.
+     * @param path Path to append.
+     * @return <i>buf</i>.
+     * @throws IllegalArgumentException If either arguments are {@code null}.
+     */
+    public static StringBuilder appendSegments(StringBuilder buf, String path) throws IllegalArgumentException {
+        Asserts.notNull(buf, "Buffer cannot be null.");
+        Asserts.notNull(path, "Path cannot be null.");
+
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int index = start;
+        while (index < end) {
+            int segmentEnd = path.indexOf('/', index);
+            if (segmentEnd < 0 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+            if (segmentEnd > index) {
+                buf.append('/').append(path, index, segmentEnd);
+            }
+            index = segmentEnd + 1;
+        }
+        return buf;
+    }
+
+    /**
+     * Determine if a path equals a base path or resides within it, e.g.: <i>dir1/dir2</i> resides within <i>dir1</i>,
+     * while <i>dir12</i> does not.
+     *
+     * @param path Normalized relative path.
+     * @param base Normalized relative path of a directory (empty string for workspace root).
+     * @return {@code true} if <i>path</i> is <i>base</i> or resides within it.
+     */
+    public static boolean isWithin(String path, String base) {
+        return isWithin(path, 0, base);
+    }
+
+    /**
+     * Determine if the portion of a path starting at a given offset equals a base path or resides within it (see
+     * {@link #isWithin(String, String)}). Allows matching an absolute path against a relative base without creating a
+     * substring.
+     *
+     * @param path   Path to evaluate.
+     * @param offset Index of <i>path</i> the relative portion starts at.
+     * @param base   Normalized relative path of a directory (empty string for workspace root).
+     * @return {@code true} if the relative portion of <i>path</i> is <i>base</i> or resides within it.
+     */
+    public static boolean isWithin(String path, int offset, String base) {
+        int end = offset + base.length();
+        return base.isEmpty()
+                || (path.startsWith(base, offset) && (path.length() == end || path.charAt(end) == '/'));
+    }
+
+    /**
+     * Determine if a path is already in its {@link #normalize(String) normalized} form, i.e.: non-empty, has no
+     * surrounding spaces, no leading, trailing or repeated slashes, no "." segments and no ".." segments other than
+     * a leading sequence of a relative path. The root path "/" is normalized as well.
+     *
+     * @param path Path to evaluate.
+     * @return {@code true} if <i>path</i> is normalized.
+     */
+    static boolean isNormalized(String path) {
+        int length = path.length();
+        if (length == 0) {
+            return false;
+        } else if (length == 1 && path.charAt(0) == '/') {
+            return true;
+        } else if (path.charAt(0) <= ' ' || path.charAt(length - 1) <= ' ' || path.charAt(length - 1) == '/') {
+            return false;
+        }
+
+        boolean parentsOnly = true;
+        int index = 0;
+        while (index <= length) {
+            int segmentEnd = path.indexOf('/', index);
+            if (segmentEnd < 0) {
+                segmentEnd = length;
+            }
+
+            int segmentLength = segmentEnd - index;
+            if (segmentLength == 0 || (segmentLength == 1 && path.charAt(index) == '.')) {
+                return false;
+            } else if (segmentLength == 2 && path.charAt(index) == '.' && path.charAt(index + 1) == '.') {
+                if (!parentsOnly) {
+                    return false;
+                }
+            } else {
+                parentsOnly = false;
+            }
+
+            index = segmentEnd + 1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,250 @@
+package guynir.pypath.utils;
+
+import com.intellij.util.containers.Interner;
+import com.intellij.util.containers.WeakInterner;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, workspace relative path, held as a sequence of segments (e.g.: <i>services/auth/src</i> is held as
+ * <i>services</i>, <i>auth</i> and <i>src</i>).<p>
+ * Segments are split once, upon creation, and are interned, so paths sharing segments (and tries keyed by them, see
+ * {@link PathTrie#put(RelativePath, Object)}) share the same strings, and segments can be compared by reference. The
+ * hash code is computed once as well, hence equality checks of distinct paths rarely go beyond comparing hashes.<p>
+ * Empty segments are ignored, so leading, trailing and repeated slashes do not affect a path (e.g.: <i>/dir1//dir2/</i>
+ * equals <i>dir1/dir2</i>). "." and ".." segments are kept as-is. The root path is represented by an empty string.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public final class RelativePath {
+
+    /**
+     * Path of the workspace root.
+     */
+    public static final RelativePath ROOT = new RelativePath(new String[0]);
+
+    /**
+     * Pool of interned segments. Segments are held weakly, so a segment is evicted once no path references it;
+     * equal segments of paths that are alive at the same time are still the same instance.
+     */
+    private static final Interner<String> SEGMENTS = new WeakInterner<>();
+
+    /**
+     * Interned segments of the path.
+     */
+    private final String[] segments;
+
+    /**
+     * Hash code of the path.
+     */
+    private final int hash;
+
+    /**
+     * String representation of the path, computed on first use.
+     */
+    private String path;
+
+    /**
+     * Class constructor.
+     *
+     * @param segments Interned segments of the path.
+     */
+    private RelativePath(String[] segments) {
+        this.segments = segments;
+        this.hash = Arrays.hashCode(segments);
+    }
+
+    /**
+     * Create a path from its string representation.
+     *
+     * @param path Slash separated path (e.g.: <i>services/auth/src</i>).
+     * @return New path.
+     * @throws IllegalArgumentException If <i>path</i> is {@code null}.
+     */
+    public static RelativePath of(String path) throws IllegalArgumentException {
+        Asserts.notNull(path, "Path cannot be null.");
+
+        int count = 0;
+        int length = path.length();
+        for (int i = 0; i < length; i++) {
+            if (path.charAt(i) != '/' && (i == 0 || path.charAt(i - 1) == '/')) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return ROOT;
+        }
+
+        String[] segments = new String[count];
+        int index = 0;
+        int start = 0;
+        int chars = 0;
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                segments[index++] = intern(path.substring(start, end));
+                chars += end - start;
+            }
+            start = end + 1;
+        }
+
+        RelativePath relativePath = new RelativePath(segments);
+        if (length == chars + count - 1) {
+            // Path has no leading, trailing or repeated slashes, hence it is already in its canonical form.
+            relativePath.path = path;
+        }
+        return relativePath;
+    }
+
+    /**
+     * @return Number of segments (zero for the root path).
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * @param index Index of segment.
+     * @return Segment at <i>index</i>.
+     * @throws IndexOutOfBoundsException If <i>index</i> is out of range.
+     */
+    public String getSegment(int index) throws IndexOutOfBoundsException {
+        return segments[index];
+    }
+
+    /**
+     * @return Name of the last segment, or an empty string for the root path.
+     */
+    public String getName() {
+        return segments.length > 0 ? segments[segments.length - 1] : "";
+    }
+
+    /**
+     * @return {@code true} if this is the path of the workspace root.
+     */
+    public boolean isRoot() {
+        return segments.length == 0;
+    }
+
+    /**
+     * @return Parent path, or {@code null} if this is the root path.
+     */
+    public RelativePath getParent() {
+        if (segments.length == 0) {
+            return null;
+        }
+        return segments.length == 1 ? ROOT : new RelativePath(Arrays.copyOf(segments, segments.length - 1));
+    }
+
+    /**
+     * Determine if this path equals a given path or resides within it (e.g.: <i>dir1/dir2</i> starts with <i>dir1</i>,
+     * while <i>dir12</i> does not).
+     *
+     * @param prefix Path to evaluate.
+     * @return {@code true} if this path is <i>prefix</i> or resides within it.
+     * @throws IllegalArgumentException If <i>prefix</i> is {@code null}.
+     */
+    public boolean startsWith(RelativePath prefix) throws IllegalArgumentException {
+        Asserts.notNull(prefix, "Prefix cannot be null.");
+
+        if (prefix.segments.length > segments.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.segments.length; i++) {
+            // Segments are interned, hence equal segments are the same instance.
+            if (segments[i] != prefix.segments[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compute the path of a descendant relative to this path (e.g.: for <i>dir1</i> and <i>dir1/dir2/dir3</i>, the
+     * result is <i>dir2/dir3</i>).
+     *
+     * @param descendant Path equal to, or residing within, this path.
+     * @return Path of <i>descendant</i> relative to this path ({@link #ROOT} if both paths are equal).
+     * @throws IllegalArgumentException If <i>descendant</i> is {@code null} or does not reside within this path.
+     */
+    public RelativePath relativize(RelativePath descendant) throws IllegalArgumentException {
+        Asserts.notNull(descendant, "Descendant cannot be null.");
+        if (!descendant.startsWith(this)) {
+            throw new IllegalArgumentException("Path " + descendant + " is not within " + this + ".");
+        }
+
+        if (descendant.segments.length == segments.length) {
+            return ROOT;
+        }
+        return isRoot()
+                ? descendant
+                : new RelativePath(Arrays.copyOfRange(descendant.segments, segments.length, descendant.segments.length));
+    }
+
+    /**
+     * Resolve a path relative to this path (e.g.: for <i>dir1</i> and <i>dir2/dir3</i>, the result is
+     * <i>dir1/dir2/dir3</i>).
+     *
+     * @param other Path relative to this path.
+     * @return Resolved path.
+     * @throws IllegalArgumentException If <i>other</i> is {@code null}.
+     */
+    public RelativePath resolve(RelativePath other) throws IllegalArgumentException {
+        Asserts.notNull(other, "Path cannot be null.");
+
+        if (other.isRoot()) {
+            return this;
+        } else if (isRoot()) {
+            return other;
+        }
+
+        String[] resolved = Arrays.copyOf(segments, segments.length + other.segments.length);
+        System.arraycopy(other.segments, 0, resolved, segments.length, other.segments.length);
+        return new RelativePath(resolved);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RelativePath that = (RelativePath) o;
+        if (hash != that.hash || segments.length != that.segments.length) {
+            return false;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] != that.segments[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @return Slash separated path, without leading or trailing slashes (empty string for the root path).
+     */
+    @Override
+    public String toString() {
+        String path = this.path;
+        if (path == null) {
+            path = this.path = String.join("/", segments);
+        }
+        return path;
+    }
+
+    /**
+     * @param segment Segment to intern.
+     * @return Pooled instance equal to <i>segment</i>.
+     */
+    private static String intern(String segment) {
+        return SEGMENTS.intern(segment);
+    }
+}
@@ -7,10 +7,14 @@ import com.intellij.openapi.roots.ContentEntry;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.roots.SourceFolder;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.fixtures.BasePlatformTestCase;
 import guynir.pypath.container.ServiceContainer;
 import guynir.pypath.managers.SourceFoldersManager;
+import guynir.pypath.managers.SourceRootTypes;
+import guynir.pypath.managers.VfsEventFilter;
 import guynir.pypath.services.VfsService;
+import guynir.pypath.state.SourceType;
 import org.assertj.core.api.Assertions;
 
 import java.util.Arrays;
@@ -58,6 +62,9 @@ public class PluginIntegrationTest extends BasePlatformTestCase {
         ServiceContainer container = ServiceManager.getService(getProject(), ServiceContainer.class);
         vfsService = container.vfsService;
         sourceFoldersManager = container.sourceFoldersManager;
+
+        // Apply the refresh triggered by the listing file creation.
+        testHelper.flushPendingChanges();
     }
 
     /**
@@ -65,8 +72,12 @@ public class PluginIntegrationTest extends BasePlatformTestCase {
      */
     @Override
     protected void tearDown() throws Exception {
-        // Remove all previously generated source folders.
-        sourceFoldersManager.getManagedFolders().forEach(sourceFoldersManager::removeSourceFolder);
+        // Restore immediate synchronization, in case a test left it off.
+        sourceFoldersManager.setBackgroundMode(false);
+
+        // Remove all previously generated source folders and exclude patterns.
+        testHelper.removeAllExcludePatterns();
+        sourceFoldersManager.removeSourceFolders(sourceFoldersManager.getManagedFolders());
 
         // Delete files created during test.
         testHelper.managedResourceCleanup();
@@ -206,6 +217,267 @@ public class PluginIntegrationTest extends BasePlatformTestCase {
         assertFolders("managed_src_dir");
     }
 
+    /**
+     * Test that moving a parent folder out of its listed location un-marks all managed folders within it.
+     */
+    public void testShouldRemoveNestedSourceFoldersAfterParentRename() {
+        testHelper.writeListingFile("services/auth/src", "services/billing/src");
+        testHelper.createDirectory("services/auth/src");
+        testHelper.createDirectory("services/billing/src");
+        assertFolders("services/auth/src", "services/billing/src");
+
+        testHelper.renameDirectory("services", "apps");
+
+        assertFolders();
+    }
+
+    /**
+     * Test that moving a parent folder keeps nested folders marked when their new location is listed as well, and
+     * marks nested folders that moved into a listed location.
+     */
+    public void testShouldFollowNestedSourceFoldersAfterParentRename() {
+        testHelper.writeListingFile("services/auth/src", "apps/auth/src", "apps/billing/src");
+        testHelper.createDirectory("services/auth/src");
+        testHelper.createDirectory("services/billing/src");
+        assertFolders("services/auth/src");
+
+        testHelper.renameDirectory("services", "apps");
+
+        assertFolders("apps/auth/src", "apps/billing/src");
+    }
+
+    /**
+     * Test that folders listed under the 'excluded' section are marked as excluded folders, rather than as source
+     * folders.
+     */
+    public void testShouldMarkExcludedFolders() {
+        testHelper.createDirectory(".venv");
+        testHelper.createDirectory("build");
+        testHelper.createDirectory("src2");
+        testHelper.writeListingFile("src2", "[excluded]", ".venv", "build");
+
+        assertFolders("src2");
+        assertExcludedFolders(".venv", "build");
+    }
+
+    /**
+     * Test that an excluded folder is no longer excluded once it is removed from the listing.
+     */
+    public void testShouldRemoveExcludedFolderAfterListingUpdate() {
+        testHelper.createDirectory(".venv");
+        testHelper.createDirectory("build");
+        testHelper.writeListingFile("[excluded]", ".venv", "build");
+        assertExcludedFolders(".venv", "build");
+
+        testHelper.writeListingFile("excluded:.venv");
+
+        assertExcludedFolders(".venv");
+    }
+
+    /**
+     * Test that deleting a listed excluded folder removes its exclusion.
+     */
+    public void testShouldRemoveExcludedFolderAfterDeletion() {
+        testHelper.createDirectory("build");
+        testHelper.writeListingFile("excluded:build");
+        assertExcludedFolders("build");
+
+        testHelper.deleteDirectory("build");
+
+        assertExcludedFolders();
+    }
+
+    /**
+     * Test that listed exclude patterns are applied to the content entry as-is, and that patterns no longer listed
+     * are removed from it.
+     */
+    public void testShouldApplyAndRemoveExcludePatterns() {
+        testHelper.writeListingFile("[exclude-patterns]", "__pycache__", "*.egg-info");
+        Assertions.assertThat(testHelper.getAllExcludePatterns())
+                .containsExactlyInAnyOrder("__pycache__", "*.egg-info");
+
+        testHelper.writeListingFile("exclude-pattern:__pycache__");
+        Assertions.assertThat(testHelper.getAllExcludePatterns()).containsExactly("__pycache__");
+
+        testHelper.writeListingFile();
+        Assertions.assertThat(testHelper.getAllExcludePatterns()).isEmpty();
+    }
+
+    /**
+     * Test that a source folder listed as excluded is re-marked in place (and vice versa), without leaving a stale
+     * marking of its former kind.
+     */
+    public void testShouldReMarkSourceFolderAsExcluded() {
+        testHelper.createDirectory("app/build");
+        testHelper.writeListingFile("app/build");
+        assertFolders("app/build");
+        assertExcludedFolders();
+
+        testHelper.writeListingFile("excluded:app/build");
+        assertFolders();
+        assertExcludedFolders("app/build");
+
+        testHelper.writeListingFile("app/build");
+        assertFolders("app/build");
+        assertExcludedFolders();
+    }
+
+    /**
+     * Test that folders are marked with the root type of their section or line prefix.
+     */
+    public void testShouldMarkTypedRoots() {
+        testHelper.createDirectory("app/src");
+        testHelper.createDirectory("app/static");
+        testHelper.createDirectory("app/tests/fixtures");
+        testHelper.writeListingFile("app/src", "resource:app/static", "[tests]", "app/tests",
+                "test-resource:app/tests/fixtures");
+
+        assertFolders("app/src", "app/static", "app/tests", "app/tests/fixtures");
+        assertFolderType("app/src", SourceType.SOURCE_ROOT);
+        assertFolderType("app/static", SourceType.RESOURCE_ROOT);
+        assertFolderType("app/tests", SourceType.TEST_SOURCE_ROOT);
+        assertFolderType("app/tests/fixtures", SourceType.TEST_RESOURCE_ROOT);
+    }
+
+    /**
+     * Test that changing the type of a listed folder re-types its existing root in place.
+     */
+    public void testShouldReTypeRootInPlace() {
+        testHelper.createDirectory("app/tests");
+        testHelper.writeListingFile("app/tests");
+        assertFolderType("app/tests", SourceType.SOURCE_ROOT);
+
+        testHelper.writeListingFile("test:app/tests");
+
+        assertFolders("app/tests");
+        assertFolderType("app/tests", SourceType.TEST_SOURCE_ROOT);
+    }
+
+    /**
+     * Test that a YAML listing takes precedence over the plain one, and that entries targeting a module set the
+     * package prefix of their folders, while entries targeting a non-existing module are skipped.
+     */
+    public void testShouldApplyYamlListing() {
+        testHelper.createDirectory("billing/src");
+        testHelper.createDirectory("auth/src");
+        testHelper.createDirectory("tests");
+        testHelper.createDirectory("plain");
+        testHelper.writeListingFile("plain");
+        assertFolders("plain");
+
+        testHelper.writeYamlListingFile(
+                "sources:",
+                "  - path: billing/src",
+                "    module: " + getModule().getName(),
+                "    package: com.acme.billing",
+                "  - path: auth/src",
+                "    module: no_such_module",
+                "tests: [tests]");
+
+        assertFolders("billing/src", "tests");
+        assertFolderType("tests", SourceType.TEST_SOURCE_ROOT);
+        Assertions.assertThat(getSourceFolder("billing/src").getPackagePrefix()).isEqualTo("com.acme.billing");
+    }
+
+    /**
+     * Test that a nested listing file is merged with its ancestor: its paths are relative to its own directory, it
+     * may exclude and re-type paths listed by the ancestor, and entries reaching outside of its directory are ignored.
+     */
+    public void testShouldMergeNestedListingFile() {
+        testHelper.createDirectory("services/billing/src");
+        testHelper.createDirectory("services/billing/legacy");
+        testHelper.createDirectory("services/billing/tests");
+        testHelper.createDirectory("services/shared");
+        testHelper.writeListingFile("services/billing/src", "services/billing/legacy", "services/billing/tests");
+        assertFolders("services/billing/src", "services/billing/legacy", "services/billing/tests");
+
+        testHelper.writeNestedListingFile("services/billing", "!legacy", "test:tests", "../shared");
+
+        assertFolders("services/billing/src", "services/billing/tests");
+        assertFolderType("services/billing/tests", SourceType.TEST_SOURCE_ROOT);
+    }
+
+    /**
+     * Test that the paths of a nested listing file are no longer managed once it is deleted.
+     */
+    public void testShouldRemoveNestedListingAfterDeletion() {
+        testHelper.createDirectory("services/auth/src");
+        testHelper.writeNestedListingFile("services/auth", "src");
+        assertFolders("services/auth/src");
+
+        testHelper.deleteFile("services/auth" + SourceFoldersManager.SOURCE_DIR_FILE);
+
+        assertFolders();
+    }
+
+    /**
+     * Test that the bulk synchronization task applies a listing spanning several resolution chunks, superseding a
+     * pending background synchronization.
+     */
+    public void testShouldSynchronizeUsingBulkTask() {
+        String[] names = new String[SourceFoldersManager.RESOLVE_CHUNK_SIZE + 1];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "bulk/dir" + i;
+        }
+
+        // Defer automatic synchronization to a background read action, which is not completed until UI events are
+        // dispatched.
+        sourceFoldersManager.setBackgroundMode(true);
+        testHelper.writeListingFile("bulk/*");
+        testHelper.createDirectories(names);
+
+        sourceFoldersManager.runBulkReconciliation();
+        PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+        sourceFoldersManager.setBackgroundMode(false);
+
+        assertFolders(names);
+
+        // The listing is applied, hence another run changes nothing.
+        sourceFoldersManager.runBulkReconciliation();
+        PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+        assertFolders(names);
+    }
+
+    /**
+     * Test that a listing update made while the bulk synchronization task is running is applied once the task
+     * finishes, rather than being overridden by the task's plan.
+     */
+    public void testShouldApplyListingUpdatedDuringBulkTask() {
+        testHelper.createDirectories("src1", "src2");
+
+        sourceFoldersManager.setBackgroundMode(true);
+        testHelper.writeListingFile("src1");
+        sourceFoldersManager.runBulkReconciliation();
+        testHelper.writeListingFile("src2");
+
+        // Complete the task, then the synchronization deferred until it finished.
+        PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+        PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+        sourceFoldersManager.setBackgroundMode(false);
+
+        assertFolders("src2");
+    }
+
+    /**
+     * Test that a background synchronization superseded by a newer one does not leave the patterns of its listing
+     * watched.
+     */
+    public void testShouldWatchPatternsOfLatestBackgroundSynchronization() {
+        testHelper.createDirectories("libs/a", "services/a");
+
+        sourceFoldersManager.setBackgroundMode(true);
+        testHelper.writeListingFile("libs/*");
+        testHelper.writeListingFile("services/*");
+        PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+        sourceFoldersManager.setBackgroundMode(false);
+
+        assertFolders("services/a");
+
+        VfsEventFilter filter = sourceFoldersManager.getEventFilter();
+        Assertions.assertThat(filter.isWithinPatternScope(vfsService.getBaseDirPath() + "/services/b")).isTrue();
+        Assertions.assertThat(filter.isWithinPatternScope(vfsService.getBaseDirPath() + "/libs/b")).isFalse();
+    }
+
     /**
      * Assert that a given list of folder names are registered as source folders.
      *
@@ -223,6 +495,43 @@ public class PluginIntegrationTest extends BasePlatformTestCase {
         }
     }
 
+    /**
+     * Assert that a given list of folder names, and only them, are registered as excluded folders.
+     *
+     * @param names List of names.
+     */
+    protected void assertExcludedFolders(String... names) {
+        String[] urls = Arrays.stream(names).map(vfsService::toURL).toArray(String[]::new);
+        Assertions.assertThat(testHelper.getAllExcludedFoldersUrls()).containsExactlyInAnyOrder(urls);
+    }
+
+    /**
+     * Assert that a folder is registered as source folder of a given type.
+     *
+     * @param folderName Folder name.
+     * @param type       Expected type.
+     */
+    protected void assertFolderType(String folderName, SourceType type) {
+        Assertions.assertThat(SourceRootTypes.isOfType(getSourceFolder(folderName), type)).as(folderName).isTrue();
+    }
+
+    /**
+     * Lookup the source folder registered for a folder name.
+     *
+     * @param folderName Folder name.
+     * @return Source folder of <i>folderName</i>.
+     */
+    protected SourceFolder getSourceFolder(String folderName) {
+        String name = vfsService.toURL(folderName);
+        SourceFolder sourceFolder = getAllSourceFolders()
+                .stream()
+                .filter(folder -> folder.getFile() != null && folder.getFile().getUrl().equals(name))
+                .findFirst()
+                .orElse(null);
+        Assertions.assertThat(sourceFolder).as(folderName).isNotNull();
+        return sourceFolder;
+    }
+
     /**
      * @return List of all source folders within the project.
      */
@@ -1,6 +1,7 @@
 package guynir.pypath;
 
 import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtil;
@@ -14,6 +15,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileVisitor;
 import com.intellij.testFramework.fixtures.TempDirTestFixture;
 import com.intellij.util.ThrowableRunnable;
+import guynir.pypath.container.ServiceContainer;
 import guynir.pypath.managers.SourceFoldersManager;
 import guynir.pypath.services.FileNotFoundException;
 import org.jetbrains.annotations.NotNull;
@@ -60,12 +62,45 @@ public class PluginTestHelper {
      * @param contents Lines to write.
      */
     public void writeListingFile(String... contents) {
+        writeFile(SourceFoldersManager.SOURCE_DIR_FILE, contents);
+    }
+
+    /**
+     * Write to YAML listing file, creating it if it does not exist.
+     *
+     * @param contents Lines to write.
+     */
+    public void writeYamlListingFile(String... contents) {
+        writeFile(SourceFoldersManager.SOURCE_DIR_YAML_FILE, contents);
+    }
+
+    /**
+     * Write to a nested listing file, creating it (along with its directory) if it does not exist.
+     *
+     * @param directory Directory of the listing file (relative to workspace root).
+     * @param contents  Lines to write.
+     */
+    public void writeNestedListingFile(String directory, String... contents) {
+        writeFile(directory + SourceFoldersManager.SOURCE_DIR_FILE, contents);
+    }
+
+    /**
+     * Write to a file, creating it (along with its parent directories) if it does not exist.
+     *
+     * @param path     Path of file (relative to workspace root).
+     * @param contents Lines to write.
+     */
+    public void writeFile(String path, String... contents) {
         writeOp(() -> {
-            VirtualFile listingFile = getFile(SourceFoldersManager.SOURCE_DIR_FILE);
-            try (PrintWriter printer = new PrintWriter(new OutputStreamWriter(listingFile.getOutputStream(this)))) {
+            VirtualFile file = fixture.getFile(path);
+            if (file == null) {
+                file = fixture.createFile(path);
+                createdFiles.add(file);
+            }
+            try (PrintWriter printer = new PrintWriter(new OutputStreamWriter(file.getOutputStream(this)))) {
                 Arrays.stream(contents).forEach(printer::println);
             } catch (IOException ex) {
-                throw new RuntimeException("Failed to write to listing file -- source_dirs", ex);
+                throw new RuntimeException("Failed to write to file -- " + path, ex);
             }
         });
     }
@@ -133,7 +168,8 @@ public class PluginTestHelper {
     }
 
     /**
-     * Execute a write operation in a dedicated thread. Blocks until operation completes.
+     * Execute a write operation in a dedicated thread. Blocks until operation completes, including any refresh
+     * triggered by the operation.
      *
      * @param runnable Runnable to execute.
      */
@@ -143,6 +179,17 @@ public class PluginTestHelper {
         } catch (Exception ex) {
             throw new RuntimeException("Write execution error.", ex);
         }
+        flushPendingChanges();
+    }
+
+    /**
+     * Execute refresh requests queued by the plugin's VFS listener.
+     */
+    public void flushPendingChanges() {
+        ServiceContainer container = ServiceManager.getService(project, ServiceContainer.class);
+        if (container != null && container.changesListenerManager != null) {
+            container.changesListenerManager.flush();
+        }
     }
 
     /**
@@ -161,6 +208,23 @@ public class PluginTestHelper {
         });
     }
 
+    /**
+     * Create new directories, all within a single write operation.
+     *
+     * @param directories Paths to directories (relative to workspace root).
+     */
+    public void createDirectories(String... directories) {
+        writeOp(() -> {
+            for (String directory : directories) {
+                try {
+                    createdFiles.add(fixture.findOrCreateDir(directory));
+                } catch (IOException ex) {
+                    throw new RuntimeException("Failed to create directory -- " + directory, ex);
+                }
+            }
+        });
+    }
+
     /**
      * Rename existing directory.
      *
@@ -194,6 +258,69 @@ public class PluginTestHelper {
         });
     }
 
+    /**
+     * Delete existing file.
+     *
+     * @param path Path of file to delete (relative to workspace root).
+     */
+    public void deleteFile(String path) {
+        writeOp(() -> {
+            try {
+                VirtualFile vf = getFile(path);
+                vf.delete(this);
+                createdFiles.remove(vf);
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed to delete file -- " + path, ex);
+            }
+        });
+    }
+
+    /**
+     * @return URLs of all excluded folders within the project.
+     */
+    public List<String> getAllExcludedFoldersUrls() {
+        List<String> urls = new LinkedList<>();
+        forEachContentEntry(entry -> Arrays.stream(entry.getExcludeFolders())
+                .forEach(folder -> urls.add(folder.getUrl())));
+        return urls;
+    }
+
+    /**
+     * @return Exclude patterns of all content entries within the project (a pattern set on several content entries is
+     * listed once per content entry).
+     */
+    public List<String> getAllExcludePatterns() {
+        List<String> patterns = new LinkedList<>();
+        forEachContentEntry(entry -> patterns.addAll(entry.getExcludePatterns()));
+        return patterns;
+    }
+
+    /**
+     * Remove all exclude patterns from all content entries within the project.
+     */
+    public void removeAllExcludePatterns() {
+        writeOp(() -> {
+            for (Module module : ModuleManager.getInstance(project).getModules()) {
+                ModifiableRootModel model = ModuleRootManager.getInstance(module).getModifiableModel();
+                for (ContentEntry entry : model.getContentEntries()) {
+                    entry.setExcludePatterns(Collections.emptyList());
+                }
+                model.commit();
+            }
+        });
+    }
+
+    /**
+     * Invoke a callback with each content entry within the project.
+     *
+     * @param consumer Callback to issue per content entry.
+     */
+    private void forEachContentEntry(Consumer<ContentEntry> consumer) {
+        for (Module module : ModuleManager.getInstance(project).getModules()) {
+            Arrays.stream(ModuleRootManager.getInstance(module).getContentEntries()).forEach(consumer);
+        }
+    }
+
     /**
      * Remove generated resources, such as files and folders.
      * Typically called during test tear down.
@@ -0,0 +1,110 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.intellij.testFramework.fixtures.TempDirTestFixture;
+
+import java.lang.reflect.Proxy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link ContentRootIndex}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ContentRootIndexITest extends BasePlatformTestCase {
+
+    /**
+     * Index under test, holding the content root of the test module and a nested content root (<i>services</i>) of
+     * another module.
+     */
+    private ContentRootIndex index;
+
+    /**
+     * Module owning the nested content root.
+     */
+    private Module otherModule;
+
+    /**
+     * Nested content root.
+     */
+    private VirtualFile services;
+
+    /**
+     * Directory residing in the nested content root.
+     */
+    private VirtualFile authSources;
+
+    /**
+     * Directory residing in the content root of the test module only.
+     */
+    private VirtualFile libs;
+
+    /**
+     * Test fixture -- create directories and build the index before each test.
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        TempDirTestFixture tempDir = this.myFixture.getTempDirFixture();
+        services = WriteAction.computeAndWait(() -> tempDir.findOrCreateDir("services"));
+        authSources = WriteAction.computeAndWait(() -> tempDir.findOrCreateDir("services/auth/src"));
+        libs = WriteAction.computeAndWait(() -> tempDir.findOrCreateDir("libs"));
+
+        // Module identity is all the index relies on.
+        otherModule = (Module) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Module.class},
+                (proxy, method, args) -> method.getName().equals("getName") ? "other" : null);
+
+        index = ContentRootIndex.build(new Module[]{getModule()});
+        index.add(otherModule, services);
+    }
+
+    /**
+     * Test that a directory resolves to the nearest content root it resides in, among all modules.
+     */
+    public void testShouldFindNearestContentRoot() {
+        assertThat(index.size()).isEqualTo(2);
+
+        ContentRootIndex.Root root = index.find(authSources);
+        assertThat(root).isNotNull();
+        assertThat(root.file).isEqualTo(services);
+        assertThat(root.module).isSameAs(otherModule);
+
+        root = index.find(libs);
+        assertThat(root).isNotNull();
+        assertThat(root.file).isEqualTo(libs.getParent());
+        assertThat(root.module).isSameAs(getModule());
+    }
+
+    /**
+     * Test that a lookup of a given module skips nested content roots of other modules.
+     */
+    public void testShouldFindContentRootOfModule() {
+        ContentRootIndex.Root root = index.find(authSources, getModule());
+        assertThat(root).isNotNull();
+        assertThat(root.file).isEqualTo(services.getParent());
+        assertThat(root.module).isSameAs(getModule());
+
+        assertThat(index.find(authSources, otherModule).file).isEqualTo(services);
+        assertThat(index.find(libs, otherModule)).isNull();
+    }
+
+    /**
+     * Test that a directory which is a content root itself resolves to the content root containing it, rather than to
+     * itself, and that the outermost content root resides in none.
+     */
+    public void testShouldNotResolveContentRootToItself() {
+        ContentRootIndex.Root root = index.find(services);
+        assertThat(root).isNotNull();
+        assertThat(root.file).isEqualTo(services.getParent());
+        assertThat(root.module).isSameAs(getModule());
+
+        assertThat(index.find(services, otherModule)).isNull();
+        assertThat(index.find(services.getParent())).isNull();
+    }
+}
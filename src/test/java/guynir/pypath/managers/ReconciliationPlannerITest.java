@@ -0,0 +1,72 @@
+package guynir.pypath.managers;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import guynir.pypath.container.ServiceContainer;
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.state.SourceType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link ReconciliationPlanner}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ReconciliationPlannerITest extends BasePlatformTestCase {
+
+    /**
+     * Test that resolution in chunks reports progress against all descriptors to mark and un-mark, rather than
+     * restarting between them.
+     */
+    public void testShouldReportProgressAgainstSingleTotal() {
+        ReconciliationPlanner planner = new ReconciliationPlanner(
+                ServiceManager.getService(getProject(), ServiceContainer.class).vfsService,
+                new HashSet<>(),
+                () -> ContentRootIndex.build(new Module[]{getModule()}),
+                name -> null,
+                () -> new Module[]{getModule()});
+
+        // Non existing directories -- resolved to nothing, yet reported.
+        ReconciliationPlanner.PendingChanges changes = planner.computeChanges(
+                Arrays.asList(descriptor("a"), descriptor("b"), descriptor("c")),
+                Arrays.asList(descriptor("d"), descriptor("e")));
+
+        List<String> texts = new ArrayList<>();
+        List<Double> fractions = new ArrayList<>();
+        planner.createPlan(changes, new EmptyProgressIndicator() {
+
+            @Override
+            public void setText(String text) {
+                texts.add(text);
+            }
+
+            @Override
+            public void setFraction(double fraction) {
+                fractions.add(fraction);
+            }
+        }, 2);
+
+        assertThat(texts).containsExactly(
+                "Resolving source folders (0 of 5)",
+                "Resolving source folders (2 of 5)",
+                "Resolving source folders (3 of 5)");
+        assertThat(fractions).containsExactly(0.0, 0.4, 0.6);
+    }
+
+    /**
+     * @param path Workspace relative path.
+     * @return Descriptor of a source root.
+     */
+    private static SourceDescriptor descriptor(String path) {
+        return new SourceDescriptor(SourceType.SOURCE_ROOT, path);
+    }
+}
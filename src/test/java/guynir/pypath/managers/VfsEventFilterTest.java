@@ -0,0 +1,119 @@
+package guynir.pypath.managers;
+
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.state.SourceType;
+import guynir.pypath.utils.GlobPattern;
+import guynir.pypath.utils.PathTrie;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests for {@link VfsEventFilter}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/23
+ */
+public class VfsEventFilterTest {
+
+    /**
+     * Filter under test.
+     */
+    private final VfsEventFilter filter = VfsEventFilter.compile("/workspace/", "/workspace/source_dirs", Arrays.asList(
+            new SourceDescriptor(SourceType.SOURCE_ROOT, "services/auth/src"),
+            new SourceDescriptor(SourceType.SOURCE_ROOT, "lib")));
+
+    /**
+     * Test that the listing file, managed folders and their ancestors are relevant.
+     */
+    @Test
+    public void testShouldAcceptRelevantPaths() {
+        Assertions.assertThat(filter.isRelevant("/workspace/source_dirs")).isTrue();
+        Assertions.assertThat(filter.isRelevant("/workspace/lib")).isTrue();
+        Assertions.assertThat(filter.isRelevant("/workspace/services")).isTrue();
+        Assertions.assertThat(filter.isRelevant("/workspace/services/auth/src")).isTrue();
+        Assertions.assertThat(filter.isRelevant("/workspace")).isTrue();
+        Assertions.assertThat(filter.isRelevant("/")).isTrue();
+    }
+
+    /**
+     * Test that unrelated paths and paths within managed folders are not relevant.
+     */
+    @Test
+    public void testShouldRejectIrrelevantPaths() {
+        Assertions.assertThat(filter.isRelevant("/workspace/node_modules/left-pad")).isFalse();
+        Assertions.assertThat(filter.isRelevant("/workspace/.venv")).isFalse();
+        Assertions.assertThat(filter.isRelevant("/workspace/lib/module.py")).isFalse();
+        Assertions.assertThat(filter.isRelevant("/workspace/services/billing")).isFalse();
+        Assertions.assertThat(filter.isRelevant("/workspace2/lib")).isFalse();
+        Assertions.assertThat(filter.isRelevant("/work")).isFalse();
+        Assertions.assertThat(filter.isRelevant(null)).isFalse();
+    }
+
+    /**
+     * Test detection of listing file and managed folders.
+     */
+    @Test
+    public void testShouldDetectListingFileAndManagedFolders() {
+        Assertions.assertThat(filter.isListingFile("/workspace/source_dirs")).isTrue();
+        Assertions.assertThat(filter.isListingFile("/workspace/lib/source_dirs")).isFalse();
+        Assertions.assertThat(filter.isListingFileName("source_dirs")).isTrue();
+        Assertions.assertThat(filter.isListingFileName("README")).isFalse();
+        Assertions.assertThat(filter.isManaged("/workspace/lib")).isTrue();
+        Assertions.assertThat(filter.isManaged("/workspace/services")).isFalse();
+    }
+
+    /**
+     * Test detection of listing files nested in registered directories.
+     */
+    @Test
+    public void testShouldDetectNestedListingFiles() {
+        Set<String> directories = new HashSet<>();
+        filter.setNestedListingDirectories(directories);
+        directories.add("services/auth");
+
+        Assertions.assertThat(filter.isListingFile("/workspace/services/auth/source_dirs")).isTrue();
+        Assertions.assertThat(filter.isRelevant("/workspace/services/auth/source_dirs")).isTrue();
+        Assertions.assertThat(filter.isListingFile("/workspace/services/auth/README")).isFalse();
+        Assertions.assertThat(filter.isListingFile("/workspace/services/source_dirs")).isFalse();
+        Assertions.assertThat(filter.isListingFile("/workspace/lib/source_dirs")).isFalse();
+        Assertions.assertThat(filter.isListingFile("/other/services/auth/source_dirs")).isFalse();
+    }
+
+    /**
+     * Test that changes of directories that may lead to a match of a listed pattern, including the pattern's base
+     * directory and its ancestors, are relevant.
+     */
+    @Test
+    public void testShouldAcceptPathsWithinPatternScope() {
+        filter.setPatterns(Collections.singletonList(GlobPattern.compile("packages/*/src")));
+
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/packages")).isTrue();
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/packages/billing")).isTrue();
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/tools")).isFalse();
+        Assertions.assertThat(filter.isRelevant("/workspace/packages/billing/src")).isTrue();
+        Assertions.assertThat(filter.isRelevant("/workspace/tools")).isFalse();
+    }
+
+    /**
+     * Test that changes within a pattern's base directory that cannot lead to a match are not relevant, even for a
+     * "**" pattern based at the workspace root.
+     */
+    @Test
+    public void testShouldRejectPathsNotLeadingToMatch() {
+        filter.setPatterns(Arrays.asList(GlobPattern.compile("packages/*/src"), GlobPattern.compile("**/tests")));
+
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/packages/billing/docs")).isTrue();
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/.git/objects")).isFalse();
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/libs/.cache")).isFalse();
+
+        filter.setPatterns(Collections.singletonList(GlobPattern.compile("packages/*/src")));
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/packages/billing/docs")).isFalse();
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/packages/billing/src")).isTrue();
+        Assertions.assertThat(filter.isWithinPatternScope("/workspace/packages/billing/src/main")).isFalse();
+    }
+}
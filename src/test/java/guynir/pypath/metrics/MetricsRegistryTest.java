@@ -0,0 +1,102 @@
+package guynir.pypath.metrics;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MetricsRegistry}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class MetricsRegistryTest {
+
+    /**
+     * Test that a disabled registry ignores all updates and does not read the clock.
+     */
+    @Test
+    public void testShouldIgnoreUpdatesWhenDisabled() {
+        MetricsRegistry metrics = new MetricsRegistry(false);
+        metrics.counter("counter").increment();
+        metrics.counter("counter").add(5);
+        metrics.histogram("histogram").record(10);
+
+        Assertions.assertThat(metrics.startTimer()).isZero();
+        Assertions.assertThat(metrics.counter("counter").get()).isZero();
+        Assertions.assertThat(metrics.histogram("histogram").getCount()).isZero();
+    }
+
+    /**
+     * Test that the shared disabled registry cannot be enabled.
+     */
+    @Test
+    public void testShouldNotEnableSharedDisabledRegistry() {
+        MetricsRegistry.DISABLED.setEnabled(false);
+
+        Assertions.assertThatExceptionOfType(UnsupportedOperationException.class)
+                .isThrownBy(() -> MetricsRegistry.DISABLED.setEnabled(true));
+        Assertions.assertThat(MetricsRegistry.DISABLED.isEnabled()).isFalse();
+    }
+
+    /**
+     * Test that counters are shared by name and accumulate updates.
+     */
+    @Test
+    public void testShouldCountUpdates() {
+        MetricsRegistry metrics = new MetricsRegistry(true);
+        metrics.counter("counter").increment();
+        metrics.counter("counter").add(5);
+
+        Assertions.assertThat(metrics.counter("counter")).isSameAs(metrics.counter("counter"));
+        Assertions.assertThat(metrics.counter("counter").get()).isEqualTo(6);
+
+        metrics.reset();
+        Assertions.assertThat(metrics.counter("counter").get()).isZero();
+    }
+
+    /**
+     * Test histogram summary values and percentile estimation.
+     */
+    @Test
+    public void testShouldSummarizeHistogram() {
+        Histogram histogram = new MetricsRegistry(true).histogram("histogram");
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        Assertions.assertThat(histogram.getCount()).isEqualTo(100);
+        Assertions.assertThat(histogram.getSum()).isEqualTo(5050);
+        Assertions.assertThat(histogram.getMax()).isEqualTo(100);
+        Assertions.assertThat(histogram.getMean()).isEqualTo(50.5);
+
+        // Percentiles are reported as upper bound of their bucket, capped by the maximal value.
+        Assertions.assertThat(histogram.getPercentile(50)).isEqualTo(63);
+        Assertions.assertThat(histogram.getPercentile(99)).isEqualTo(100);
+        Assertions.assertThat(histogram.getPercentile(1)).isEqualTo(1);
+    }
+
+    /**
+     * Test JSON representation of metrics.
+     */
+    @Test
+    public void testShouldDumpJson() {
+        MetricsRegistry metrics = new MetricsRegistry(true);
+        Assertions.assertThat(metrics.toJson())
+                .isEqualTo("{\n  \"enabled\": true,\n  \"counters\": {},\n  \"histograms\": {}\n}");
+
+        metrics.counter("b.count").add(2);
+        metrics.counter("a.count").add(1);
+        metrics.histogram("time").record(4);
+
+        Assertions.assertThat(metrics.toJson()).isEqualTo("{\n"
+                + "  \"enabled\": true,\n"
+                + "  \"counters\": {\n"
+                + "    \"a.count\": 1,\n"
+                + "    \"b.count\": 2\n"
+                + "  },\n"
+                + "  \"histograms\": {\n"
+                + "    \"time\": { \"count\": 1, \"sum\": 4, \"mean\": 4.00, \"max\": 4, \"p50\": 4, \"p90\": 4, \"p99\": 4 }\n"
+                + "  }\n"
+                + "}");
+    }
+}
@@ -0,0 +1,154 @@
+package guynir.pypath.services;
+
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.util.xmlb.XmlSerializer;
+import guynir.pypath.state.ListingGroup;
+import guynir.pypath.state.ListingSnapshot;
+import guynir.pypath.state.SourceDescriptor;
+import guynir.pypath.state.SourceType;
+import org.assertj.core.api.Assertions;
+import org.jdom.Element;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Tests for {@link ComponentStateServiceImpl}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ComponentStateServiceImplTest {
+
+    /**
+     * Listing used by tests.
+     */
+    private static final List<SourceDescriptor> LISTING = Arrays.asList(
+            new SourceDescriptor(SourceType.SOURCE_ROOT, "src2"),
+            new SourceDescriptor(SourceType.SOURCE_ROOT, "src1"));
+
+    /**
+     * Test that listing is persisted in compact form and restored from it.
+     */
+    @Test
+    public void testShouldPersistCompactListing() {
+        ComponentStateServiceImpl service = new ComponentStateServiceImpl(true);
+        service.setSourceDescriptorListing(LISTING);
+
+        ComponentStateServiceImpl.State state = service.getState();
+        Assertions.assertThat(state.descriptors).isEmpty();
+        Assertions.assertThat(state.listing)
+                .containsExactly(new ListingGroup("SOURCE_ROOT", Arrays.asList("0 src1", "3 2")));
+
+        ComponentStateServiceImpl restored = new ComponentStateServiceImpl(true);
+        restored.loadState(state);
+        Assertions.assertThat(restored.getSourceDescriptorsListing()).containsExactlyInAnyOrderElementsOf(LISTING);
+    }
+
+    /**
+     * Test that the compact listing is serialized one path per element (hence per line of <i>pypath.xml</i>), so
+     * adding or removing a folder changes a single line.
+     */
+    @Test
+    public void testShouldSerializeOnePathPerElement() {
+        ComponentStateServiceImpl service = new ComponentStateServiceImpl(true);
+        service.setSourceDescriptorListing(LISTING);
+
+        Element listing = XmlSerializer.serialize(service.getState()).getChild("listing");
+        Assertions.assertThat(listing).isNotNull();
+        Assertions.assertThat(JDOMUtil.writeElement(listing)).isEqualTo("<listing>\n"
+                + "  <group key=\"SOURCE_ROOT\">\n"
+                + "    <path>0 src1</path>\n"
+                + "    <path>3 2</path>\n"
+                + "  </group>\n"
+                + "</listing>");
+
+        // Round trip through XML.
+        ComponentStateServiceImpl restored = new ComponentStateServiceImpl(true);
+        restored.loadState(XmlSerializer.deserialize(XmlSerializer.serialize(service.getState()),
+                ComponentStateServiceImpl.State.class));
+        Assertions.assertThat(restored.getSourceDescriptorsListing()).containsExactlyInAnyOrderElementsOf(LISTING);
+    }
+
+    /**
+     * Test that state persisted by earlier versions (one element per descriptor) is migrated to compact form.
+     */
+    @Test
+    public void testShouldMigrateLegacyState() {
+        ComponentStateServiceImpl.State legacy = new ComponentStateServiceImpl.State();
+        legacy.descriptors = new LinkedList<>(LISTING);
+
+        ComponentStateServiceImpl service = new ComponentStateServiceImpl(true);
+        service.loadState(legacy);
+        Assertions.assertThat(service.getSourceDescriptorsListing()).containsExactlyElementsOf(LISTING);
+
+        ComponentStateServiceImpl.State state = service.getState();
+        Assertions.assertThat(state.descriptors).isEmpty();
+        Assertions.assertThat(state.listing)
+                .containsExactly(new ListingGroup("SOURCE_ROOT", Arrays.asList("0 src1", "3 2")));
+    }
+
+    /**
+     * Test that compact form can be disabled, in which case compact state is migrated back.
+     */
+    @Test
+    public void testShouldPersistLegacyStateWhenCompactFormDisabled() {
+        ComponentStateServiceImpl compact = new ComponentStateServiceImpl(true);
+        compact.setSourceDescriptorListing(LISTING);
+
+        ComponentStateServiceImpl service = new ComponentStateServiceImpl(false);
+        service.loadState(compact.getState());
+        Assertions.assertThat(service.getSourceDescriptorsListing()).containsExactlyInAnyOrderElementsOf(LISTING);
+
+        ComponentStateServiceImpl.State state = service.getState();
+        Assertions.assertThat(state.listing).isEmpty();
+        Assertions.assertThat(state.descriptors).containsExactlyInAnyOrderElementsOf(LISTING);
+    }
+
+    /**
+     * Test that only updates changing the set of descriptors modify the state.
+     */
+    @Test
+    public void testShouldIgnoreUpdatesNotChangingDescriptors() {
+        ComponentStateServiceImpl service = new ComponentStateServiceImpl(true);
+        Assertions.assertThat(service.setSourceDescriptorListing(LISTING)).isTrue();
+        long modificationCount = service.getModificationCount();
+        service.getState();
+
+        // Same descriptors, in different order.
+        List<SourceDescriptor> reordered = new ArrayList<>(LISTING);
+        Collections.reverse(reordered);
+        Assertions.assertThat(service.setSourceDescriptorListing(reordered)).isFalse();
+        Assertions.assertThat(service.getModificationCount()).isEqualTo(modificationCount);
+        Assertions.assertThat(service.getStateModificationCount()).isEqualTo(modificationCount);
+
+        // Different descriptors.
+        Assertions.assertThat(service.setSourceDescriptorListing(LISTING.subList(0, 1))).isTrue();
+        Assertions.assertThat(service.getModificationCount()).isGreaterThan(modificationCount);
+    }
+
+    /**
+     * Test that setting an equal snapshot does not modify the state.
+     */
+    @Test
+    public void testShouldIgnoreEqualSnapshot() {
+        ComponentStateServiceImpl service = new ComponentStateServiceImpl(true);
+        service.setListingSnapshot(new ListingSnapshot(1, 2, 3, 4));
+        long modificationCount = service.getModificationCount();
+
+        service.setListingSnapshot(new ListingSnapshot(1, 2, 3, 4));
+        Assertions.assertThat(service.getModificationCount()).isEqualTo(modificationCount);
+
+        // Same files, yet different nested listing files.
+        service.setListingSnapshot(new ListingSnapshot(1, 2, 3, 4, Collections.singletonList("services/billing")));
+        Assertions.assertThat(service.getModificationCount()).isGreaterThan(modificationCount);
+        modificationCount = service.getModificationCount();
+
+        service.setListingSnapshot(null);
+        Assertions.assertThat(service.getModificationCount()).isGreaterThan(modificationCount);
+    }
+}
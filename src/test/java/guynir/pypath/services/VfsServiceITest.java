@@ -1,10 +1,14 @@
 package guynir.pypath.services;
 
+import com.intellij.openapi.application.WriteAction;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileSystem;
 import com.intellij.testFramework.fixtures.BasePlatformTestCase;
 import com.intellij.testFramework.fixtures.TempDirTestFixture;
 import guynir.pypath.PyPathException;
+import guynir.pypath.metrics.MetricsRegistry;
+
+import java.util.Collections;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -72,6 +76,26 @@ public class VfsServiceITest extends BasePlatformTestCase {
         assertThatExceptionOfType(FileNotFoundException.class).isThrownBy(() -> service.toVFile("non-existing-file"));
     }
 
+    /**
+     * Test that resolved files are cached, and evicted once renamed.
+     */
+    public void testResolutionCache() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry(true);
+        service.setMetrics(metrics);
+
+        VirtualFile file = service.toVFile(SAMPLE_FILE);
+        assertThat(service.toVFile("/" + SAMPLE_FILE)).isSameAs(file);
+        assertThat(metrics.counter(MetricsRegistry.VFS_CACHE_HITS).get()).isEqualTo(1);
+        assertThat(metrics.counter(MetricsRegistry.VFS_CACHE_MISSES).get()).isEqualTo(1);
+
+        String oldPath = file.getPath();
+        WriteAction.runAndWait(() -> file.rename(this, "renamed.dat"));
+        service.invalidate(Collections.singletonList(oldPath));
+
+        assertThatExceptionOfType(FileNotFoundException.class).isThrownBy(() -> service.toVFile(SAMPLE_FILE));
+        assertThat(service.toVFile("renamed.dat")).isSameAs(file);
+    }
+
     /**
      * Test detection of listing file.
      */
@@ -0,0 +1,31 @@
+package guynir.pypath.services;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+/**
+ * Tests for {@link VfsService} utilities.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class VfsServiceTest {
+
+    /**
+     * Test that only paths with empty, "." or ".." segments are not cached, while names merely containing dots are.
+     */
+    @Test
+    public void testShouldCacheOnlyPathsWithoutRelativeSegments() {
+        Assertions.assertThat(VfsService.isCacheable("dir1/dir2")).isTrue();
+        Assertions.assertThat(VfsService.isCacheable("foo./bar")).isTrue();
+        Assertions.assertThat(VfsService.isCacheable("lib.")).isTrue();
+        Assertions.assertThat(VfsService.isCacheable(".venv/...")).isTrue();
+        Assertions.assertThat(VfsService.isCacheable("")).isTrue();
+
+        Assertions.assertThat(VfsService.isCacheable("dir1//dir2")).isFalse();
+        Assertions.assertThat(VfsService.isCacheable("dir1/./dir2")).isFalse();
+        Assertions.assertThat(VfsService.isCacheable("dir1/..")).isFalse();
+        Assertions.assertThat(VfsService.isCacheable("../dir1")).isFalse();
+        Assertions.assertThat(VfsService.isCacheable(".")).isFalse();
+    }
+}
@@ -0,0 +1,109 @@
+package guynir.pypath.state;
+
+import guynir.pypath.PyPathException;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link CompactListingCodec}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class CompactListingCodecTest {
+
+    /**
+     * Test that paths are grouped by type, sorted and prefix-compressed.
+     */
+    @Test
+    public void testShouldEncodeSortedPrefixCompressedPaths() {
+        List<ListingGroup> encoded = CompactListingCodec.encode(Arrays.asList(
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "services/billing/src"),
+                new SourceDescriptor(SourceType.RESOURCE_ROOT, "resources"),
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "services/auth/test"),
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "services/auth/src")));
+
+        Assertions.assertThat(encoded).containsExactly(
+                new ListingGroup("RESOURCE_ROOT", Collections.singletonList("0 resources")),
+                new ListingGroup("SOURCE_ROOT", Arrays.asList("0 services/auth/src", "14 test", "9 billing/src")));
+    }
+
+    /**
+     * Test that decoding reverses encoding, up to order of descriptors.
+     */
+    @Test
+    public void testShouldDecodeEncodedListing() {
+        List<SourceDescriptor> listing = Arrays.asList(
+                new SourceDescriptor(SourceType.TEST_SOURCE_ROOT, "lib/test"),
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "lib/src"),
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "lib"),
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "my dir/src"),
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "/"));
+
+        List<SourceDescriptor> decoded = CompactListingCodec.decode(CompactListingCodec.encode(listing));
+        Assertions.assertThat(decoded).containsExactlyInAnyOrderElementsOf(listing);
+        Assertions.assertThat(CompactListingCodec.encode(decoded)).isEqualTo(CompactListingCodec.encode(listing));
+
+        // Root path whose trailing separator was trimmed.
+        Assertions.assertThat(CompactListingCodec.decode(Collections.singletonList(group("SOURCE_ROOT", "0"))))
+                .containsExactly(new SourceDescriptor(SourceType.SOURCE_ROOT, "/"));
+    }
+
+    /**
+     * Test that modules and package prefixes survive encoding.
+     */
+    @Test
+    public void testShouldEncodeAttributes() {
+        List<SourceDescriptor> listing = Arrays.asList(
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "billing/src", "billing", "com.acme.billing"),
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "auth/src", null, "com.acme.auth"),
+                new SourceDescriptor(SourceType.EXCLUDED_ROOT, "billing/build", "billing", null),
+                new SourceDescriptor(SourceType.SOURCE_ROOT, "lib"));
+
+        List<ListingGroup> encoded = CompactListingCodec.encode(listing);
+        Assertions.assertThat(encoded).contains(
+                group("SOURCE_ROOT|billing|com.acme.billing", "0 billing/src"),
+                group("EXCLUDED_ROOT|billing|", "0 billing/build"),
+                group("SOURCE_ROOT", "0 lib"));
+        Assertions.assertThat(CompactListingCodec.decode(encoded)).containsExactlyInAnyOrderElementsOf(listing);
+    }
+
+    /**
+     * Test encoding and decoding of an empty listing.
+     */
+    @Test
+    public void testShouldHandleEmptyListing() {
+        Assertions.assertThat(CompactListingCodec.encode(Collections.emptyList())).isEmpty();
+        Assertions.assertThat(CompactListingCodec.decode(Collections.emptyList())).isEmpty();
+        Assertions.assertThat(CompactListingCodec.decode(Collections.singletonList(
+                new ListingGroup("SOURCE_ROOT", Collections.emptyList())))).isEmpty();
+    }
+
+    /**
+     * Test that malformed input is rejected.
+     */
+    @Test
+    public void testShouldRejectMalformedListing() {
+        Assertions.assertThatExceptionOfType(PyPathException.class).isThrownBy(() ->
+                CompactListingCodec.decode(Collections.singletonList(group("UNKNOWN", "0 src"))));
+        Assertions.assertThatExceptionOfType(PyPathException.class).isThrownBy(() ->
+                CompactListingCodec.decode(Collections.singletonList(group("SOURCE_ROOT", "src"))));
+        Assertions.assertThatExceptionOfType(PyPathException.class).isThrownBy(() ->
+                CompactListingCodec.decode(Collections.singletonList(group("SOURCE_ROOT", "x src"))));
+        Assertions.assertThatExceptionOfType(PyPathException.class).isThrownBy(() ->
+                CompactListingCodec.decode(Collections.singletonList(group("SOURCE_ROOT", "4 src"))));
+    }
+
+    /**
+     * @param key   Key of the group.
+     * @param paths Encoded paths.
+     * @return New group.
+     */
+    private static ListingGroup group(String key, String... paths) {
+        return new ListingGroup(key, Arrays.asList(paths));
+    }
+}
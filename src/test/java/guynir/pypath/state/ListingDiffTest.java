@@ -0,0 +1,76 @@
+package guynir.pypath.state;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link ListingDiff}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/22
+ */
+public class ListingDiffTest {
+
+    /**
+     * Test that identical listings result in no changes.
+     */
+    @Test
+    public void testShouldResultInNoChangesForIdenticalListings() {
+        ListingDiff diff = ListingDiff.compute(listing("src1", "src2"), listing("src2", "src1"));
+
+        Assertions.assertThat(diff.isEmpty()).isTrue();
+        Assertions.assertThat(diff.getUnchanged()).containsExactlyElementsOf(listing("src1", "src2"));
+    }
+
+    /**
+     * Test that added, removed and unchanged descriptors are reported separately.
+     */
+    @Test
+    public void testShouldSplitAddedRemovedAndUnchanged() {
+        ListingDiff diff = ListingDiff.compute(listing("src1", "src2", "src3"), listing("src2", "src4"));
+
+        Assertions.assertThat(diff.getAdded()).containsExactlyElementsOf(listing("src1", "src3"));
+        Assertions.assertThat(diff.getRemoved()).containsExactlyElementsOf(listing("src4"));
+        Assertions.assertThat(diff.getUnchanged()).containsExactlyElementsOf(listing("src2"));
+    }
+
+    /**
+     * Test that duplicate entries are reported only once.
+     */
+    @Test
+    public void testShouldReportDuplicatesOnce() {
+        ListingDiff diff = ListingDiff.compute(listing("src1", "src1"), listing("src2", "src2"));
+
+        Assertions.assertThat(diff.getAdded()).containsExactlyElementsOf(listing("src1"));
+        Assertions.assertThat(diff.getRemoved()).containsExactlyElementsOf(listing("src2"));
+    }
+
+    /**
+     * Test that a descriptor with the same path but a different type is considered a different descriptor.
+     */
+    @Test
+    public void testShouldDistinguishTypes() {
+        ListingDiff diff = ListingDiff.compute(
+                Collections.singletonList(new SourceDescriptor(SourceType.TEST_SOURCE_ROOT, "src1")),
+                listing("src1"));
+
+        Assertions.assertThat(diff.getAdded()).hasSize(1);
+        Assertions.assertThat(diff.getRemoved()).hasSize(1);
+        Assertions.assertThat(diff.getUnchanged()).isEmpty();
+    }
+
+    /**
+     * Create a listing of source root descriptors.
+     *
+     * @param paths Relative paths.
+     * @return List of descriptors.
+     */
+    private static List<SourceDescriptor> listing(String... paths) {
+        return Arrays.stream(paths).map(p -> new SourceDescriptor(SourceType.SOURCE_ROOT, p)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,84 @@
+package guynir.pypath.state;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link ListingFingerprint}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/24
+ */
+public class ListingFingerprintTest {
+
+    /**
+     * Test that fingerprint does not depend on the order of descriptors.
+     */
+    @Test
+    public void testShouldIgnoreOrder() {
+        Assertions.assertThat(ListingFingerprint.compute(listing("src1", "src2", "lib/src")))
+                .isEqualTo(ListingFingerprint.compute(listing("lib/src", "src1", "src2")));
+    }
+
+    /**
+     * Test that different listings result in different fingerprints.
+     */
+    @Test
+    public void testShouldDistinguishDifferentListings() {
+        long fingerprint = ListingFingerprint.compute(listing("src1", "src2"));
+
+        Assertions.assertThat(ListingFingerprint.compute(listing("src1"))).isNotEqualTo(fingerprint);
+        Assertions.assertThat(ListingFingerprint.compute(listing("src1", "src3"))).isNotEqualTo(fingerprint);
+        Assertions.assertThat(ListingFingerprint.compute(listing("src12"))).isNotEqualTo(fingerprint);
+        Assertions.assertThat(ListingFingerprint.compute(
+                Arrays.asList(new SourceDescriptor(SourceType.SOURCE_ROOT, "src1"),
+                        new SourceDescriptor(SourceType.RESOURCE_ROOT, "src2")))).isNotEqualTo(fingerprint);
+    }
+
+    /**
+     * Test fingerprint of an empty listing.
+     */
+    @Test
+    public void testShouldReturnEmptyFingerprintForEmptyListing() {
+        Assertions.assertThat(ListingFingerprint.compute(Collections.emptyList())).isEqualTo(ListingFingerprint.EMPTY);
+    }
+
+    /**
+     * Test that content hash is sensitive to any change of content, including order and comments.
+     */
+    @Test
+    public void testShouldHashContent() {
+        long hash = ListingFingerprint.hashContent(bytes("src1\nsrc2\n"));
+
+        Assertions.assertThat(ListingFingerprint.hashContent(bytes("src1\nsrc2\n"))).isEqualTo(hash);
+        Assertions.assertThat(ListingFingerprint.hashContent(bytes("src2\nsrc1\n"))).isNotEqualTo(hash);
+        Assertions.assertThat(ListingFingerprint.hashContent(bytes("# comment\nsrc1\nsrc2\n"))).isNotEqualTo(hash);
+        Assertions.assertThat(ListingFingerprint.hashContent(bytes("src1\nsrc2\n\n"))).isNotEqualTo(hash);
+        Assertions.assertThat(ListingFingerprint.hashContent(new byte[0]))
+                .isNotEqualTo(ListingFingerprint.hashContent(new byte[1]));
+    }
+
+    /**
+     * @param content Text content.
+     * @return UTF-8 encoding of <i>content</i>.
+     */
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param paths Paths of descriptors.
+     * @return Listing of source root descriptors.
+     */
+    private static List<SourceDescriptor> listing(String... paths) {
+        return Arrays.stream(paths)
+                .map(path -> new SourceDescriptor(SourceType.SOURCE_ROOT, path))
+                .collect(Collectors.toList());
+    }
+}
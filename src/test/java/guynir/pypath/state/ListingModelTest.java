@@ -0,0 +1,75 @@
+package guynir.pypath.state;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link ListingModel}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class ListingModelTest {
+
+    /**
+     * Test that relocated entries are resolved relative to the new directory, except for exclude patterns.
+     */
+    @Test
+    public void testShouldRebaseEntries() {
+        Map<String, String> modules = new HashMap<>();
+        modules.put("src", "billing");
+        ListingModel listing = new ListingModel(
+                Arrays.asList("src", "test:tests", "/", "!legacy", "resource:*/static", "exclude-pattern:__pycache__"),
+                modules, Collections.singletonMap("test:tests", "com.acme"));
+
+        ListingModel rebased = listing.rebase("services/billing");
+        Assertions.assertThat(rebased.getEntries()).containsExactly("services/billing/src",
+                "test:services/billing/tests", "services/billing", "!services/billing/legacy",
+                "resource:services/billing/*/static", "exclude-pattern:__pycache__");
+        Assertions.assertThat(rebased.getModule("services/billing/src")).isEqualTo("billing");
+        Assertions.assertThat(rebased.getPackagePrefix("test:services/billing/tests")).isEqualTo("com.acme");
+        Assertions.assertThat(rebased.getModule("services/billing")).isNull();
+    }
+
+    /**
+     * Test that entries escaping the listing's directory (via ".." segments) are dropped, along with their attributes,
+     * while ".." segments resolving within the directory are allowed.
+     */
+    @Test
+    public void testShouldRejectEntriesOutsideOfDirectory() {
+        ListingModel listing = new ListingModel(
+                Arrays.asList("../../shared", "!../root-only", "test:../b/tests", "..", "src/../lib", "src"),
+                Collections.singletonMap("../../shared", "core"), Collections.emptyMap());
+
+        List<String> rejected = new ArrayList<>();
+        ListingModel rebased = listing.rebase("team/a", rejected);
+        Assertions.assertThat(rebased.getEntries()).containsExactly("team/a/lib", "team/a/src");
+        Assertions.assertThat(rejected).containsExactly("../../shared", "!../root-only", "test:../b/tests", "..");
+        Assertions.assertThat(rebased.getModule("shared")).isNull();
+    }
+
+    /**
+     * Test that merged listings keep their order, and later occurrences of an entry determine its attributes.
+     */
+    @Test
+    public void testShouldMergeListings() {
+        ListingModel parent = new ListingModel(Arrays.asList("lib", "services/auth/src"),
+                Collections.singletonMap("services/auth/src", "core"), Collections.emptyMap());
+        ListingModel child = new ListingModel(Arrays.asList("services/auth/src", "!services/auth/legacy"),
+                Collections.emptyMap(), Collections.singletonMap("services/auth/src", "com.acme.auth"));
+
+        ListingModel merged = ListingModel.merge(Arrays.asList(parent, child));
+        Assertions.assertThat(merged.getEntries())
+                .containsExactly("lib", "services/auth/src", "services/auth/src", "!services/auth/legacy");
+        Assertions.assertThat(merged.getModule("services/auth/src")).isNull();
+        Assertions.assertThat(merged.getPackagePrefix("services/auth/src")).isEqualTo("com.acme.auth");
+        Assertions.assertThat(ListingModel.merge(Collections.singletonList(parent))).isSameAs(parent);
+    }
+}
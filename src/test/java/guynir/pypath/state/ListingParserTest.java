@@ -0,0 +1,166 @@
+package guynir.pypath.state;
+
+import guynir.pypath.utils.ObjectUtils;
+import guynir.pypath.PyPathException;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link ListingParser}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/24
+ */
+public class ListingParserTest {
+
+    /**
+     * Test that empty lines, whitespace lines and comment lines are skipped.
+     */
+    @Test
+    public void testShouldSkipEmptyAndCommentLines() {
+        List<String> entries = parse("# comment\n\n   \t\n// another comment\n  # indented comment\nsrc\n");
+        Assertions.assertThat(entries).containsExactly("src");
+    }
+
+    /**
+     * Test that all kinds of line terminators are supported.
+     */
+    @Test
+    public void testShouldSupportLineTerminators() {
+        Assertions.assertThat(parse("src1\r\nsrc2\rsrc3\nsrc4")).containsExactly("src1", "src2", "src3", "src4");
+    }
+
+    /**
+     * Test that entries are normalized the same way {@link ObjectUtils#normalizePath(String)} does.
+     */
+    @Test
+    public void testShouldNormalizeAsObjectUtils() {
+        List<String> paths = Arrays.asList("/", "", "/dir1/", " dir1 ", "/dir1/dir2/../dir3", "/dir1/././dir2/",
+                "dir1//dir2", "dir1/..", "../dir1", "dir1/../../dir2", "/../dir1", "a/b/c/../../d", "./dir1/.");
+
+        for (String path : paths) {
+            String expected = ObjectUtils.normalizePath(path);
+            if (path.trim().isEmpty()) {
+                // Whitespace lines are skipped by the parser.
+                Assertions.assertThat(parse(path)).isEmpty();
+            } else {
+                Assertions.assertThat(parse(path)).containsExactly(expected);
+            }
+        }
+    }
+
+    /**
+     * Test that exclusion marker is preserved and the path following it is normalized.
+     */
+    @Test
+    public void testShouldPreserveExclusionMarker() {
+        Assertions.assertThat(parse("! /dir1/./dir2/\n!services/*/src")).containsExactly("!dir1/dir2", "!services/*/src");
+    }
+
+    /**
+     * Test that byte order marks are handled and non-ASCII paths are decoded as UTF-8.
+     */
+    @Test
+    public void testShouldHandleByteOrderMarks() {
+        byte[] utf8 = "\uFEFFsrc/\u05D0\u05D1\nlib".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertThat(new ListingParser().parse(utf8)).containsExactly("src/\u05D0\u05D1", "lib");
+
+        byte[] utf16 = "src/\u05D0\u05D1\nlib".getBytes(StandardCharsets.UTF_16);
+        Assertions.assertThat(new ListingParser().parse(utf16)).containsExactly("src/\u05D0\u05D1", "lib");
+    }
+
+    /**
+     * Test that long paths, exceeding initial buffer sizes, are parsed correctly.
+     */
+    @Test
+    public void testShouldParseLongPaths() {
+        StringBuilder path = new StringBuilder("!");
+        for (int i = 0; i < 100; i++) {
+            path.append("/segment").append(i);
+        }
+        Assertions.assertThat(parse(path.toString())).containsExactly("!" + path.substring(2));
+    }
+
+    /**
+     * Test that sections and keyword prefixes determine the type of entries.
+     */
+    @Test
+    public void testShouldParseTypedEntries() {
+        List<String> entries = parse("src\n"
+                + "resource: /app/static/\n"
+                + "[tests]\n"
+                + "tests\n"
+                + "source:lib\n"
+                + "! test:tests/fixtures\n"
+                + "[ Test-Resources ]\n"
+                + "tests/fixtures\n"
+                + "[source]\n"
+                + "test:\n");
+
+        Assertions.assertThat(entries).containsExactly("src", "resource:app/static", "test:tests", "lib",
+                "!tests/fixtures", "test-resource:tests/fixtures", "test:/");
+
+        Assertions.assertThat(ListingParser.typeOf("test-resource:tests/fixtures"))
+                .isEqualTo(SourceType.TEST_RESOURCE_ROOT);
+        Assertions.assertThat(ListingParser.pathOf("test-resource:tests/fixtures")).isEqualTo("tests/fixtures");
+        Assertions.assertThat(ListingParser.typeOf("src")).isEqualTo(SourceType.SOURCE_ROOT);
+        Assertions.assertThat(ListingParser.pathOf("src")).isEqualTo("src");
+    }
+
+    /**
+     * Test parsing of excluded folders and exclude patterns.
+     */
+    @Test
+    public void testShouldParseExclusions() {
+        List<String> entries = parse("src\n"
+                + "[excluded]\n"
+                + ".venv\n"
+                + "build/\n"
+                + "[exclude-patterns]\n"
+                + "__pycache__\n"
+                + "*.pyc\n"
+                + "excluded:dist\n");
+
+        Assertions.assertThat(entries).containsExactly("src", "excluded:.venv", "excluded:build",
+                "exclude-pattern:__pycache__", "exclude-pattern:*.pyc", "excluded:dist");
+        Assertions.assertThat(ListingParser.typeOf(entries.get(3))).isEqualTo(SourceType.EXCLUDE_PATTERN);
+        Assertions.assertThat(ListingParser.pathOf(entries.get(3))).isEqualTo("__pycache__");
+        Assertions.assertThat(ListingParser.typeOf(entries.get(5))).isEqualTo(SourceType.EXCLUDED_ROOT);
+    }
+
+    /**
+     * Test that a source root whose path starts with a keyword is not mistaken for a typed entry.
+     */
+    @Test
+    public void testShouldDisambiguateSourceRoots() {
+        List<String> entries = parse("source:test:dir\nc:/dir");
+
+        Assertions.assertThat(entries).containsExactly("source:test:dir", "c:/dir");
+        Assertions.assertThat(ListingParser.typeOf(entries.get(0))).isEqualTo(SourceType.SOURCE_ROOT);
+        Assertions.assertThat(ListingParser.pathOf(entries.get(0))).isEqualTo("test:dir");
+        Assertions.assertThat(ListingParser.typeOf(entries.get(1))).isEqualTo(SourceType.SOURCE_ROOT);
+        Assertions.assertThat(ListingParser.pathOf(entries.get(1))).isEqualTo("c:/dir");
+    }
+
+    /**
+     * Test that unknown sections are reported along with their line number.
+     */
+    @Test
+    public void testShouldRejectUnknownSection() {
+        Assertions.assertThatExceptionOfType(PyPathException.class)
+                .isThrownBy(() -> parse("src\r\n\r\n[docs]\r\ndocs"))
+                .withMessageContaining("line 3");
+    }
+
+    /**
+     * @param content Listing content.
+     * @return Parsed entries.
+     */
+    private static List<String> parse(String content) {
+        return new ListingParser().parse(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
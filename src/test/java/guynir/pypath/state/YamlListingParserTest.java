@@ -0,0 +1,108 @@
+package guynir.pypath.state;
+
+import guynir.pypath.PyPathException;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for {@link YamlListingParser}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class YamlListingParserTest {
+
+    /**
+     * Test parsing of all supported forms of entries.
+     */
+    @Test
+    public void testShouldParseListing() {
+        ListingModel model = parse("---\n"
+                + "# Source roots.\n"
+                + "sources:\n"
+                + "  - src                      # Main sources.\n"
+                + "  - /lib/src/\n"
+                + "  - path: billing/src\n"
+                + "    module: billing\n"
+                + "    package: com.acme.billing\n"
+                + "  - {path: 'auth/src', package: com.acme.auth}\n"
+                + "  - \"!legacy/src\"\n"
+                + "tests: [tests, \"libs/*/tests\"]\n"
+                + "resources: app/static\n"
+                + "excluded:\n"
+                + "- .venv\n"
+                + "exclude-patterns:\n"
+                + "  - __pycache__\n");
+
+        Assertions.assertThat(model.getEntries()).containsExactly("src", "lib/src", "billing/src", "auth/src",
+                "!legacy/src", "test:tests", "test:libs/*/tests", "resource:app/static", "excluded:.venv",
+                "exclude-pattern:__pycache__");
+        Assertions.assertThat(model.getModule("billing/src")).isEqualTo("billing");
+        Assertions.assertThat(model.getPackagePrefix("billing/src")).isEqualTo("com.acme.billing");
+        Assertions.assertThat(model.getModule("auth/src")).isNull();
+        Assertions.assertThat(model.getPackagePrefix("auth/src")).isEqualTo("com.acme.auth");
+        Assertions.assertThat(model.getPackagePrefix("src")).isNull();
+    }
+
+    /**
+     * Test parsing of an empty document.
+     */
+    @Test
+    public void testShouldParseEmptyListing() {
+        Assertions.assertThat(parse("").getEntries()).isEmpty();
+        Assertions.assertThat(parse("# Nothing here.\n---\n\nsources:\n").getEntries()).isEmpty();
+    }
+
+    /**
+     * Test that quoted scalars are unescaped and may hold comment characters.
+     */
+    @Test
+    public void testShouldParseQuotedScalars() {
+        ListingModel model = parse("sources:\n"
+                + "  - 'it''s # here'\n"
+                + "  - \"say \\\"hi\\\"\"\n");
+
+        Assertions.assertThat(model.getEntries()).containsExactly("it's # here", "say \"hi\"");
+    }
+
+    /**
+     * Test that malformed content and schema violations are reported along with their position.
+     */
+    @Test
+    public void testShouldReportErrorsWithPosition() {
+        assertError("sources:\n  - src\ndocs:\n  - docs\n", "Unknown section 'docs' at line 3, column 1.");
+        assertError("sources:\n  - !legacy\n", "must be quoted at line 2, column 5.");
+        assertError("sources:\n  - *.py\n", "must be quoted at line 2, column 5.");
+        assertError("sources:\n  - path: src\n    modul: core\n", "Unknown key 'modul'");
+        assertError("sources:\n  - module: core\n  - src\n", "Missing 'path' of entry at line 2, column 5.");
+        assertError("resources:\n  - {path: static, package: com.acme}\n", "applies to sources and tests only");
+        assertError("sources:\n  - path: src\n      module: core\n", "Bad indentation");
+        assertError("sources:\n\t- src\n", "Tabs cannot be used");
+        assertError("tests: [tests\n", "Unterminated flow sequence at line 1, column 8.");
+        assertError("sources:\n  - \"src\n", "Unterminated quoted scalar at line 2, column 5.");
+        assertError("sources: []\ntests: []\nsource: []\n", "Duplicate section 'source' at line 3");
+        assertError("  - src\n", "Entry outside of any section at line 1, column 3.");
+    }
+
+    /**
+     * Assert parsing of a given content fails.
+     *
+     * @param content Listing content.
+     * @param message Expected part of the error message.
+     */
+    private static void assertError(String content, String message) {
+        Assertions.assertThatExceptionOfType(PyPathException.class)
+                .isThrownBy(() -> parse(content))
+                .withMessageContaining(message);
+    }
+
+    /**
+     * @param content Listing content.
+     * @return Parsed listing.
+     */
+    private static ListingModel parse(String content) {
+        return new YamlListingParser().parse(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
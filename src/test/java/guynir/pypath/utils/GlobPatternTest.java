@@ -0,0 +1,93 @@
+package guynir.pypath.utils;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GlobPattern}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/24
+ */
+public class GlobPatternTest {
+
+    /**
+     * Test that the base of a pattern consists of its leading segments without wildcards.
+     */
+    @Test
+    public void testShouldResolvePatternBase() {
+        Assertions.assertThat(GlobPattern.compile("services/*/src").getBase()).isEqualTo("services");
+        Assertions.assertThat(GlobPattern.compile("/libs/core/**/src/").getBase()).isEqualTo("libs/core");
+        Assertions.assertThat(GlobPattern.compile("*/src").getBase()).isEqualTo("");
+    }
+
+    /**
+     * Test that '*' and '?' match within a single segment only.
+     */
+    @Test
+    public void testShouldMatchSingleSegmentWildcards() {
+        GlobPattern pattern = GlobPattern.compile("services/*/src");
+        Assertions.assertThat(pattern.matches("services/auth/src")).isTrue();
+        Assertions.assertThat(pattern.matches("services/auth/v1/src")).isFalse();
+        Assertions.assertThat(pattern.matches("services/src")).isFalse();
+
+        pattern = GlobPattern.compile("lib?/py*_src");
+        Assertions.assertThat(pattern.matches("lib1/py_src")).isTrue();
+        Assertions.assertThat(pattern.matches("lib1/python_src")).isTrue();
+        Assertions.assertThat(pattern.matches("lib12/py_src")).isFalse();
+        Assertions.assertThat(pattern.matches("lib1/py_src_old")).isFalse();
+    }
+
+    /**
+     * Test that '**' matches zero or more segments.
+     */
+    @Test
+    public void testShouldMatchAnyPath() {
+        GlobPattern pattern = GlobPattern.compile("libs/**/src");
+        Assertions.assertThat(pattern.matches("libs/src")).isTrue();
+        Assertions.assertThat(pattern.matches("libs/core/src")).isTrue();
+        Assertions.assertThat(pattern.matches("libs/core/io/src")).isTrue();
+        Assertions.assertThat(pattern.matches("libs/core/io/test")).isFalse();
+        Assertions.assertThat(pattern.matches("other/core/src")).isFalse();
+    }
+
+    /**
+     * Test that a path leads to a match only if it matches a leading portion of the pattern.
+     */
+    @Test
+    public void testShouldMatchPrefix() {
+        GlobPattern pattern = GlobPattern.compile("services/*/src");
+        Assertions.assertThat(pattern.matchesPrefix("")).isTrue();
+        Assertions.assertThat(pattern.matchesPrefix("services")).isTrue();
+        Assertions.assertThat(pattern.matchesPrefix("services/auth")).isTrue();
+        Assertions.assertThat(pattern.matchesPrefix("services/auth/src")).isTrue();
+        Assertions.assertThat(pattern.matchesPrefix("services/auth/src/main")).isFalse();
+        Assertions.assertThat(pattern.matchesPrefix("services/auth/docs")).isFalse();
+        Assertions.assertThat(pattern.matchesPrefix("tools")).isFalse();
+
+        pattern = GlobPattern.compile("libs/**/src");
+        Assertions.assertThat(pattern.matchesPrefix("libs/core/io")).isTrue();
+        Assertions.assertThat(pattern.matchesPrefix("libs/core/.cache")).isFalse();
+        Assertions.assertThat(pattern.matchesPrefix("other/core")).isFalse();
+    }
+
+    /**
+     * Test that wildcards do not match hidden directories, unless the pattern explicitly asks for them.
+     */
+    @Test
+    public void testShouldNotMatchHiddenDirectoriesImplicitly() {
+        Assertions.assertThat(GlobPattern.compile("*/src").matches(".venv/src")).isFalse();
+        Assertions.assertThat(GlobPattern.compile("**/src").matches("libs/.cache/src")).isFalse();
+        Assertions.assertThat(GlobPattern.compile(".*/src").matches(".venv/src")).isTrue();
+    }
+
+    /**
+     * Test detection of patterns.
+     */
+    @Test
+    public void testShouldDetectPatterns() {
+        Assertions.assertThat(GlobPattern.isPattern("services/*/src")).isTrue();
+        Assertions.assertThat(GlobPattern.isPattern("lib?")).isTrue();
+        Assertions.assertThat(GlobPattern.isPattern("services/auth/src")).isFalse();
+    }
+}
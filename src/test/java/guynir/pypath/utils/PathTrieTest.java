@@ -0,0 +1,138 @@
+package guynir.pypath.utils;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PathTrie}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/23
+ */
+public class PathTrieTest {
+
+    /**
+     * Test lookup of exact paths, regardless of redundant slashes.
+     */
+    @Test
+    public void testShouldLookupExactPaths() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("services/auth/src", "auth");
+        trie.put("lib", "lib");
+
+        Assertions.assertThat(trie.get("services/auth/src")).isEqualTo("auth");
+        Assertions.assertThat(trie.get("/services//auth/src/")).isEqualTo("auth");
+        Assertions.assertThat(trie.get("lib")).isEqualTo("lib");
+        Assertions.assertThat(trie.get("services/auth")).isNull();
+        Assertions.assertThat(trie.get("services/auth/src/main")).isNull();
+        Assertions.assertThat(trie.size()).isEqualTo(2);
+    }
+
+    /**
+     * Test that ancestors of stored paths are reported as prefixes, while descendants and siblings are not.
+     */
+    @Test
+    public void testShouldMatchPrefixes() {
+        PathTrie<Boolean> trie = new PathTrie<>();
+        trie.put("services/auth/src", true);
+
+        Assertions.assertThat(trie.containsPrefix("services", 0)).isTrue();
+        Assertions.assertThat(trie.containsPrefix("services/auth", 0)).isTrue();
+        Assertions.assertThat(trie.containsPrefix("services/auth/src", 0)).isTrue();
+        Assertions.assertThat(trie.containsPrefix("services/auth/src/main", 0)).isFalse();
+        Assertions.assertThat(trie.containsPrefix("services/authz", 0)).isFalse();
+        Assertions.assertThat(trie.containsPrefix("node_modules", 0)).isFalse();
+    }
+
+    /**
+     * Test lookup of a path embedded within a longer string.
+     */
+    @Test
+    public void testShouldLookupFromOffset() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("src", "src");
+
+        String path = "/home/user/workspace/src";
+        Assertions.assertThat(trie.get(path, "/home/user/workspace/".length())).isEqualTo("src");
+        Assertions.assertThat(trie.get(path, 0)).isNull();
+    }
+
+    /**
+     * Test that the root path is represented by the root node.
+     */
+    @Test
+    public void testShouldStoreRootPath() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/", "root");
+
+        Assertions.assertThat(trie.get("")).isEqualTo("root");
+        Assertions.assertThat(trie.get("/")).isEqualTo("root");
+    }
+
+    /**
+     * Test that nodes with many children remain reachable after their hash tables grow.
+     */
+    @Test
+    public void testShouldHandleManyChildren() {
+        PathTrie<Integer> trie = new PathTrie<>();
+        for (int i = 0; i < 1000; i++) {
+            trie.put("services/service" + i + "/src", i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertThat(trie.get("services/service" + i + "/src")).isEqualTo(i);
+        }
+        Assertions.assertThat(trie.size()).isEqualTo(1000);
+    }
+
+    /**
+     * Test that removing a path prunes nodes that are no longer needed, while keeping other paths intact.
+     */
+    @Test
+    public void testShouldRemoveAndPrune() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("services/auth/src", "auth");
+        trie.put("services/billing/src", "billing");
+
+        Assertions.assertThat(trie.remove("services/auth/src")).isEqualTo("auth");
+        Assertions.assertThat(trie.remove("services/auth/src")).isNull();
+        Assertions.assertThat(trie.containsPrefix("services/auth", 0)).isFalse();
+        Assertions.assertThat(trie.get("services/billing/src")).isEqualTo("billing");
+        Assertions.assertThat(trie.size()).isEqualTo(1);
+
+        trie.remove("services/billing/src");
+        Assertions.assertThat(trie.containsPrefix("services", 0)).isFalse();
+        Assertions.assertThat(trie.isEmpty()).isTrue();
+    }
+
+    /**
+     * Test lookup of all values under a given path.
+     */
+    @Test
+    public void testShouldCollectSubtree() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("services", "services");
+        trie.put("services/auth/src", "auth");
+        trie.put("services/billing/src", "billing");
+        trie.put("lib", "lib");
+
+        Assertions.assertThat(trie.getSubtree("services", 0)).containsExactlyInAnyOrder("services", "auth", "billing");
+        Assertions.assertThat(trie.getSubtree("services/auth", 0)).containsExactly("auth");
+        Assertions.assertThat(trie.getSubtree("tools", 0)).isEmpty();
+    }
+
+    /**
+     * Test lookup of the nearest path containing a given path.
+     */
+    @Test
+    public void testShouldFindNearestContainingPath() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("services", "services");
+        trie.put("services/auth/src", "auth");
+
+        Assertions.assertThat(trie.getNearest("services/auth/src/main/app.py", 0)).isEqualTo("auth");
+        Assertions.assertThat(trie.getNearest("services/auth/src", 0)).isEqualTo("auth");
+        Assertions.assertThat(trie.getNearest("services/auth", 0)).isEqualTo("services");
+        Assertions.assertThat(trie.getNearest("lib", 0)).isNull();
+    }
+}
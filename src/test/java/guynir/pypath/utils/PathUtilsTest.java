@@ -0,0 +1,83 @@
+package guynir.pypath.utils;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+
+/**
+ * Tests for {@link PathUtils} utilities.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class PathUtilsTest {
+
+    /**
+     * Test that normalization reduces "." and ".." segments, and keeps leading ".." segments of relative paths only.
+     */
+    @Test
+    public void testShouldNormalizeParentSegments() {
+        Assertions.assertThat(PathUtils.normalize("dir1/dir2/../../dir3")).isEqualTo("dir3");
+        Assertions.assertThat(PathUtils.normalize("dir1/../..")).isEqualTo("..");
+        Assertions.assertThat(PathUtils.normalize("../../dir1/./dir2/..")).isEqualTo("../../dir1");
+        Assertions.assertThat(PathUtils.normalize("/../dir1")).isEqualTo("dir1");
+        Assertions.assertThat(PathUtils.normalize("dir1/..")).isEqualTo("/");
+        Assertions.assertThat(PathUtils.normalize(" ./dir1/ ")).isEqualTo("dir1");
+    }
+
+    /**
+     * Test that an already normalized path is returned as-is, without creating a new string.
+     */
+    @Test
+    public void testShouldReturnNormalizedPathAsIs() {
+        String path = "dir1/dir2/dir3";
+        Assertions.assertThat(PathUtils.normalize(path)).isSameAs(path);
+        Assertions.assertThat(PathUtils.normalize("/")).isEqualTo("/");
+        Assertions.assertThat(PathUtils.normalize(null)).isNull();
+    }
+
+    /**
+     * Test that normalization yields the same result as normalizing with {@link java.nio.file.Path#normalize()} (the
+     * former implementation of {@link ObjectUtils#normalizePath(String)}).
+     */
+    @Test
+    public void testShouldMatchNioNormalization() {
+        String[] paths = {"", "/", "a", "/a/", "a//b", "./a/./b/", "a/../b", "../a", "a/b/../../..", "/a/../../b",
+                ".a/..b/...", " /a/b/c/../ ", "a/./../.", "../../.."};
+        for (String path : paths) {
+            String expected = Paths.get(path.trim()).normalize().toString();
+            if (expected.isEmpty()) {
+                expected = "/";
+            } else if (expected.length() > 1 && expected.startsWith("/")) {
+                expected = expected.substring(1);
+            }
+
+            Assertions.assertThat(PathUtils.normalize(path)).as(path).isEqualTo(expected);
+        }
+    }
+
+    /**
+     * Test that only non-empty segments are appended, each preceded by a slash.
+     */
+    @Test
+    public void testShouldAppendSegments() {
+        Assertions.assertThat(PathUtils.appendSegments(new StringBuilder("temp://"), "").toString())
+                .isEqualTo("temp://");
+        Assertions.assertThat(PathUtils.appendSegments(new StringBuilder("x"), " //dir1///dir2/ ").toString())
+                .isEqualTo("x/dir1/dir2");
+    }
+
+    /**
+     * Test that a path is considered within a base path only at a segment boundary.
+     */
+    @Test
+    public void testShouldDetermineContainment() {
+        Assertions.assertThat(PathUtils.isWithin("dir1/dir2", "dir1")).isTrue();
+        Assertions.assertThat(PathUtils.isWithin("dir1", "dir1")).isTrue();
+        Assertions.assertThat(PathUtils.isWithin("dir12", "dir1")).isFalse();
+        Assertions.assertThat(PathUtils.isWithin("dir1", "")).isTrue();
+        Assertions.assertThat(PathUtils.isWithin("/workspace/dir1/dir2", 11, "dir1")).isTrue();
+        Assertions.assertThat(PathUtils.isWithin("/workspace/dir12", 11, "dir1")).isFalse();
+    }
+}
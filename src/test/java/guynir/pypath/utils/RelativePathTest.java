@@ -0,0 +1,96 @@
+package guynir.pypath.utils;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RelativePath}.
+ *
+ * @author Guy Raz Nir
+ * @since 2020/02/25
+ */
+public class RelativePathTest {
+
+    /**
+     * Test that leading, trailing and repeated slashes do not affect a path, and that the root path is an empty
+     * string.
+     */
+    @Test
+    public void testShouldIgnoreEmptySegments() {
+        RelativePath path = RelativePath.of("/services//auth/src/");
+
+        Assertions.assertThat(path).isEqualTo(RelativePath.of("services/auth/src"));
+        Assertions.assertThat(path.hashCode()).isEqualTo(RelativePath.of("services/auth/src").hashCode());
+        Assertions.assertThat(path.toString()).isEqualTo("services/auth/src");
+        Assertions.assertThat(path.getSegmentCount()).isEqualTo(3);
+        Assertions.assertThat(path.getName()).isEqualTo("src");
+        Assertions.assertThat(RelativePath.of("/")).isSameAs(RelativePath.ROOT);
+        Assertions.assertThat(RelativePath.ROOT.toString()).isEqualTo("");
+    }
+
+    /**
+     * Test that equal segments of distinct paths are shared.
+     */
+    @Test
+    public void testShouldInternSegments() {
+        RelativePath auth = RelativePath.of("services/auth/src");
+        RelativePath billing = RelativePath.of(new String("services/billing/src"));
+
+        Assertions.assertThat(billing.getSegment(0)).isSameAs(auth.getSegment(0));
+        Assertions.assertThat(billing.getSegment(2)).isSameAs(auth.getSegment(2));
+    }
+
+    /**
+     * Test that a path starts with another only at a segment boundary.
+     */
+    @Test
+    public void testShouldMatchPrefixBySegments() {
+        RelativePath path = RelativePath.of("dir1/dir2/dir3");
+
+        Assertions.assertThat(path.startsWith(RelativePath.of("dir1/dir2"))).isTrue();
+        Assertions.assertThat(path.startsWith(path)).isTrue();
+        Assertions.assertThat(path.startsWith(RelativePath.ROOT)).isTrue();
+        Assertions.assertThat(path.startsWith(RelativePath.of("dir1/dir"))).isFalse();
+        Assertions.assertThat(RelativePath.of("dir1").startsWith(path)).isFalse();
+    }
+
+    /**
+     * Test that relativizing and resolving a path are inverse operations.
+     */
+    @Test
+    public void testShouldRelativizeAndResolve() {
+        RelativePath base = RelativePath.of("dir1");
+        RelativePath path = RelativePath.of("dir1/dir2/dir3");
+
+        RelativePath relative = base.relativize(path);
+        Assertions.assertThat(relative.toString()).isEqualTo("dir2/dir3");
+        Assertions.assertThat(base.resolve(relative)).isEqualTo(path);
+        Assertions.assertThat(path.relativize(path)).isSameAs(RelativePath.ROOT);
+        Assertions.assertThat(RelativePath.ROOT.relativize(path)).isEqualTo(path);
+        Assertions.assertThat(path.getParent()).isEqualTo(RelativePath.of("dir1/dir2"));
+    }
+
+    /**
+     * Test that relativizing a path not residing within the base path is rejected.
+     */
+    @Test
+    public void testShouldRejectPathOutsideOfBase() {
+        Assertions.assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> RelativePath.of("dir1").relativize(RelativePath.of("dir12/dir2")));
+    }
+
+    /**
+     * Test that a trie keyed by relative paths matches the same entries as when keyed by strings.
+     */
+    @Test
+    public void testShouldIndexTrieByRelativePath() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put(RelativePath.of("services/auth/src"), "auth");
+
+        Assertions.assertThat(trie.get("services/auth/src")).isEqualTo("auth");
+        Assertions.assertThat(trie.get(RelativePath.of("/services/auth/src/"))).isEqualTo("auth");
+        Assertions.assertThat(trie.get(RelativePath.of("services/auth"))).isNull();
+        Assertions.assertThat(trie.remove(RelativePath.of("services/auth/src"))).isEqualTo("auth");
+        Assertions.assertThat(trie.isEmpty()).isTrue();
+    }
+}